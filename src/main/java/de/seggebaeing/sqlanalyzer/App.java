@@ -1,11 +1,17 @@
 package de.seggebaeing.sqlanalyzer;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
 import javafx.stage.Stage;
 import de.seggebaeing.sqlanalyzer.logic.service.ConfigService;
+import de.seggebaeing.sqlanalyzer.logic.service.WorkspaceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.presentation.util.UIUtil;
 import de.seggebaeing.sqlanalyzer.presentation.util.WindowManager;
 
 /**
@@ -20,7 +26,10 @@ import de.seggebaeing.sqlanalyzer.presentation.util.WindowManager;
  * 
  *
  * <p><strong>Threading:</strong> {@link #start(javafx.stage.Stage)} is invoked on the JavaFX Application Thread.
- * No additional background threads are started here; long-running work should be scheduled by the respective
+ * No additional background threads are started here apart from those of
+ * {@link de.seggebaeing.sqlanalyzer.logic.service.WorkspaceService#open(java.nio.file.Path)} and a JVM shutdown
+ * hook that closes the
+ * de.seggebaeing.sqlanalyzer.persistence layer; long-running work should be scheduled by the respective
  * services or worker classes.
  *
  * @apiNote Ensure that {@link de.seggebaeing.sqlanalyzer.logic.service.ConfigService} can resolve a valid saves base path before startup,
@@ -53,9 +62,17 @@ public class App extends Application {
      * following steps:
      * <ol>
      *   <li>Logs the startup event.</li>
-     *   <li>Initializes de.seggebaeing.sqlanalyzer.persistence by resolving the saves base path from
-     *       {@link de.seggebaeing.sqlanalyzer.logic.service.ConfigService} and passing it to
-     *       {@link de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper}.</li>
+     *   <li>Configures DAO write-behind, lazy loading and change watching from {@code persistence.writeBehindMillis},
+     *       {@code persistence.lazyCacheSize} and {@code persistence.watchChanges}.</li>
+     *   <li>Opens the workspace in the saves base path resolved by
+     *       {@link de.seggebaeing.sqlanalyzer.logic.service.ConfigService} via
+     *       {@link de.seggebaeing.sqlanalyzer.logic.service.WorkspaceService#open(java.nio.file.Path)}, which
+     *       recovers unsaved generation runs and checks all stored references on background threads. If another
+     *       process has the saves directory open (and doesn't share it, see {@code persistence.shareWorkspace}),
+     *       an error is shown and the application exits.</li>
+     *   <li>Registers a shutdown hook that flushes pending DAO writes and closes all open workspaces, snapshotting
+     *       the DAO caches for a faster next start,
+     *       since the application exits via {@link System#exit(int)} and {@link #stop()} is not reliably called.</li>
      *   <li>Delegates UI setup and display to
      *       {@link de.seggebaeing.sqlanalyzer.presentation.util.WindowManager#start(Stage)}.</li>
      * </ol>
@@ -71,8 +88,26 @@ public class App extends Application {
     public void start(Stage primaryStage) {
         log.info("Starting up");
         
-        // Initialize PersistenceHelper
-        PersistenceHelper.initializeBasePath(ConfigService.getInstance().getSavesBasePath());
+        // Initialize persistence and open the default workspace
+        ConfigService config = ConfigService.getInstance();
+        DTODAO.setWriteBehindMillis(config.getInt("persistence.writeBehindMillis", 0));
+        DTODAO.setLazyCacheSize(config.getInt("persistence.lazyCacheSize", 0));
+        DTODAO.setWatchChanges(config.getBoolean("persistence.watchChanges", false));
+        try {
+            WorkspaceService.getInstance().open(config.getSavesBasePath());
+        } catch (IllegalStateException e) {
+            log.error("Couldn't open the saves directory.", e);
+            UIUtil.generateAlert(Alert.AlertType.ERROR, "SQL Analyzer", "Couldn't open the saves directory.",
+                    e.getMessage() + "\n\nClose the other instance or enable persistence.shareWorkspace in both.",
+                    ButtonType.CLOSE).showAndWait();
+            Platform.exit();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            DTODAO.flushAll();
+            // Snapshots the DAO caches of every workspace
+            PersistenceHelper.shutdown();
+        }, "persistence-shutdown"));
         
         WindowManager.start(primaryStage);
     }
@@ -0,0 +1,137 @@
+package de.seggebaeing.sqlanalyzer.logic.bdo;
+
+import de.seggebaeing.sqlanalyzer.logic.util.eval.impl.ComparatorType;
+import javafx.beans.property.*;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Business domain object (BDO) representing the score of one evaluation of a {@link GeneratedQuery}.
+ * <p>
+ * Wraps observable JavaFX properties for the evaluated query, the comparator type, the judging
+ * {@link LLM} and its temperature, which together key the evaluation, as well as the resulting
+ * score and when it was computed. Results are measurements and therefore read-only.
+ * Versioning is inherited from {@link de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject}.
+ * 
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+@SuppressWarnings("unused") // for later use
+public class EvaluationResult extends BusinessDomainObject {
+    private final ObjectProperty<GeneratedQuery> generatedQuery = new SimpleObjectProperty<>();
+    private final ObjectProperty<ComparatorType> comparatorType = new SimpleObjectProperty<>();
+    private final ObjectProperty<LLM> judge = new SimpleObjectProperty<>();
+    private final DoubleProperty temperature = new SimpleDoubleProperty();
+    private final DoubleProperty score = new SimpleDoubleProperty();
+    private final ObjectProperty<Instant> timestamp = new SimpleObjectProperty<>();
+    
+    /**
+     * Creates a new {@code EvaluationResult} with the given values.
+     * <p>
+     * Sets the version to {@code null}, causing it to be initialized automatically.
+     * 
+     *
+     * @param generatedQuery the evaluated query
+     * @param comparatorType non-null type of the comparator that computed the score
+     * @param judge          the judging LLM; {@code null} for comparators without one
+     * @param temperature    sampling temperature passed to the judge
+     * @param score          the computed score
+     * @param timestamp      non-null instant at which the score was computed
+     * @throws NullPointerException if {@code comparatorType} or {@code timestamp} is {@code null}
+     */
+    public EvaluationResult(GeneratedQuery generatedQuery, ComparatorType comparatorType, LLM judge, double temperature, double score, Instant timestamp) {
+        this(generatedQuery, comparatorType, judge, temperature, score, timestamp, null);
+    }
+    
+    /**
+     * Creates a new {@code EvaluationResult} with the given values and an optional version.
+     * <p>
+     * Initializes all fields and registers property listeners. If {@code version} is {@code null},
+     * the version is initialized to the current time.
+     * 
+     *
+     * @param generatedQuery the evaluated query
+     * @param comparatorType non-null type of the comparator that computed the score
+     * @param judge          the judging LLM; {@code null} for comparators without one
+     * @param temperature    sampling temperature passed to the judge
+     * @param score          the computed score
+     * @param timestamp      non-null instant at which the score was computed
+     * @param version        initial version value, or {@code null} to auto-generate
+     * @throws NullPointerException if {@code comparatorType} or {@code timestamp} is {@code null}
+     */
+    public EvaluationResult(GeneratedQuery generatedQuery, ComparatorType comparatorType, LLM judge, double temperature, double score, Instant timestamp, Long version) {
+        super(version);
+        
+        this.generatedQuery.set(generatedQuery);
+        this.comparatorType.set(Objects.requireNonNull(comparatorType));
+        this.judge.set(judge);
+        this.temperature.set(temperature);
+        this.score.set(score);
+        this.timestamp.set(Objects.requireNonNull(timestamp));
+        
+        registerProperties(this.generatedQuery, this.comparatorType, this.judge, this.temperature, this.score, this.timestamp);
+    }
+    
+    /**
+     * Returns a string representation of this result.
+     * <p>
+     * Format: {@code score for query (comparator type)}.
+     * 
+     *
+     * @return string representation of this result
+     */
+    @Override
+    public String toString() {
+        return getScore() + " for " + getGeneratedQuery() + " (" + getComparatorType() + ")";
+    }
+    
+    public GeneratedQuery getGeneratedQuery() {
+        return generatedQuery.get();
+    }
+    
+    public ObjectProperty<GeneratedQuery> generatedQueryProperty() {
+        return generatedQuery;
+    }
+    
+    public ComparatorType getComparatorType() {
+        return comparatorType.get();
+    }
+    
+    public ObjectProperty<ComparatorType> comparatorTypeProperty() {
+        return comparatorType;
+    }
+    
+    public LLM getJudge() {
+        return judge.get();
+    }
+    
+    public ObjectProperty<LLM> judgeProperty() {
+        return judge;
+    }
+    
+    public double getTemperature() {
+        return temperature.get();
+    }
+    
+    public DoubleProperty temperatureProperty() {
+        return temperature;
+    }
+    
+    public double getScore() {
+        return score.get();
+    }
+    
+    public DoubleProperty scoreProperty() {
+        return score;
+    }
+    
+    public Instant getTimestamp() {
+        return timestamp.get();
+    }
+    
+    public ObjectProperty<Instant> timestampProperty() {
+        return timestamp;
+    }
+}
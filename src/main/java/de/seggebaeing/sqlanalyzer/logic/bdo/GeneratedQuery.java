@@ -1,5 +1,6 @@
 package de.seggebaeing.sqlanalyzer.logic.bdo;
 
+import de.seggebaeing.sqlanalyzer.persistence.blob.BlobStore;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -14,7 +15,7 @@ import java.util.Objects;
  * the {@link LLM} that produced it, and the originating {@link Prompt}.
  * Versioning is inherited from {@link de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject}
  * and automatically refreshed when observed properties change.
- * Implements {@link SQLQueryWrapper}.
+ * Implements {@link SQLQueryWrapper}; {@link #getSqlHash()} identifies the SQL by content.
  * 
  *
  * <p>The {@link #toString()} representation combines the generator’s name,
@@ -29,6 +30,12 @@ public class GeneratedQuery extends BusinessDomainObject implements SQLQueryWrap
     private final ObjectProperty<LLM> generator = new SimpleObjectProperty<>();
     private final ObjectProperty<Prompt> prompt = new SimpleObjectProperty<>();
     
+    /**
+     * Content hash of {@link #hashedSql}, computed on demand by {@link #getSqlHash()}.
+     */
+    private String sqlHash = null;
+    private String hashedSql = null;
+    
     /**
      * Creates a new {@code GeneratedQuery} with default values.
      * <p>
@@ -107,6 +114,23 @@ public class GeneratedQuery extends BusinessDomainObject implements SQLQueryWrap
         return sql;
     }
     
+    /**
+     * Returns the content hash of the SQL, under which it is stored in the blob store.
+     * <p>
+     * Equal hashes identify byte-identical SQL, e.g. repeated answers of a model, without comparing the SQL itself.
+     * 
+     *
+     * @return the content hash, or {@code ""} if the SQL is empty
+     */
+    public synchronized String getSqlHash() {
+        String current = getSql();
+        if (!current.equals(hashedSql)) {
+            sqlHash = current.isEmpty() ? "" : BlobStore.hashOf(current);
+            hashedSql = current;
+        }
+        return sqlHash;
+    }
+    
     public LLM getGenerator() {
         return generator.get();
     }
@@ -202,4 +202,41 @@ public class LLM extends BusinessDomainObject {
     public StringProperty apiKeyProperty() {
         return apiKey;
     }
+    
+    /**
+     * Freezes the current configuration of this LLM into an immutable {@link Snapshot}.
+     * <p>
+     * Call on the thread editing this LLM, usually the JavaFX Application Thread, so all values stem
+     * from the same state. Also creates the {@link Promptable} if it wasn't created yet. Use
+     * {@link de.seggebaeing.sqlanalyzer.logic.service.LLMService#snapshot(LLM)} to obtain the id.
+     * 
+     *
+     * @param id the persistent id of this LLM
+     * @return the snapshot of this LLM
+     */
+    public Snapshot snapshot(int id) {
+        return new Snapshot(this, id, getVersion(), toString(), getModel(), getApiKey(), getMinTemperature(), getMaxTemperature(), getPromptable());
+    }
+    
+    /**
+     * Immutable copy of an LLM's configuration, for worker threads reading it while the LLM may be edited.
+     *
+     * @param source         the LLM this snapshot was taken of; only for identification, e.g. as key for
+     *                       progress callbacks and rate limits, never to be read by workers
+     * @param id             the persistent id of the LLM, referenced by the DTOs workers create
+     * @param version        the version of the LLM, i.e. the epoch second of its last change
+     * @param label          the string representation of the LLM, see {@link LLM#toString()}
+     * @param model          model identifier
+     * @param apiKey         API key
+     * @param minTemperature minimum temperature value
+     * @param maxTemperature maximum temperature value
+     * @param promptable     the {@link Promptable} for the LLM's API
+     */
+    public record Snapshot(LLM source, int id, long version, String label, String model, String apiKey, double minTemperature,
+                           double maxTemperature, Promptable promptable) {
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
 }
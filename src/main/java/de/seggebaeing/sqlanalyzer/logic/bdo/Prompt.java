@@ -129,4 +129,36 @@ public class Prompt extends BusinessDomainObject {
     public void setType(PromptType type) {
         this.type.set(type);
     }
+    
+    /**
+     * Freezes the current state of this prompt and its sample query into an immutable {@link Snapshot}.
+     * <p>
+     * Call on the thread editing this prompt, usually the JavaFX Application Thread. Use
+     * {@link de.seggebaeing.sqlanalyzer.logic.service.PromptService#snapshot(Prompt)} to obtain the ids.
+     * 
+     *
+     * @param id          the persistent id of this prompt
+     * @param sampleQuery snapshot of the referenced sample query; {@code null} if there is none
+     * @return the snapshot of this prompt
+     */
+    public Snapshot snapshot(int id, SampleQuery.Snapshot sampleQuery) {
+        return new Snapshot(this, id, toString(), getText(), sampleQuery);
+    }
+    
+    /**
+     * Immutable copy of a prompt, for worker threads reading it while the prompt may be edited.
+     *
+     * @param source      the prompt this snapshot was taken of; only for identification, e.g. when storing
+     *                    the queries generated from it, never to be read by workers
+     * @param id          the persistent id of the prompt, referenced by the queries generated from it
+     * @param label       the string representation of the prompt, see {@link Prompt#toString()}
+     * @param text        the prompt text
+     * @param sampleQuery snapshot of the referenced sample query; may be {@code null}
+     */
+    public record Snapshot(Prompt source, int id, String label, String text, SampleQuery.Snapshot sampleQuery) {
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
 }
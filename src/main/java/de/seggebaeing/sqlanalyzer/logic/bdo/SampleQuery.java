@@ -163,4 +163,39 @@ public class SampleQuery extends BusinessDomainObject implements SQLQueryWrapper
     public void setComplexity(Complexity complexity) {
         this.complexity.set(complexity);
     }
+    
+    /**
+     * Freezes the current state of this sample query into an immutable {@link Snapshot}.
+     * <p>
+     * Call on the thread editing this sample query, usually the JavaFX Application Thread. Use
+     * {@link de.seggebaeing.sqlanalyzer.logic.service.SampleQueryService#snapshot(SampleQuery)} to obtain the id.
+     * 
+     *
+     * @param id the persistent id of this sample query
+     * @return the snapshot of this sample query
+     */
+    public Snapshot snapshot(int id) {
+        return new Snapshot(this, id, getName(), getSql(), getPromptContext());
+    }
+    
+    /**
+     * Immutable copy of a sample query, for worker threads reading it while the sample query may be edited.
+     *
+     * @param source        the sample query this snapshot was taken of; only for identification
+     * @param id            the persistent id of the sample query
+     * @param name          the name
+     * @param sql           the sample SQL
+     * @param promptContext the prompt context containing the {@code §§§} placeholder
+     */
+    public record Snapshot(SampleQuery source, int id, String name, String sql, String promptContext) implements SQLQueryWrapper {
+        @Override
+        public String getSql() {
+            return sql;
+        }
+        
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }
@@ -3,9 +3,14 @@ package de.seggebaeing.sqlanalyzer.logic.domainmapper;
 import de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject;
 import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -16,6 +21,17 @@ import java.util.function.Supplier;
  * ({@code BDO→DTO} and {@code DTO→BDO}). Provides {@link #initialize(Supplier)} to inject
  * an ID supplier required by concrete mappers, and convenience methods
  * {@link #putIntoMaps(B, P)} / {@link #putIntoMaps(P, B)} to register paired objects.
+ * {@link #invalidate(int)} drops the cached mappings of DTOs changed outside of this mapper.
+ * 
+ * <p>
+ * Memory: both caches only hold business objects weakly. A mapping lives as long as its business object
+ * is referenced elsewhere, e.g. by an open window or another business object, so the caches shrink with
+ * the DAOs' caches in lazy mode instead of growing with every object ever mapped.
+ * 
+ * <p>
+ * Thread-safe: subclasses declare their {@code get} methods {@code synchronized}, so that a business object
+ * is never mapped twice concurrently (which could allocate two ids for it). Mappers only lock the mappers
+ * of referenced types while holding their own monitor, and references are acyclic, so this can't deadlock.
  * 
  *
  * @param <B> business domain object type
@@ -26,14 +42,26 @@ import java.util.function.Supplier;
 public abstract class AbstractBusinessDomainMapper<B extends BusinessDomainObject, P extends Persistable> implements BusinessDomainMapper<B, P> {
     
     /**
-     * Identity cache mapping BDO → DTO to reuse mapped instances (not thread-safe).
+     * Identity cache mapping BDO → DTO to reuse mapped instances, with weak keys; guarded by the mapper's monitor.
      */
-    protected final Map<B, P> cacheMapBDOtoDTO = new HashMap<>();
+    protected final Map<B, P> cacheMapBDOtoDTO = new WeakHashMap<>();
     
     /**
-     * Identity cache mapping DTO → BDO to reuse mapped instances (not thread-safe).
+     * Cache mapping DTO → BDO to reuse mapped instances, with weak values; guarded by the mapper's monitor.
+     * Read via {@link #cached(P)}.
      */
-    protected final Map<P, B> cacheMapDTOtoBDO = new HashMap<>();
+    private final Map<P, Mapping<B, P>> cacheMapDTOtoBDO = new HashMap<>();
+    
+    /**
+     * Receives the mappings of {@link #cacheMapDTOtoBDO} whose business object was collected.
+     */
+    private final ReferenceQueue<B> collected = new ReferenceQueue<>();
+    
+    /**
+     * All DTOs in {@link #cacheMapDTOtoBDO}, grouped by id, so that {@link #invalidate(int)}
+     * doesn't need to scan the caches.
+     */
+    private final Map<Integer, Set<P>> dtosById = new HashMap<>();
     
     /**
      * Supplier for generating new IDs; set via {@link #initialize(Supplier)}.
@@ -54,8 +82,23 @@ public abstract class AbstractBusinessDomainMapper<B extends BusinessDomainObjec
     protected void putIntoMaps(B bdo, P dto) {
         Objects.requireNonNull(bdo);
         Objects.requireNonNull(dto);
+        expungeCollected();
         cacheMapBDOtoDTO.put(bdo, dto);
-        cacheMapDTOtoBDO.put(dto, bdo);
+        cacheMapDTOtoBDO.put(dto, new Mapping<>(bdo, dto, collected));
+        dtosById.computeIfAbsent(dto.id(), id -> new HashSet<>()).add(dto);
+    }
+    
+    /**
+     * Returns the business object cached for a DTO.
+     * Call while holding the mapper's monitor.
+     *
+     * @param dto the DTO
+     * @return the cached business object, or {@code null} if none is cached or it was collected
+     */
+    protected B cached(P dto) {
+        expungeCollected();
+        Mapping<B, P> mapping = cacheMapDTOtoBDO.get(dto);
+        return mapping == null ? null : mapping.get();
     }
     
     /**
@@ -69,6 +112,51 @@ public abstract class AbstractBusinessDomainMapper<B extends BusinessDomainObjec
         putIntoMaps(bdo, dto);
     }
     
+    /**
+     * Drops the cached DTO→BDO mappings of all DTOs with the given id, so the next mapping of a DTO
+     * with that id creates a fresh business object.
+     * <p>
+     * BDO→DTO mappings are kept, so business objects still held elsewhere keep their id when saved again.
+     * 
+     *
+     * @param id the id of the changed or deleted DTO
+     */
+    @Override
+    public synchronized void invalidate(int id) {
+        Set<P> dtos = dtosById.remove(id);
+        if (dtos != null)
+            dtos.forEach(cacheMapDTOtoBDO::remove);
+    }
+    
+    /**
+     * Removes the DTO → BDO mappings whose business object was collected.
+     */
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        Mapping<B, P> mapping;
+        while ((mapping = (Mapping<B, P>) collected.poll()) != null) {
+            P dto = mapping.dto;
+            // The DTO may have been mapped again since
+            if (!cacheMapDTOtoBDO.remove(dto, mapping))
+                continue;
+            Set<P> dtos = dtosById.get(dto.id());
+            if (dtos != null && dtos.remove(dto) && dtos.isEmpty())
+                dtosById.remove(dto.id());
+        }
+    }
+    
+    /**
+     * Weakly held business object of a DTO → BDO mapping, remembering its DTO for {@link #expungeCollected()}.
+     */
+    private static final class Mapping<B, P> extends WeakReference<B> {
+        private final P dto;
+        
+        Mapping(B bdo, P dto, ReferenceQueue<? super B> queue) {
+            super(bdo, queue);
+            this.dto = dto;
+        }
+    }
+    
     /**
      * Initializes this mapper with a supplier for allocating new IDs.
      *
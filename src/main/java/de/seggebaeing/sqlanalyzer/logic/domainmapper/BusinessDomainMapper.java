@@ -40,4 +40,11 @@ public interface BusinessDomainMapper<B extends BusinessDomainObject, P extends
      * @return the corresponding persistable DTO
      */
     P get(B bdo);
+    
+    /**
+     * Drops cached mappings of the DTO with the given id, e.g. because it was changed by another process.
+     *
+     * @param id the id of the changed or deleted DTO
+     */
+    void invalidate(int id);
 }
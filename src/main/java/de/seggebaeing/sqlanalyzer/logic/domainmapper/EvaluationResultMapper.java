@@ -0,0 +1,97 @@
+package de.seggebaeing.sqlanalyzer.logic.domainmapper;
+
+import de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult;
+import de.seggebaeing.sqlanalyzer.logic.util.eval.impl.ComparatorType;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.GeneratedQueryDAOImpl;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.LLMDAOImpl;
+import de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+
+import java.time.Instant;
+
+/**
+ * Bidirectional mapper between {@link de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult} and
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO}.
+ * <p>
+ * Maintains caches in both directions and refreshes entries when the source
+ * side has a newer {@code version}. Resolves the evaluated query and the judge via
+ * {@link GeneratedQueryMapper} / {@link LLMMapper} and their DAOs. The comparator type is
+ * stored by name and resolved with {@link ComparatorType#valueOf(String)}.
+ * One instance per workspace — access via {@link #getInstance()}.
+ * 
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class EvaluationResultMapper extends AbstractBusinessDomainMapper<EvaluationResult, EvaluationResultDTO> {
+    private final GeneratedQueryMapper generatedQueryMapper = GeneratedQueryMapper.getInstance();
+    private final LLMMapper llmMapper = LLMMapper.getInstance();
+    
+    private EvaluationResultMapper() {
+    }
+    
+    public static EvaluationResultMapper getInstance() {
+        return Workspace.current().scoped(EvaluationResultMapper.class, EvaluationResultMapper::new);
+    }
+    
+    /**
+     * Maps a {@link de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO} to a {@link de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult} with caching.
+     * <p>
+     * Resolves {@code generatedQueryId} and {@code judgeId} via DAOs and maps them using
+     * {@link GeneratedQueryMapper} and {@link LLMMapper}. Refreshes the cache entry when the DTO's
+     * {@code version} is newer than the cached BDO.
+     * 
+     *
+     * @param dto the source DTO; may be {@code null}
+     * @return the mapped {@link de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult}, or {@code null} if {@code dto} is {@code null}
+     */
+    @Override
+    public synchronized EvaluationResult get(EvaluationResultDTO dto) {
+        if (dto == null) return null;
+        
+        EvaluationResult bdo = cached(dto);
+        if (bdo == null || bdo.getVersion() < dto.version()) {
+            bdo = new EvaluationResult(
+                    generatedQueryMapper.get(GeneratedQueryDAOImpl.getInstance().getByID(dto.generatedQueryId())),
+                    ComparatorType.valueOf(dto.comparatorType()),
+                    llmMapper.get(LLMDAOImpl.getInstance().getByID(dto.judgeId())),
+                    dto.temperature(),
+                    dto.score(),
+                    Instant.ofEpochMilli(dto.timestamp()),
+                    dto.version());
+            putIntoMaps(dto, bdo);
+        }
+        return bdo;
+    }
+    
+    /**
+     * Maps a {@link de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult} to its {@link de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO} with caching.
+     * <p>
+     * Reuses the cached DTO if up to date; otherwise creates a new DTO, reusing the cached ID
+     * or allocating one via {@code idSupplier}. Query and judge references are mapped via
+     * {@link GeneratedQueryMapper} and {@link LLMMapper}; {@code -1} is stored if a reference is
+     * {@code null} or cannot be mapped.
+     * 
+     *
+     * @param bdo the source business object; may be {@code null}
+     * @return the mapped DTO, or {@code null} if {@code bdo} is {@code null}
+     */
+    @Override
+    public synchronized EvaluationResultDTO get(EvaluationResult bdo) {
+        if (bdo == null) return null;
+        
+        if (!cacheMapBDOtoDTO.containsKey(bdo) || cacheMapBDOtoDTO.get(bdo).version() < bdo.getVersion())
+            putIntoMaps(bdo, new EvaluationResultDTO(
+                    cacheMapBDOtoDTO.containsKey(bdo) ? cacheMapBDOtoDTO.get(bdo).id() : idSupplier.get(),
+                    bdo.getVersion(),
+                    generatedQueryMapper.get(bdo.getGeneratedQuery()) == null ? -1 : generatedQueryMapper.get(bdo.getGeneratedQuery()).id(),
+                    bdo.getComparatorType().name(),
+                    llmMapper.get(bdo.getJudge()) == null ? -1 : llmMapper.get(bdo.getJudge()).id(),
+                    bdo.getTemperature(),
+                    bdo.getScore(),
+                    bdo.getTimestamp().toEpochMilli()
+            ));
+        
+        return cacheMapBDOtoDTO.get(bdo);
+    }
+}
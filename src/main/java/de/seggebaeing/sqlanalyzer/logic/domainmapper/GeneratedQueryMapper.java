@@ -4,6 +4,7 @@ import de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.LLMDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * Bidirectional mapper between {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery} and
@@ -12,15 +13,13 @@ import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
  * Maintains caches in both directions and refreshes entries when the source
  * side has a newer {@code version}. Resolves associated objects via
  * {@link LLMMapper} / {@link PromptMapper} and their DAOs to map generator
- * and prompt references. Singleton — access via {@link #getInstance()}.
+ * and prompt references. One instance per workspace — access via {@link #getInstance()}.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class GeneratedQueryMapper extends AbstractBusinessDomainMapper<GeneratedQuery, GeneratedQueryDTO> {
-    private static GeneratedQueryMapper instance = null;
-    
     private final LLMMapper llmMapper = LLMMapper.getInstance();
     private final PromptMapper promptMapper = PromptMapper.getInstance();
     
@@ -28,9 +27,7 @@ public class GeneratedQueryMapper extends AbstractBusinessDomainMapper<Generated
     }
     
     public static GeneratedQueryMapper getInstance() {
-        if (instance == null)
-            instance = new GeneratedQueryMapper();
-        return instance;
+        return Workspace.current().scoped(GeneratedQueryMapper.class, GeneratedQueryMapper::new);
     }
     
     /**
@@ -45,17 +42,19 @@ public class GeneratedQueryMapper extends AbstractBusinessDomainMapper<Generated
      * @return the mapped {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery}, or {@code null} if {@code dto} is {@code null}
      */
     @Override
-    public GeneratedQuery get(GeneratedQueryDTO dto) {
+    public synchronized GeneratedQuery get(GeneratedQueryDTO dto) {
         if (dto == null) return null;
         
-        if (!cacheMapDTOtoBDO.containsKey(dto) || cacheMapDTOtoBDO.get(dto).getVersion() < dto.version())
-            putIntoMaps(dto, new GeneratedQuery(
+        GeneratedQuery bdo = cached(dto);
+        if (bdo == null || bdo.getVersion() < dto.version()) {
+            bdo = new GeneratedQuery(
                     dto.sql(),
                     llmMapper.get(LLMDAOImpl.getInstance().getByID(dto.generatorId())),
                     promptMapper.get(PromptDAOImpl.getInstance().getByID(dto.promptId())),
-                    dto.version()));
-        
-        return cacheMapDTOtoBDO.get(dto);
+                    dto.version());
+            putIntoMaps(dto, bdo);
+        }
+        return bdo;
     }
     
     /**
@@ -71,7 +70,7 @@ public class GeneratedQueryMapper extends AbstractBusinessDomainMapper<Generated
      * @return the mapped DTO, or {@code null} if {@code bdo} is {@code null}
      */
     @Override
-    public GeneratedQueryDTO get(GeneratedQuery bdo) {
+    public synchronized GeneratedQueryDTO get(GeneratedQuery bdo) {
         if (bdo == null) return null;
         
         if (!cacheMapBDOtoDTO.containsKey(bdo) || cacheMapBDOtoDTO.get(bdo).version() < bdo.getVersion())
@@ -85,4 +84,22 @@ public class GeneratedQueryMapper extends AbstractBusinessDomainMapper<Generated
         
         return cacheMapBDOtoDTO.get(bdo);
     }
+    
+    /**
+     * Maps a {@link de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO} to a new business object, bypassing the caches.
+     * <p>
+     * Used for archived queries that are only viewed, so they don't stay in memory afterward.
+     * Generator and prompt references are resolved as in {@link #get(GeneratedQueryDTO)}.
+     * 
+     *
+     * @param dto the source DTO
+     * @return the mapped business object, not cached
+     */
+    public GeneratedQuery toDetachedBDO(GeneratedQueryDTO dto) {
+        return new GeneratedQuery(
+                dto.sql(),
+                llmMapper.get(LLMDAOImpl.getInstance().getByID(dto.generatorId())),
+                promptMapper.get(PromptDAOImpl.getInstance().getByID(dto.promptId())),
+                dto.version());
+    }
 }
@@ -3,6 +3,7 @@ package de.seggebaeing.sqlanalyzer.logic.domainmapper;
 import de.seggebaeing.sqlanalyzer.logic.bdo.LLM;
 import de.seggebaeing.sqlanalyzer.logic.promptable.util.PromptableApi;
 import de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * Bidirectional mapper between {@link de.seggebaeing.sqlanalyzer.logic.bdo.LLM} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO}.
@@ -12,21 +13,17 @@ import de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO;
  * {@link de.seggebaeing.sqlanalyzer.logic.promptable.util.PromptableApi#valueOf(String)}. For BDO→DTO,
  * allocates an ID via the inherited {@code idSupplier} when no cached DTO exists.
  * 
- * <p>Singleton — access via {@link #getInstance()}.
+ * <p>One instance per workspace — access via {@link #getInstance()}.
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class LLMMapper extends AbstractBusinessDomainMapper<LLM, LLMDTO> {
-    private static LLMMapper instance = null;
-    
     private LLMMapper() {
     }
     
     public static LLMMapper getInstance() {
-        if (instance == null)
-            instance = new LLMMapper();
-        return instance;
+        return Workspace.current().scoped(LLMMapper.class, LLMMapper::new);
     }
     
     /**
@@ -44,11 +41,12 @@ public class LLMMapper extends AbstractBusinessDomainMapper<LLM, LLMDTO> {
      *           the cached BDO's {@code version}.
      */
     @Override
-    public LLM get(LLMDTO dto) {
+    public synchronized LLM get(LLMDTO dto) {
         if (dto == null) return null;
         
-        if (!cacheMapDTOtoBDO.containsKey(dto) || cacheMapDTOtoBDO.get(dto).getVersion() < dto.version())
-            putIntoMaps(dto, new LLM(
+        LLM bdo = cached(dto);
+        if (bdo == null || bdo.getVersion() < dto.version()) {
+            bdo = new LLM(
                     dto.name(),
                     PromptableApi.valueOf(dto.api()),
                     dto.model(),
@@ -56,9 +54,10 @@ public class LLMMapper extends AbstractBusinessDomainMapper<LLM, LLMDTO> {
                     dto.minTemperature(),
                     dto.maxTemperature(),
                     dto.version()
-            ));
-        
-        return cacheMapDTOtoBDO.get(dto);
+            );
+            putIntoMaps(dto, bdo);
+        }
+        return bdo;
     }
     
     /**
@@ -73,7 +72,7 @@ public class LLMMapper extends AbstractBusinessDomainMapper<LLM, LLMDTO> {
      * @return the mapped {@link de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO}, or {@code null} if {@code bdo} is {@code null}
      */
     @Override
-    public LLMDTO get(LLM bdo) {
+    public synchronized LLMDTO get(LLM bdo) {
         if (bdo == null) return null;
         
         if (!cacheMapBDOtoDTO.containsKey(bdo) || cacheMapBDOtoDTO.get(bdo).version() < bdo.getVersion())
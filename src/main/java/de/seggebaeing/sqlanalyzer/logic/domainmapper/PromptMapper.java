@@ -4,21 +4,20 @@ import de.seggebaeing.sqlanalyzer.logic.bdo.Prompt;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptTypeDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.SampleQueryDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * Bidirectional mapper between {@link de.seggebaeing.sqlanalyzer.logic.bdo.Prompt} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO}.
  * <p>
  * Maintains BDO↔DTO caches and refreshes entries when the source side has a newer {@code version}.
  * Resolves referenced objects via {@link SampleQueryMapper}/{@link PromptTypeMapper} and their DAOs.
- * Singleton — access via {@link #getInstance()}.
+ * One instance per workspace — access via {@link #getInstance()}.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class PromptMapper extends AbstractBusinessDomainMapper<Prompt, PromptDTO> {
-    private static PromptMapper instance = null;
-    
     private final SampleQueryMapper sampleQueryMapper = SampleQueryMapper.getInstance();
     private final PromptTypeMapper promptTypeMapper = PromptTypeMapper.getInstance();
     
@@ -26,9 +25,7 @@ public class PromptMapper extends AbstractBusinessDomainMapper<Prompt, PromptDTO
     }
     
     public static PromptMapper getInstance() {
-        if (instance == null)
-            instance = new PromptMapper();
-        return instance;
+        return Workspace.current().scoped(PromptMapper.class, PromptMapper::new);
     }
     
     /**
@@ -42,18 +39,20 @@ public class PromptMapper extends AbstractBusinessDomainMapper<Prompt, PromptDTO
      * @return the mapped {@link de.seggebaeing.sqlanalyzer.logic.bdo.Prompt}, or {@code null} if {@code dto} is {@code null}
      */
     @Override
-    public Prompt get(PromptDTO dto) {
+    public synchronized Prompt get(PromptDTO dto) {
         if (dto == null) return null;
         
-        if (!cacheMapDTOtoBDO.containsKey(dto) || cacheMapDTOtoBDO.get(dto).getVersion() < dto.version())
-            putIntoMaps(dto, new Prompt(
+        Prompt bdo = cached(dto);
+        if (bdo == null || bdo.getVersion() < dto.version()) {
+            bdo = new Prompt(
                     dto.text(),
                     sampleQueryMapper.get(SampleQueryDAOImpl.getInstance().getByID(dto.sampleQueryId())),
                     promptTypeMapper.get(PromptTypeDAOImpl.getInstance().getByID(dto.typeId())),
                     dto.version()
-            ));
-        
-        return cacheMapDTOtoBDO.get(dto);
+            );
+            putIntoMaps(dto, bdo);
+        }
+        return bdo;
     }
     
     /**
@@ -68,7 +67,7 @@ public class PromptMapper extends AbstractBusinessDomainMapper<Prompt, PromptDTO
      * @return the mapped DTO, or {@code null} if {@code bdo} is {@code null}
      */
     @Override
-    public PromptDTO get(Prompt bdo) {
+    public synchronized PromptDTO get(Prompt bdo) {
         if (bdo == null) return null;
         
         if (!cacheMapBDOtoDTO.containsKey(bdo) || cacheMapBDOtoDTO.get(bdo).version() < bdo.getVersion())
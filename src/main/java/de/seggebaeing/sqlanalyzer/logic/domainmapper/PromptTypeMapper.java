@@ -2,27 +2,24 @@ package de.seggebaeing.sqlanalyzer.logic.domainmapper;
 
 import de.seggebaeing.sqlanalyzer.logic.bdo.PromptType;
 import de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * Bidirectional mapper between {@link de.seggebaeing.sqlanalyzer.logic.bdo.PromptType} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO}.
  * <p>
  * Maintains BDO↔DTO caches and refreshes entries when the source side has a newer {@code version}.
- * Allocates IDs via an injected supplier for new DTOs. Singleton — access via {@link #getInstance()}.
+ * Allocates IDs via an injected supplier for new DTOs. One instance per workspace — access via {@link #getInstance()}.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class PromptTypeMapper extends AbstractBusinessDomainMapper<PromptType, PromptTypeDTO> {
-    private static PromptTypeMapper instance = null;
-    
     private PromptTypeMapper() {
     }
     
     public static PromptTypeMapper getInstance() {
-        if (instance == null)
-            instance = new PromptTypeMapper();
-        return instance;
+        return Workspace.current().scoped(PromptTypeMapper.class, PromptTypeMapper::new);
     }
     
     /**
@@ -37,17 +34,19 @@ public class PromptTypeMapper extends AbstractBusinessDomainMapper<PromptType, P
      * @implNote Cache is refreshed when the DTO's {@code version} is newer than the cached BDO's.
      */
     @Override
-    public PromptType get(PromptTypeDTO dto) {
+    public synchronized PromptType get(PromptTypeDTO dto) {
         if (dto == null) return null;
         
-        if (!cacheMapDTOtoBDO.containsKey(dto) || cacheMapDTOtoBDO.get(dto).getVersion() < dto.version())
-            putIntoMaps(dto, new PromptType(
+        PromptType bdo = cached(dto);
+        if (bdo == null || bdo.getVersion() < dto.version()) {
+            bdo = new PromptType(
                     dto.name(),
                     dto.description(),
                     dto.version()
-            ));
-        
-        return cacheMapDTOtoBDO.get(dto);
+            );
+            putIntoMaps(dto, bdo);
+        }
+        return bdo;
     }
     
     /**
@@ -60,7 +59,7 @@ public class PromptTypeMapper extends AbstractBusinessDomainMapper<PromptType, P
      * @return the mapped DTO, or {@code null} if {@code bdo} is {@code null}
      */
     @Override
-    public PromptTypeDTO get(PromptType bdo) {
+    public synchronized PromptTypeDTO get(PromptType bdo) {
         if (bdo == null) return null;
         
         if (!cacheMapBDOtoDTO.containsKey(bdo) || cacheMapBDOtoDTO.get(bdo).version() < bdo.getVersion())
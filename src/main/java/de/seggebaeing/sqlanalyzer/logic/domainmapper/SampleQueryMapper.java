@@ -2,6 +2,7 @@ package de.seggebaeing.sqlanalyzer.logic.domainmapper;
 
 import de.seggebaeing.sqlanalyzer.logic.bdo.SampleQuery;
 import de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * Bidirectional mapper between {@link de.seggebaeing.sqlanalyzer.logic.bdo.SampleQuery} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO}.
@@ -10,22 +11,18 @@ import de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO;
  * Allocates IDs via an injected supplier for new DTOs.
  * 
  * <p>
- * Singleton — access via {@link #getInstance()}.
+ * One instance per workspace — access via {@link #getInstance()}.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class SampleQueryMapper extends AbstractBusinessDomainMapper<SampleQuery, SampleQueryDTO> {
-    private static SampleQueryMapper instance = null;
-    
     private SampleQueryMapper() {
     }
     
     public static SampleQueryMapper getInstance() {
-        if (instance == null)
-            instance = new SampleQueryMapper();
-        return instance;
+        return Workspace.current().scoped(SampleQueryMapper.class, SampleQueryMapper::new);
     }
     
     /**
@@ -43,20 +40,22 @@ public class SampleQueryMapper extends AbstractBusinessDomainMapper<SampleQuery,
      * the cached BDO's {@code version}.
      */
     @Override
-    public SampleQuery get(SampleQueryDTO dto) {
+    public synchronized SampleQuery get(SampleQueryDTO dto) {
         if (dto == null) return null;
         
-        if (!cacheMapDTOtoBDO.containsKey(dto) || cacheMapDTOtoBDO.get(dto).getVersion() < dto.version())
-            putIntoMaps(dto, new SampleQuery(
+        SampleQuery bdo = cached(dto);
+        if (bdo == null || bdo.getVersion() < dto.version()) {
+            bdo = new SampleQuery(
                     dto.name(),
                     dto.description(),
                     dto.sql(),
                     dto.promptContext(),
                     dto.complexity() == null ? null : SampleQuery.Complexity.valueOf(dto.complexity()),
                     dto.version()
-            ));
-        
-        return cacheMapDTOtoBDO.get(dto);
+            );
+            putIntoMaps(dto, bdo);
+        }
+        return bdo;
     }
     
     /**
@@ -71,7 +70,7 @@ public class SampleQueryMapper extends AbstractBusinessDomainMapper<SampleQuery,
      * @return the mapped {@link de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO}, or {@code null} if {@code bdo} is {@code null}
      */
     @Override
-    public SampleQueryDTO get(SampleQuery bdo) {
+    public synchronized SampleQueryDTO get(SampleQuery bdo) {
         if (bdo == null) return null;
         
         if (!cacheMapBDOtoDTO.containsKey(bdo) || cacheMapBDOtoDTO.get(bdo).version() < bdo.getVersion())
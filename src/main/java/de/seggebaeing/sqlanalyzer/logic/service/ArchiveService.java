@@ -0,0 +1,223 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery;
+import de.seggebaeing.sqlanalyzer.logic.bdo.LLM;
+import de.seggebaeing.sqlanalyzer.logic.bdo.PromptType;
+import de.seggebaeing.sqlanalyzer.logic.domainmapper.*;
+import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.archive.ColdSegment;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.*;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.*;
+import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Moves old generation runs from the stored ("hot") objects into compressed, read-only cold segments and back (one instance per workspace).
+ * <p>
+ * A run is selected by the LLM that generated it, the prompt type of its prompts, or the time it was evaluated.
+ * Archiving writes the selected generated queries together with their evaluation results into one
+ * {@link ColdSegment} and then deletes them from the DAOs. Archived objects are therefore neither loaded on
+ * startup nor returned by the services' {@code getAll()}, so startup time and memory track the active
+ * experiment. {@link #getArchivedQueries(ColdSegment)} reads a segment only when explicitly asked, and
+ * {@link #restore(ColdSegment)} moves it back.
+ * 
+ *
+ * <p><strong>Crash safety:</strong> The segment is complete on disk before anything is deleted, so an interrupted
+ * archiving leaves the objects stored and possibly archived as well, never lost. Restoring saves objects that
+ * are still stored as no-ops, as ids are never reused.
+ *
+ * <p><strong>Limitations:</strong> Prompts, sample queries, prompt types and LLMs stay stored, as other runs may
+ * use them. Archived evaluation results are left out of the {@link ScoreAnalyticsService} until restored.
+ *
+ * <p><strong>Threading:</strong> Archiving and restoring are synchronized.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class ArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+    
+    private final DTODAO<PromptDTO> promptDao = PromptDAOImpl.getInstance();
+    private final DTODAO<GeneratedQueryDTO> generatedQueryDao = GeneratedQueryDAOImpl.getInstance();
+    private final DTODAO<EvaluationResultDTO> evaluationResultDao = EvaluationResultDAOImpl.getInstance();
+    
+    /**
+     * Number of restored objects saved per batch.
+     */
+    private static final int SAVE_CHUNK_SIZE = 500;
+    
+    private ArchiveService() {
+    }
+    
+    public static ArchiveService getInstance() {
+        return Workspace.current().scoped(ArchiveService.class, ArchiveService::new);
+    }
+    
+    /**
+     * Archives all generated queries generated by an LLM, with their evaluation results.
+     *
+     * @param llm the generating LLM
+     * @return the written segment, or {@code null} if there was nothing to archive or archiving failed
+     */
+    public synchronized ColdSegment archiveByLLM(LLM llm) {
+        LLMDTO dto = LLMMapper.getInstance().get(llm);
+        return archive("Generated by " + llm, generatedQueryDao.getByIndex(GeneratedQueryDAOImpl.BY_GENERATOR, dto.id()));
+    }
+    
+    /**
+     * Archives all generated queries generated from prompts of a prompt type, with their evaluation results.
+     *
+     * @param promptType the prompt type
+     * @return the written segment, or {@code null} if there was nothing to archive or archiving failed
+     */
+    public synchronized ColdSegment archiveByPromptType(PromptType promptType) {
+        PromptTypeDTO dto = PromptTypeMapper.getInstance().get(promptType);
+        List<GeneratedQueryDTO> gqs = new ArrayList<>();
+        for (PromptDTO prompt : promptDao.getByIndex(PromptDAOImpl.BY_TYPE, dto.id()))
+            gqs.addAll(generatedQueryDao.getByIndex(GeneratedQueryDAOImpl.BY_PROMPT, prompt.id()));
+        return archive("Prompt type " + promptType, gqs);
+    }
+    
+    /**
+     * Archives all generated queries that were evaluated within a time range only, with their evaluation results.
+     * <p>
+     * Generated queries have no creation time, so their runs are dated by their evaluation. Queries that were
+     * never evaluated or also evaluated outside the range are kept.
+     * 
+     *
+     * @param from the start of the range, inclusive
+     * @param to   the end of the range, exclusive
+     * @return the written segment, or {@code null} if there was nothing to archive or archiving failed
+     */
+    public synchronized ColdSegment archiveEvaluatedBetween(Instant from, Instant to) {
+        long fromMillis = from.toEpochMilli(), toMillis = to.toEpochMilli();
+        Set<Integer> inRange = new HashSet<>(), outOfRange = new HashSet<>();
+        for (EvaluationResultDTO result : evaluationResultDao.getAll())
+            (result.timestamp() >= fromMillis && result.timestamp() < toMillis ? inRange : outOfRange).add(result.generatedQueryId());
+        inRange.removeAll(outOfRange);
+        
+        List<GeneratedQueryDTO> gqs = new ArrayList<>();
+        for (int id : inRange) {
+            GeneratedQueryDTO gq = generatedQueryDao.getByID(id);
+            if (gq != null)
+                gqs.add(gq);
+        }
+        return archive("Evaluated from " + from + " to " + to, gqs);
+    }
+    
+    /**
+     * Returns all cold segments.
+     *
+     * @return the segments, oldest first; empty if none exist or they cannot be listed
+     */
+    public List<ColdSegment> getSegments() {
+        try {
+            return PersistenceHelper.listColdSegments();
+        } catch (PersistenceException e) {
+            log.warn("Couldn't list cold segments. {}", e.getMessage());
+            return List.of();
+        }
+    }
+    
+    /**
+     * Reads the generated queries of a segment without restoring them.
+     * <p>
+     * The queries are mapped without caching, so they are released once the caller drops them.
+     * Saving them would store them as new hot objects.
+     * 
+     *
+     * @param segment the segment to read
+     * @return the archived generated queries; empty if the segment cannot be read
+     */
+    public List<GeneratedQuery> getArchivedQueries(ColdSegment segment) {
+        GeneratedQueryMapper mapper = GeneratedQueryMapper.getInstance();
+        List<GeneratedQuery> bdos = new ArrayList<>(segment.count(GeneratedQueryDTO.class));
+        try {
+            segment.forEach(GeneratedQueryDTO.class, dto -> bdos.add(mapper.toDetachedBDO(dto)));
+        } catch (IOException e) {
+            log.warn("Couldn't read cold segment {}.", segment.getName(), e);
+            return List.of();
+        }
+        return bdos;
+    }
+    
+    /**
+     * Stores the objects of a segment again and deletes the segment.
+     * <p>
+     * If the segment cannot be read completely, it is kept, and restoring it again later restores the rest.
+     * 
+     *
+     * @param segment the segment to restore
+     * @return the number of restored objects, or {@code -1} if restoring failed
+     */
+    public synchronized int restore(ColdSegment segment) {
+        try {
+            int restored = restore(segment, GeneratedQueryDTO.class, generatedQueryDao)
+                    + restore(segment, EvaluationResultDTO.class, evaluationResultDao);
+            segment.delete();
+            ScoreAnalyticsService.getInstance().invalidate();
+            log.info("Restored {} objects from cold segment {}.", restored, segment.getName());
+            return restored;
+        } catch (IOException e) {
+            log.error("Restoring cold segment {} failed, keeping it.", segment.getName(), e);
+            return -1;
+        }
+    }
+    
+    /**
+     * Writes the given generated queries and their evaluation results into a new segment and deletes them,
+     * results first.
+     */
+    private ColdSegment archive(String description, Collection<GeneratedQueryDTO> gqs) {
+        if (gqs.isEmpty())
+            return null;
+        
+        List<EvaluationResultDTO> results = new ArrayList<>();
+        gqs.forEach(gq -> results.addAll(evaluationResultDao.getByIndex(EvaluationResultDAOImpl.BY_GENERATED_QUERY, gq.id())));
+        List<Persistable> dtos = new ArrayList<>(gqs.size() + results.size());
+        dtos.addAll(gqs);
+        dtos.addAll(results);
+        
+        long start = System.currentTimeMillis();
+        ColdSegment segment;
+        try {
+            segment = PersistenceHelper.writeColdSegment("archive-" + start + "-" + UUID.randomUUID().toString().substring(0, 8), description, dtos);
+        } catch (PersistenceException e) {
+            log.error("Archiving '{}' failed, nothing was deleted.", description, e);
+            return null;
+        }
+        
+        evaluationResultDao.deleteAll(results);
+        generatedQueryDao.deleteAll(new ArrayList<>(gqs));
+        results.forEach(result -> EvaluationResultMapper.getInstance().invalidate(result.id()));
+        gqs.forEach(gq -> GeneratedQueryMapper.getInstance().invalidate(gq.id()));
+        if (!results.isEmpty())
+            ScoreAnalyticsService.getInstance().invalidate();
+        
+        log.info("Archived {} generated queries and {} evaluation results ({}) to cold segment {} in {} ms.",
+                gqs.size(), results.size(), description, segment.getName(), System.currentTimeMillis() - start);
+        return segment;
+    }
+    
+    private static <T extends Persistable> int restore(ColdSegment segment, Class<T> clazz, DTODAO<T> dao) throws IOException {
+        List<T> chunk = new ArrayList<>(SAVE_CHUNK_SIZE);
+        int[] restored = {0};
+        segment.forEach(clazz, dto -> {
+            chunk.add(dto);
+            if (chunk.size() >= SAVE_CHUNK_SIZE) {
+                dao.saveAll(chunk);
+                restored[0] += chunk.size();
+                chunk.clear();
+            }
+        });
+        dao.saveAll(chunk);
+        return restored[0] + chunk.size();
+    }
+}
@@ -1,7 +1,12 @@
 package de.seggebaeing.sqlanalyzer.logic.service;
 
 import de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject;
+import de.seggebaeing.sqlanalyzer.logic.domainmapper.BusinessDomainMapper;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -9,7 +14,8 @@ import java.util.Set;
  * Service-layer abstraction for managing {@link de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject} instances.
  * <p>
  * Provides basic CRUD-style operations and an optional dependency query for objects
- * that hold direct references to a given BDO.
+ * that hold direct references to a given BDO. Batch operations map the objects via the service's
+ * {@link Backend} and hand them to its DAO at once.
  * 
  *
  * @param <B> the type of business domain object managed by this service
@@ -40,6 +46,37 @@ public interface BDOService<B extends BusinessDomainObject> {
      */
     void saveOrUpdate(B bdo);
     
+    /**
+     * Returns the DAO and the mapper this service persists its objects with.
+     *
+     * @return the backend of this service
+     */
+    Backend<B, ?> backend();
+    
+    /**
+     * Persists or updates all given business objects as one batch.
+     * <p>
+     * Maps the objects to their DTOs and commits them with a single {@link DTODAO#saveAll(Collection)}.
+     * 
+     *
+     * @param bdos the objects to save or update
+     */
+    default void saveAll(Collection<B> bdos) {
+        backend().saveAll(bdos);
+    }
+    
+    /**
+     * Deletes all given business objects as one batch.
+     * <p>
+     * Maps the objects to their DTOs and removes them with a single {@link DTODAO#deleteAll(Collection)}.
+     * 
+     *
+     * @param bdos the objects to remove
+     */
+    default void deleteAll(Collection<B> bdos) {
+        backend().deleteAll(bdos);
+    }
+    
     /**
      * Returns business objects that hold a direct reference to the given BDO.
      * <p>
@@ -52,4 +89,51 @@ public interface BDOService<B extends BusinessDomainObject> {
     default List<BusinessDomainObject> getDependants(B bdo) {
         return List.of();
     }
+    
+    /**
+     * The DAO and the mapper backing a service, typed by the same DTO class.
+     *
+     * @param dao    the DAO persisting the DTOs
+     * @param mapper the mapper between the business objects and the DTOs
+     * @param <B>    the type of business domain object
+     * @param <D>    the type of DTO
+     */
+    record Backend<B extends BusinessDomainObject, D extends Persistable>(DTODAO<D> dao, BusinessDomainMapper<B, D> mapper) {
+        
+        /**
+         * Maps the given business objects to their DTOs.
+         *
+         * @param bdos the objects to map
+         * @return the DTOs, in iteration order of {@code bdos}
+         */
+        public List<D> toDTOs(Collection<B> bdos) {
+            List<D> dtos = new ArrayList<>(bdos.size());
+            bdos.forEach(bdo -> dtos.add(mapper.get(bdo)));
+            return dtos;
+        }
+        
+        /**
+         * Saves or updates the given business objects with a single batch write.
+         *
+         * @param bdos the objects to save or update
+         * @return the saved DTOs
+         */
+        public List<D> saveAll(Collection<B> bdos) {
+            List<D> dtos = toDTOs(bdos);
+            dao.saveAll(dtos);
+            return dtos;
+        }
+        
+        /**
+         * Deletes the given business objects with a single batch deletion.
+         *
+         * @param bdos the objects to delete
+         * @return the deleted DTOs
+         */
+        public List<D> deleteAll(Collection<B> bdos) {
+            List<D> dtos = toDTOs(bdos);
+            dao.deleteAll(dtos);
+            return dtos;
+        }
+    }
 }
@@ -0,0 +1,250 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.logic.bdo.*;
+import de.seggebaeing.sqlanalyzer.logic.domainmapper.*;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.*;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.*;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Deletes business objects together with everything that depends on them (one instance per workspace).
+ * <p>
+ * {@link #plan(Collection)} computes the full dependency closure through the DAOs' secondary indexes, without
+ * scanning or mapping any object that isn't affected:
+ * <ul>
+ *   <li>an {@link LLM} is referenced by the generated queries it generated and the evaluation results it judged,</li>
+ *   <li>a {@link PromptType} and a {@link SampleQuery} by their prompts,</li>
+ *   <li>a {@link Prompt} by the generated queries generated from it,</li>
+ *   <li>a {@link GeneratedQuery} by its evaluation results.</li>
+ * </ul>
+ * {@link #delete(Plan)} then deletes the closure with one batch deletion, i.e. one group commit, per class.
+ * The classes are deleted from the dependants upwards, so an interrupted deletion never leaves
+ * dangling references behind, only some of the roots undeleted.
+ * 
+ *
+ * <p><strong>Threading:</strong> Thread-safe: the DAOs and the mappers synchronize themselves.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class CascadeDeletionService {
+    private static final Logger log = LoggerFactory.getLogger(CascadeDeletionService.class);
+    
+    private final DTODAO<LLMDTO> llmDao = LLMDAOImpl.getInstance();
+    private final DTODAO<PromptTypeDTO> promptTypeDao = PromptTypeDAOImpl.getInstance();
+    private final DTODAO<SampleQueryDTO> sampleQueryDao = SampleQueryDAOImpl.getInstance();
+    private final DTODAO<PromptDTO> promptDao = PromptDAOImpl.getInstance();
+    private final DTODAO<GeneratedQueryDTO> generatedQueryDao = GeneratedQueryDAOImpl.getInstance();
+    private final DTODAO<EvaluationResultDTO> evaluationResultDao = EvaluationResultDAOImpl.getInstance();
+    
+    private CascadeDeletionService() {
+    }
+    
+    public static CascadeDeletionService getInstance() {
+        return Workspace.current().scoped(CascadeDeletionService.class, CascadeDeletionService::new);
+    }
+    
+    /**
+     * Computes everything that has to be deleted along with the given objects.
+     * <p>
+     * Only reads through the DAOs' indexes; nothing is deleted yet.
+     * 
+     *
+     * @param roots the objects to delete; may be of mixed types
+     * @return the plan containing the roots and all their direct and indirect dependants
+     * @throws IllegalArgumentException if an object is of an unknown type
+     */
+    public Plan plan(Collection<? extends BusinessDomainObject> roots) {
+        Plan plan = new Plan();
+        for (BusinessDomainObject root : roots) {
+            switch (root) {
+                case LLM llm -> plan.addLLM(LLMMapper.getInstance().get(llm));
+                case PromptType promptType -> plan.addPromptType(PromptTypeMapper.getInstance().get(promptType));
+                case SampleQuery sampleQuery -> plan.addSampleQuery(SampleQueryMapper.getInstance().get(sampleQuery));
+                case Prompt prompt -> plan.addPrompt(PromptMapper.getInstance().get(prompt));
+                case GeneratedQuery gq -> plan.addGeneratedQuery(GeneratedQueryMapper.getInstance().get(gq));
+                case EvaluationResult result -> plan.addEvaluationResult(EvaluationResultMapper.getInstance().get(result));
+                default -> throw new IllegalArgumentException("Unknown business domain object type: " + root.getClass());
+            }
+        }
+        return plan;
+    }
+    
+    /**
+     * Computes everything that has to be deleted along with the given stored objects, without mapping them.
+     * <p>
+     * Used for objects that can't be mapped sensibly, e.g. orphans with dangling references
+     * (see {@link OrphanQuarantineService}).
+     * 
+     *
+     * @param roots the DTOs to delete; may be of mixed types
+     * @return the plan containing the roots and all their direct and indirect dependants
+     * @throws IllegalArgumentException if a DTO is of an unknown type
+     */
+    public Plan planStored(Collection<? extends Persistable> roots) {
+        Plan plan = new Plan();
+        for (Persistable root : roots) {
+            switch (root) {
+                case LLMDTO llm -> plan.addLLM(llm);
+                case PromptTypeDTO promptType -> plan.addPromptType(promptType);
+                case SampleQueryDTO sampleQuery -> plan.addSampleQuery(sampleQuery);
+                case PromptDTO prompt -> plan.addPrompt(prompt);
+                case GeneratedQueryDTO gq -> plan.addGeneratedQuery(gq);
+                case EvaluationResultDTO result -> plan.addEvaluationResult(result);
+                default -> throw new IllegalArgumentException("Unknown DTO type: " + root.getClass());
+            }
+        }
+        return plan;
+    }
+    
+    /**
+     * Deletes all objects of a plan with one batch deletion per class, dependants first.
+     * <p>
+     * Objects that were deleted meanwhile are ignored. Dependants created after the plan was computed
+     * are not deleted.
+     * 
+     *
+     * @param plan the plan computed by {@link #plan(Collection)}
+     */
+    public void delete(Plan plan) {
+        long start = System.currentTimeMillis();
+        
+        evaluationResultDao.deleteAll(plan.evaluationResults.values());
+        generatedQueryDao.deleteAll(plan.generatedQueries.values());
+        promptDao.deleteAll(plan.prompts.values());
+        sampleQueryDao.deleteAll(plan.sampleQueries.values());
+        promptTypeDao.deleteAll(plan.promptTypes.values());
+        llmDao.deleteAll(plan.llms.values());
+        
+        if (!plan.evaluationResults.isEmpty())
+            ScoreAnalyticsService.getInstance().invalidate();
+        log.info("Deleted {} in {} ms.", plan.describe(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Deletes the given objects together with all their direct and indirect dependants.
+     *
+     * @param roots the objects to delete; may be of mixed types
+     * @return the executed plan, e.g. to find out which object types were affected
+     */
+    public Plan deleteCascading(Collection<? extends BusinessDomainObject> roots) {
+        Plan plan = plan(roots);
+        delete(plan);
+        return plan;
+    }
+    
+    /**
+     * The dependency closure of a set of objects, keyed by id per class.
+     * <p>
+     * Not thread-safe; a plan is meant to be computed, shown to the user and executed by one thread.
+     */
+    public final class Plan {
+        private final Map<Integer, LLMDTO> llms = new LinkedHashMap<>();
+        private final Map<Integer, PromptTypeDTO> promptTypes = new LinkedHashMap<>();
+        private final Map<Integer, SampleQueryDTO> sampleQueries = new LinkedHashMap<>();
+        private final Map<Integer, PromptDTO> prompts = new LinkedHashMap<>();
+        private final Map<Integer, GeneratedQueryDTO> generatedQueries = new LinkedHashMap<>();
+        private final Map<Integer, EvaluationResultDTO> evaluationResults = new LinkedHashMap<>();
+        
+        private Plan() {
+        }
+        
+        /**
+         * Returns the number of objects of the given type in this plan.
+         *
+         * @param type the business domain object type
+         * @return the number of objects to delete; {@code 0} for unknown types
+         */
+        public int count(Class<? extends BusinessDomainObject> type) {
+            if (type == LLM.class) return llms.size();
+            if (type == PromptType.class) return promptTypes.size();
+            if (type == SampleQuery.class) return sampleQueries.size();
+            if (type == Prompt.class) return prompts.size();
+            if (type == GeneratedQuery.class) return generatedQueries.size();
+            if (type == EvaluationResult.class) return evaluationResults.size();
+            return 0;
+        }
+        
+        /**
+         * Returns the total number of objects in this plan.
+         *
+         * @return the number of objects to delete
+         */
+        public int size() {
+            return llms.size() + promptTypes.size() + sampleQueries.size()
+                    + prompts.size() + generatedQueries.size() + evaluationResults.size();
+        }
+        
+        /**
+         * Returns the types of which this plan deletes at least one object.
+         *
+         * @return the affected types, from the roots to the dependants
+         */
+        public List<Class<? extends BusinessDomainObject>> getAffectedTypes() {
+            List<Class<? extends BusinessDomainObject>> types = new ArrayList<>();
+            for (Class<? extends BusinessDomainObject> type : List.of(LLM.class, PromptType.class, SampleQuery.class,
+                    Prompt.class, GeneratedQuery.class, EvaluationResult.class))
+                if (count(type) > 0)
+                    types.add(type);
+            return types;
+        }
+        
+        /**
+         * Describes the plan for the user, e.g. "1 sample query, 30 prompts, 10000 generated queries".
+         *
+         * @return a comma separated list of the numbers of objects per affected type
+         */
+        public String describe() {
+            StringJoiner joiner = new StringJoiner(", ");
+            joiner.setEmptyValue("nothing");
+            describe(joiner, llms, "LLM", "LLMs");
+            describe(joiner, promptTypes, "prompt type", "prompt types");
+            describe(joiner, sampleQueries, "sample query", "sample queries");
+            describe(joiner, prompts, "prompt", "prompts");
+            describe(joiner, generatedQueries, "generated query", "generated queries");
+            describe(joiner, evaluationResults, "evaluation result", "evaluation results");
+            return joiner.toString();
+        }
+        
+        private static void describe(StringJoiner joiner, Map<Integer, ?> dtos, String singular, String plural) {
+            if (!dtos.isEmpty())
+                joiner.add(dtos.size() + " " + (dtos.size() == 1 ? singular : plural));
+        }
+        
+        private void addLLM(LLMDTO dto) {
+            if (llms.putIfAbsent(dto.id(), dto) != null)
+                return;
+            generatedQueryDao.getByIndex(GeneratedQueryDAOImpl.BY_GENERATOR, dto.id()).forEach(this::addGeneratedQuery);
+            evaluationResultDao.getByIndex(EvaluationResultDAOImpl.BY_JUDGE, dto.id()).forEach(this::addEvaluationResult);
+        }
+        
+        private void addPromptType(PromptTypeDTO dto) {
+            if (promptTypes.putIfAbsent(dto.id(), dto) == null)
+                promptDao.getByIndex(PromptDAOImpl.BY_TYPE, dto.id()).forEach(this::addPrompt);
+        }
+        
+        private void addSampleQuery(SampleQueryDTO dto) {
+            if (sampleQueries.putIfAbsent(dto.id(), dto) == null)
+                promptDao.getByIndex(PromptDAOImpl.BY_SAMPLE_QUERY, dto.id()).forEach(this::addPrompt);
+        }
+        
+        private void addPrompt(PromptDTO dto) {
+            if (prompts.putIfAbsent(dto.id(), dto) == null)
+                generatedQueryDao.getByIndex(GeneratedQueryDAOImpl.BY_PROMPT, dto.id()).forEach(this::addGeneratedQuery);
+        }
+        
+        private void addGeneratedQuery(GeneratedQueryDTO dto) {
+            if (generatedQueries.putIfAbsent(dto.id(), dto) == null)
+                evaluationResultDao.getByIndex(EvaluationResultDAOImpl.BY_GENERATED_QUERY, dto.id()).forEach(this::addEvaluationResult);
+        }
+        
+        private void addEvaluationResult(EvaluationResultDTO dto) {
+            evaluationResults.putIfAbsent(dto.id(), dto);
+        }
+    }
+}
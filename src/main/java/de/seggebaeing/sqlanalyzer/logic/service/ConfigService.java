@@ -113,6 +113,14 @@ public class ConfigService {
      *   <li>{@code eval.reps} = {@code 3}</li>
      *   <li>{@code gen.threads} = {@code 10}</li>
      *   <li>{@code gen.reps} = {@code 5}</li>
+     *   <li>{@code gen.checkpoint} = {@code false} (results are kept in memory until the run is saved)</li>
+     *   <li>{@code persistence.engine} = {@code FILE} (one of {@code FILE}, {@code JOURNAL}, {@code JDBC})</li>
+     *   <li>{@code persistence.format} = {@code PRETTY} (one of {@code PRETTY}, {@code COMPACT}, {@code DEFLATE})</li>
+     *   <li>{@code persistence.writeBehindMillis} = {@code 0} (write-behind disabled)</li>
+     *   <li>{@code persistence.lazyCacheSize} = {@code 0} (all objects are loaded at startup)</li>
+     *   <li>{@code persistence.watchChanges} = {@code false} (changes by other processes are not picked up)</li>
+     *   <li>{@code persistence.workspaceIdleMinutes} = {@code 10} (unused workspaces without windows are unloaded)</li>
+     *   <li>{@code persistence.shareWorkspace} = {@code false} (a saves directory is opened by one process at a time)</li>
      * </ul>
      * The output path is resolved relative to the configuration directory.
      * Call {@link #save()} to persist these defaults.
@@ -125,6 +133,15 @@ public class ConfigService {
         
         props.setProperty("gen.threads", "10");
         props.setProperty("gen.reps", "5");
+        props.setProperty("gen.checkpoint", "false");
+        
+        props.setProperty("persistence.engine", "FILE");
+        props.setProperty("persistence.format", "PRETTY");
+        props.setProperty("persistence.writeBehindMillis", "0");
+        props.setProperty("persistence.lazyCacheSize", "0");
+        props.setProperty("persistence.watchChanges", "false");
+        props.setProperty("persistence.workspaceIdleMinutes", "10");
+        props.setProperty("persistence.shareWorkspace", "false");
     }
     
     /**
@@ -178,6 +195,18 @@ public class ConfigService {
         }
     }
     
+    /**
+     * Returns the boolean value of a configuration key, or a fallback if missing.
+     *
+     * @param key      the property key
+     * @param fallback value to return if the property is absent
+     * @return {@code true} if the value is {@code "true"} ignoring case, {@code fallback} if absent, else {@code false}
+     */
+    public boolean getBoolean(String key, boolean fallback) {
+        String value = get(key);
+        return value == null ? fallback : Boolean.parseBoolean(value.trim());
+    }
+    
     /**
      * Returns the base directory for persisted data files,
      * resolved as {@code <configDir>/saves}.
@@ -0,0 +1,199 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult;
+import de.seggebaeing.sqlanalyzer.logic.domainmapper.BusinessDomainMapper;
+import de.seggebaeing.sqlanalyzer.logic.domainmapper.EvaluationResultMapper;
+import de.seggebaeing.sqlanalyzer.logic.util.eval.impl.ComparatorType;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.EvaluationResultDAOImpl;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.Set;
+
+/**
+ * Service layer for managing {@link de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult} business objects.
+ * <p>
+ * Maps between {@link EvaluationResult} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO}
+ * via {@link de.seggebaeing.sqlanalyzer.logic.domainmapper.EvaluationResultMapper} and persists through
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.EvaluationResultDAOImpl}. One instance per workspace
+ * (use {@link #getInstance()}); thread safety is left to the DAO and the mapper. Looks up stored results
+ * by evaluation key, so evaluations can reuse scores instead of calling the judge again. Scores of new
+ * results are also recorded for analytics in the {@link ScoreAnalyticsService}.
+ * 
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class EvaluationResultService implements BDOService<EvaluationResult> {
+    private final DTODAO<EvaluationResultDTO> dao = EvaluationResultDAOImpl.getInstance();
+    private final BusinessDomainMapper<EvaluationResult, EvaluationResultDTO> mapper = EvaluationResultMapper.getInstance();
+    private final Backend<EvaluationResult, EvaluationResultDTO> backend = new Backend<>(dao, mapper);
+    
+    private EvaluationResultService() {
+        mapper.initialize(dao::getFreeId);
+        dao.addChangeListener(mapper::invalidate);
+    }
+    
+    public static EvaluationResultService getInstance() {
+        return Workspace.current().scoped(EvaluationResultService.class, EvaluationResultService::new);
+    }
+    
+    /**
+     * Retrieves all persisted evaluation results and maps them to business objects.
+     * Evaluation results quarantined by {@link OrphanQuarantineService} are left out.
+     *
+     * @return a set of {@link EvaluationResult}; may be empty
+     */
+    @Override
+    public Set<EvaluationResult> getAll() {
+        Set<Integer> quarantined = OrphanQuarantineService.getInstance().getQuarantinedIds(EvaluationResultDTO.class);
+        Set<EvaluationResult> bdos = new HashSet<>();
+        dao.getAll().forEach(dto -> {
+            if (!quarantined.contains(dto.id()))
+                bdos.add(mapper.get(dto));
+        });
+        return bdos;
+    }
+    
+    /**
+     * Deletes the given evaluation result by mapping it to its DTO and delegating to the DAO.
+     *
+     * @param bdo the evaluation result to delete
+     */
+    @Override
+    public void delete(EvaluationResult bdo) {
+        dao.delete(mapper.get(bdo));
+        ScoreAnalyticsService.getInstance().invalidate();
+    }
+    
+    /**
+     * Retrieves all evaluation results of the generated query with the given id, using the DAO's secondary index.
+     *
+     * @param generatedQueryId the id of the evaluated generated query
+     * @return a set of {@link EvaluationResult}; may be empty
+     */
+    public Set<EvaluationResult> getByGeneratedQueryId(int generatedQueryId) {
+        Set<EvaluationResult> bdos = new HashSet<>();
+        dao.getByIndex(EvaluationResultDAOImpl.BY_GENERATED_QUERY, generatedQueryId).forEach(dto -> bdos.add(mapper.get(dto)));
+        return bdos;
+    }
+    
+    /**
+     * Retrieves all evaluation results judged by the LLM with the given id, using the DAO's secondary index.
+     *
+     * @param judgeId the id of the judging LLM
+     * @return a set of {@link EvaluationResult}; may be empty
+     */
+    public Set<EvaluationResult> getByJudgeId(int judgeId) {
+        Set<EvaluationResult> bdos = new HashSet<>();
+        dao.getByIndex(EvaluationResultDAOImpl.BY_JUDGE, judgeId).forEach(dto -> bdos.add(mapper.get(dto)));
+        return bdos;
+    }
+    
+    /**
+     * Returns the score of the latest stored result of evaluating a generated query with the given comparator
+     * type, judge and temperature.
+     * <p>
+     * Works on the stored DTOs by id only, so worker threads can call it without touching business objects.
+     * Results computed before the judge was last edited, e.g. to another model, don't match. As versions
+     * have a resolution of seconds, neither do results computed within the second of that edit.
+     * 
+     *
+     * @param generatedQueryId the id of the evaluated generated query
+     * @param comparatorType   the comparator type
+     * @param judgeId          the id of the judging LLM; {@code -1} if none
+     * @param judgeVersion     the current version of the judging LLM; {@code 0} if none
+     * @param temperature      the judge's temperature
+     * @return the most recently computed matching score, or empty if the query was never evaluated that way
+     */
+    public OptionalDouble findScore(int generatedQueryId, ComparatorType comparatorType, int judgeId, long judgeVersion, double temperature) {
+        long notBefore = Instant.ofEpochSecond(judgeVersion + 1).toEpochMilli();
+        return dao.getByIndex(EvaluationResultDAOImpl.BY_GENERATED_QUERY, generatedQueryId).stream()
+                .filter(dto -> dto.comparatorType().equals(comparatorType.name()) && dto.judgeId() == judgeId
+                        && Double.compare(dto.temperature(), temperature) == 0 && (judgeId < 0 || dto.timestamp() >= notBefore))
+                .max(Comparator.comparingLong(EvaluationResultDTO::timestamp))
+                .map(dto -> OptionalDouble.of(dto.score()))
+                .orElse(OptionalDouble.empty());
+    }
+    
+    /**
+     * Stores a newly computed score as a new evaluation result and records it in the {@link ScoreAnalyticsService}.
+     * <p>
+     * Builds the DTO from ids only, so worker threads can call it without touching business objects.
+     * 
+     *
+     * @param generatedQueryId the id of the evaluated generated query
+     * @param comparatorType   the comparator type
+     * @param judgeId          the id of the judging LLM; {@code -1} if none
+     * @param temperature      the judge's temperature
+     * @param score            the computed score
+     * @param timestamp        the instant at which the score was computed
+     */
+    public void saveScore(int generatedQueryId, ComparatorType comparatorType, int judgeId, double temperature, double score, Instant timestamp) {
+        EvaluationResultDTO dto = new EvaluationResultDTO(dao.getFreeId(), Instant.now().getEpochSecond(), generatedQueryId,
+                comparatorType.name(), judgeId, temperature, score, timestamp.toEpochMilli());
+        dao.saveOrUpdate(dto);
+        ScoreAnalyticsService.getInstance().record(dto);
+    }
+    
+    /**
+     * Saves a new evaluation result or updates an existing one by mapping it to its DTO and delegating to the DAO.
+     * The scores of new results are recorded in the {@link ScoreAnalyticsService}.
+     *
+     * @param bdo the evaluation result to save or update
+     */
+    @Override
+    public void saveOrUpdate(EvaluationResult bdo) {
+        EvaluationResultDTO dto = mapper.get(bdo);
+        boolean isNew = isNew(dto);
+        dao.saveOrUpdate(dto);
+        if (isNew)
+            ScoreAnalyticsService.getInstance().record(dto);
+    }
+    
+    @Override
+    public Backend<EvaluationResult, EvaluationResultDTO> backend() {
+        return backend;
+    }
+    
+    /**
+     * Saves or updates all given evaluation results with a single batch write.
+     * New results are recorded in the score columns of {@link ScoreAnalyticsService}.
+     *
+     * @param bdos the evaluation results to save or update
+     */
+    @Override
+    public void saveAll(Collection<EvaluationResult> bdos) {
+        List<EvaluationResultDTO> dtos = backend.toDTOs(bdos);
+        List<EvaluationResultDTO> newDtos = dtos.stream().filter(this::isNew).toList();
+        dao.saveAll(dtos);
+        newDtos.forEach(ScoreAnalyticsService.getInstance()::record);
+    }
+    
+    /**
+     * Deletes all given evaluation results with a single batch deletion.
+     * Invalidates the score columns of {@link ScoreAnalyticsService}.
+     *
+     * @param bdos the evaluation results to delete
+     */
+    @Override
+    public void deleteAll(Collection<EvaluationResult> bdos) {
+        backend.deleteAll(bdos);
+        ScoreAnalyticsService.getInstance().invalidate();
+    }
+    
+    /**
+     * Checks whether a result is not stored yet, using the index on its generated query.
+     */
+    private boolean isNew(EvaluationResultDTO dto) {
+        return dao.getByIndex(EvaluationResultDAOImpl.BY_GENERATED_QUERY, dto.generatedQueryId()).stream()
+                .noneMatch(stored -> stored.id() == dto.id());
+    }
+}
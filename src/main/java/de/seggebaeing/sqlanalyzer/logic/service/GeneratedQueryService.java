@@ -1,24 +1,39 @@
 package de.seggebaeing.sqlanalyzer.logic.service;
 
 import de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject;
+import de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult;
 import de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery;
-import de.seggebaeing.sqlanalyzer.logic.domainmapper.BusinessDomainMapper;
 import de.seggebaeing.sqlanalyzer.logic.domainmapper.GeneratedQueryMapper;
+import de.seggebaeing.sqlanalyzer.persistence.checkpoint.CheckpointLog;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.GeneratedQueryDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.DoubleConsumer;
 
 /**
  * Service layer for managing {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery} business objects.
  * <p>
  * Maps between {@link GeneratedQuery} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO}
  * via {@link de.seggebaeing.sqlanalyzer.logic.domainmapper.GeneratedQueryMapper} and persists through
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.GeneratedQueryDAOImpl}. Implements a singleton
- * (use {@link #getInstance()}) and synchronizes public operations for basic
- * thread safety.
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.GeneratedQueryDAOImpl}. One instance per workspace
+ * (use {@link #getInstance()}); thread safety is left to the DAO and
+ * the mapper.
+ * 
+ * <p>
+ * Results of a long generation run can be streamed into a {@link Checkpoint} instead of being kept in memory
+ * until the run is saved; see {@link #openCheckpoint()}.
  * 
  * <p>
  * Uses the default {@link de.seggebaeing.sqlanalyzer.logic.service.BDOService#getDependants(BusinessDomainObject)}
@@ -29,53 +44,327 @@ import java.util.Set;
  * @since 1.0
  */
 public class GeneratedQueryService implements BDOService<GeneratedQuery> {
-    private static GeneratedQueryService instance = null;
+    private static final Logger log = LoggerFactory.getLogger(GeneratedQueryService.class);
+    
+    private final DTODAO<GeneratedQueryDTO> dao = GeneratedQueryDAOImpl.getInstance();
+    private final GeneratedQueryMapper mapper = GeneratedQueryMapper.getInstance();
+    private final Backend<GeneratedQuery, GeneratedQueryDTO> backend = new Backend<>(dao, mapper);
     
-    private static final DTODAO<GeneratedQueryDTO> dao = GeneratedQueryDAOImpl.getInstance();
-    private static final BusinessDomainMapper<GeneratedQuery, GeneratedQueryDTO> mapper = GeneratedQueryMapper.getInstance();
+    /**
+     * Number of checkpointed generated queries saved per batch during recovery.
+     */
+    private static final int SAVE_CHUNK_SIZE = 500;
     
     private GeneratedQueryService() {
         mapper.initialize(dao::getFreeId);
+        dao.addChangeListener(mapper::invalidate);
     }
     
     public static GeneratedQueryService getInstance() {
-        if (instance == null)
-            instance = new GeneratedQueryService();
-        return instance;
+        return Workspace.current().scoped(GeneratedQueryService.class, GeneratedQueryService::new);
     }
     
     /**
      * Retrieves all persisted generated queries and maps them to business objects.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
+     * Generated queries quarantined by {@link OrphanQuarantineService} are left out.
      *
      * @return a set of {@link GeneratedQuery}; may be empty
      */
     @Override
-    public synchronized Set<GeneratedQuery> getAll() {
+    public Set<GeneratedQuery> getAll() {
+        Set<Integer> quarantined = OrphanQuarantineService.getInstance().getQuarantinedIds(GeneratedQueryDTO.class);
         Set<GeneratedQuery> bdos = new HashSet<>();
-        dao.getAll().forEach(dto -> bdos.add(mapper.get(dto)));
+        dao.getAll().forEach(dto -> {
+            if (!quarantined.contains(dto.id()))
+                bdos.add(mapper.get(dto));
+        });
         return bdos;
     }
     
     /**
      * Deletes the given generated query by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
+     * Its evaluation results are deleted as well.
      *
      * @param bdo the generated query to delete
      */
     @Override
-    public synchronized void delete(GeneratedQuery bdo) {
-        dao.delete(mapper.get(bdo));
+    public void delete(GeneratedQuery bdo) {
+        GeneratedQueryDTO dto = mapper.get(bdo);
+        dao.delete(dto);
+        deleteEvaluationResults(List.of(dto));
+    }
+    
+    /**
+     * Retrieves all generated queries referencing the prompt with the given id, using the DAO's secondary index.
+     *
+     * @param promptId the id of the referenced prompt
+     * @return a set of {@link GeneratedQuery}; may be empty
+     */
+    public Set<GeneratedQuery> getByPromptId(int promptId) {
+        Set<GeneratedQuery> bdos = new HashSet<>();
+        dao.getByIndex(GeneratedQueryDAOImpl.BY_PROMPT, promptId).forEach(dto -> bdos.add(mapper.get(dto)));
+        return bdos;
+    }
+    
+    /**
+     * Retrieves all generated queries referencing the LLM with the given id, using the DAO's secondary index.
+     *
+     * @param generatorId the id of the referenced LLM
+     * @return a set of {@link GeneratedQuery}; may be empty
+     */
+    public Set<GeneratedQuery> getByGeneratorId(int generatorId) {
+        Set<GeneratedQuery> bdos = new HashSet<>();
+        dao.getByIndex(GeneratedQueryDAOImpl.BY_GENERATOR, generatorId).forEach(dto -> bdos.add(mapper.get(dto)));
+        return bdos;
+    }
+    
+    /**
+     * Retrieves the stored generated queries with the given ids and maps them to business objects.
+     *
+     * @param ids the ids to look up; ids not stored are skipped
+     * @return a set of {@link GeneratedQuery}; may be empty
+     */
+    public Set<GeneratedQuery> getByIds(Collection<Integer> ids) {
+        Set<GeneratedQuery> bdos = new HashSet<>();
+        for (int id : ids) {
+            GeneratedQueryDTO dto = dao.getByID(id);
+            if (dto != null)
+                bdos.add(mapper.get(dto));
+        }
+        return bdos;
+    }
+    
+    /**
+     * Returns the persistent id of a generated query, e.g. to reference it from worker threads.
+     *
+     * @param bdo the generated query
+     * @return its id
+     */
+    public int getId(GeneratedQuery bdo) {
+        return mapper.get(bdo).id();
     }
     
     /**
      * Saves a new generated query or updates an existing one by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the generated query to save or update
      */
     @Override
-    public synchronized void saveOrUpdate(GeneratedQuery bdo) {
+    public void saveOrUpdate(GeneratedQuery bdo) {
         dao.saveOrUpdate(mapper.get(bdo));
     }
+    
+    @Override
+    public Backend<GeneratedQuery, GeneratedQueryDTO> backend() {
+        return backend;
+    }
+    
+    /**
+     * Deletes all given generated queries with a single batch deletion.
+     * Their evaluation results are deleted as well.
+     *
+     * @param bdos the generated queries to delete
+     */
+    @Override
+    public void deleteAll(Collection<GeneratedQuery> bdos) {
+        deleteEvaluationResults(backend.deleteAll(bdos));
+    }
+    
+    /**
+     * Deletes the evaluation results of the given, already deleted generated queries, which are meaningless without them.
+     *
+     * @param dtos the deleted generated queries
+     */
+    private static void deleteEvaluationResults(Collection<GeneratedQueryDTO> dtos) {
+        EvaluationResultService resultService = EvaluationResultService.getInstance();
+        List<EvaluationResult> results = new ArrayList<>();
+        dtos.forEach(dto -> results.addAll(resultService.getByGeneratedQueryId(dto.id())));
+        if (!results.isEmpty())
+            resultService.deleteAll(results);
+    }
+    
+    /**
+     * Maps the given generated queries to a batch that can be saved on another thread.
+     * <p>
+     * Call on the thread owning the generated queries, their LLMs and their prompts, usually the JavaFX
+     * Application Thread, so the save thread never reads properties that may be edited meanwhile.
+     * 
+     *
+     * @param bdos the generated queries to save
+     * @return the batch holding their DTOs
+     */
+    public SaveBatch prepareSave(Collection<GeneratedQuery> bdos) {
+        return new SaveBatch(backend.toDTOs(bdos));
+    }
+    
+    /**
+     * Opens a checkpoint for the results of a new generation run.
+     * <p>
+     * Every result appended to the checkpoint is durably stored on disk, but only becomes a saved generated
+     * query once the checkpoint is promoted. If the run is never saved, e.g. due to a crash, its results are
+     * promoted by {@link #recoverCheckpoints()} instead.
+     * 
+     *
+     * @return the opened checkpoint, or {@code null} if it couldn't be opened
+     */
+    public Checkpoint openCheckpoint() {
+        CheckpointLog<GeneratedQueryDTO> checkpointLog = dao.openCheckpoint("run-" + UUID.randomUUID());
+        return checkpointLog == null ? null : new Checkpoint(checkpointLog);
+    }
+    
+    /**
+     * Promotes the checkpoints of all runs that were neither saved nor discarded because the application
+     * crashed, and that are not in use by another process. Runs closed without saving discard their
+     * checkpoint, so they are not recovered.
+     *
+     * @return the number of promoted generated queries
+     */
+    public int recoverCheckpoints() {
+        int recovered = 0;
+        for (CheckpointLog<GeneratedQueryDTO> checkpointLog : dao.openOrphanedCheckpoints()) {
+            log.info("Recovering {} generated queries from checkpoint {}.", checkpointLog.size(), checkpointLog.getName());
+            recovered += new Checkpoint(checkpointLog).promote(SAVE_CHUNK_SIZE, progress -> {}).size();
+        }
+        return recovered;
+    }
+    
+    /**
+     * Generated queries already mapped to DTOs by {@link #prepareSave(Collection)}, saved off the thread owning them.
+     */
+    public final class SaveBatch {
+        private final List<GeneratedQueryDTO> dtos;
+        
+        private SaveBatch(List<GeneratedQueryDTO> dtos) {
+            this.dtos = dtos;
+        }
+        
+        /**
+         * Returns the number of generated queries in the batch.
+         *
+         * @return the batch size
+         */
+        public int size() {
+            return dtos.size();
+        }
+        
+        /**
+         * Saves the batch in chunks via {@link DTODAO#saveAll(Collection)}.
+         *
+         * @param chunkSize number of generated queries saved per chunk
+         * @param progress  receives the share of saved generated queries in {@code [0,1]} after each chunk
+         */
+        public void save(int chunkSize, DoubleConsumer progress) {
+            for (int from = 0; from < dtos.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, dtos.size());
+                dao.saveAll(dtos.subList(from, to));
+                progress.accept((double) to / dtos.size());
+            }
+        }
+    }
+    
+    /**
+     * Durable, append-only store for the results of one generation run, keeping memory flat for large runs.
+     * <p>
+     * Results get their ids when appended, so promoting a checkpoint again after a failed promotion saves
+     * nothing twice. Thread-safe.
+     * 
+     */
+    public final class Checkpoint {
+        private final CheckpointLog<GeneratedQueryDTO> checkpointLog;
+        
+        private Checkpoint(CheckpointLog<GeneratedQueryDTO> checkpointLog) {
+            this.checkpointLog = checkpointLog;
+        }
+        
+        /**
+         * Appends a result and forces it to disk.
+         * <p>
+         * Takes plain values only, so worker threads never map live business objects.
+         * 
+         *
+         * @param sql         the generated SQL
+         * @param generatorId the id of the generating LLM
+         * @param promptId    the id of the prompt the SQL was generated for
+         * @throws IOException if the result couldn't be written; it is then not part of the checkpoint
+         */
+        public void append(String sql, int generatorId, int promptId) throws IOException {
+            checkpointLog.append(new GeneratedQueryDTO(dao.getFreeId(), Instant.now().getEpochSecond(), sql, generatorId, promptId));
+        }
+        
+        /**
+         * Returns the number of results in the checkpoint.
+         *
+         * @return the number of appended results
+         */
+        public int size() {
+            return checkpointLog.size();
+        }
+        
+        /**
+         * Saves all results of the checkpoint in batches and deletes the checkpoint afterward.
+         * <p>
+         * Results are streamed from disk, so only one batch is held as DTOs at a time. If the checkpoint
+         * can't be read completely, it is kept, and the remaining results are promoted on recovery. Returns
+         * ids only, as it usually runs on a worker thread; map them via {@link #getByIds(Collection)} on the
+         * JavaFX Application Thread.
+         * 
+         *
+         * @param chunkSize number of results saved per batch via {@link DTODAO#saveAll(Collection)}
+         * @param progress  receives the share of promoted results in {@code [0,1]} after each batch
+         * @return the ids of the saved generated queries
+         */
+        public Set<Integer> promote(int chunkSize, DoubleConsumer progress) {
+            Set<Integer> promoted = new HashSet<>();
+            List<GeneratedQueryDTO> chunk = new ArrayList<>(chunkSize);
+            double total = Math.max(1, checkpointLog.size());
+            
+            try {
+                checkpointLog.forEach(dto -> {
+                    chunk.add(dto);
+                    if (chunk.size() >= chunkSize) {
+                        saveChunk(chunk, promoted);
+                        progress.accept(Math.min(1, promoted.size() / total));
+                    }
+                });
+                saveChunk(chunk, promoted);
+                progress.accept(1);
+                checkpointLog.delete();
+            } catch (IOException e) {
+                log.error("Promoting checkpoint {} failed after {} generated queries, keeping it for recovery.", checkpointLog.getName(), promoted.size(), e);
+                close();
+            }
+            return promoted;
+        }
+        
+        /**
+         * Deletes the checkpoint without saving its results, e.g. when the run is canceled.
+         */
+        public void discard() {
+            try {
+                checkpointLog.delete();
+            } catch (IOException e) {
+                log.warn("Couldn't delete checkpoint {}.", checkpointLog.getName(), e);
+            }
+        }
+        
+        /**
+         * Releases the checkpoint, keeping its results on disk for {@link #recoverCheckpoints()}.
+         */
+        public void close() {
+            try {
+                checkpointLog.close();
+            } catch (IOException e) {
+                log.warn("Couldn't close checkpoint {}.", checkpointLog.getName(), e);
+            }
+        }
+        
+        private void saveChunk(List<GeneratedQueryDTO> chunk, Set<Integer> promoted) {
+            if (chunk.isEmpty())
+                return;
+            
+            dao.saveAll(chunk);
+            chunk.forEach(dto -> promoted.add(dto.id()));
+            chunk.clear();
+        }
+    }
 }
@@ -8,6 +8,7 @@ import de.seggebaeing.sqlanalyzer.logic.domainmapper.LLMMapper;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.LLMDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -19,8 +20,8 @@ import java.util.Set;
  * <p>
  * Provides CRUD-style operations by mapping between {@link LLM} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO}
  * via {@link de.seggebaeing.sqlanalyzer.logic.domainmapper.LLMMapper} and persisting through {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.LLMDAOImpl}.
- * Initializes the mapper with an id supplier from the DAO. Implements a singleton pattern
- * (use {@link #getInstance()}) and synchronizes public mutating/access methods for basic thread safety.
+ * Initializes the mapper with an id supplier from the DAO. One instance per workspace
+ * (use {@link #getInstance()}); thread safety is left to the DAO and the mapper.
  * Also exposes direct dependants lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery} that reference an LLM).
  * 
  *
@@ -28,31 +29,26 @@ import java.util.Set;
  * @since 1.0
  */
 public class LLMService implements BDOService<LLM> {
-    private static LLMService instance = null;
-    
-    private static final DTODAO<LLMDTO> dao = LLMDAOImpl.getInstance();
-    private static final BusinessDomainMapper<LLM, LLMDTO> mapper = LLMMapper.getInstance();
+    private final DTODAO<LLMDTO> dao = LLMDAOImpl.getInstance();
+    private final BusinessDomainMapper<LLM, LLMDTO> mapper = LLMMapper.getInstance();
+    private final Backend<LLM, LLMDTO> backend = new Backend<>(dao, mapper);
     
     private LLMService() {
         mapper.initialize(dao::getFreeId);
+        dao.addChangeListener(mapper::invalidate);
     }
     
     public static LLMService getInstance() {
-        if (instance == null)
-            instance = new LLMService();
-        return instance;
+        return Workspace.current().scoped(LLMService.class, LLMService::new);
     }
     
     /**
      * Retrieves all persisted LLMs and maps them to business objects.
-     * <p>
-     * Thread-safe: synchronized to guard access to the underlying DAO and mapper.
-     * 
      *
      * @return a set of {@link LLM}; may be empty
      */
     @Override
-    public synchronized Set<LLM> getAll() {
+    public Set<LLM> getAll() {
         Set<LLM> bdos = new HashSet<>();
         dao.getAll().forEach(dto -> bdos.add(mapper.get(dto)));
         return bdos;
@@ -60,47 +56,55 @@ public class LLMService implements BDOService<LLM> {
     
     /**
      * Deletes the given LLM by mapping it to its DTO and delegating to the DAO.
-     * <p>
-     * Thread-safe: synchronized to guard DAO/mapper access.
-     * 
      *
      * @param bdo the LLM to delete
      */
     @Override
-    public synchronized void delete(LLM bdo) {
+    public void delete(LLM bdo) {
         dao.delete(mapper.get(bdo));
     }
     
     /**
      * Saves a new LLM or updates an existing one by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the LLM to save or update
      */
     @Override
-    public synchronized void saveOrUpdate(LLM bdo) {
+    public void saveOrUpdate(LLM bdo) {
         dao.saveOrUpdate(mapper.get(bdo));
     }
     
+    @Override
+    public Backend<LLM, LLMDTO> backend() {
+        return backend;
+    }
+    
+    /**
+     * Freezes an LLM into a {@link LLM.Snapshot} carrying its persistent id, for worker threads.
+     * <p>
+     * Call on the thread editing the LLM, usually the JavaFX Application Thread.
+     * 
+     *
+     * @param bdo the LLM to snapshot
+     * @return the snapshot
+     */
+    public LLM.Snapshot snapshot(LLM bdo) {
+        return bdo.snapshot(mapper.get(bdo).id());
+    }
+    
     /**
      * Returns business objects that directly reference the given LLM.
      * <p>
-     * Scans all {@link GeneratedQuery} instances and collects those whose
-     * generator is the provided {@code object}.
+     * Looks up the {@link GeneratedQuery} instances generated by the LLM via the
+     * generated query index, without scanning all generated queries.
      * 
      *
      * @param object the LLM whose dependants to collect
      * @return list of dependants; empty if none
-     * @implNote Uses reference equality on {@code gq.getGenerator()}.
      */
     @Override
     public List<BusinessDomainObject> getDependants(LLM object) {
-        List<BusinessDomainObject> dependants = new ArrayList<>();
-        
-        for (GeneratedQuery gq : GeneratedQueryService.getInstance().getAll())
-            if (gq.getGenerator() == object)
-                dependants.add(gq);
-        
-        return dependants;
+        int id = mapper.get(object).id();
+        return new ArrayList<>(GeneratedQueryService.getInstance().getByGeneratorId(id));
     }
 }
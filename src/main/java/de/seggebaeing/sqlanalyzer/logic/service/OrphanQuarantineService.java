@@ -0,0 +1,197 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.*;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.*;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Finds stored objects whose references point to objects that no longer exist and quarantines them (one instance per workspace).
+ * <p>
+ * {@link #scan()} resolves all references in bulk against the id sets of the referenced classes
+ * (see {@link DTODAO#getIds()}), without loading or mapping a single referenced object:
+ * <ul>
+ *   <li>a prompt references its sample query and prompt type,</li>
+ *   <li>a generated query its generating LLM and prompt,</li>
+ *   <li>an evaluation result its generated query and judging LLM.</li>
+ * </ul>
+ * A reference of {@code -1} means "none" and is never dangling. Such orphans are typically left behind when
+ * objects were deleted without their dependants, e.g. by an older version or another tool. Objects referring to
+ * a quarantined object are quarantined as well, i.e. the generated queries of a quarantined prompt and the
+ * evaluation results of a quarantined generated query, as the overviews could not resolve them either.
+ * 
+ *
+ * <p><strong>Quarantine:</strong> The services leave quarantined objects out of {@code getAll()}, so the overviews
+ * neither show them nor resolve their dangling references again on every access. They are listed by
+ * {@link #getOrphans()} and can be deleted together with their dependants by {@link #deleteOrphans()}.
+ * The quarantine reflects the last scan, which the application runs once at startup in the background;
+ * {@linkplain #addScanListener(Runnable) scan listeners} are notified when a scan finishes, e.g. to refresh
+ * the overviews.
+ *
+ * <p><strong>Threading:</strong> Scans and deletions are synchronized. Reading the quarantined ids is lock-free,
+ * as every scan publishes a new immutable quarantine.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class OrphanQuarantineService {
+    private static final Logger log = LoggerFactory.getLogger(OrphanQuarantineService.class);
+    
+    private final DTODAO<LLMDTO> llmDao = LLMDAOImpl.getInstance();
+    private final DTODAO<PromptTypeDTO> promptTypeDao = PromptTypeDAOImpl.getInstance();
+    private final DTODAO<SampleQueryDTO> sampleQueryDao = SampleQueryDAOImpl.getInstance();
+    private final DTODAO<PromptDTO> promptDao = PromptDAOImpl.getInstance();
+    private final DTODAO<GeneratedQueryDTO> generatedQueryDao = GeneratedQueryDAOImpl.getInstance();
+    private final DTODAO<EvaluationResultDTO> evaluationResultDao = EvaluationResultDAOImpl.getInstance();
+    
+    /**
+     * Listeners notified after every scan of any workspace.
+     */
+    private static final List<Runnable> scanListeners = new CopyOnWriteArrayList<>();
+    
+    private volatile Quarantine quarantine = new Quarantine(List.of(), Map.of());
+    
+    private OrphanQuarantineService() {
+    }
+    
+    public static OrphanQuarantineService getInstance() {
+        return Workspace.current().scoped(OrphanQuarantineService.class, OrphanQuarantineService::new);
+    }
+    
+    /**
+     * Registers a listener called on the scanning thread after every scan of any workspace.
+     *
+     * @param listener the listener
+     */
+    public static void addScanListener(Runnable listener) {
+        scanListeners.add(Objects.requireNonNull(listener));
+    }
+    
+    /**
+     * Checks the references of all stored prompts, generated queries and evaluation results and replaces the
+     * quarantine with the orphans found and the objects referring to them, then notifies the scan listeners.
+     *
+     * @return the orphans found, one entry per dangling reference
+     */
+    public synchronized List<Orphan> scan() {
+        long start = System.currentTimeMillis();
+        Set<Integer> llmIds = llmDao.getIds();
+        Set<Integer> promptTypeIds = promptTypeDao.getIds();
+        Set<Integer> sampleQueryIds = sampleQueryDao.getIds();
+        Set<Integer> promptIds = promptDao.getIds();
+        Set<Integer> generatedQueryIds = generatedQueryDao.getIds();
+        
+        // Referenced classes first, so the quarantined ids of a class are complete before its dependants are checked
+        List<Orphan> orphans = new ArrayList<>();
+        Set<Integer> prompts = new HashSet<>();
+        for (PromptDTO dto : promptDao.getAll()) {
+            if (check(orphans, dto, "sample query", dto.sampleQueryId(), sampleQueryIds)
+                    | check(orphans, dto, "prompt type", dto.typeId(), promptTypeIds))
+                prompts.add(dto.id());
+        }
+        Set<Integer> generatedQueries = new HashSet<>();
+        for (GeneratedQueryDTO dto : generatedQueryDao.getAll()) {
+            if (check(orphans, dto, "LLM", dto.generatorId(), llmIds)
+                    | check(orphans, dto, "prompt", dto.promptId(), promptIds)
+                    || prompts.contains(dto.promptId()))
+                generatedQueries.add(dto.id());
+        }
+        Set<Integer> evaluationResults = new HashSet<>();
+        for (EvaluationResultDTO dto : evaluationResultDao.getAll()) {
+            if (check(orphans, dto, "generated query", dto.generatedQueryId(), generatedQueryIds)
+                    | check(orphans, dto, "LLM", dto.judgeId(), llmIds)
+                    || generatedQueries.contains(dto.generatedQueryId()))
+                evaluationResults.add(dto.id());
+        }
+        
+        Map<Class<? extends Persistable>, Set<Integer>> ids = new HashMap<>();
+        if (!prompts.isEmpty())
+            ids.put(PromptDTO.class, Set.copyOf(prompts));
+        if (!generatedQueries.isEmpty())
+            ids.put(GeneratedQueryDTO.class, Set.copyOf(generatedQueries));
+        if (!evaluationResults.isEmpty())
+            ids.put(EvaluationResultDTO.class, Set.copyOf(evaluationResults));
+        quarantine = new Quarantine(List.copyOf(orphans), Map.copyOf(ids));
+        
+        if (orphans.isEmpty())
+            log.info("Checked all references in {} ms, no orphans found.", System.currentTimeMillis() - start);
+        else
+            log.warn("Checked all references in {} ms, quarantined {} objects with {} dangling references.",
+                    System.currentTimeMillis() - start, prompts.size() + generatedQueries.size() + evaluationResults.size(), orphans.size());
+        scanListeners.forEach(Runnable::run);
+        return quarantine.orphans();
+    }
+    
+    /**
+     * Returns the orphans found by the last scan.
+     *
+     * @return one entry per dangling reference; empty if nothing was scanned yet
+     */
+    public List<Orphan> getOrphans() {
+        return quarantine.orphans();
+    }
+    
+    /**
+     * Returns the ids of the quarantined objects of a class, e.g. to leave them out of an overview.
+     *
+     * @param dtoClass the DTO class
+     * @return an immutable set of ids; empty if none are quarantined
+     */
+    public Set<Integer> getQuarantinedIds(Class<? extends Persistable> dtoClass) {
+        return quarantine.ids().getOrDefault(dtoClass, Set.of());
+    }
+    
+    /**
+     * Deletes all quarantined objects together with their dependants (see
+     * {@link CascadeDeletionService#planStored(Collection)}) and scans again.
+     *
+     * @return the executed deletion plan
+     */
+    public synchronized CascadeDeletionService.Plan deleteOrphans() {
+        Map<Persistable, Boolean> roots = new IdentityHashMap<>();
+        quarantine.orphans().forEach(orphan -> roots.put(orphan.dto(), true));
+        CascadeDeletionService.Plan plan = CascadeDeletionService.getInstance().planStored(roots.keySet());
+        CascadeDeletionService.getInstance().delete(plan);
+        scan();
+        return plan;
+    }
+    
+    /**
+     * Records an orphan if the reference dangles.
+     *
+     * @return {@code true} if it dangles
+     */
+    private static boolean check(List<Orphan> orphans, Persistable dto, String reference, int id, Set<Integer> existing) {
+        if (id == -1 || existing.contains(id))
+            return false;
+        orphans.add(new Orphan(dto, reference, id));
+        return true;
+    }
+    
+    private record Quarantine(List<Orphan> orphans, Map<Class<? extends Persistable>, Set<Integer>> ids) {
+    }
+    
+    /**
+     * A dangling reference of a stored object.
+     *
+     * @param dto       the quarantined object
+     * @param reference the kind of the referenced object, e.g. {@code "LLM"}
+     * @param missingId the id of the referenced object that doesn't exist
+     */
+    public record Orphan(Persistable dto, String reference, int missingId) {
+        /**
+         * Describes the orphan for the user, e.g. "GeneratedQuery 17 references missing LLM 4".
+         *
+         * @return a one-line description
+         */
+        public String describe() {
+            return dto.getClass().getSimpleName().replace("DTO", "") + " " + dto.id()
+                    + " references missing " + reference + " " + missingId;
+        }
+    }
+}
@@ -3,11 +3,13 @@ package de.seggebaeing.sqlanalyzer.logic.service;
 import de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject;
 import de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery;
 import de.seggebaeing.sqlanalyzer.logic.bdo.Prompt;
+import de.seggebaeing.sqlanalyzer.logic.bdo.SampleQuery;
 import de.seggebaeing.sqlanalyzer.logic.domainmapper.BusinessDomainMapper;
 import de.seggebaeing.sqlanalyzer.logic.domainmapper.PromptMapper;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -19,9 +21,9 @@ import java.util.Set;
  * <p>
  * Maps between {@link Prompt} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO} via
  * {@link de.seggebaeing.sqlanalyzer.logic.domainmapper.PromptMapper} and persists through
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptDAOImpl}. Implements a singleton
- * (use {@link #getInstance()}) and synchronizes public operations for basic
- * thread safety. Provides dependant lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery}
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptDAOImpl}. One instance per workspace
+ * (use {@link #getInstance()}); thread safety is left to the DAO and
+ * the mapper. Provides dependant lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery}
  * referencing a given prompt).
  * 
  *
@@ -29,61 +31,105 @@ import java.util.Set;
  * @since 1.0
  */
 public class PromptService implements BDOService<Prompt> {
-    private static PromptService instance = null;
-    
-    private static final DTODAO<PromptDTO> dao = PromptDAOImpl.getInstance();
-    private static final BusinessDomainMapper<Prompt, PromptDTO> mapper = PromptMapper.getInstance();
+    private final DTODAO<PromptDTO> dao = PromptDAOImpl.getInstance();
+    private final BusinessDomainMapper<Prompt, PromptDTO> mapper = PromptMapper.getInstance();
+    private final Backend<Prompt, PromptDTO> backend = new Backend<>(dao, mapper);
     
     private PromptService() {
         mapper.initialize(dao::getFreeId);
+        dao.addChangeListener(mapper::invalidate);
     }
     
     public static PromptService getInstance() {
-        if (instance == null)
-            instance = new PromptService();
-        return instance;
+        return Workspace.current().scoped(PromptService.class, PromptService::new);
     }
     
     /**
      * Retrieves all persisted prompts and maps them to business objects.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
+     * Prompts quarantined by {@link OrphanQuarantineService} are left out.
      *
      * @return a set of {@link Prompt}; may be empty
      */
     @Override
-    public synchronized Set<Prompt> getAll() {
+    public Set<Prompt> getAll() {
+        Set<Integer> quarantined = OrphanQuarantineService.getInstance().getQuarantinedIds(PromptDTO.class);
         Set<Prompt> bdos = new HashSet<>();
-        dao.getAll().forEach(dto -> bdos.add(mapper.get(dto)));
+        dao.getAll().forEach(dto -> {
+            if (!quarantined.contains(dto.id()))
+                bdos.add(mapper.get(dto));
+        });
         return bdos;
     }
     
     /**
      * Deletes the given prompt by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the prompt to delete
      */
     @Override
-    public synchronized void delete(Prompt bdo) {
+    public void delete(Prompt bdo) {
         dao.delete(mapper.get(bdo));
     }
     
+    /**
+     * Retrieves all prompts referencing the sample query with the given id, using the DAO's secondary index.
+     *
+     * @param sampleQueryId the id of the referenced sample query
+     * @return a set of {@link Prompt}; may be empty
+     */
+    public Set<Prompt> getBySampleQueryId(int sampleQueryId) {
+        Set<Prompt> bdos = new HashSet<>();
+        dao.getByIndex(PromptDAOImpl.BY_SAMPLE_QUERY, sampleQueryId).forEach(dto -> bdos.add(mapper.get(dto)));
+        return bdos;
+    }
+    
+    /**
+     * Retrieves all prompts referencing the prompt type with the given id, using the DAO's secondary index.
+     *
+     * @param typeId the id of the referenced prompt type
+     * @return a set of {@link Prompt}; may be empty
+     */
+    public Set<Prompt> getByTypeId(int typeId) {
+        Set<Prompt> bdos = new HashSet<>();
+        dao.getByIndex(PromptDAOImpl.BY_TYPE, typeId).forEach(dto -> bdos.add(mapper.get(dto)));
+        return bdos;
+    }
+    
     /**
      * Saves a new prompt or updates an existing one by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the prompt to save or update
      */
     @Override
-    public synchronized void saveOrUpdate(Prompt bdo) {
+    public void saveOrUpdate(Prompt bdo) {
         dao.saveOrUpdate(mapper.get(bdo));
     }
     
+    @Override
+    public Backend<Prompt, PromptDTO> backend() {
+        return backend;
+    }
+    
+    /**
+     * Freezes a prompt and its sample query into a {@link Prompt.Snapshot} carrying their persistent ids,
+     * for worker threads.
+     * <p>
+     * Call on the thread editing the prompt, usually the JavaFX Application Thread.
+     * 
+     *
+     * @param bdo the prompt to snapshot
+     * @return the snapshot
+     */
+    public Prompt.Snapshot snapshot(Prompt bdo) {
+        SampleQuery sampleQuery = bdo.getSampleQuery();
+        return bdo.snapshot(mapper.get(bdo).id(), sampleQuery == null ? null : SampleQueryService.getInstance().snapshot(sampleQuery));
+    }
+    
     /**
      * Returns business objects that directly reference the given prompt.
      * <p>
-     * Scans all {@link GeneratedQuery} instances and collects those whose
-     * {@code getPrompt()} is the same instance as {@code object} (reference equality).
+     * Looks up the {@link GeneratedQuery} instances referencing the prompt's id via the
+     * generated query index, without scanning all generated queries.
      * 
      *
      * @param object the prompt whose dependants to collect
@@ -91,12 +137,7 @@ public class PromptService implements BDOService<Prompt> {
      */
     @Override
     public List<BusinessDomainObject> getDependants(Prompt object) {
-        List<BusinessDomainObject> dependants = new ArrayList<>();
-        
-        for (GeneratedQuery gq : GeneratedQueryService.getInstance().getAll())
-            if (gq.getPrompt() == object)
-                dependants.add(gq);
-        
-        return dependants;
+        int id = mapper.get(object).id();
+        return new ArrayList<>(GeneratedQueryService.getInstance().getByPromptId(id));
     }
 }
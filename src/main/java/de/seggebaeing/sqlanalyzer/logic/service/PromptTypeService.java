@@ -8,6 +8,7 @@ import de.seggebaeing.sqlanalyzer.logic.domainmapper.PromptTypeMapper;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptTypeDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -19,9 +20,9 @@ import java.util.Set;
  * <p>
  * Maps between {@link PromptType} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO}
  * via {@link de.seggebaeing.sqlanalyzer.logic.domainmapper.PromptTypeMapper} and persists through
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptTypeDAOImpl}. Implements a singleton
- * (use {@link #getInstance()}) and synchronizes public operations for basic
- * thread safety. Provides dependant lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.Prompt}
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptTypeDAOImpl}. One instance per workspace
+ * (use {@link #getInstance()}); thread safety is left to the DAO and
+ * the mapper. Provides dependant lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.Prompt}
  * referencing a given prompt type).
  * 
  *
@@ -29,29 +30,26 @@ import java.util.Set;
  * @since 1.0
  */
 public class PromptTypeService implements BDOService<PromptType> {
-    private static PromptTypeService instance = null;
-    
-    private static final DTODAO<PromptTypeDTO> dao = PromptTypeDAOImpl.getInstance();
-    private static final BusinessDomainMapper<PromptType, PromptTypeDTO> mapper = PromptTypeMapper.getInstance();
+    private final DTODAO<PromptTypeDTO> dao = PromptTypeDAOImpl.getInstance();
+    private final BusinessDomainMapper<PromptType, PromptTypeDTO> mapper = PromptTypeMapper.getInstance();
+    private final Backend<PromptType, PromptTypeDTO> backend = new Backend<>(dao, mapper);
     
     private PromptTypeService() {
         mapper.initialize(dao::getFreeId);
+        dao.addChangeListener(mapper::invalidate);
     }
     
     public static PromptTypeService getInstance() {
-        if (instance == null)
-            instance = new PromptTypeService();
-        return instance;
+        return Workspace.current().scoped(PromptTypeService.class, PromptTypeService::new);
     }
     
     /**
      * Retrieves all persisted prompt types and maps them to business objects.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @return a set of {@link PromptType}; may be empty
      */
     @Override
-    public synchronized Set<PromptType> getAll() {
+    public Set<PromptType> getAll() {
         Set<PromptType> bdos = new HashSet<>();
         dao.getAll().forEach(dto -> bdos.add(mapper.get(dto)));
         return bdos;
@@ -59,31 +57,34 @@ public class PromptTypeService implements BDOService<PromptType> {
     
     /**
      * Deletes the given prompt type by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the prompt type to delete
      */
     @Override
-    public synchronized void delete(PromptType bdo) {
+    public void delete(PromptType bdo) {
         dao.delete(mapper.get(bdo));
     }
     
     /**
      * Saves a new prompt type or updates an existing one by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the prompt type to save or update
      */
     @Override
-    public synchronized void saveOrUpdate(PromptType bdo) {
+    public void saveOrUpdate(PromptType bdo) {
         dao.saveOrUpdate(mapper.get(bdo));
     }
     
+    @Override
+    public Backend<PromptType, PromptTypeDTO> backend() {
+        return backend;
+    }
+    
     /**
      * Returns business objects that directly reference the given prompt type.
      * <p>
-     * Scans all {@link Prompt} instances and collects those whose {@code getType()}
-     * is the same instance as {@code object} (reference equality).
+     * Looks up the {@link Prompt} instances of the prompt type via the prompt index,
+     * without scanning all prompts.
      * 
      *
      * @param object the prompt type whose dependants to collect
@@ -91,12 +92,7 @@ public class PromptTypeService implements BDOService<PromptType> {
      */
     @Override
     public List<BusinessDomainObject> getDependants(PromptType object) {
-        List<BusinessDomainObject> dependants = new ArrayList<>();
-        
-        for (Prompt prompt : PromptService.getInstance().getAll())
-            if (prompt.getType() == object)
-                dependants.add(prompt);
-        
-        return dependants;
+        int id = mapper.get(object).id();
+        return new ArrayList<>(PromptService.getInstance().getByTypeId(id));
     }
 }
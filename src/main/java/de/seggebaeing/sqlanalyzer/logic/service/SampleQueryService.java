@@ -8,6 +8,7 @@ import de.seggebaeing.sqlanalyzer.logic.domainmapper.SampleQueryMapper;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.SampleQueryDAOImpl;
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -19,40 +20,35 @@ import java.util.Set;
  * <p>
  * Maps between {@link SampleQuery} and {@link de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO}
  * via {@link de.seggebaeing.sqlanalyzer.logic.domainmapper.SampleQueryMapper} and persists through
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.SampleQueryDAOImpl}. Implements a singleton
- * (use {@link #getInstance()}) and synchronizes public operations for basic
- * thread safety. Provides dependant lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.Prompt} referencing a sample query).
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.SampleQueryDAOImpl}. One instance per workspace
+ * (use {@link #getInstance()}); thread safety is left to the DAO and
+ * the mapper. Provides dependant lookup (e.g., {@link de.seggebaeing.sqlanalyzer.logic.bdo.Prompt} referencing a sample query).
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class SampleQueryService implements BDOService<SampleQuery> {
-    private static SampleQueryService instance = null;
-    
-    private static final DTODAO<SampleQueryDTO> dao = SampleQueryDAOImpl.getInstance();
-    private static final BusinessDomainMapper<SampleQuery, SampleQueryDTO> mapper = SampleQueryMapper.getInstance();
+    private final DTODAO<SampleQueryDTO> dao = SampleQueryDAOImpl.getInstance();
+    private final BusinessDomainMapper<SampleQuery, SampleQueryDTO> mapper = SampleQueryMapper.getInstance();
+    private final Backend<SampleQuery, SampleQueryDTO> backend = new Backend<>(dao, mapper);
     
     private SampleQueryService() {
         mapper.initialize(dao::getFreeId);
+        dao.addChangeListener(mapper::invalidate);
     }
     
     public static SampleQueryService getInstance() {
-        if (instance == null)
-            instance = new SampleQueryService();
-        return instance;
+        return Workspace.current().scoped(SampleQueryService.class, SampleQueryService::new);
     }
     
     /**
      * Retrieves all persisted sample queries and maps them to business objects.
-     * <p>
-     * Thread-safe: synchronized to guard access to the underlying DAO and mapper.
-     * 
      *
      * @return a set of {@link SampleQuery}; may be empty
      */
     @Override
-    public synchronized Set<SampleQuery> getAll() {
+    public Set<SampleQuery> getAll() {
         Set<SampleQuery> bdos = new HashSet<>();
         dao.getAll().forEach(dto -> bdos.add(mapper.get(dto)));
         return bdos;
@@ -60,31 +56,47 @@ public class SampleQueryService implements BDOService<SampleQuery> {
     
     /**
      * Deletes the given sample query by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the sample query to delete
      */
     @Override
-    public synchronized void delete(SampleQuery bdo) {
+    public void delete(SampleQuery bdo) {
         dao.delete(mapper.get(bdo));
     }
     
     /**
      * Saves a new sample query or updates an existing one by mapping it to its DTO and delegating to the DAO.
-     * <p>Thread-safe: synchronized to guard DAO/mapper access.
      *
      * @param bdo the sample query to save or update
      */
     @Override
-    public synchronized void saveOrUpdate(SampleQuery bdo) {
+    public void saveOrUpdate(SampleQuery bdo) {
         dao.saveOrUpdate(mapper.get(bdo));
     }
     
+    @Override
+    public Backend<SampleQuery, SampleQueryDTO> backend() {
+        return backend;
+    }
+    
+    /**
+     * Freezes a sample query into a {@link SampleQuery.Snapshot} carrying its persistent id, for worker threads.
+     * <p>
+     * Call on the thread editing the sample query, usually the JavaFX Application Thread.
+     * 
+     *
+     * @param bdo the sample query to snapshot
+     * @return the snapshot
+     */
+    public SampleQuery.Snapshot snapshot(SampleQuery bdo) {
+        return bdo.snapshot(mapper.get(bdo).id());
+    }
+    
     /**
      * Returns business objects that directly reference the given sample query.
      * <p>
-     * Scans all {@link Prompt} instances and collects those whose {@code getSampleQuery()}
-     * is the same instance as {@code object} (reference equality).
+     * Looks up the {@link Prompt} instances referencing the sample query via the
+     * prompt index, without scanning all prompts.
      * 
      *
      * @param object the sample query whose dependants to collect
@@ -92,12 +104,7 @@ public class SampleQueryService implements BDOService<SampleQuery> {
      */
     @Override
     public List<BusinessDomainObject> getDependants(SampleQuery object) {
-        List<BusinessDomainObject> dependants = new ArrayList<>();
-        
-        for (Prompt prompt : PromptService.getInstance().getAll())
-            if (prompt.getSampleQuery() == object)
-                dependants.add(prompt);
-        
-        return dependants;
+        int id = mapper.get(object).id();
+        return new ArrayList<>(PromptService.getInstance().getBySampleQueryId(id));
     }
 }
@@ -0,0 +1,167 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.logic.bdo.SampleQuery;
+import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.column.ScoreColumns;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.*;
+import de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Analytics over all stored evaluation scores (one instance per workspace), backed by the columnar {@link ScoreColumns} store.
+ * <p>
+ * Every newly saved {@link de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult} is appended as one row with
+ * the ids of its generated query, judge, generating LLM, prompt type and sample query and the ordinal of the
+ * sample query's {@link SampleQuery.Complexity}. {@link #aggregate(Set)} then slices millions of scores by any
+ * combination of these dimensions in one scan over memory-mapped columns, instead of loading the results.
+ * 
+ *
+ * <p><strong>Freshness:</strong> The columns are a derived index. They are rebuilt from the stored results before
+ * the next aggregation if their row count doesn't match the stored results on first use, or after results were
+ * deleted or changed by another process. Later edits of the referenced objects, e.g. of a sample query's
+ * complexity, are picked up by {@link #rebuild()}.
+ *
+ * <p><strong>Threading:</strong> All methods are synchronized. If the columns cannot be opened, recording does
+ * nothing and aggregations are empty. In a shared workspace, every process has private columns, which are rebuilt
+ * on first use and after results were changed by another process.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class ScoreAnalyticsService {
+    private static final Logger log = LoggerFactory.getLogger(ScoreAnalyticsService.class);
+    
+    
+    private final ScoreColumns columns;
+    private boolean stale;
+    private boolean verified = false;
+    
+    private ScoreAnalyticsService() {
+        ScoreColumns columns;
+        try {
+            columns = PersistenceHelper.getScoreColumns();
+        } catch (PersistenceException e) {
+            log.warn("Score analytics unavailable. {}", e.getMessage());
+            columns = null;
+        }
+        this.columns = columns;
+        EvaluationResultDAOImpl.getInstance().addChangeListener(id -> invalidate());
+    }
+    
+    public static ScoreAnalyticsService getInstance() {
+        return Workspace.current().scoped(ScoreAnalyticsService.class, ScoreAnalyticsService::new);
+    }
+    
+    /**
+     * Groups all stored scores by the given dimensions and aggregates each group.
+     * <p>
+     * Rebuilds the columns first if they are stale.
+     * 
+     *
+     * @param groupBy the dimensions to group by, e.g. LLM, prompt type and complexity
+     * @return the aggregated groups; may be empty
+     */
+    public synchronized List<ScoreColumns.Group> aggregate(Set<ScoreColumns.Dimension> groupBy) {
+        if (columns == null)
+            return List.of();
+        
+        if (!verified) {
+            verified = true;
+            stale |= !isComplete();
+        }
+        if (stale)
+            rebuild();
+        return columns.aggregate(groupBy);
+    }
+    
+    /**
+     * Rebuilds the columns from all stored evaluation results, streaming them from storage.
+     */
+    public synchronized void rebuild() {
+        if (columns == null)
+            return;
+        
+        long start = System.currentTimeMillis();
+        EvaluationResultDAOImpl.getInstance().flush();
+        columns.clear();
+        try {
+            PersistenceHelper.forEach(EvaluationResultDTO.class, this::append);
+            stale = false;
+            verified = true;
+            log.info("Rebuilt score columns with {} rows in {} ms.", columns.size(), System.currentTimeMillis() - start);
+        } catch (PersistenceException e) {
+            log.warn("Rebuilding score columns failed, retrying on next use. {}", e.getMessage());
+            stale = true;
+        }
+    }
+    
+    /**
+     * Appends the score of a newly saved evaluation result.
+     *
+     * @param dto the saved result
+     */
+    synchronized void record(EvaluationResultDTO dto) {
+        if (columns != null && !stale)
+            append(dto);
+    }
+    
+    /**
+     * Marks the columns as stale, e.g. after results were deleted, so they are rebuilt before the next aggregation.
+     */
+    synchronized void invalidate() {
+        stale = true;
+    }
+    
+    /**
+     * Checks whether the columns hold one row per stored evaluation result.
+     */
+    private boolean isComplete() {
+        EvaluationResultDAOImpl.getInstance().flush();
+        try {
+            return PersistenceHelper.loadIds(EvaluationResultDTO.class).size() == columns.size();
+        } catch (PersistenceException e) {
+            log.warn("Couldn't count stored evaluation results. {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Resolves the dimensions of a result through the DAOs and appends its row; unresolvable ids are stored as {@code -1}.
+     */
+    private void append(EvaluationResultDTO dto) {
+        GeneratedQueryDTO gq = GeneratedQueryDAOImpl.getInstance().getByID(dto.generatedQueryId());
+        PromptDTO prompt = gq == null ? null : PromptDAOImpl.getInstance().getByID(gq.promptId());
+        SampleQueryDTO sq = prompt == null ? null : SampleQueryDAOImpl.getInstance().getByID(prompt.sampleQueryId());
+        
+        try {
+            columns.append(dto.generatedQueryId(), dto.judgeId(),
+                    gq == null ? -1 : gq.generatorId(),
+                    prompt == null ? -1 : prompt.typeId(),
+                    prompt == null ? -1 : prompt.sampleQueryId(),
+                    complexityOf(sq), (float) dto.score());
+        } catch (IOException e) {
+            log.warn("Appending score of evaluation result {} failed, rebuilding on next use.", dto.id(), e);
+            stale = true;
+        }
+    }
+    
+    private static byte complexityOf(SampleQueryDTO sq) {
+        if (sq == null || sq.complexity().isBlank())
+            return -1;
+        try {
+            return (byte) SampleQuery.Complexity.valueOf(sq.complexity()).ordinal();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import de.seggebaeing.sqlanalyzer.persistence.backup.WorkspaceBackup;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngineType;
+import de.seggebaeing.sqlanalyzer.persistence.transfer.WorkspaceTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Opens, activates and unloads workspaces, i.e. saves directories, for the presentation layer (singleton).
+ * <p>
+ * Workspaces are identified by their normalized absolute base path. All other services work on the
+ * {@linkplain Workspace#current() current} workspace; their {@code getInstance()} returns the instance of it,
+ * so several workspaces can be open side by side, each with its own lazily loaded caches. Opening a workspace
+ * for the first time recovers the generation runs of crashed processes (if checkpoints are enabled) and checks its
+ * references (see {@link OrphanQuarantineService}) on background threads.
+ * 
+ *
+ * <p><strong>Configuration:</strong> New workspaces use the storage engine {@code persistence.engine} and the
+ * format {@code persistence.format}. With {@code persistence.shareWorkspace}, they are shared with other
+ * processes doing the same, e.g. a second instance or a headless batch runner splitting a large run; otherwise
+ * opening a saves directory another process has open fails. Workspaces not used for {@code persistence.workspaceIdleMinutes}
+ * (default {@value #DEFAULT_IDLE_MINUTES}) are unloaded by {@link #unloadIdle(Collection)}.
+ *
+ * <p><strong>Threading:</strong> Thread-safe; see {@link Workspace} for which workspace is current on which thread.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class WorkspaceService {
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceService.class);
+    private static WorkspaceService instance = null;
+    
+    /**
+     * Default number of minutes after which an unused workspace is unloaded.
+     */
+    public static final int DEFAULT_IDLE_MINUTES = 10;
+    
+    private WorkspaceService() {
+    }
+    
+    public static synchronized WorkspaceService getInstance() {
+        if (instance == null)
+            instance = new WorkspaceService();
+        return instance;
+    }
+    
+    /**
+     * Opens the workspace in the given saves directory if needed and activates it for the calling thread.
+     *
+     * @param basePath the saves directory
+     * @return the normalized absolute base path identifying the workspace
+     * @throws IllegalStateException if another process has the saves directory open and either process doesn't
+     *         share it
+     */
+    public synchronized Path open(Path basePath) {
+        Workspace workspace = Workspace.get(basePath);
+        boolean opened = workspace == null;
+        if (opened) {
+            ConfigService config = ConfigService.getInstance();
+            workspace = Workspace.open(basePath, StorageEngineType.fromName(config.get("persistence.engine")),
+                    StorageFormat.fromName(config.get("persistence.format")), config.getBoolean("persistence.shareWorkspace", false));
+        }
+        workspace.activate();
+        if (opened)
+            startBackgroundTasks(workspace);
+        return workspace.getBasePath();
+    }
+    
+    /**
+     * Activates an open workspace for the calling thread, e.g. when one of its windows gains focus.
+     *
+     * @param basePath the base path of the workspace
+     * @throws IllegalStateException if the workspace is not open
+     */
+    public void activate(Path basePath) {
+        getOpen(basePath).activate();
+    }
+    
+    /**
+     * Runs an action with the given workspace current on the calling thread.
+     *
+     * @param basePath the base path of the workspace
+     * @param action   the action to run
+     * @throws IllegalStateException if the workspace is not open
+     */
+    public void runIn(Path basePath, Runnable action) {
+        getOpen(basePath).runIn(action);
+    }
+    
+    /**
+     * Returns the base path of the current workspace.
+     *
+     * @return the normalized absolute base path
+     * @throws IllegalStateException if no workspace is open
+     */
+    public Path getCurrent() {
+        return Workspace.current().getBasePath();
+    }
+    
+    /**
+     * Returns the base paths of all open workspaces.
+     *
+     * @return the base paths, in opening order
+     */
+    public List<Path> getOpenWorkspaces() {
+        return Workspace.getOpenWorkspaces().stream().map(Workspace::getBasePath).toList();
+    }
+    
+    /**
+     * Starts an online backup of the current workspace into a zip archive on a background thread, see
+     * {@link WorkspaceBackup}. Work on the workspace can continue meanwhile.
+     *
+     * @param archive the zip file to write; replaced if it exists
+     * @return completes with {@code archive} once the backup is written, or exceptionally if it failed
+     * @throws IllegalStateException if another backup is still running or no workspace is open
+     */
+    public CompletableFuture<Path> backup(Path archive) {
+        return WorkspaceBackup.start(archive);
+    }
+    
+    /**
+     * Exports all objects of the current workspace into an NDJSON file on a background thread, see
+     * {@link WorkspaceTransfer}.
+     *
+     * @param file           the file to write; replaced if it exists
+     * @param includeApiKeys {@code true} to include the API keys of LLMs in plain text
+     * @return completes with the number of exported objects, or exceptionally if the export failed
+     * @throws IllegalStateException if no workspace is open
+     */
+    public CompletableFuture<Long> exportTo(Path file, boolean includeApiKeys) {
+        return transfer("workspace-export", () -> WorkspaceTransfer.exportTo(file, includeApiKeys));
+    }
+    
+    /**
+     * Imports all objects of an NDJSON file into the current workspace under new ids on a background thread,
+     * see {@link WorkspaceTransfer}.
+     *
+     * @param file the file to read
+     * @return completes with the number of imported objects, or exceptionally if the import failed
+     * @throws IllegalStateException if no workspace is open
+     */
+    public CompletableFuture<Long> importFrom(Path file) {
+        return transfer("workspace-import", () -> {
+            long count = WorkspaceTransfer.importFrom(file);
+            ScoreAnalyticsService.getInstance().invalidate();
+            return count;
+        });
+    }
+    
+    /**
+     * Unloads all workspaces that are neither active nor in use and weren't used for the configured idle time,
+     * releasing their caches. They are loaded again on next use.
+     *
+     * @param inUse the base paths of workspaces still in use, e.g. shown in open windows
+     */
+    public void unloadIdle(Collection<Path> inUse) {
+        int minutes = ConfigService.getInstance().getInt("persistence.workspaceIdleMinutes", DEFAULT_IDLE_MINUTES);
+        int unloaded = Workspace.unloadIdle(Duration.ofMinutes(Math.max(0, minutes)), inUse);
+        if (unloaded > 0)
+            log.info("Unloaded {} idle workspaces.", unloaded);
+    }
+    
+    private static Workspace getOpen(Path basePath) {
+        Workspace workspace = Workspace.get(basePath);
+        if (workspace == null)
+            throw new IllegalStateException("Workspace " + basePath + " is not open.");
+        return workspace;
+    }
+    
+    /**
+     * Runs a transfer on a daemon thread bound to the current workspace.
+     */
+    private static CompletableFuture<Long> transfer(String name, Callable<Long> task) {
+        Workspace workspace = Workspace.current();
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> workspace.runIn(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                log.error("Transfer {} of workspace {} failed.", name, workspace.getBasePath(), e);
+                result.completeExceptionally(e);
+            }
+        }), name);
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+    
+    /**
+     * Starts the checks every newly opened workspace needs, on threads bound to it.
+     */
+    private static void startBackgroundTasks(Workspace workspace) {
+        if (ConfigService.getInstance().getBoolean("gen.checkpoint", false)) {
+            Thread recovery = new Thread(() -> workspace.runIn(() -> {
+                int recovered = GeneratedQueryService.getInstance().recoverCheckpoints();
+                if (recovered > 0)
+                    log.info("Recovered {} generated queries from unsaved generation runs.", recovered);
+            }), "checkpoint-recovery");
+            recovery.setDaemon(true);
+            recovery.start();
+        }
+        Thread referenceCheck = new Thread(() -> workspace.runIn(() -> OrphanQuarantineService.getInstance().scan()), "reference-check");
+        referenceCheck.setDaemon(true);
+        referenceCheck.start();
+    }
+}
@@ -1,6 +1,7 @@
 package de.seggebaeing.sqlanalyzer.logic.util.eval;
 
 import de.seggebaeing.sqlanalyzer.logic.bdo.SQLQueryWrapper;
+import de.seggebaeing.sqlanalyzer.logic.util.eval.impl.ComparatorType;
 
 /**
  * Strategy interface for comparing two SQL statements and producing a similarity score.
@@ -23,4 +24,11 @@ public interface StatementComparator {
      *         may be {@code Double.NaN} if no score can be computed
      */
     double compare(SQLQueryWrapper query1, SQLQueryWrapper query2);
+    
+    /**
+     * Returns the type of this comparator, under which its scores are stored.
+     *
+     * @return the comparator type
+     */
+    ComparatorType getType();
 }
@@ -5,6 +5,7 @@ import de.seggebaeing.sqlanalyzer.logic.bdo.SQLQueryWrapper;
 import de.seggebaeing.sqlanalyzer.logic.promptable.exception.LLMException;
 import de.seggebaeing.sqlanalyzer.logic.promptable.exception.RateLimitException;
 import de.seggebaeing.sqlanalyzer.logic.promptable.util.PromptAuthorizer;
+import de.seggebaeing.sqlanalyzer.logic.service.LLMService;
 import de.seggebaeing.sqlanalyzer.logic.util.eval.StatementComparator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +24,8 @@ import java.util.function.Consumer;
  * Rate limiting is handled via {@link de.seggebaeing.sqlanalyzer.logic.promptable.util.PromptAuthorizer}; an optional
  * {@link #setRateLimitReporter(java.util.function.Consumer)} receives retry instants.
  * Calls are blocking and may wait for rate limits—avoid invoking on UI threads.
+ * The LLM's configuration is frozen into a {@linkplain LLM.Snapshot snapshot} on construction, so comparisons
+ * on worker threads never read the live LLM.
  * 
  *
  * @author Felix Seggebäing
@@ -31,7 +34,7 @@ import java.util.function.Consumer;
 public class LLMComparator implements StatementComparator {
     private static final Logger log = LoggerFactory.getLogger(LLMComparator.class);
     
-    private final LLM llm;
+    private final LLM.Snapshot llm;
     private final double temperature;
     private Consumer<Instant> rateLimitReporter;
     
@@ -66,9 +69,10 @@ public class LLMComparator implements StatementComparator {
      *
      * @param llm          the LLM used to perform the comparison
      * @param temperature  the sampling temperature passed to the LLM
+     * @implNote Snapshots the LLM; construct on the thread editing it, i.e. the JavaFX Application Thread.
      */
     public LLMComparator(LLM llm, double temperature) {
-        this.llm = llm;
+        this.llm = LLMService.getInstance().snapshot(llm);
         this.temperature = temperature;
     }
     
@@ -110,11 +114,11 @@ public class LLMComparator implements StatementComparator {
         PromptAuthorizer authorizer = PromptAuthorizer.getInstance();
         try {
             while (true) try {
-                authorizer.waitUntilAuthorized(llm);
-                return llm.getPromptable().prompt(prompt, llm.getModel(), llm.getApiKey(), temperature);
+                authorizer.waitUntilAuthorized(llm.source());
+                return llm.promptable().prompt(prompt, llm.model(), llm.apiKey(), temperature);
             } catch (RateLimitException e) {
                 rateLimitReporter.accept(e.getRetryInstant());
-                authorizer.registerInstant(llm, e.getRetryInstant());
+                authorizer.registerInstant(llm.source(), e.getRetryInstant());
             }
         } catch (LLMException e) {
             log.warn("LLMException occurred while comparing two SQL statements via LLM.", e);
@@ -134,6 +138,24 @@ public class LLMComparator implements StatementComparator {
         return PROMPT_TEXT + "\n\nSample query:\n(\n" + sampleQuerySQL + "\n)\n\nRecreated query:\n(\n" + generatedQuerySQL + "\n)";
     }
     
+    /**
+     * Returns {@link ComparatorType#LLM}.
+     *
+     * @return the comparator type
+     */
+    @Override
+    public ComparatorType getType() {
+        return ComparatorType.LLM;
+    }
+    
+    public LLM.Snapshot getLlm() {
+        return llm;
+    }
+    
+    public double getTemperature() {
+        return temperature;
+    }
+    
     /**
      * Sets a callback to receive retry instants when a rate limit is encountered.
      *
@@ -1,6 +1,11 @@
 package de.seggebaeing.sqlanalyzer.logic.util.thread;
 
 import de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery;
+import de.seggebaeing.sqlanalyzer.logic.bdo.SQLQueryWrapper;
+import de.seggebaeing.sqlanalyzer.logic.bdo.SampleQuery;
+import de.seggebaeing.sqlanalyzer.logic.service.EvaluationResultService;
+import de.seggebaeing.sqlanalyzer.logic.service.GeneratedQueryService;
+import de.seggebaeing.sqlanalyzer.logic.service.SampleQueryService;
 import de.seggebaeing.sqlanalyzer.logic.util.eval.StatementComparator;
 import de.seggebaeing.sqlanalyzer.logic.util.eval.impl.LLMComparator;
 import org.slf4j.Logger;
@@ -26,7 +31,15 @@ import java.util.function.Consumer;
  * On full success, {@code signalDone} is invoked.
  * 
  * <p>
- * Threading: results are stored in a synchronized map; interruption is honored and cancels work.
+ * Evaluations are incremental: every score is stored via {@link EvaluationResultService} as soon as it is
+ * computed, keyed by query, comparator type, judge and temperature. Queries already evaluated with the same
+ * key reuse the stored score instead of calling the comparator again.
+ * 
+ * <p>
+ * Threading: the SQL, ids and labels of the queries and snapshots of their sample queries are frozen into
+ * immutable {@link Job}s when the thread is constructed, and the judge into the comparator's snapshot. Subworkers
+ * only read these and store results by id, so they never read or map live business objects, which stay free to
+ * be edited in the UI. Results are stored in a synchronized map; interruption is honored and cancels work.
  * Read results via {@link #getResult()} only after successful completion.
  * 
  *
@@ -41,9 +54,13 @@ public class EvaluationThread extends WorkerThread {
     private final Runnable startedProgress, finishedProgress;
     private final Consumer<Instant> reportRetryIn;
     
-    private final Set<GeneratedQuery> gqs;
+    private final List<Job> jobs;
     private final StatementComparator comparator;
     private final int repCountIfFailure;
+    private final int judgeId;
+    private final long judgeVersion;
+    private final double temperature;
+    private final EvaluationResultService resultService = EvaluationResultService.getInstance();
     private Map<GeneratedQuery, Double> scores;
     
     /**
@@ -57,7 +74,8 @@ public class EvaluationThread extends WorkerThread {
      * @param startedProgress   callback invoked when a task starts
      * @param finishedProgress  callback invoked when a task finishes
      * @param reportRetryIn     optional consumer for retry instants when using an {@link de.seggebaeing.sqlanalyzer.logic.util.eval.impl.LLMComparator}
-     * @implNote Thread is named {@code "Evaluation-Worker-<n>"} using an atomic counter.
+     * @implNote Thread is named {@code "Evaluation-Worker-<n>"} using an atomic counter. Snapshots the queries
+     *           and sample queries; construct on the thread editing them, i.e. the JavaFX Application Thread.
      */
     public EvaluationThread(int poolSize,
                             int repCountIfFailure,
@@ -70,42 +88,77 @@ public class EvaluationThread extends WorkerThread {
         super("Evaluation-Worker-" + counter.getAndIncrement(), poolSize, signalDone);
         this.repCountIfFailure = repCountIfFailure;
         this.comparator = comparator;
-        this.gqs = gqs;
+        this.jobs = createJobs(gqs);
         this.startedProgress = startedProgress;
         this.finishedProgress = finishedProgress;
         this.reportRetryIn = reportRetryIn;
+        
+        if (comparator instanceof LLMComparator llmComparator) {
+            this.judgeId = llmComparator.getLlm().id();
+            this.judgeVersion = llmComparator.getLlm().version();
+            this.temperature = llmComparator.getTemperature();
+        } else {
+            this.judgeId = -1;
+            this.judgeVersion = 0;
+            this.temperature = 0;
+        }
+    }
+    
+    /**
+     * Freezes the id and SQL of every generated query and the sample query it was generated for, snapshotting
+     * each distinct sample query once.
+     *
+     * @param gqs the generated queries to evaluate
+     * @return one job per generated query
+     */
+    private static List<Job> createJobs(Set<GeneratedQuery> gqs) {
+        GeneratedQueryService gqService = GeneratedQueryService.getInstance();
+        SampleQueryService sampleQueryService = SampleQueryService.getInstance();
+        Map<SampleQuery, SampleQuery.Snapshot> samples = new IdentityHashMap<>();
+        List<Job> jobs = new ArrayList<>(gqs.size());
+        for (GeneratedQuery gq : gqs) {
+            SampleQuery sampleQuery = gq.getPrompt().getSampleQuery();
+            String label = "query generated by '" + gq.getGenerator() + "' for prompt of sample '" + sampleQuery + "' and type '" + gq.getPrompt().getType() + "'";
+            jobs.add(new Job(gq, gqService.getId(gq), gq.getSql(),
+                    sampleQuery == null ? null : samples.computeIfAbsent(sampleQuery, sampleQueryService::snapshot), label));
+        }
+        return jobs;
     }
     
     /**
      * Evaluates a single generated query using the provided comparator.
      * <p>
      * Skips execution if the thread is already interrupted. Invokes {@code startedProgress},
-     * then attempts up to {@code repCountIfFailure} comparisons until a numeric (non-NaN) score
-     * is obtained. Checks for interruption again before finishing, then invokes
+     * then reuses a stored score for the same evaluation key if there is one, or attempts up to
+     * {@code repCountIfFailure} comparisons until a numeric (non-NaN) score is obtained and stores it
+     * by id via {@link EvaluationResultService#saveScore}. Checks for interruption again before finishing, then invokes
      * {@code finishedProgress}, logs the score, and stores it in {@code scores}.
      * 
      *
      * @param comparator the {@link de.seggebaeing.sqlanalyzer.logic.util.eval.StatementComparator} to compute the score
-     * @param gq         the {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery} to evaluate
+     * @param job        the frozen generated query to evaluate with its sample
      * @implNote Interruption is checked both before and after comparison attempts to avoid
      *           reporting progress for canceled work.
      */
-    private void subworkerJob(StatementComparator comparator, GeneratedQuery gq) {
+    private void subworkerJob(StatementComparator comparator, Job job) {
         if (Thread.currentThread().isInterrupted()) return;
         
         startedProgress.run();
-        double score = Double.NaN;
-        for (int i = 0; i < repCountIfFailure; i++) {
-            score = comparator.compare(gq.getPrompt().getSampleQuery(), gq);
-            if (!Double.isNaN(score))
+        OptionalDouble stored = resultService.findScore(job.id(), comparator.getType(), judgeId, judgeVersion, temperature);
+        double score = stored.orElse(Double.NaN);
+        for (int i = 0; stored.isEmpty() && i < repCountIfFailure; i++) {
+            score = comparator.compare(job.sample(), job);
+            if (!Double.isNaN(score)) {
+                resultService.saveScore(job.id(), comparator.getType(), judgeId, temperature, score, Instant.now());
                 break;
+            }
         }
         
         if (Thread.currentThread().isInterrupted()) return; // Checking again to not confuse the user. Previous operation blocked the thread, so interruption might have happened in the meantime.
         
         finishedProgress.run();
-        log.info("{} is similarity score for query generated by '{}' for prompt of sample '{}' and type '{}'.", score, gq.getGenerator().toString(), gq.getPrompt().getSampleQuery().toString(), gq.getPrompt().getType().toString());
-        scores.put(gq, score);
+        log.info("{} is similarity score for {}.", score, job.label());
+        scores.put(job.gq(), score); // Only as key for the caller, never read here
     }
     
     /**
@@ -118,7 +171,7 @@ public class EvaluationThread extends WorkerThread {
      * 
      */
     @Override
-    public void run() {
+    protected void work() {
         if (comparator instanceof LLMComparator llmComparator)
             llmComparator.setRateLimitReporter(reportRetryIn);
         
@@ -127,8 +180,8 @@ public class EvaluationThread extends WorkerThread {
             
             log.info("Starting thread pool for subworkers in evaluation with pool size of {}.", poolSize);
             
-            for (GeneratedQuery gq : gqs)
-                subworkerThreadPool.submit(() -> subworkerJob(comparator, gq));
+            for (Job job : jobs)
+                subworkerThreadPool.submit(() -> subworkerJob(comparator, job));
             
             subworkerThreadPool.shutdown();
             if (!subworkerThreadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS)) throw new TimeoutException();
@@ -155,4 +208,15 @@ public class EvaluationThread extends WorkerThread {
     public Map<GeneratedQuery, Double> getResult() {
         return scores;
     }
+    
+    /**
+     * A generated query to evaluate, frozen to its id and SQL, with a snapshot of its sample query and a label
+     * for logging. The generated query itself only serves as key of the result.
+     */
+    private record Job(GeneratedQuery gq, int id, String sql, SampleQuery.Snapshot sample, String label) implements SQLQueryWrapper {
+        @Override
+        public String getSql() {
+            return sql;
+        }
+    }
 }
@@ -6,14 +6,15 @@ import de.seggebaeing.sqlanalyzer.logic.bdo.Prompt;
 import de.seggebaeing.sqlanalyzer.logic.promptable.exception.LLMException;
 import de.seggebaeing.sqlanalyzer.logic.promptable.exception.RateLimitException;
 import de.seggebaeing.sqlanalyzer.logic.promptable.util.PromptAuthorizer;
+import de.seggebaeing.sqlanalyzer.logic.service.GeneratedQueryService;
+import de.seggebaeing.sqlanalyzer.logic.service.LLMService;
+import de.seggebaeing.sqlanalyzer.logic.service.PromptService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.Instant;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -31,12 +32,16 @@ import java.util.function.Consumer;
  *       waits before prompting and, on {@link de.seggebaeing.sqlanalyzer.logic.promptable.exception.RateLimitException},
  *       reports and registers the retry {@link java.time.Instant}.</li>
  *   <li>Emits per-LLM progress callbacks ({@code startedProgress}/{@code finishedProgress}).</li>
- *   <li>Collects results in a thread-safe set of {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery} and
- *       strips Markdown fences from returned SQL.</li>
- *   <li>Honors interruption (cancels subworkers) and, on full success, invokes the
+ *   <li>Collects results in a thread-safe list and strips Markdown fences from returned SQL; they become
+ *       {@link de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery} objects only in {@link #getResult()}. If a {@link GeneratedQueryService.Checkpoint} is given,
+ *       results are appended to it as they arrive instead, so memory stays flat and nothing is lost on failure.</li>
+ *   <li>Honors interruption (cancels subworkers and discards the checkpoint) and, on full success, invokes the
  *       supplied {@code signalDone} callback.</li>
  * </ul>
  * Threading: uses a {@code poolSize}-bounded {@link java.util.concurrent.ExecutorService}.
+ * The LLMs and prompts are frozen into immutable {@linkplain LLM.Snapshot snapshots} when the thread is
+ * constructed, together with their ids, so subworkers never read or map the live objects, which stay free to be
+ * edited in the UI. Subworkers checkpoint results by these ids only.
  * The result set is synchronized; callers should only read it after the thread finished.
  *
  * @author Felix Seggebäing
@@ -46,8 +51,8 @@ public class GenerationThread extends WorkerThread {
     private static final Logger log = LoggerFactory.getLogger(GenerationThread.class);
     
     private final int repetitionCount;
-    private final Collection<LLM> llms;
-    private final Collection<Prompt> prompts;
+    private final List<LLM.Snapshot> llms;
+    private final List<Prompt.Snapshot> prompts;
     private final Consumer<LLM> startedProgress, finishedProgress;
     private final BiConsumer<LLM, Instant> rateLimitReporter;
     
@@ -55,7 +60,9 @@ public class GenerationThread extends WorkerThread {
     
     
     private static final AtomicInteger counter = new AtomicInteger(1);
-    private Set<GeneratedQuery> gqs;
+    private final GeneratedQueryService.Checkpoint checkpoint;
+    private final List<Generated> generated = Collections.synchronizedList(new ArrayList<>());
+    private Set<GeneratedQuery> gqs = null;
     
     /**
      * Constructs a generation worker thread.
@@ -71,14 +78,33 @@ public class GenerationThread extends WorkerThread {
      * @implNote The thread name is assigned as {@code "Generation-Worker-<n>"} using an atomic counter.
      */
     public GenerationThread(int poolSize, int repetitionCount, Collection<LLM> llms, Collection<Prompt> prompts, Runnable signalDone, Consumer<LLM> startedProgress, Consumer<LLM> finishedProgress, BiConsumer<LLM, Instant> rateLimitReporter) {
+        this(poolSize, repetitionCount, llms, prompts, signalDone, startedProgress, finishedProgress, rateLimitReporter, null);
+    }
+    
+    /**
+     * Constructs a generation worker thread that appends its results to a checkpoint as they arrive.
+     *
+     * @param poolSize          number of parallel subworkers to use
+     * @param repetitionCount   number of repetitions per {@code Prompt × LLM}
+     * @param llms              LLMs to use for generation
+     * @param prompts           prompts to be combined with each LLM
+     * @param signalDone        callback invoked on successful completion (may be {@code null})
+     * @param startedProgress   callback invoked when a subworker starts work for an LLM
+     * @param finishedProgress  callback invoked when a subworker finishes for an LLM
+     * @param rateLimitReporter callback to report rate-limit retry instants per LLM
+     * @param checkpoint        checkpoint receiving the results; {@code null} to keep them in memory only
+     * @implNote Snapshots the LLMs and prompts; construct on the thread editing them, i.e. the JavaFX Application Thread.
+     */
+    public GenerationThread(int poolSize, int repetitionCount, Collection<LLM> llms, Collection<Prompt> prompts, Runnable signalDone, Consumer<LLM> startedProgress, Consumer<LLM> finishedProgress, BiConsumer<LLM, Instant> rateLimitReporter, GeneratedQueryService.Checkpoint checkpoint) {
         super("Generation-Worker-" + counter.getAndIncrement(), poolSize, signalDone);
         
         this.repetitionCount = repetitionCount;
-        this.llms = llms;
-        this.prompts = prompts;
+        this.llms = llms.stream().map(LLMService.getInstance()::snapshot).toList();
+        this.prompts = prompts.stream().map(PromptService.getInstance()::snapshot).toList();
         this.startedProgress = startedProgress;
         this.finishedProgress = finishedProgress;
         this.rateLimitReporter = rateLimitReporter;
+        this.checkpoint = checkpoint;
     }
     
     /**
@@ -89,37 +115,43 @@ public class GenerationThread extends WorkerThread {
      * (no timeout/interruption), invokes {@code signalDone}. Honors interruption by cancelling subworkers.
      * 
      *
-     * @implNote Results are accumulated in a synchronized set; read them only after the thread finishes.
+     * @implNote Results are accumulated in a synchronized list or the checkpoint; read them only after the
+     *           thread finishes. The checkpoint is discarded if the run is interrupted, but kept on a timeout.
      */
     @Override
-    public void run() {
+    protected void work() {
         log.info("Starting thread pool for subworkers in generation with pool size of {}.", poolSize);
         
-        gqs = Collections.synchronizedSet(new HashSet<>());
-        
-        
+        boolean canceled = false;
         try (ExecutorService subworkerThreadPool = Executors.newFixedThreadPool(poolSize)) {
-            for (Prompt prompt : prompts) {
+            for (Prompt.Snapshot prompt : prompts) {
                 if (Thread.currentThread().isInterrupted()) {
                     subworkerThreadPool.shutdownNow();
-                    return;
+                    canceled = true;
+                    break;
                 }
-                for (LLM llm : llms)
+                for (LLM.Snapshot llm : llms)
                     for (int i = 0; i < repetitionCount; i++) {
                         int finalI = i;
                         subworkerThreadPool.submit(() -> subworkerJob(prompt, llm, finalI));
                     }
             }
             
-            subworkerThreadPool.shutdown();
-            if (!subworkerThreadPool.awaitTermination(240, TimeUnit.MINUTES)) throw new TimeoutException();
-            // TODO: Fix timeout bug.
-            if (signalDone != null) signalDone.run();
+            if (!canceled) {
+                subworkerThreadPool.shutdown();
+                if (!subworkerThreadPool.awaitTermination(240, TimeUnit.MINUTES)) throw new TimeoutException();
+                // TODO: Fix timeout bug.
+                if (signalDone != null) signalDone.run();
+            }
         } catch (TimeoutException e) {
             log.error("Timeout while awaiting thread pool termination.", e);
         } catch (InterruptedException e) {
             log.info("Interrupted while awaiting thread pool termination, probably canceled manually by user.");
+            canceled = true;
         }
+        
+        // Only after the pool is closed, so no subworker appends to a discarded checkpoint
+        if (canceled && checkpoint != null) checkpoint.discard();
     }
     
     /**
@@ -131,45 +163,61 @@ public class GenerationThread extends WorkerThread {
      * Repeatedly waits for authorization via {@link PromptAuthorizer} and, on
      * {@link RateLimitException}, reports the retry instant and registers it, then retries.
      * On success, contextualizes the prompt, calls the LLM, strips optional Markdown
-     * fences (```sql / ```), and stores a new {@link GeneratedQuery} in {@code gqs}.
+     * fences (```sql / ```), and stores the result in the checkpoint, if any, or in memory.
      * Any {@link LLMException} is logged and swallowed.
      * 
      *
-     * @param prompt    the prompt to use
-     * @param llm       the target LLM
+     * @param prompt    snapshot of the prompt to use
+     * @param llm       snapshot of the target LLM
      * @param iteration zero-based repetition index
      */
-    private void subworkerJob(Prompt prompt, LLM llm, int iteration) {
-        double minTemp = llm.getMinTemperature();
-        double maxTemp = llm.getMaxTemperature();
+    private void subworkerJob(Prompt.Snapshot prompt, LLM.Snapshot llm, int iteration) {
+        double minTemp = llm.minTemperature();
+        double maxTemp = llm.maxTemperature();
         int totalReps = repetitionCount;
         
         double temperature;
         if (totalReps > 1) temperature = minTemp + (maxTemp - minTemp) * ((double) iteration / (totalReps - 1));
         else temperature = (minTemp + maxTemp) / 2; // Using avg to prevent division by 0
         
-        startedProgress.accept(llm);
+        startedProgress.accept(llm.source());
         
         try {
             while (true) try {
-                authorizer.waitUntilAuthorized(llm);
-                String sql = llm.getPromptable().prompt(getFullPrompt(prompt), llm.getModel(), llm.getApiKey(), temperature);
+                authorizer.waitUntilAuthorized(llm.source());
+                String sql = llm.promptable().prompt(getFullPrompt(prompt), llm.model(), llm.apiKey(), temperature);
                 
                 // Remove possible Markdown characters
                 if (sql.startsWith("```sql")) sql = sql.substring(6);
                 if (sql.endsWith("```")) sql = sql.substring(0, sql.length() - 3);
                 
-                gqs.add(new GeneratedQuery(sql, llm, prompt));
+                store(new Generated(sql, llm, prompt));
                 break;
             } catch (RateLimitException e) {
-                rateLimitReporter.accept(llm, e.getRetryInstant());
-                authorizer.registerInstant(llm, e.getRetryInstant());
+                rateLimitReporter.accept(llm.source(), e.getRetryInstant());
+                authorizer.registerInstant(llm.source(), e.getRetryInstant());
             }
         } catch (LLMException e) {
             String errorMsg = "ERROR: LLM Exception for llm '" + llm + "' and Prompt '" + prompt.toString() + "' in iteration #" + iteration + 1 + " of " + repetitionCount + ":\n\t" + e.getMessage();
             log.error(errorMsg, e);
         }
-        finishedProgress.accept(llm);
+        finishedProgress.accept(llm.source());
+    }
+    
+    /**
+     * Appends a result to the checkpoint by the ids of its snapshots, or keeps it in memory if there is no
+     * checkpoint or appending fails, so a failing disk never costs a result.
+     *
+     * @param result the generated SQL with the snapshots it was generated from
+     */
+    private void store(Generated result) {
+        if (checkpoint != null) try {
+            checkpoint.append(result.sql(), result.llm().id(), result.prompt().id());
+            return;
+        } catch (IOException e) {
+            log.error("Checkpointing a generated query failed, keeping it in memory.", e);
+        }
+        generated.add(result);
     }
     
     /**
@@ -180,29 +228,53 @@ public class GenerationThread extends WorkerThread {
      * returns the raw prompt text as a fallback.
      * 
      *
-     * @param prompt the prompt whose text and sample query context are used
+     * @param prompt snapshot of the prompt whose text and sample query context are used
      * @return the contextualized prompt string, or the raw prompt text on failure
      */
-    private String getFullPrompt(Prompt prompt) {
-        try {
-            return prompt.getSampleQuery().getPromptContext().replace("§§§", prompt.getText());
-        } catch (Exception e) {
-            log.error("Prompt contextualization failed.", e);
-            return prompt.getText();
+    private String getFullPrompt(Prompt.Snapshot prompt) {
+        if (prompt.sampleQuery() == null || prompt.sampleQuery().promptContext() == null) {
+            log.error("Prompt contextualization failed, prompt '{}' has no sample query context.", prompt);
+            return prompt.text();
         }
+        return prompt.sampleQuery().promptContext().replace("§§§", prompt.text());
     }
     
     /**
-     * Returns the set of generated queries produced by this worker.
+     * Returns the set of generated queries produced by this worker and kept in memory.
      * <p>
-     * Behavior is undefined if called before the thread has completed successfully.
+     * Creates the {@link GeneratedQuery} objects on first call, referencing the LLMs and prompts the snapshots
+     * were taken of. Behavior is undefined if called before the thread has completed successfully.
      * 
      *
-     * @return the (synchronized) result set of {@link GeneratedQuery}
-     * @implNote The returned set is a {@code Collections.synchronizedSet}; synchronize on it when iterating.
+     * @return the result set of {@link GeneratedQuery}
+     * @implNote Call on the JavaFX Application Thread, like all code creating business objects.
      */
     @Override
-    public Set<GeneratedQuery> getResult() {
+    public synchronized Set<GeneratedQuery> getResult() {
+        if (gqs == null) {
+            gqs = new HashSet<>();
+            synchronized (generated) {
+                generated.forEach(result -> gqs.add(new GeneratedQuery(result.sql(), result.llm().source(), result.prompt().source())));
+            }
+        }
         return gqs;
     }
+    
+    /**
+     * Returns the checkpoint receiving the results of this worker.
+     * <p>
+     * Results that could not be checkpointed are in {@link #getResult()} instead.
+     * 
+     *
+     * @return the checkpoint, or {@code null} if results are kept in memory only
+     */
+    public GeneratedQueryService.Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+    
+    /**
+     * SQL generated by a subworker, with the snapshots it was generated from.
+     */
+    private record Generated(String sql, LLM.Snapshot llm, Prompt.Snapshot prompt) {
+    }
 }
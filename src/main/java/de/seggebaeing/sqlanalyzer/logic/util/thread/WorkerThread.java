@@ -1,12 +1,15 @@
 package de.seggebaeing.sqlanalyzer.logic.util.thread;
 
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+
 /**
  * Abstract base class for long-running worker threads that coordinate a fixed-size
  * pool of subworkers.
  * <p>
- * Subclasses implement {@link #run()} to perform the work, typically using up to
+ * Subclasses implement {@link #work()} to perform the work, typically using up to
  * {@link #poolSize} parallel subworkers. When the work completes
- * successfully, they should invoke {@link #signalDone}.
+ * successfully, they should invoke {@link #signalDone}. The work runs in the workspace that was current
+ * on construction, which is not unloaded until the work is done (see {@link Workspace#runIn(Runnable)}).
  * 
  * <p>
  * The aggregated outcome can be obtained via {@link #getResult()} after a successful run.
@@ -18,6 +21,7 @@ package de.seggebaeing.sqlanalyzer.logic.util.thread;
 public abstract class WorkerThread extends Thread {
     protected final Runnable signalDone;
     protected final int poolSize;
+    private final Workspace workspace = Workspace.current();
     
     /**
      * Constructs a {@code WorkerThread} with a name, a maximum subworker pool size,
@@ -33,14 +37,22 @@ public abstract class WorkerThread extends Thread {
         this.poolSize = poolSize;
     }
     
+    /**
+     * Runs {@link #work()} in the workspace this worker was created in.
+     */
+    @Override
+    public final void run() {
+        workspace.runIn(this::work);
+    }
+    
     /**
      * Executes the worker’s task on this thread.
      * <p>
-     * Implementations may use up to {@link #poolSize} parallel subworkers.
+     * Implementations may use up to {@link #poolSize} parallel subworkers, which must be done when it returns.
      * On successful completion, they should invoke {@link #signalDone}.
      * 
      */
-    public abstract void run();
+    protected abstract void work();
     
     /**
      * Returns the aggregated result produced by this worker.
@@ -3,119 +3,253 @@ package de.seggebaeing.sqlanalyzer.persistence;
 import com.google.gson.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import de.seggebaeing.sqlanalyzer.persistence.archive.ColdSegment;
+import de.seggebaeing.sqlanalyzer.persistence.blob.BlobStore;
+import de.seggebaeing.sqlanalyzer.persistence.checkpoint.CheckpointLog;
+import de.seggebaeing.sqlanalyzer.persistence.codec.DTOCodecRegistry;
+import de.seggebaeing.sqlanalyzer.persistence.column.ScoreColumns;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import de.seggebaeing.sqlanalyzer.persistence.dto.ContentAddressed;
 import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import de.seggebaeing.sqlanalyzer.persistence.engine.FrozenFiles;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngine;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngineType;
 import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import de.seggebaeing.sqlanalyzer.persistence.id.IdAllocator;
+import de.seggebaeing.sqlanalyzer.persistence.lock.WorkspaceLock;
+import de.seggebaeing.sqlanalyzer.persistence.snapshot.SnapshotStore;
 
 import java.io.IOException;
 import java.lang.reflect.RecordComponent;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Stream;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.ZipException;
 
 /**
  * File–system based JSON de.seggebaeing.sqlanalyzer.persistence utility for DTOs implementing {@link de.seggebaeing.sqlanalyzer.persistence.dto.Persistable}.
  * <p>
- * Stores each object as a single <code>.json</code> file under a class-named directory
- * (<code>&lt;basePath&gt;/&lt;SimpleClassName&gt;/&lt;id&gt;.json</code>). Provides CRUD-style helpers:
- * {@code persist}, {@code load}, {@code loadAll}, and {@code delete}. Serialization uses Gson (pretty printed).
- * A small normalization step ensures top-level {@code String} fields of Java {@code record}s are non-null.
+ * Serializes objects to JSON and hands them to a {@link StorageEngine}, which decides the on-disk layout
+ * (one <code>.json</code> file per object by default, or an append-only journal per class, see
+ * {@link StorageEngineType}). Provides CRUD-style helpers:
+ * {@code write}, {@code load}, {@code loadAll}, and {@code delete}. Serialization uses Gson; records are
+ * written in the configured {@link StorageFormat} (pretty printed JSON by default, or compact or deflated JSON)
+ * and read in whatever format each record was written in.
+ * DTOs are encoded by the streaming codecs of {@link DTOCodecRegistry}, which also map missing {@code String}
+ * fields to {@code ""}. Other {@code record}s go through a small normalization step to the same effect.
  * 
  *
- * <p><strong>Versioning:</strong> {@link #persist} compares the on-disk {@code version()} with the candidate.
- * Older or equal versions are not overwritten; newer candidates replace the file. Attempting to save an older
- * version results in a {@link de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException}.
+ * <p><strong>Versioning:</strong> {@link #write} and {@link #writeAll} don't read the stored records; callers
+ * make sure they only write newer versions, as the DAOs do by tracking the stored versions in memory.
  *
- * <p><strong>Threading/Concurrency:</strong> This is a static, process-local helper. It is not a full
- * concurrency control mechanism; coordinate concurrent writes at a higher level if multiple threads/processes
- * may persist the same object.
+ * <p><strong>Snapshots:</strong> {@link #loadAll} first tries a binary snapshot under
+ * <code>&lt;basePath&gt;/snapshot</code> (see {@link SnapshotStore}) and only parses the stored JSON if the
+ * snapshot is missing or stale. Snapshots are written via {@link #writeSnapshot} on clean shutdown.
  *
- * @apiNote Call {@link #initializeBasePath(java.nio.file.Path)} exactly once before any other method.
- * The base path is immutable afterward. Directory names are derived from {@code clazz.getSimpleName()}.
- * @implNote JSON normalization only affects top-level {@code String} components on {@code record} types.
+ * <p><strong>Checkpoints:</strong> {@link #openCheckpoint} opens a durable append-only log of objects under
+ * <code>&lt;basePath&gt;/checkpoints</code> (see {@link CheckpointLog}), e.g. for results of a long run that
+ * are only stored once the run is saved.
+ *
+ * <p><strong>Content addressing:</strong> The content of {@link ContentAddressed} objects (e.g. the SQL of
+ * generated queries) is stored once per distinct text in a {@link BlobStore} under <code>&lt;basePath&gt;/blobs</code>;
+ * their records only hold its hash. Loading attaches the content again.
+ *
+ * <p><strong>Backups:</strong> {@link #freeze} captures a consistent state of the stored objects while writes
+ * continue, in a staging directory under <code>&lt;basePath&gt;/backup</code>, see
+ * {@link de.seggebaeing.sqlanalyzer.persistence.backup.WorkspaceBackup}.
+ *
+ * <p><strong>Archive:</strong> {@link #writeColdSegment} moves objects into compressed, read-only segments under
+ * <code>&lt;basePath&gt;/archive</code> (see {@link ColdSegment}), which are only read on explicit request.
+ *
+ * <p><strong>Score columns:</strong> {@link #getScoreColumns()} opens a memory-mapped columnar store of evaluation
+ * scores under <code>&lt;basePath&gt;/scores</code> (see {@link ScoreColumns}) for aggregate scans.
+ *
+ * <p><strong>Workspaces:</strong> All methods work on the {@linkplain Workspace#current() current}
+ * {@link Workspace}, which holds the storage engine and the directories above. Several workspaces can be open
+ * side by side; the storage engine of each is opened lazily and closed when the workspace is unloaded.
+ *
+ * <p><strong>Sharing:</strong> If the current workspace is {@linkplain Workspace#isShared() shared} with other
+ * processes, all writing and deleting methods hold the write leases of the affected classes, and {@link #write}
+ * and {@link #writeAll} compare the stored versions under the lease: a record another process already stored
+ * in the same or a newer version is skipped with a logged warning instead of being overwritten. Reading takes no lease, as the {@link StorageEngineType#FILE} engine replaces records atomically.
+ * The other stores need no leases: blobs are immutable and moved into place atomically, a checkpoint is owned by
+ * the process holding its file lock, so {@link #openOrphanedCheckpoints} skips the runs of other processes, and
+ * every process keeps private score columns.
+ *
+ * <p><strong>Threading/Concurrency:</strong> This is a static helper. It is not a full concurrency control
+ * mechanism; coordinate concurrent writes at a higher level if multiple threads may persist the same object.
+ * Processes only coordinate through the write leases of shared workspaces.
+ *
+ * @apiNote Call {@link #initializeBasePath(java.nio.file.Path, StorageEngineType)} before any other method
+ * and {@link #shutdown()} when the application exits. The base path, engine and format of a workspace are
+ * immutable once it is open.
+ * Directory names are derived from {@code clazz.getSimpleName()}.
+ * @implNote JSON normalization only affects top-level {@code String} components on {@code record} types
+ * without a registered codec.
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class PersistenceHelper {
     private static final Logger log = LoggerFactory.getLogger(PersistenceHelper.class);
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    
-    private static Path savesBasePath = null;
+    private static final Gson gson = DTOCodecRegistry.registerAll(new GsonBuilder()).create();
+    private static final Gson prettyGson = DTOCodecRegistry.registerAll(new GsonBuilder().setPrettyPrinting()).create();
     
     /**
-     * Initializes the root directory for de.seggebaeing.sqlanalyzer.persistence operations.
-     * <p>
-     * Must be called exactly once before any other method of this helper is used.
-     * Subsequent calls will throw an {@link IllegalStateException}.
-     * 
+     * Initializes the root directory for de.seggebaeing.sqlanalyzer.persistence operations using the
+     * {@link StorageEngineType#FILE} engine.
      *
      * @param basePath the directory under which all persisted objects will be stored;
      *                 subdirectories are created per class name
-     * @throws IllegalStateException if the de.seggebaeing.sqlanalyzer.persistence base path has already been initialized
+     * @see #initializeBasePath(Path, StorageEngineType)
      */
     public static void initializeBasePath(Path basePath) {
-        if (savesBasePath != null)
-            throw new IllegalStateException("PersistenceHelper already initialized.");
-        
-        savesBasePath = basePath;
+        initializeBasePath(basePath, StorageEngineType.FILE);
     }
     
     /**
-     * Persists a {@link de.seggebaeing.sqlanalyzer.persistence.dto.Persistable} object to the file system.
+     * Initializes the root directory and storage engine for de.seggebaeing.sqlanalyzer.persistence operations.
      * <p>
-     * Each object is stored as a JSON file named by its {@code id()} in a directory
-     * specific to its class. If a file with the same ID already exists, the stored
-     * {@code version()} is compared against the candidate:
-     * <ul>
-     *   <li>If the new version is greater, the file is overwritten.</li>
-     *   <li>If the versions are equal, nothing is changed.</li>
-     *   <li>If the existing version is greater, a {@link de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException} is thrown.</li>
-     * </ul>
+     * Must be called before any other method of this helper is used.
+     * 
+     *
+     * @param basePath   the directory under which all persisted objects will be stored;
+     *                   subdirectories are created per class name
+     * @param engineType the storage engine to use
+     * @see #initializeBasePath(Path, StorageEngineType, StorageFormat)
+     */
+    public static void initializeBasePath(Path basePath, StorageEngineType engineType) {
+        initializeBasePath(basePath, engineType, StorageFormat.PRETTY);
+    }
+    
+    /**
+     * Initializes the root directory, storage engine and storage format for de.seggebaeing.sqlanalyzer.persistence operations.
+     * <p>
+     * Opens the {@link Workspace} in {@code basePath} and activates it, so it becomes the current workspace of
+     * the calling thread and of all threads without a workspace of their own. Must be called before any other
+     * method of this helper is used. Calling it again with another base path opens a further workspace side by
+     * side; calling it with the base path of an open workspace only activates it, keeping its engine and format.
+     * The format only applies to records written from now on; existing records are read in their own format
+     * and converted when next written.
+     * 
+     *
+     * @param basePath   the directory under which all persisted objects will be stored;
+     *                   subdirectories are created per class name
+     * @param engineType the storage engine to use
+     * @param format     the format to write records in
+     * @throws IllegalStateException if another process has the directory open
+     */
+    public static void initializeBasePath(Path basePath, StorageEngineType engineType, StorageFormat format) {
+        initializeBasePath(basePath, engineType, format, false);
+    }
+    
+    /**
+     * Initializes persistence like {@link #initializeBasePath(Path, StorageEngineType, StorageFormat)}, optionally
+     * sharing the directory with other processes, e.g. a headless batch runner working alongside the UI.
+     *
+     * @param basePath   the directory under which all persisted objects will be stored;
+     *                   subdirectories are created per class name
+     * @param engineType the storage engine to use
+     * @param format     the format to write records in
+     * @param shared     {@code true} to share the directory with other processes that open it shared as well
+     * @throws IllegalStateException if another process has the directory open and either process doesn't share it
+     * @see Workspace#open(Path, StorageEngineType, StorageFormat, boolean)
+     */
+    public static void initializeBasePath(Path basePath, StorageEngineType engineType, StorageFormat format, boolean shared) {
+        Workspace.open(basePath, engineType, format, shared).activate();
+    }
+    
+    /**
+     * Closes all open workspaces with their storage engines and score columns, forcing all written data to disk.
+     * <p>
+     * Intended to be called once on application exit. Failures are logged; calling this
+     * method on an uninitialized helper does nothing.
+     */
+    public static void shutdown() {
+        Workspace.closeAll();
+    }
+    
+    /**
+     * Writes a {@link de.seggebaeing.sqlanalyzer.persistence.dto.Persistable} object without consulting the stored version.
+     * <p>
+     * The previously stored record is neither read nor compared. Callers must ensure that {@code p} is newer
+     * than what is stored, e.g. by tracking versions in memory.
+     * In a shared workspace, other processes may have stored a newer version meanwhile; the stored version is
+     * compared then, and {@code p} is skipped with a logged warning unless it is newer.
      * 
      *
      * @param p the persistable object to save
-     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if file access fails,
-     *         if the existing JSON cannot be parsed as the expected type,
-     *         or if a newer version already exists on disk
+     * @return {@code true} if {@code p} was written, {@code false} if it was skipped
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if writing fails
      */
-    public static void persist(Persistable p) throws PersistenceException {
-        String fileName = String.valueOf(p.id());
-        Path dir = getDirPathFor(p.getClass());
+    public static boolean write(Persistable p) throws PersistenceException {
+        StorageEngine engine = getEngine();
         
         try {
-            String previousJson = readJson(dir, fileName);
-            
-            String json = gson.toJson(p);
-            if (previousJson == null) {
-                writeJson(dir, fileName, json);
-                return;
+            WorkspaceLock.Held lease = lease(List.of(p.getClass()));
+            try {
+                if (Workspace.current().isShared() && !isNewerThanStored(engine, p))
+                    return false;
+                byte[] payload = encode(p);
+                Workspace.current().blobs().sync();
+                engine.write(p, payload);
+                return true;
+            } finally {
+                lease.close();
             }
-            
-            Persistable previousObject = gson.fromJson(normalizeTopLevelStrings(previousJson, p.getClass()), p.getClass());
-            
-            switch (Long.compare(previousObject.version(), p.version())) {
-                case -1:
-                    writeJson(dir, fileName, json);
-                case 0:
-                    return;
-                case 1:
-                    throw new PersistenceException("Found object of type " + p.getClass().getSimpleName() + " somehow newer than the one to be saved.");
+        } catch (IOException e) {
+            throw new PersistenceException("Something went wrong while accessing the file system.", e);
+        }
+    }
+    
+    /**
+     * Writes a batch of {@link de.seggebaeing.sqlanalyzer.persistence.dto.Persistable} objects as one group commit,
+     * without consulting the stored versions.
+     * <p>
+     * Same contract as {@link #write(Persistable)}, but the storage engine makes the whole batch durable
+     * at once instead of syncing per object. In a shared workspace, the leases of all classes in the batch
+     * are held until it is written.
+     * 
+     *
+     * @param <T> the type of the objects
+     * @param ps  the persistable objects to save
+     * @return the written objects, i.e. {@code ps} without the skipped ones, in their order
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if writing fails; objects
+     *         earlier in the batch may already be written
+     */
+    public static <T extends Persistable> List<T> writeAll(Collection<? extends T> ps) throws PersistenceException {
+        StorageEngine engine = getEngine();
+        boolean shared = Workspace.current().isShared();
+        Map<Persistable, byte[]> records = new LinkedHashMap<>();
+        List<T> written = new ArrayList<>(ps.size());
+        
+        try {
+            WorkspaceLock.Held lease = lease(classesOf(ps));
+            try {
+                for (T p : ps) {
+                    if (!shared || isNewerThanStored(engine, p)) {
+                        records.put(p, encode(p));
+                        written.add(p);
+                    }
+                }
+                // The blobs of the batch become durable before the records referring to them
+                Workspace.current().blobs().sync();
+                engine.writeAll(records);
+                return written;
+            } finally {
+                lease.close();
             }
         } catch (IOException e) {
             throw new PersistenceException("Something went wrong while accessing the file system.", e);
-        } catch (JsonSyntaxException e) {
-            throw new PersistenceException("JSON file either broken or not of type " + p.getClass().getSimpleName(), e);
         }
     }
     
     /**
      * Loads a persisted object by class and identifier.
      * <p>
-     * Reads the JSON file named {@code &lt;id&gt;.json} from the directory corresponding
-     * to the given class, deserializes it with Gson, and normalizes top-level string
-     * fields for record types.
+     * Reads the stored record of the given class and id from the storage engine and
+     * deserializes it with Gson, normalizing top-level string fields for record types.
      * 
      *
      * @param <T>   the type of the object to load
@@ -126,15 +260,12 @@ public class PersistenceHelper {
      *         contains invalid JSON, or does not match the expected type
      */
     public static <T extends Persistable> T load(Class<T> clazz, long id) throws PersistenceException {
-        String fileName = String.valueOf(id);
-        Path dir = getDirPathFor(clazz);
-        
         try {
-            String json = readJson(dir, fileName);
+            String json = toJson(getEngine().read(clazz, (int) id));
             if (json == null)
                 throw new PersistenceException("Object with id '" + id + "' of class " + clazz.getSimpleName() + " not found in the file system.");
             
-            return gson.fromJson(normalizeTopLevelStrings(json, clazz), clazz);
+            return attachContent(gson.fromJson(normalizeTopLevelStrings(json, clazz), clazz));
         } catch (IOException e) {
             throw new PersistenceException("Something went wrong while accessing the file system.", e);
         } catch (JsonSyntaxException e) {
@@ -145,48 +276,430 @@ public class PersistenceHelper {
     /**
      * Loads all persisted objects of the given class.
      * <p>
-     * Scans the directory associated with {@code clazz} for <code>.json</code> files,
+     * Returns the content of a valid snapshot of {@code clazz} if there is one. Otherwise visits
+     * all stored records of {@code clazz} via the storage engine,
      * deserializes each into an instance of {@code T}, and returns them as a set.
-     * Invalid or unreadable files are skipped with a logged warning.
+     * Invalid or unreadable records are skipped with a logged warning.
      * 
      *
      * @param <T>   the type of objects to load
      * @param clazz the class whose persisted instances should be loaded
      * @return a set of deserialized objects of type {@code T}; may be empty if no files exist
-     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the directory listing fails
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the records cannot be enumerated
      */
     public static <T extends Persistable> Set<T> loadAll(Class<T> clazz) throws PersistenceException {
-        Path dir = getDirPathFor(clazz);
-        
-        String[] fileNames;
         try {
-            fileNames = getAllJsonFileNamesInDir(dir);
+            Set<T> snapshot = Workspace.current().snapshots().read(clazz, getEngine().fingerprint(clazz));
+            if (snapshot != null)
+                return snapshot;
         } catch (IOException e) {
-            throw new PersistenceException("Couldn't load list of files in directory " + dir + ".", e);
+            log.warn("Couldn't fingerprint stored objects of class {}, ignoring snapshot.", clazz.getSimpleName(), e);
         }
         
         Set<T> dtos = new HashSet<>();
         
-        for (String fileName : fileNames) {
-            try {
-                String json = readJson(dir, fileName);
-                T dto = gson.fromJson(normalizeTopLevelStrings(json, clazz), clazz);
-                dtos.add(dto);
+        try {
+            getEngine().forEach(clazz, (fileName, payload) -> {
+                try {
+                    T dto = gson.fromJson(normalizeTopLevelStrings(toJson(payload), clazz), clazz);
+                    dtos.add(attachContent(dto));
+                } catch (JsonSyntaxException | IOException e) {
+                    log.warn("Couldn't parse from file {} while batch loading for class {}. Maybe a faulty json-file or of wrong type?", fileName, clazz.getSimpleName(), e);
+                }
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't load list of stored objects of class " + clazz.getSimpleName() + ".", e);
+        }
+        
+        return dtos;
+    }
+    
+    /**
+     * Streams all persisted objects of the given class one by one, without collecting them.
+     * <p>
+     * Unlike {@link #loadAll}, snapshots are ignored, so memory stays independent of the number of stored
+     * objects. Invalid or unreadable records are skipped with a logged warning.
+     * 
+     *
+     * @param <T>    the type of objects to visit
+     * @param clazz  the class whose persisted instances should be visited
+     * @param action receives each deserialized object, on the calling thread
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the records cannot be enumerated
+     */
+    public static <T extends Persistable> void forEach(Class<T> clazz, Consumer<? super T> action) throws PersistenceException {
+        try {
+            getEngine().forEach(clazz, (fileName, payload) -> {
+                T dto;
+                try {
+                    dto = attachContent(gson.fromJson(normalizeTopLevelStrings(toJson(payload), clazz), clazz));
+                } catch (JsonSyntaxException | IOException e) {
+                    log.warn("Couldn't parse from file {} while streaming class {}. Maybe a faulty json-file or of wrong type?", fileName, clazz.getSimpleName(), e);
+                    return;
+                }
+                action.accept(dto);
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't load list of stored objects of class " + clazz.getSimpleName() + ".", e);
+        }
+    }
+    
+    /**
+     * Returns the ids of all persisted objects of the given class without loading the objects.
+     *
+     * @param clazz the class whose persisted ids should be listed
+     * @return the set of stored ids; may be empty
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the records cannot be enumerated
+     */
+    public static Set<Integer> loadIds(Class<? extends Persistable> clazz) throws PersistenceException {
+        try {
+            return getEngine().ids(clazz);
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't load list of stored objects of class " + clazz.getSimpleName() + ".", e);
+        }
+    }
+    
+    /**
+     * Returns whether the storage engine indexes a field of the stored objects of a class,
+     * see {@link StorageEngine#isIndexed(Class, String)}.
+     *
+     * @param clazz the class of the objects
+     * @param field the name of an {@code int} field of the objects
+     * @return {@code true} if {@link #findIds} can look up {@code field} without loading the objects
+     */
+    public static boolean isIndexed(Class<? extends Persistable> clazz, String field) {
+        return getEngine().isIndexed(clazz, field);
+    }
+    
+    /**
+     * Returns the ids of all persisted objects of a class whose field has the given value, using the
+     * index of the storage engine.
+     *
+     * @param clazz the class of the objects
+     * @param field the name of a field for which {@link #isIndexed} returns {@code true}
+     * @param value the value to look up
+     * @return the ids of the matching objects; may be empty
+     * @throws IllegalArgumentException if the storage engine doesn't index {@code field}
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the lookup fails
+     */
+    public static Set<Integer> findIds(Class<? extends Persistable> clazz, String field, int value) throws PersistenceException {
+        try {
+            return getEngine().findIds(clazz, field, value);
+        } catch (IOException e) {
+            throw new PersistenceException("Index lookup of " + field + " for class " + clazz.getSimpleName() + " failed.", e);
+        }
+    }
+    
+    /**
+     * Watches the stored objects of a class for changes made by other processes, if the storage engine supports it.
+     * <p>
+     * See {@link StorageEngine#watch(Class, StorageEngine.ChangeListener)}; the listener is called from a
+     * background thread.
+     * 
+     *
+     * @param clazz    the class whose stored objects should be watched
+     * @param listener receives the changes of stored objects of {@code clazz}
+     * @return {@code true} if the objects are watched, {@code false} if the storage engine doesn't support watching
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if watching cannot be started
+     */
+    public static boolean watch(Class<? extends Persistable> clazz, StorageEngine.ChangeListener listener) throws PersistenceException {
+        try {
+            return getEngine().watch(clazz, listener);
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't watch stored objects of class " + clazz.getSimpleName() + ".", e);
+        }
+    }
+    
+    /**
+     * Creates the id allocator of a class, keeping its high-water mark under <code>&lt;basePath&gt;/ids</code>.
+     * <p>
+     * Allocators of the same class, in this or other processes, are coordinated through the shared high-water
+     * mark. If the mark doesn't exist yet, it starts after the highest id among {@code usedIds}, the cold
+     * segments and the checkpoints of the class.
+     * 
+     *
+     * @param clazz   the class whose ids should be allocated
+     * @param usedIds the ids currently in use by stored objects of {@code clazz}, never handed out
+     * @return a new allocator for {@code clazz}
+     */
+    public static IdAllocator createIdAllocator(Class<? extends Persistable> clazz, Collection<Integer> usedIds) {
+        getEngine(); // Fails if not initialized
+        Workspace workspace = Workspace.current();
+        Path archiveDir = workspace.dir(Workspace.ARCHIVE_DIR);
+        Path checkpointDir = workspace.dir(Workspace.CHECKPOINT_DIR).resolve(clazz.getSimpleName());
+        Set<Integer> ids = Set.copyOf(usedIds);
+        return new IdAllocator(workspace.dir(Workspace.ID_DIR), clazz, ids, () -> highestKnownId(clazz, ids, archiveDir, checkpointDir));
+    }
+    
+    /**
+     * Returns the highest id of a class among the given ids, the cold segments and the checkpoints.
+     * Files that cannot be read are skipped with a logged warning.
+     */
+    private static int highestKnownId(Class<? extends Persistable> clazz, Collection<Integer> usedIds, Path archiveDir, Path checkpointDir) {
+        int[] max = {usedIds.stream().mapToInt(Integer::intValue).max().orElse(0)};
+        if (Files.exists(archiveDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDir, "*" + ColdSegment.SUFFIX)) {
+                for (Path path : stream) {
+                    try {
+                        ColdSegment.open(path, gson).forEach(clazz, dto -> max[0] = Math.max(max[0], dto.id()));
+                    } catch (IOException e) {
+                        log.warn("Couldn't read the ids of cold segment {}, skipping it.", path.getFileName(), e);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Couldn't list cold segments.", e);
+            }
+        }
+        if (Files.exists(checkpointDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(checkpointDir, "*" + CheckpointLog.SUFFIX)) {
+                for (Path path : stream) {
+                    try {
+                        max[0] = Math.max(max[0], CheckpointLog.maxId(path, clazz, gson));
+                    } catch (IOException e) {
+                        log.warn("Couldn't read the ids of checkpoint {}, skipping it.", path.getFileName(), e);
+                    }
+                }
             } catch (IOException e) {
-                log.warn("Couldn't load file '{}' while batch loading for class {}.", fileName, clazz.getSimpleName(), e);
-            } catch (JsonSyntaxException e) {
-                log.warn("Couldn't parse from file {} while batch loading for class {}. Maybe a faulty json-file or of wrong type?", fileName, clazz.getSimpleName(), e);
+                log.warn("Couldn't list checkpoints of class {}.", clazz.getSimpleName(), e);
             }
         }
+        return max[0];
+    }
+    
+    /**
+     * Opens or creates a checkpoint log of a class under <code>&lt;basePath&gt;/checkpoints/&lt;SimpleClassName&gt;</code>.
+     * <p>
+     * Checkpoints are independent of the storage engine; their DTOs are only stored once promoted by the caller.
+     * 
+     *
+     * @param <T>   the type of the logged objects
+     * @param clazz the class of the logged objects
+     * @param name  the name of the checkpoint, unique among the checkpoints of {@code clazz}
+     * @return the opened checkpoint
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the checkpoint cannot be
+     *         opened or is already open
+     */
+    public static <T extends Persistable> CheckpointLog<T> openCheckpoint(Class<T> clazz, String name) throws PersistenceException {
+        getEngine(); // Fails if not initialized
+        try {
+            CheckpointLog<T> checkpoint = CheckpointLog.tryOpen(getCheckpointDir(clazz).resolve(name + CheckpointLog.SUFFIX), clazz, gson);
+            if (checkpoint == null)
+                throw new PersistenceException("Checkpoint " + name + " of class " + clazz.getSimpleName() + " is already open.");
+            return checkpoint;
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't open checkpoint " + name + " of class " + clazz.getSimpleName() + ".", e);
+        }
+    }
+    
+    /**
+     * Opens all checkpoint logs of a class that are not open anywhere else, e.g. those left behind by a crash.
+     * <p>
+     * Checkpoints that cannot be opened are skipped with a logged warning.
+     * 
+     *
+     * @param <T>   the type of the logged objects
+     * @param clazz the class of the logged objects
+     * @return the opened checkpoints; may be empty
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the checkpoints cannot be listed
+     */
+    public static <T extends Persistable> List<CheckpointLog<T>> openOrphanedCheckpoints(Class<T> clazz) throws PersistenceException {
+        getEngine(); // Fails if not initialized
+        Path dir = getCheckpointDir(clazz);
+        if (Files.notExists(dir))
+            return List.of();
         
-        return dtos;
+        List<CheckpointLog<T>> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + CheckpointLog.SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    CheckpointLog<T> checkpoint = CheckpointLog.tryOpen(path, clazz, gson);
+                    if (checkpoint != null)
+                        checkpoints.add(checkpoint);
+                } catch (IOException e) {
+                    log.warn("Couldn't open checkpoint {}, skipping it.", path.getFileName(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't list checkpoints of class " + clazz.getSimpleName() + ".", e);
+        }
+        return checkpoints;
     }
     
     /**
-     * Deletes the persisted file of the given object.
+     * Returns the columnar score store under <code>&lt;basePath&gt;/scores</code>, opening it on first use.
      * <p>
-     * Resolves the JSON file path from the object's class and {@code id()}, then attempts
-     * to delete it from disk.
+     * The store is independent of the storage engine and closed when the workspace is unloaded or by {@link #shutdown()}.
+     * In a shared workspace, each process gets private columns in a temporary directory, as only one process can
+     * hold them; they start empty and are deleted when the workspace is unloaded.
+     * 
+     *
+     * @return the score columns
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the store cannot be opened,
+     *         e.g. because another process holds it open exclusively
+     */
+    public static ScoreColumns getScoreColumns() throws PersistenceException {
+        try {
+            return Workspace.current().scoreColumns();
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't open score columns.", e);
+        }
+    }
+    
+    /**
+     * Creates a new, empty staging directory for {@link #freeze} under <code>&lt;basePath&gt;/backup</code>, on the
+     * same file system as the stored files, so they can be hard linked.
+     *
+     * @return the staging directory; deleting it is up to the caller
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the directory cannot be created
+     */
+    public static Path createStagingDirectory() throws PersistenceException {
+        getEngine(); // Fails if not initialized
+        Path backupDir = Workspace.current().dir(Workspace.BACKUP_DIR);
+        try {
+            Files.createDirectories(backupDir);
+            return Files.createTempDirectory(backupDir, "staging-");
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't create backup staging directory.", e);
+        }
+    }
+    
+    /**
+     * Captures a point-in-time consistent state of all stored objects of the given classes, and of the blobs
+     * they refer to, while writes continue (see {@link StorageEngine#freeze}).
+     * <p>
+     * Blobs are immutable and never deleted, so they are captured in place; blobs stored after the
+     * capture may be included as well. Cold segments are immutable too, but deleted when restored, so they are
+     * linked into the staging directory. They are linked both before and after the stored objects are captured:
+     * objects moved between the stored ones and a segment while capturing are then included at least once, and
+     * restoring the backup saves those stored twice as no-ops. Derived data (snapshots, score columns, id marks)
+     * and the checkpoints of unsaved runs are not captured, as they are rebuilt or not part of the workspace yet.
+     * 
+     *
+     * @param classes the DTO classes to capture
+     * @param staging an empty staging directory, see {@link #createStagingDirectory()}
+     * @return the captured files, named by their path relative to the base path
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the state cannot be captured
+     */
+    public static List<StorageEngine.FrozenFile> freeze(Collection<Class<? extends Persistable>> classes, Path staging) throws PersistenceException {
+        try {
+            Map<String, StorageEngine.FrozenFile> segments = new TreeMap<>();
+            freezeColdSegments(staging, segments);
+            List<StorageEngine.FrozenFile> frozen = new ArrayList<>(getEngine().freeze(classes, staging));
+            freezeColdSegments(staging, segments);
+            frozen.addAll(segments.values());
+            for (Path blob : Workspace.current().blobs().files())
+                frozen.add(new StorageEngine.FrozenFile(Workspace.BLOB_DIR + "/" + blob.getParent().getFileName() + "/" + blob.getFileName(), blob, Files.size(blob)));
+            return frozen;
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't capture the stored state.", e);
+        }
+    }
+    
+    /**
+     * Links the cold segments not linked yet into <code>&lt;staging&gt;/archive</code> and adds them to
+     * {@code frozen} by name.
+     */
+    private static void freezeColdSegments(Path staging, Map<String, StorageEngine.FrozenFile> frozen) throws IOException {
+        Path archiveDir = Workspace.current().dir(Workspace.ARCHIVE_DIR);
+        if (!Files.isDirectory(archiveDir))
+            return;
+        
+        Path target = staging.resolve(Workspace.ARCHIVE_DIR);
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDir, "*" + ColdSegment.SUFFIX)) {
+            for (Path path : stream) {
+                String name = Workspace.ARCHIVE_DIR + "/" + path.getFileName();
+                if (frozen.containsKey(name))
+                    continue;
+                Path link = target.resolve(path.getFileName());
+                try {
+                    FrozenFiles.linkOrCopy(path, link);
+                } catch (NoSuchFileException e) {
+                    continue; // Restored meanwhile
+                }
+                frozen.put(name, new StorageEngine.FrozenFile(name, link, Files.size(link)));
+            }
+        }
+    }
+    
+    /**
+     * Writes a new cold segment under <code>&lt;basePath&gt;/archive</code> containing the given objects.
+     * <p>
+     * The objects stay stored; deleting them is up to the caller once the segment is written.
+     * 
+     *
+     * @param name        the name of the segment, unique among all segments
+     * @param description what was archived, shown to the user
+     * @param dtos        the objects to archive, with their content attached
+     * @return the written segment
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the segment cannot be written
+     */
+    public static ColdSegment writeColdSegment(String name, String description, Collection<? extends Persistable> dtos) throws PersistenceException {
+        getEngine(); // Fails if not initialized
+        Path path = Workspace.current().dir(Workspace.ARCHIVE_DIR).resolve(name + ColdSegment.SUFFIX);
+        if (Files.exists(path))
+            throw new PersistenceException("Cold segment " + name + " already exists.");
+        try {
+            return ColdSegment.write(path, description, dtos, gson);
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't write cold segment " + name + ".", e);
+        }
+    }
+    
+    /**
+     * Opens all cold segments under <code>&lt;basePath&gt;/archive</code>, reading only their headers.
+     * <p>
+     * Segments that cannot be opened are skipped with a logged warning.
+     * 
+     *
+     * @return the segments, oldest first; may be empty
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if the segments cannot be listed
+     */
+    public static List<ColdSegment> listColdSegments() throws PersistenceException {
+        getEngine(); // Fails if not initialized
+        Path archiveDir = Workspace.current().dir(Workspace.ARCHIVE_DIR);
+        if (Files.notExists(archiveDir))
+            return List.of();
+        
+        List<ColdSegment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDir, "*" + ColdSegment.SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    segments.add(ColdSegment.open(path, gson));
+                } catch (IOException e) {
+                    log.warn("Couldn't open cold segment {}, skipping it.", path.getFileName(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Couldn't list cold segments.", e);
+        }
+        segments.sort(Comparator.comparing(ColdSegment::getCreated));
+        return segments;
+    }
+    
+    /**
+     * Writes a binary snapshot of all stored objects of a class, tagged with the current storage fingerprint.
+     * <p>
+     * {@code dtos} must be exactly what is stored for {@code clazz}, e.g. the complete DAO cache after all
+     * pending writes are flushed. Failures are logged; a missing snapshot only slows down the next start.
+     * 
+     *
+     * @param <T>   the type of the objects
+     * @param clazz the class of the objects
+     * @param dtos  all stored objects of {@code clazz}
+     */
+    public static <T extends Persistable> void writeSnapshot(Class<T> clazz, Collection<T> dtos) {
+        try {
+            Workspace.current().snapshots().write(clazz, getEngine().fingerprint(clazz), dtos);
+        } catch (IOException e) {
+            log.warn("Couldn't fingerprint stored objects of class {}, skipping snapshot.", clazz.getSimpleName(), e);
+        }
+    }
+    
+    /**
+     * Deletes the persisted record of the given object.
+     * <p>
+     * Resolves the record from the object's class and {@code id()}, then asks the storage
+     * engine to remove it.
      * 
      *
      * @param p the persistable object whose file should be removed
@@ -194,11 +707,13 @@ public class PersistenceHelper {
      *         or an I/O error occurs during deletion
      */
     public static void delete(Persistable p) throws PersistenceException {
-        String fileName = String.valueOf(p.id());
-        Path dir = getDirPathFor(p.getClass());
-        
         try {
-            deleteJson(dir, fileName);
+            WorkspaceLock.Held lease = lease(List.of(p.getClass()));
+            try {
+                getEngine().delete(p.getClass(), p.id());
+            } finally {
+                lease.close();
+            }
         } catch (NoSuchFileException e) {
             throw new PersistenceException("Deletion of object with id " + p.id() + " of class " + p.getClass().getSimpleName() + " failed, file does not exist.", e);
         } catch (IOException e) {
@@ -206,6 +721,38 @@ public class PersistenceHelper {
         }
     }
     
+    /**
+     * Deletes the persisted records of a batch of objects as one group commit.
+     * <p>
+     * Objects without a stored record are ignored.
+     * 
+     *
+     * @param ps the persistable objects whose records should be removed
+     * @throws de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException if an I/O error occurs during
+     *         deletion; objects earlier in the batch may already be removed
+     */
+    public static void deleteAll(Collection<? extends Persistable> ps) throws PersistenceException {
+        Map<Class<? extends Persistable>, List<Integer>> idsByClass = new HashMap<>();
+        ps.forEach(p -> idsByClass.computeIfAbsent(p.getClass(), c -> new ArrayList<>()).add(p.id()));
+        
+        try {
+            WorkspaceLock.Held lease = lease(idsByClass.keySet());
+            try {
+                for (Map.Entry<Class<? extends Persistable>, List<Integer>> e : idsByClass.entrySet()) {
+                    try {
+                        getEngine().deleteAll(e.getKey(), e.getValue());
+                    } catch (IOException ex) {
+                        throw new PersistenceException("Batch deletion of objects of class " + e.getKey().getSimpleName() + " failed.", ex);
+                    }
+                }
+            } finally {
+                lease.close();
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Batch deletion failed, couldn't acquire the write leases.", e);
+        }
+    }
+    
     /**
      * Normalizes JSON for Java {@code record} types by ensuring all top-level
      * {@code String} components are non-null.
@@ -214,16 +761,19 @@ public class PersistenceHelper {
      * {@code String} that is missing or {@code null} in the JSON object will be
      * replaced with an empty string. This prevents deserialization failures when
      * the record requires non-null string values.
+     * <p>
+     * Classes with a codec in {@link DTOCodecRegistry} are returned unchanged, since their
+     * codec already applies the same defaults while decoding.
      * 
      *
      * @param <T>         the target type
      * @param json        the JSON string to normalize; may be {@code null}
      * @param recordClass the class of the record type
      * @return the normalized JSON string, or the original input if the class is
-     *         not a record or the JSON is not an object
+     *         not a record, has a registered codec, or the JSON is not an object
      */
     private static <T> String normalizeTopLevelStrings(String json, Class<T> recordClass) {
-        if (json == null || !recordClass.isRecord()) return json;
+        if (json == null || !recordClass.isRecord() || DTOCodecRegistry.isRegistered(recordClass)) return json;
         JsonElement root = JsonParser.parseString(json);
         if (!root.isJsonObject()) return json;
         
@@ -238,107 +788,111 @@ public class PersistenceHelper {
     }
     
     /**
-     * Writes a JSON string to a file in the specified directory.
+     * Serializes an object and encodes it in the configured {@link StorageFormat}.
      * <p>
-     * Ensures that the parent directory exists before writing. The file name is
-     * suffixed with <code>.json</code>.
+     * The content of {@link ContentAddressed} objects is stored as a blob first and left out of the payload.
      * 
      *
-     * @param dir      the target directory
-     * @param fileName the base file name without extension
-     * @param json     the JSON content to write
-     * @throws IOException if the directory cannot be created or the file cannot be written
+     * @param p the object to serialize
+     * @return the payload to hand to the storage engine
+     * @throws IOException if the content cannot be stored as a blob
      */
-    private static void writeJson(Path dir, String fileName, String json) throws IOException {
-        Path path = dir.resolve(fileName + ".json");
-        Files.createDirectories(path.getParent());
-        Files.writeString(path, json, StandardCharsets.UTF_8);
+    private static byte[] encode(Persistable p) throws IOException {
+        if (p instanceof ContentAddressed<?> c && !c.content().isEmpty()) {
+            Workspace.current().blobs().put(c.contentHash(), c.content());
+            p = c.withContent("");
+        }
+        StorageFormat format = Workspace.current().format();
+        return format.encode((format.isPrettyPrinted() ? prettyGson : gson).toJson(p));
     }
     
     /**
-     * Reads the content of a JSON file from the specified directory.
+     * Attaches the content of a loaded {@link ContentAddressed} object from the blob store.
      * <p>
-     * Returns the file content as a UTF-8 string if the file exists, otherwise
-     * returns {@code null}.
+     * Objects stored before content addressing still carry their content inline and are returned as they are.
+     * A missing blob is logged and leaves the content empty.
      * 
      *
-     * @param dir      the directory containing the file
-     * @param fileName the base file name without extension
-     * @return the JSON content as a string, or {@code null} if the file does not exist
-     * @throws IOException if the file cannot be read
-     */
-    private static String readJson(Path dir, String fileName) throws IOException {
-        Path path = dir.resolve(fileName + ".json");
-        if (Files.exists(path)) {
-            return Files.readString(path, StandardCharsets.UTF_8);
-        } else {
-            return null;
+     * @param <T> the type of the object
+     * @param dto the loaded object; may be {@code null}
+     * @return the object with its content attached
+     * @throws IOException if the blob exists but cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T attachContent(T dto) throws IOException {
+        if (!(dto instanceof ContentAddressed<?> c) || !c.content().isEmpty() || c.contentHash().isEmpty())
+            return dto;
+        
+        String content = Workspace.current().blobs().get(c.contentHash());
+        if (content == null) {
+            log.warn("Blob {} of {} with id '{}' is missing.", c.contentHash(), dto.getClass().getSimpleName(), c.id());
+            return dto;
         }
+        return (T) c.withContent(content);
     }
     
     /**
-     * Deletes a JSON file in the specified directory if it exists.
+     * Decodes a stored payload of any {@link StorageFormat} as UTF-8 JSON.
      *
-     * @param dir      the directory containing the file
-     * @param fileName the base file name without extension
-     * @throws IOException if an I/O error occurs during deletion
+     * @param payload the payload as returned by the storage engine; may be {@code null}
+     * @return the JSON content as a string, or {@code null} if {@code payload} is {@code null}
+     * @throws ZipException if the payload is deflated but corrupt
      */
-    private static void deleteJson(Path dir, String fileName) throws IOException {
-        Path path = dir.resolve(fileName + ".json");
-        Files.deleteIfExists(path);
+    private static String toJson(byte[] payload) throws ZipException {
+        return payload == null ? null : new String(StorageFormat.decode(payload), StandardCharsets.UTF_8);
     }
     
     /**
-     * Lists all JSON files in the specified directory.
-     * <p>
-     * Ensures the directory exists, then returns the base names (without the
-     * <code>.json</code> extension) of all JSON files found.
-     * 
+     * Returns whether {@code p} is newer than its stored record, logging a warning if not.
      *
-     * @param dir the directory to scan
-     * @return an array of file names without extension; may be empty if no JSON files exist
-     * @throws IOException if the directory cannot be created or listed
+     * @param engine the storage engine to read the stored record from
+     * @param p      the object about to be written
+     * @return {@code true} if no record is stored, the stored one is older or can't be parsed
+     * @throws IOException if the stored record cannot be read
      */
-    private static String[] getAllJsonFileNamesInDir(Path dir) throws IOException {
-        mkdir(dir);
+    private static boolean isNewerThanStored(StorageEngine engine, Persistable p) throws IOException {
+        String storedJson = toJson(engine.read(p.getClass(), p.id()));
+        if (storedJson == null)
+            return true;
         
-        try (Stream<Path> stream = Files.list(dir)) {
-            return stream
-                    .filter(p -> p.toString().endsWith(".json"))
-                    .map(p -> p.getFileName().toString().replaceFirst("\\.json$", ""))
-                    .toArray(String[]::new);
+        long storedVersion;
+        try {
+            storedVersion = gson.fromJson(normalizeTopLevelStrings(storedJson, p.getClass()), p.getClass()).version();
+        } catch (JsonSyntaxException e) {
+            return true;
         }
+        if (storedVersion < p.version())
+            return true;
+        
+        log.warn("Skipped writing {} with id {} in version {}, another process already stored version {}.",
+                p.getClass().getSimpleName(), p.id(), p.version(), storedVersion);
+        return false;
     }
     
     /**
-     * Ensures that the given directory exists.
-     * <p>
-     * If the directory does not exist, it and any missing parent directories are created.
-     * 
-     *
-     * @param dir the directory to check or create
-     * @throws IOException if the directory cannot be created
+     * Acquires the write leases of the given classes in the current workspace; a no-op unless it is shared.
      */
-    private static void mkdir(Path dir) throws IOException {
-        if (Files.notExists(dir))
-            Files.createDirectories(dir);
+    private static WorkspaceLock.Held lease(Collection<? extends Class<? extends Persistable>> classes) throws IOException {
+        return Workspace.current().lease(classes);
+    }
+    
+    private static Set<Class<? extends Persistable>> classesOf(Collection<? extends Persistable> ps) {
+        Set<Class<? extends Persistable>> classes = new HashSet<>();
+        ps.forEach(p -> classes.add(p.getClass()));
+        return classes;
+    }
+    
+    private static Path getCheckpointDir(Class<?> clazz) {
+        return Workspace.current().dir(Workspace.CHECKPOINT_DIR).resolve(clazz.getSimpleName());
     }
     
     /**
-     * Resolves the directory path for a given class.
-     * <p>
-     * The path is derived from the initialized base path combined with the class's
-     * simple name. Requires that {@link #initializeBasePath(Path)} has been called.
-     * 
+     * Returns the storage engine of the current workspace, opening it if needed.
      *
-     * @param clazz the class whose directory should be resolved
-     * @return the directory path for the class
-     * @throws IllegalStateException if the base path has not been initialized
+     * @return the storage engine
+     * @throws IllegalStateException if no workspace is open
      */
-    private static Path getDirPathFor(Class<?> clazz) {
-        if (savesBasePath == null)
-            throw new IllegalStateException("PersistenceHelper has not been initialized. Call initializeBasePath(Path basePath) first.");
-        
-        return savesBasePath.resolve(clazz.getSimpleName());
+    private static StorageEngine getEngine() {
+        return Workspace.current().engine();
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,484 @@
+package de.seggebaeing.sqlanalyzer.persistence;
+
+import de.seggebaeing.sqlanalyzer.persistence.blob.BlobStore;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import de.seggebaeing.sqlanalyzer.persistence.column.ScoreColumns;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngine;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngineType;
+import de.seggebaeing.sqlanalyzer.persistence.lock.WorkspaceLock;
+import de.seggebaeing.sqlanalyzer.persistence.snapshot.SnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A saves directory opened by this process, together with its storage engine and all objects scoped to it.
+ * <p>
+ * Several workspaces can be open side by side. {@link PersistenceHelper} always works on the
+ * {@linkplain #current() current} workspace, and the DAOs, mappers and services are scoped: their
+ * {@code getInstance()} returns the instance of the current workspace, created on first use via
+ * {@link #scoped(Class, Supplier)}. Every workspace therefore has its own caches, loaded lazily.
+ * 
+ *
+ * <p><strong>Current workspace:</strong> The workspace bound to the calling thread, or else the active one.
+ * {@link #activate()} makes a workspace the active one and binds it to the calling thread, normally the JavaFX
+ * Application Thread. Threads inherit the binding of the thread that created them, so workers keep writing
+ * into the workspace they were started in, even if another workspace is activated meanwhile.
+ * {@link #runIn(Runnable)} binds a workspace temporarily.
+ *
+ * <p><strong>Unloading:</strong> {@link #unload()} flushes and drops all scoped objects and closes the storage
+ * engine, releasing the memory of the caches. The workspace stays open and is loaded again on next use.
+ * Objects obtained from an unloaded workspace must not be used anymore. Therefore, a workspace is not unloaded
+ * while it is {@linkplain #isInUse() in use}, i.e. while a thread runs in it via {@link #runIn(Runnable)}, as
+ * long-running workers do; they still hold its objects. {@link #close()} unloads the workspace and closes it
+ * for good.
+ *
+ * <p><strong>Other processes:</strong> An open workspace holds a {@link WorkspaceLock} on its saves directory
+ * until it is closed, so another process can't open it and overwrite its files. Only processes that all open it
+ * {@linkplain #open(Path, StorageEngineType, StorageFormat, boolean) shared} work on it together; they write a
+ * class only while holding its write lease, see {@link #lease(Collection)}. Sharing requires the
+ * {@link StorageEngineType#FILE} engine, whose records other processes can read while they are written. The
+ * score columns can't be shared, so each process sharing the workspace keeps its own, see
+ * {@link PersistenceHelper#getScoreColumns()}.
+ *
+ * <p><strong>Threading:</strong> This class is thread-safe.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class Workspace {
+    private static final Logger log = LoggerFactory.getLogger(Workspace.class);
+    
+    static final String SNAPSHOT_DIR = "snapshot";
+    static final String ID_DIR = "ids";
+    static final String CHECKPOINT_DIR = "checkpoints";
+    static final String SCORE_DIR = "scores";
+    static final String BLOB_DIR = "blobs";
+    static final String BACKUP_DIR = "backup";
+    static final String ARCHIVE_DIR = "archive";
+    
+    /**
+     * Open workspaces by normalized base path, in opening order. Guarded by {@code Workspace.class}.
+     */
+    private static final Map<Path, Workspace> open = new LinkedHashMap<>();
+    private static final InheritableThreadLocal<Workspace> bound = new InheritableThreadLocal<>();
+    private static volatile Workspace active = null;
+    
+    private final Path basePath;
+    private final StorageEngineType engineType;
+    private final StorageFormat format;
+    private final BlobStore blobs;
+    private final SnapshotStore snapshots;
+    private final WorkspaceLock lock;
+    
+    /**
+     * Scoped objects by type, and the locks serializing their creation per type.
+     */
+    private final Map<Class<?>, Object> scoped = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Object> creationLocks = new ConcurrentHashMap<>();
+    private StorageEngine engine = null;
+    private ScoreColumns scoreColumns = null;
+    private Path privateScoreDir = null;
+    private volatile long lastUsed = System.nanoTime();
+    
+    /**
+     * Number of threads currently running in this workspace via {@link #runIn(Runnable)}.
+     */
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile boolean closed = false;
+    
+    private Workspace(Path basePath, StorageEngineType engineType, StorageFormat format, WorkspaceLock lock) {
+        this.basePath = basePath;
+        this.engineType = engineType;
+        this.format = format;
+        this.lock = lock;
+        this.blobs = new BlobStore(basePath.resolve(BLOB_DIR), lock.isShared());
+        this.snapshots = new SnapshotStore(basePath.resolve(SNAPSHOT_DIR));
+    }
+    
+    /**
+     * Opens the workspace in the given saves directory for this process only, or returns it if it is already open.
+     *
+     * @param basePath   the saves directory
+     * @param engineType the storage engine to use
+     * @param format     the format to write records in
+     * @return the open workspace
+     * @throws IllegalStateException if another process has the saves directory open
+     * @see #open(Path, StorageEngineType, StorageFormat, boolean)
+     */
+    public static Workspace open(Path basePath, StorageEngineType engineType, StorageFormat format) {
+        return open(basePath, engineType, format, false);
+    }
+    
+    /**
+     * Opens the workspace in the given saves directory, or returns it if it is already open.
+     * <p>
+     * Acquires the {@link WorkspaceLock} of the saves directory. Nothing is loaded yet; the storage engine is
+     * opened on first use. The engine, format and sharing of an already open workspace are kept.
+     * 
+     *
+     * @param basePath   the saves directory
+     * @param engineType the storage engine to use
+     * @param format     the format to write records in
+     * @param shared     {@code true} to share the saves directory with other processes opening it shared;
+     *                   ignored with a logged warning unless {@code engineType} is {@link StorageEngineType#FILE}
+     * @return the open workspace
+     * @throws IllegalStateException if another process has the saves directory open and either process doesn't
+     *         share it, or if the lock file cannot be created
+     */
+    public static synchronized Workspace open(Path basePath, StorageEngineType engineType, StorageFormat format, boolean shared) {
+        Path key = basePath.toAbsolutePath().normalize();
+        Workspace workspace = open.get(key);
+        if (workspace != null)
+            return workspace;
+        
+        if (shared && engineType != StorageEngineType.FILE) {
+            log.warn("The {} storage engine can't share workspace {} with other processes, opening it exclusively.", engineType, key);
+            shared = false;
+        }
+        WorkspaceLock lock;
+        try {
+            lock = WorkspaceLock.tryAcquire(key, shared);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't lock workspace " + key + ".", e);
+        }
+        if (lock == null)
+            throw new IllegalStateException("Workspace " + key + " is in use by another process"
+                    + (shared ? " that doesn't share it." : "."));
+        
+        workspace = new Workspace(key, engineType, format, lock);
+        open.put(key, workspace);
+        log.info("Opened workspace {} {} using {} storage engine and {} format.", key, shared ? "shared" : "exclusively", engineType, format);
+        return workspace;
+    }
+    
+    /**
+     * Returns the workspace bound to the calling thread, or else the active workspace.
+     *
+     * @return the current workspace
+     * @throws IllegalStateException if no workspace is bound or active
+     */
+    public static Workspace current() {
+        Workspace workspace = bound.get();
+        if (workspace == null || workspace.closed)
+            workspace = active;
+        if (workspace == null)
+            throw new IllegalStateException("No workspace is open. Call PersistenceHelper.initializeBasePath(Path basePath) first.");
+        
+        workspace.lastUsed = System.nanoTime();
+        return workspace;
+    }
+    
+    /**
+     * Returns the open workspace with the given saves directory.
+     *
+     * @param basePath the saves directory
+     * @return the workspace, or {@code null} if it is not open
+     */
+    public static synchronized Workspace get(Path basePath) {
+        return open.get(basePath.toAbsolutePath().normalize());
+    }
+    
+    /**
+     * Returns all open workspaces.
+     *
+     * @return the open workspaces, in opening order
+     */
+    public static synchronized List<Workspace> getOpenWorkspaces() {
+        return List.copyOf(open.values());
+    }
+    
+    /**
+     * Unloads all loaded workspaces that are neither active, kept nor {@linkplain #isInUse() in use} and weren't
+     * used for the given time. Workspaces in use are unloaded by a later call, once their workers finished.
+     *
+     * @param idle the minimum time since a workspace was last used
+     * @param keep the base paths of workspaces to keep loaded, e.g. those shown in windows
+     * @return the number of unloaded workspaces
+     */
+    public static int unloadIdle(Duration idle, Collection<Path> keep) {
+        long now = System.nanoTime();
+        int unloaded = 0;
+        for (Workspace workspace : getOpenWorkspaces()) {
+            if (workspace == active || keep.contains(workspace.basePath) || !workspace.isLoaded()
+                    || workspace.isInUse() || now - workspace.lastUsed < idle.toNanos())
+                continue;
+            if (workspace.unload())
+                unloaded++;
+        }
+        return unloaded;
+    }
+    
+    /**
+     * Closes all open workspaces, e.g. on application exit.
+     */
+    public static void closeAll() {
+        getOpenWorkspaces().forEach(Workspace::close);
+    }
+    
+    /**
+     * Makes this workspace the active one and binds it to the calling thread.
+     *
+     * @throws IllegalStateException if this workspace was closed
+     */
+    public void activate() {
+        if (closed)
+            throw new IllegalStateException("Workspace " + basePath + " is closed.");
+        active = this;
+        bound.set(this);
+    }
+    
+    /**
+     * Runs an action with this workspace bound to the calling thread, restoring the previous binding afterward.
+     * <p>
+     * The workspace is {@linkplain #isInUse() in use} while the action runs, so it isn't unloaded meanwhile.
+     * Threads started by the action inherit the binding, but must not outlive it.
+     * 
+     *
+     * @param action the action to run
+     */
+    public void runIn(Runnable action) {
+        Workspace previous = bound.get();
+        bound.set(this);
+        users.incrementAndGet();
+        try {
+            action.run();
+        } finally {
+            users.decrementAndGet();
+            if (previous == null)
+                bound.remove();
+            else
+                bound.set(previous);
+        }
+    }
+    
+    /**
+     * Returns the object of the given type scoped to this workspace, creating it on first use.
+     * <p>
+     * The factory runs with this workspace bound, so objects it obtains via {@code getInstance()} belong to
+     * this workspace as well. Objects of different types are created in parallel.
+     * 
+     *
+     * @param <S>     the type of the object
+     * @param type    the type of the object, used as key
+     * @param factory creates the object
+     * @return the scoped object
+     */
+    public <S> S scoped(Class<S> type, Supplier<S> factory) {
+        Object instance = scoped.get(type);
+        if (instance != null)
+            return type.cast(instance);
+        
+        // Per type, so that e.g. DAOs of different classes load in parallel
+        synchronized (creationLocks.computeIfAbsent(type, t -> new Object())) {
+            instance = scoped.get(type);
+            if (instance == null) {
+                Object[] created = new Object[1];
+                runIn(() -> created[0] = factory.get());
+                instance = created[0];
+                scoped.put(type, instance);
+            }
+        }
+        return type.cast(instance);
+    }
+    
+    /**
+     * Flushes and drops all scoped objects and closes the score columns and the storage engine, unless the
+     * workspace is {@linkplain #isInUse() in use}.
+     * <p>
+     * DAOs write their snapshots first, so loading the workspace again is fast. Failures are logged.
+     * 
+     *
+     * @return {@code false} if the workspace is in use and was left loaded
+     */
+    public synchronized boolean unload() {
+        if (isInUse()) {
+            log.debug("Workspace {} is in use, not unloading it.", basePath);
+            return false;
+        }
+        release();
+        return true;
+    }
+    
+    /**
+     * Unloads this workspace regardless of its use.
+     */
+    private synchronized void release() {
+        if (!isLoaded())
+            return;
+        
+        runIn(() -> {
+            for (Object instance : scoped.values())
+                if (instance instanceof DTODAO<?> dao)
+                    dao.release();
+        });
+        scoped.clear();
+        if (scoreColumns != null) {
+            try {
+                scoreColumns.close();
+            } catch (IOException e) {
+                log.error("Couldn't close score columns of workspace {} cleanly.", basePath, e);
+            }
+            scoreColumns = null;
+        }
+        if (privateScoreDir != null) {
+            deletePrivateScoreDir();
+            privateScoreDir = null;
+        }
+        if (engine != null) {
+            try {
+                engine.close();
+            } catch (IOException e) {
+                log.error("Couldn't close storage engine of workspace {} cleanly.", basePath, e);
+            }
+            engine = null;
+        }
+        log.info("Unloaded workspace {}.", basePath);
+    }
+    
+    /**
+     * Deletes the private score columns of a shared workspace; failures are logged, the directory is temporary anyway.
+     */
+    private void deletePrivateScoreDir() {
+        try (Stream<Path> files = Files.walk(privateScoreDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Couldn't delete the private score columns {} of workspace {}.", privateScoreDir, basePath, e);
+        }
+    }
+    
+    /**
+     * Acquires the write leases of the given classes, waiting while other processes sharing this workspace hold them.
+     * <p>
+     * Returns immediately if this workspace is not shared. Close the returned handle to release the leases.
+     * 
+     *
+     * @param classes the classes about to be written or deleted
+     * @return the handle releasing the leases
+     * @throws IOException if a lease cannot be acquired in time
+     */
+    public WorkspaceLock.Held lease(Collection<? extends Class<? extends Persistable>> classes) throws IOException {
+        return lock.lease(classes);
+    }
+    
+    /**
+     * Unloads this workspace, closes it and releases its lock; it has to be opened again to be used.
+     * <p>
+     * Unloads even if the workspace is in use, e.g. on exit, so running workers must not use it anymore.
+     * 
+     */
+    public void close() {
+        release();
+        synchronized (Workspace.class) {
+            if (closed)
+                return;
+            open.remove(basePath);
+            closed = true;
+            if (active == this)
+                active = null;
+        }
+        try {
+            lock.close();
+        } catch (IOException e) {
+            log.error("Couldn't release the lock of workspace {} cleanly.", basePath, e);
+        }
+    }
+    
+    /**
+     * Returns whether a thread runs in this workspace via {@link #runIn(Runnable)}, e.g. a generation worker.
+     *
+     * @return {@code true} if unloading has to wait
+     */
+    public boolean isInUse() {
+        return users.get() > 0;
+    }
+    
+    /**
+     * Returns whether the storage engine is open or any scoped object exists.
+     *
+     * @return {@code true} if unloading would release anything
+     */
+    public boolean isLoaded() {
+        return engine != null || !scoped.isEmpty();
+    }
+    
+    /**
+     * Returns whether other processes may work on this workspace at the same time.
+     *
+     * @return {@code true} if the saves directory is shared
+     */
+    public boolean isShared() {
+        return lock.isShared();
+    }
+    
+    /**
+     * Returns the saves directory of this workspace.
+     *
+     * @return the normalized absolute base path
+     */
+    public Path getBasePath() {
+        return basePath;
+    }
+    
+    /**
+     * Returns the storage engine, opening it on first use after opening or unloading.
+     */
+    synchronized StorageEngine engine() {
+        if (closed)
+            throw new IllegalStateException("Workspace " + basePath + " is closed.");
+        if (engine == null) {
+            engine = engineType.create(basePath);
+            log.info("Persistence initialized at {} using {} storage engine and {} format.", basePath, engineType, format);
+        }
+        return engine;
+    }
+    
+    /**
+     * Returns the score columns, opening them on first use after opening or unloading.
+     * <p>
+     * The columns can only be held by one process. In a shared workspace, every process therefore keeps private
+     * columns in a temporary directory instead, rebuilt from the stored results on first use and deleted when
+     * the workspace is unloaded.
+     * 
+     */
+    synchronized ScoreColumns scoreColumns() throws IOException {
+        engine(); // Fails if closed
+        if (scoreColumns == null) {
+            if (isShared()) {
+                privateScoreDir = Files.createTempDirectory("sqlanalyzer-scores-");
+                scoreColumns = new ScoreColumns(privateScoreDir);
+            } else {
+                scoreColumns = new ScoreColumns(basePath.resolve(SCORE_DIR));
+            }
+        }
+        return scoreColumns;
+    }
+    
+    StorageFormat format() {
+        return format;
+    }
+    
+    BlobStore blobs() {
+        return blobs;
+    }
+    
+    SnapshotStore snapshots() {
+        return snapshots;
+    }
+    
+    Path dir(String name) {
+        return basePath.resolve(name);
+    }
+}
@@ -0,0 +1,220 @@
+package de.seggebaeing.sqlanalyzer.persistence.archive;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, read-only file of archived DTOs ("cold" storage), written once and only read on explicit request.
+ * <p>
+ * A segment is gzip compressed NDJSON. The first line is a header with the segment's description, creation time
+ * and number of DTOs per class, so {@link #open} reads only that line. Every further line holds one DTO in an
+ * envelope like <code>{"type":"GeneratedQueryDTO","dto":{...}}</code>. Segments are independent of the storage
+ * engine and self-contained, e.g. the SQL of generated queries is part of the segment, not a blob reference.
+ * 
+ *
+ * <p><strong>Durability:</strong> {@link #write} writes to a temporary file, forces it to disk, moves it into
+ * place atomically and marks it read-only, so a segment is either complete or absent.
+ *
+ * <p><strong>Threading:</strong> Segments are immutable; reading is thread-safe.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class ColdSegment {
+    private static final Logger log = LoggerFactory.getLogger(ColdSegment.class);
+    
+    /**
+     * File name suffix of cold segments.
+     */
+    public static final String SUFFIX = ".ndjson.gz";
+    
+    private final Path path;
+    private final Gson gson;
+    private final String description;
+    private final Instant created;
+    private final Map<String, Integer> counts;
+    
+    private ColdSegment(Path path, Gson gson, String description, Instant created, Map<String, Integer> counts) {
+        this.path = path;
+        this.gson = gson;
+        this.description = description;
+        this.created = created;
+        this.counts = counts;
+    }
+    
+    /**
+     * Writes a new segment containing the given DTOs.
+     *
+     * @param path        the segment file; must end with {@value #SUFFIX} and not exist yet
+     * @param description what was archived, shown to the user
+     * @param dtos        the DTOs to archive, written in iteration order
+     * @param gson        the Gson instance to encode DTOs with; must not pretty print
+     * @return the written segment
+     * @throws IOException if the segment cannot be written; no partial segment is left behind
+     */
+    public static ColdSegment write(Path path, String description, Collection<? extends Persistable> dtos, Gson gson) throws IOException {
+        Map<String, Integer> counts = new TreeMap<>();
+        dtos.forEach(dto -> counts.merge(dto.getClass().getSimpleName(), 1, Integer::sum));
+        Instant created = Instant.now();
+        
+        JsonObject header = new JsonObject();
+        header.addProperty("description", description);
+        header.addProperty("created", created.toEpochMilli());
+        header.add("counts", gson.toJsonTree(counts));
+        
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+                writer.write(header + "\n");
+                for (Persistable dto : dtos)
+                    writer.write("{\"type\":\"" + dto.getClass().getSimpleName() + "\",\"dto\":" + gson.toJson(dto) + "}\n");
+                writer.flush();
+                gzip.finish();
+                out.getChannel().force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        if (!path.toFile().setReadOnly())
+            log.debug("Couldn't mark cold segment {} read-only.", path.getFileName());
+        
+        return new ColdSegment(path, gson, description, created, Collections.unmodifiableMap(counts));
+    }
+    
+    /**
+     * Opens an existing segment, reading only its header.
+     *
+     * @param path the segment file
+     * @param gson the Gson instance to decode DTOs with
+     * @return the opened segment
+     * @throws IOException if the file cannot be read or has no valid header
+     */
+    public static ColdSegment open(Path path, Gson gson) throws IOException {
+        try (BufferedReader reader = newReader(path)) {
+            String line = reader.readLine();
+            if (line == null)
+                throw new IOException("Cold segment " + path.getFileName() + " is empty.");
+            
+            JsonObject header = JsonParser.parseString(line).getAsJsonObject();
+            Map<String, Integer> counts = new TreeMap<>();
+            header.getAsJsonObject("counts").entrySet().forEach(e -> counts.put(e.getKey(), e.getValue().getAsInt()));
+            return new ColdSegment(path, gson, header.get("description").getAsString(),
+                    Instant.ofEpochMilli(header.get("created").getAsLong()), Collections.unmodifiableMap(counts));
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            throw new IOException("Cold segment " + path.getFileName() + " has no valid header.", e);
+        }
+    }
+    
+    /**
+     * Streams all archived DTOs of a class in the order they were written, without loading the segment into memory.
+     * <p>
+     * Lines that cannot be parsed are skipped with a logged warning.
+     * 
+     *
+     * @param <T>    the type of the DTOs
+     * @param clazz  the class of the DTOs to read; DTOs of other classes are skipped
+     * @param action receives each archived DTO of {@code clazz}
+     * @throws IOException if the segment cannot be read
+     */
+    public <T extends Persistable> void forEach(Class<T> clazz, Consumer<? super T> action) throws IOException {
+        if (count(clazz) == 0)
+            return;
+        
+        try (BufferedReader reader = newReader(path)) {
+            reader.readLine(); // Header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    JsonObject envelope = JsonParser.parseString(line).getAsJsonObject();
+                    if (clazz.getSimpleName().equals(envelope.get("type").getAsString()))
+                        action.accept(gson.fromJson(envelope.get("dto"), clazz));
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    log.warn("Skipping unreadable entry in cold segment {}.", path.getFileName(), e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the name of the segment, i.e. its file name without {@value #SUFFIX}.
+     *
+     * @return the name of the segment
+     */
+    public String getName() {
+        String fileName = path.getFileName().toString();
+        return fileName.endsWith(SUFFIX) ? fileName.substring(0, fileName.length() - SUFFIX.length()) : fileName;
+    }
+    
+    /**
+     * Returns what was archived, as given on {@link #write}.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * Returns when the segment was written.
+     *
+     * @return the creation time
+     */
+    public Instant getCreated() {
+        return created;
+    }
+    
+    /**
+     * Returns the number of archived DTOs of a class.
+     *
+     * @param clazz the DTO class
+     * @return the number of DTOs; {@code 0} if none are archived
+     */
+    public int count(Class<? extends Persistable> clazz) {
+        return counts.getOrDefault(clazz.getSimpleName(), 0);
+    }
+    
+    /**
+     * Returns the size of the segment file.
+     *
+     * @return the compressed size in bytes
+     * @throws IOException if the file cannot be accessed
+     */
+    public long getFileSize() throws IOException {
+        return Files.size(path);
+    }
+    
+    /**
+     * Deletes the segment, e.g. after its DTOs were restored.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    public void delete() throws IOException {
+        // Read-only files can't be deleted on Windows
+        path.toFile().setWritable(true);
+        Files.deleteIfExists(path);
+    }
+    
+    private static BufferedReader newReader(Path path) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path), 64 * 1024), StandardCharsets.UTF_8));
+    }
+}
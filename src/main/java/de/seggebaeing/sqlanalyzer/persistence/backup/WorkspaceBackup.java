@@ -0,0 +1,239 @@
+package de.seggebaeing.sqlanalyzer.persistence.backup;
+
+import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.*;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngine;
+import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Online backup of the whole workspace into a single zip archive, taken while the application keeps writing,
+ * e.g. during a long generation run.
+ * <p>
+ * A backup first flushes the saves queued by write-behind for the workspace and then captures a point-in-time consistent state
+ * of all stored objects via {@link PersistenceHelper#freeze}. Depending on the storage engine, this hard links
+ * the immutable journal segments or record files, or uses the database's own online backup, so writes are
+ * blocked for milliseconds at most. The captured files are then written to the archive in the background.
+ * 
+ *
+ * <p><strong>Archive:</strong> The entries are named by their path relative to the saves directory, so
+ * extracting the archive into an empty saves directory restores the workspace, including its blobs and the
+ * cold segments of archived runs. Derived data like snapshots and score columns is not included and rebuilt
+ * on first use.
+ *
+ * <p><strong>I/O priority:</strong> Java offers no way to lower the I/O priority of a thread, so the archive is
+ * written by a minimum priority daemon thread, compressed with the fastest level and throttled to a maximum
+ * throughput (by default {@value #DEFAULT_BYTES_PER_SECOND} bytes per second), leaving the disk to the
+ * application.
+ *
+ * <p><strong>Threading:</strong> Only one backup runs at a time per process.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class WorkspaceBackup {
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceBackup.class);
+    
+    /**
+     * Default maximum number of bytes read from the captured files per second.
+     */
+    public static final long DEFAULT_BYTES_PER_SECOND = 16L * 1024 * 1024;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * All backed up DTO classes.
+     */
+    private static final List<Class<? extends Persistable>> CLASSES = List.of(LLMDTO.class, PromptTypeDTO.class,
+            SampleQueryDTO.class, PromptDTO.class, GeneratedQueryDTO.class, EvaluationResultDTO.class);
+    
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+    
+    private WorkspaceBackup() {
+    }
+    
+    /**
+     * Starts a backup into the given archive with the default throughput, see {@link #start(Path, long)}.
+     *
+     * @param archive the zip file to write; replaced if it exists
+     * @return completes with {@code archive} once the backup is written, or exceptionally if it failed
+     */
+    public static CompletableFuture<Path> start(Path archive) {
+        return start(archive, DEFAULT_BYTES_PER_SECOND);
+    }
+    
+    /**
+     * Starts a backup of the current workspace into the given archive on a background thread.
+     * <p>
+     * The workspace is fixed when the backup starts, even if another one is activated meanwhile. The archive
+     * is written to a temporary file next to it and only moved into place when complete, so an existing archive
+     * is never replaced by a partial one.
+     * 
+     *
+     * @param archive        the zip file to write; replaced if it exists
+     * @param bytesPerSecond the maximum number of bytes to read per second; {@code 0} or less for no limit
+     * @return completes with {@code archive} once the backup is written, or exceptionally if it failed
+     * @throws IllegalStateException if another backup is still running
+     */
+    public static CompletableFuture<Path> start(Path archive, long bytesPerSecond) {
+        if (!running.compareAndSet(false, true))
+            throw new IllegalStateException("Another backup is still running.");
+        
+        Workspace workspace = Workspace.current();
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> workspace.runIn(() -> {
+            try {
+                backup(workspace, archive, bytesPerSecond);
+                future.complete(archive);
+            } catch (Exception e) {
+                log.error("Backup to {} failed.", archive.toAbsolutePath(), e);
+                future.completeExceptionally(e);
+            } finally {
+                running.set(false);
+            }
+        }), "workspace-backup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return future;
+    }
+    
+    /**
+     * Returns whether a backup is currently running.
+     *
+     * @return {@code true} if a backup was started and hasn't finished yet
+     */
+    public static boolean isRunning() {
+        return running.get();
+    }
+    
+    /**
+     * Captures the workspace and writes the archive, deleting the staging directory afterwards.
+     * Runs with {@code workspace} current.
+     */
+    private static void backup(Workspace workspace, Path archive, long bytesPerSecond) throws IOException, PersistenceException {
+        long start = System.currentTimeMillis();
+        DTODAO.flushAll(workspace);
+        
+        Path staging = PersistenceHelper.createStagingDirectory();
+        try {
+            deleteLeftoverStagingDirectories(staging);
+            List<StorageEngine.FrozenFile> files = PersistenceHelper.freeze(CLASSES, staging);
+            log.info("Captured {} files for backup in {} ms.", files.size(), System.currentTimeMillis() - start);
+            
+            Path parent = archive.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+            try {
+                long bytes = writeArchive(files, tmp, bytesPerSecond);
+                try {
+                    Files.move(tmp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING);
+                }
+                log.info("Backed up {} files ({} bytes) to {} in {} ms.", files.size(), bytes, archive.toAbsolutePath(), System.currentTimeMillis() - start);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } finally {
+            deleteRecursively(staging);
+        }
+    }
+    
+    /**
+     * Writes the captured files into a new zip archive, reading at most {@code bytesPerSecond}.
+     *
+     * @return the number of bytes read from the captured files
+     */
+    private static long writeArchive(List<StorageEngine.FrozenFile> files, Path archive, long bytesPerSecond) throws IOException {
+        long start = System.nanoTime();
+        long total = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        
+        try (OutputStream out = Files.newOutputStream(archive);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.setLevel(Deflater.BEST_SPEED);
+            for (StorageEngine.FrozenFile file : files) {
+                zip.putNextEntry(new ZipEntry(file.name()));
+                try (InputStream in = Files.newInputStream(file.path())) {
+                    long remaining = file.length();
+                    while (remaining > 0) {
+                        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0)
+                            throw new IOException("Captured file " + file.name() + " ended early.");
+                        zip.write(buffer, 0, read);
+                        remaining -= read;
+                        total += read;
+                        throttle(start, total, bytesPerSecond);
+                    }
+                }
+                zip.closeEntry();
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Sleeps until reading {@code total} bytes since {@code start} doesn't exceed {@code bytesPerSecond}.
+     */
+    private static void throttle(long start, long total, long bytesPerSecond) throws IOException {
+        if (bytesPerSecond <= 0)
+            return;
+        
+        long aheadNanos = total * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - start);
+        if (aheadNanos <= 0)
+            return;
+        try {
+            Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Backup interrupted.", e);
+        }
+    }
+    
+    /**
+     * Deletes the staging directories of earlier backups that were interrupted, e.g. by a crash.
+     */
+    private static void deleteLeftoverStagingDirectories(Path staging) throws IOException {
+        try (Stream<Path> siblings = Files.list(staging.getParent())) {
+            for (Path sibling : siblings.filter(p -> !p.equals(staging)).toList()) {
+                log.info("Deleting leftover backup staging directory {}.", sibling.getFileName());
+                deleteRecursively(sibling);
+            }
+        }
+    }
+    
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (Files.notExists(dir))
+            return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
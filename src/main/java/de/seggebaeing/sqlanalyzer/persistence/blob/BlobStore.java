@@ -0,0 +1,224 @@
+package de.seggebaeing.sqlanalyzer.persistence.blob;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of texts, keeping every distinct text once no matter how many objects refer to it.
+ * <p>
+ * A text is addressed by the hex SHA-256 hash of its UTF-8 bytes (see {@link #hashOf(String)}) and stored in
+ * <code>&lt;dir&gt;/&lt;first two hash digits&gt;/&lt;hash&gt;</code>. Blobs are immutable: storing a hash that
+ * already exists does nothing, and new blobs are written to a temporary file and moved into place atomically,
+ * so readers never see a partial blob. Blobs are never deleted, as other objects may still refer to them.
+ * 
+ *
+ * <p><strong>Durability:</strong> New blobs are written without syncing. {@link #sync()} forces all blobs written
+ * since the last sync to disk at once; call it before committing records that refer to them, so a batch costs
+ * one sync per new blob file and directory instead of one forced write per blob within the batch. In a store
+ * shared with other processes, a blob found already stored may have been written by another process that hasn't
+ * synced it yet, so such blobs are synced as well.
+ *
+ * <p><strong>Memory:</strong> Recently stored or read blobs are cached by hash, up to {@value #CACHE_SIZE} of them,
+ * so objects referring to the same blob share one {@code String} while it is cached. Texts are not interned, as
+ * they are mostly unique and may be large.
+ *
+ * <p><strong>Threading:</strong> This class is thread-safe, also across processes sharing the directory.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+    
+    /**
+     * Maximum number of texts kept in the read cache.
+     */
+    public static final int CACHE_SIZE = 4096;
+    
+    private static final HexFormat HEX = HexFormat.of();
+    
+    private final Path dir;
+    private final boolean shared;
+    
+    /**
+     * Blobs written but not yet forced to disk by {@link #sync()}.
+     */
+    private final Set<Path> unsynced = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Recently stored or read texts by hash; also spares repeated writes of the same text a file system check.
+     */
+    private final Map<String, String> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+    
+    /**
+     * Creates a store keeping its blobs in the given directory.
+     *
+     * @param dir    the blob directory; created on first write
+     * @param shared {@code true} if other processes write to the directory as well
+     */
+    public BlobStore(Path dir, boolean shared) {
+        this.dir = dir;
+        this.shared = shared;
+    }
+    
+    /**
+     * Returns the address of a text: the lowercase hex SHA-256 hash of its UTF-8 bytes.
+     *
+     * @param text the text to hash
+     * @return the 64 character hash
+     */
+    public static String hashOf(String text) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+    
+    /**
+     * Stores a text under its hash unless it is already stored.
+     * <p>
+     * A new blob is not durable until the next {@link #sync()}.
+     * 
+     *
+     * @param hash the hash of {@code text}, as returned by {@link #hashOf(String)}
+     * @param text the text to store
+     * @throws IOException if the blob cannot be written
+     */
+    public void put(String hash, String text) throws IOException {
+        if (cache.containsKey(hash))
+            return;
+        
+        Path path = pathOf(hash);
+        if (path == null)
+            throw new IllegalArgumentException("Not a blob hash: " + hash);
+        if (Files.notExists(path)) {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), hash, ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                }
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            unsynced.add(path);
+            log.trace("Stored blob {}.", hash);
+        } else if (shared) {
+            unsynced.add(path);
+        }
+        cache.put(hash, text);
+    }
+    
+    /**
+     * Forces all blobs written since the last sync, and their directory entries, to disk.
+     * <p>
+     * Blobs written by other threads meanwhile are synced by their next call; a blob is only considered synced
+     * once it was forced, so a concurrent call never returns before the blobs it saw are durable.
+     * 
+     *
+     * @throws IOException if a blob cannot be synced; it stays pending for the next call
+     */
+    public void sync() throws IOException {
+        if (unsynced.isEmpty())
+            return;
+        
+        Set<Path> batch = new HashSet<>(unsynced);
+        Set<Path> dirs = new HashSet<>();
+        for (Path path : batch) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+            dirs.add(path.getParent());
+        }
+        dirs.forEach(BlobStore::syncDirectory);
+        unsynced.removeAll(batch);
+        log.trace("Synced {} blobs.", batch.size());
+    }
+    
+    /**
+     * Reads the text stored under a hash.
+     *
+     * @param hash the hash of the text
+     * @return the text, or {@code null} if no blob is stored under {@code hash} or it is no valid hash
+     * @throws IOException if the blob exists but cannot be read
+     */
+    public String get(String hash) throws IOException {
+        String text = cache.get(hash);
+        if (text != null)
+            return text;
+        
+        Path path = pathOf(hash);
+        if (path == null)
+            return null;
+        try {
+            text = Files.readString(path, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        cache.put(hash, text);
+        return text;
+    }
+    
+    /**
+     * Lists the files of all stored blobs, e.g. to back them up. Blobs being written are not listed.
+     *
+     * @return the blob files; empty if nothing was stored yet
+     * @throws IOException if the directory cannot be listed
+     */
+    public List<Path> files() throws IOException {
+        if (Files.notExists(dir))
+            return List.of();
+        try (Stream<Path> stream = Files.walk(dir, 2)) {
+            return stream.filter(Files::isRegularFile)
+                    .filter(p -> pathOf(p.getFileName().toString()) != null)
+                    .toList();
+        }
+    }
+    
+    /**
+     * Forces the directory entries of a blob directory to disk; skipped where directories cannot be opened
+     * as a channel (e.g. Windows), as the file system commits metadata on its own there.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Directory sync of {} not supported, skipping.", dir, e);
+        }
+    }
+    
+    /**
+     * Returns the file of a blob, or {@code null} if {@code hash} is no hex hash and must not become part of a path.
+     */
+    private Path pathOf(String hash) {
+        if (hash.length() < 3 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0))
+            return null;
+        return dir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -0,0 +1,240 @@
+package de.seggebaeing.sqlanalyzer.persistence.checkpoint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Durable append-only log of DTOs, used to checkpoint results of long-running work as they arrive.
+ * <p>
+ * Every DTO is stored as one line of compact JSON (NDJSON) and forced to disk before {@link #append}
+ * returns, so a crash loses at most the DTO being written. A torn last line left by a crash is cut off
+ * when the log is reopened. The log is not part of the stored objects; its DTOs are only promoted into
+ * the storage engine by whoever reads it back with {@link #forEach}.
+ * 
+ *
+ * <p><strong>Ownership:</strong> An open log holds an exclusive lock on its file, so a log is never written
+ * or promoted by two owners, in this or another process. {@link #tryOpen} reports a locked log as {@code null}.
+ *
+ * @param <T> the type of the logged DTOs
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class CheckpointLog<T extends Persistable> implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CheckpointLog.class);
+    
+    /**
+     * File name suffix of checkpoint logs.
+     */
+    public static final String SUFFIX = ".ndjson";
+    
+    private final Path path;
+    private final Class<T> clazz;
+    private final Gson gson;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private int size;
+    
+    private CheckpointLog(Path path, Class<T> clazz, Gson gson, FileChannel channel, FileLock lock) {
+        this.path = path;
+        this.clazz = clazz;
+        this.gson = gson;
+        this.channel = channel;
+        this.lock = lock;
+    }
+    
+    /**
+     * Opens or creates the log at the given path and takes ownership of it.
+     * <p>
+     * Existing entries are counted and a torn last line is truncated, so appending continues cleanly.
+     * 
+     *
+     * @param <T>   the type of the logged DTOs
+     * @param path  the log file; its directory is created if missing
+     * @param clazz the class of the logged DTOs
+     * @param gson  the Gson instance to encode and decode DTOs with; must not pretty print
+     * @return the opened log, or {@code null} if the log is owned by someone else
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static <T extends Persistable> CheckpointLog<T> tryOpen(Path path, Class<T> clazz, Gson gson) throws IOException {
+        Files.createDirectories(path.getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            
+            CheckpointLog<T> checkpoint = new CheckpointLog<>(path, clazz, gson, channel, lock);
+            checkpoint.recover();
+            return checkpoint;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Appends a DTO and forces it to disk.
+     *
+     * @param dto the DTO to append
+     * @throws IOException if writing or syncing fails; the DTO may then be missing from the log
+     */
+    public synchronized void append(T dto) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((gson.toJson(dto) + '\n').getBytes(StandardCharsets.UTF_8));
+        long position = channel.size();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        channel.force(false);
+        size++;
+    }
+    
+    /**
+     * Streams all logged DTOs in the order they were appended, without loading the whole log into memory.
+     * <p>
+     * Lines that cannot be parsed are skipped with a logged warning.
+     * 
+     *
+     * @param action receives each logged DTO
+     * @throws IOException if the log cannot be read
+     */
+    public synchronized void forEach(Consumer<? super T> action) throws IOException {
+        // The reader is not closed, as that would close the channel and release the lock
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel.position(0)), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank())
+                continue;
+            try {
+                action.accept(gson.fromJson(line, clazz));
+            } catch (JsonSyntaxException e) {
+                log.warn("Skipping unreadable entry in checkpoint {}.", path.getFileName(), e);
+            }
+        }
+    }
+    
+    /**
+     * Returns the highest id of the DTOs in a log without taking ownership of it, e.g. to avoid handing out
+     * the ids of DTOs not yet promoted.
+     * <p>
+     * Lines that cannot be parsed, e.g. a torn last line, are skipped.
+     * 
+     *
+     * @param path  the log file
+     * @param clazz the class of the logged DTOs
+     * @param gson  the Gson instance the log was written with
+     * @return the highest id, or {@code 0} if the log is empty
+     * @throws IOException if the log cannot be read, e.g. because another process owns it on a platform
+     *                     with mandatory file locks
+     */
+    public static int maxId(Path path, Class<? extends Persistable> clazz, Gson gson) throws IOException {
+        int max = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    max = Math.max(max, gson.fromJson(line, clazz).id());
+                } catch (JsonSyntaxException e) {
+                    log.debug("Skipping unreadable entry in checkpoint {}.", path.getFileName(), e);
+                }
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * Returns the number of DTOs in the log.
+     *
+     * @return the number of logged DTOs
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the name of the log, i.e. its file name without {@value #SUFFIX}.
+     *
+     * @return the name of the log
+     */
+    public String getName() {
+        String fileName = path.getFileName().toString();
+        return fileName.endsWith(SUFFIX) ? fileName.substring(0, fileName.length() - SUFFIX.length()) : fileName;
+    }
+    
+    /**
+     * Releases the log, keeping its file for a later {@link #tryOpen}.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen())
+            return;
+        
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Releases the log and deletes its file, e.g. after its DTOs were promoted.
+     *
+     * @throws IOException if the file cannot be closed or deleted
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+    
+    /**
+     * Counts the complete lines and truncates a torn last line left by a crash during {@link #append}.
+     */
+    private void recover() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = 0, end = 0;
+        int lines = 0;
+        while (channel.read(buffer.clear(), position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position++;
+                if (buffer.get() == '\n') {
+                    end = position;
+                    lines++;
+                }
+            }
+        }
+        
+        if (end < channel.size()) {
+            log.warn("Truncating torn entry at the end of checkpoint {}.", path.getFileName());
+            channel.truncate(end);
+            channel.force(false);
+        }
+        size = lines;
+    }
+}
@@ -0,0 +1,126 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+
+import java.io.IOException;
+
+/**
+ * Base class for hand-written Gson {@link TypeAdapter}s of DTO records.
+ * <p>
+ * Subclasses stream the JSON object field by field and call the canonical record constructor
+ * directly, avoiding Gson's reflective record support. Missing or {@code null} {@code String}
+ * components are read as {@code ""} and missing numeric components as {@code 0}, matching the
+ * normalization previously applied by {@link de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper}.
+ * Unknown fields are skipped.
+ * 
+ *
+ * @param <T> the DTO type handled by this codec
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+abstract class DTOCodec<T extends Persistable> extends TypeAdapter<T> {
+    
+    @Override
+    public final void write(JsonWriter out, T dto) throws IOException {
+        if (dto == null) {
+            out.nullValue();
+            return;
+        }
+        
+        out.beginObject();
+        writeFields(out, dto);
+        out.endObject();
+    }
+    
+    @Override
+    public final T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        
+        in.beginObject();
+        T dto = readFields(in);
+        in.endObject();
+        return dto;
+    }
+    
+    /**
+     * Writes all record components as name/value pairs into the already opened object.
+     *
+     * @param out the writer positioned inside the object
+     * @param dto the record to write, never {@code null}
+     * @throws IOException if writing fails
+     */
+    abstract void writeFields(JsonWriter out, T dto) throws IOException;
+    
+    /**
+     * Reads all name/value pairs of the already opened object and creates the record.
+     *
+     * @param in the reader positioned inside the object
+     * @return the decoded record
+     * @throws IOException if reading fails
+     */
+    abstract T readFields(JsonReader in) throws IOException;
+    
+    /**
+     * Reads a string value, mapping {@code null} to {@code ""}.
+     */
+    static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return "";
+        }
+        return in.nextString();
+    }
+    
+    /**
+     * Reads an int value, mapping {@code null} to {@code 0}.
+     */
+    static int nextInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+    
+    /**
+     * Reads a long value, mapping {@code null} to {@code 0}.
+     */
+    static long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+    
+    /**
+     * Reads a double value, mapping {@code null} to {@code 0}.
+     */
+    static double nextDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+}
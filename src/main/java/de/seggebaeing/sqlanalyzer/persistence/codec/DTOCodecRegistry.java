@@ -0,0 +1,52 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.*;
+
+import java.util.Map;
+
+/**
+ * Registry of the streaming {@link TypeAdapter}s for all DTO records.
+ * <p>
+ * Registering the codecs on a {@link GsonBuilder} replaces Gson's reflective record handling with
+ * single-pass, hand-written adapters. Any DTO added later must get a codec here as well, otherwise it
+ * falls back to reflection and the normalization in {@link de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class DTOCodecRegistry {
+    private static final Map<Class<? extends Persistable>, TypeAdapter<?>> CODECS = Map.of(
+            EvaluationResultDTO.class, new EvaluationResultCodec(),
+            GeneratedQueryDTO.class, new GeneratedQueryCodec(),
+            LLMDTO.class, new LLMCodec(),
+            PromptDTO.class, new PromptCodec(),
+            PromptTypeDTO.class, new PromptTypeCodec(),
+            SampleQueryDTO.class, new SampleQueryCodec()
+    );
+    
+    private DTOCodecRegistry() {
+    }
+    
+    /**
+     * Registers all DTO codecs on the given builder.
+     *
+     * @param builder the builder to register the codecs on
+     * @return the same builder, for chaining
+     */
+    public static GsonBuilder registerAll(GsonBuilder builder) {
+        CODECS.forEach(builder::registerTypeAdapter);
+        return builder;
+    }
+    
+    /**
+     * Returns whether a codec is registered for the given class.
+     *
+     * @param clazz the class to check
+     * @return {@code true} if the class is decoded by a codec of this registry
+     */
+    public static boolean isRegistered(Class<?> clazz) {
+        return CODECS.containsKey(clazz);
+    }
+}
@@ -0,0 +1,56 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO;
+
+import java.io.IOException;
+
+/**
+ * Streaming codec for {@link EvaluationResultDTO}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class EvaluationResultCodec extends DTOCodec<EvaluationResultDTO> {
+    
+    @Override
+    void writeFields(JsonWriter out, EvaluationResultDTO dto) throws IOException {
+        out.name("id").value(dto.id());
+        out.name("version").value(dto.version());
+        out.name("generatedQueryId").value(dto.generatedQueryId());
+        out.name("comparatorType").value(dto.comparatorType());
+        out.name("judgeId").value(dto.judgeId());
+        out.name("temperature").value(dto.temperature());
+        out.name("score").value(dto.score());
+        out.name("timestamp").value(dto.timestamp());
+    }
+    
+    @Override
+    EvaluationResultDTO readFields(JsonReader in) throws IOException {
+        int id = 0;
+        long version = 0;
+        int generatedQueryId = 0;
+        String comparatorType = "";
+        int judgeId = 0;
+        double temperature = 0;
+        double score = 0;
+        long timestamp = 0;
+        
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextInt(in);
+                case "version" -> version = nextLong(in);
+                case "generatedQueryId" -> generatedQueryId = nextInt(in);
+                case "comparatorType" -> comparatorType = nextString(in);
+                case "judgeId" -> judgeId = nextInt(in);
+                case "temperature" -> temperature = nextDouble(in);
+                case "score" -> score = nextDouble(in);
+                case "timestamp" -> timestamp = nextLong(in);
+                default -> in.skipValue();
+            }
+        }
+        
+        return new EvaluationResultDTO(id, version, generatedQueryId, comparatorType, judgeId, temperature, score, timestamp);
+    }
+}
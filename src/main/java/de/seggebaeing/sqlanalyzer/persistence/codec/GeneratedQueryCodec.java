@@ -0,0 +1,51 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+
+import java.io.IOException;
+
+/**
+ * Streaming codec for {@link GeneratedQueryDTO}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class GeneratedQueryCodec extends DTOCodec<GeneratedQueryDTO> {
+    
+    @Override
+    void writeFields(JsonWriter out, GeneratedQueryDTO dto) throws IOException {
+        out.name("id").value(dto.id());
+        out.name("version").value(dto.version());
+        out.name("sql").value(dto.sql());
+        out.name("sqlHash").value(dto.sqlHash());
+        out.name("generatorId").value(dto.generatorId());
+        out.name("promptId").value(dto.promptId());
+    }
+    
+    @Override
+    GeneratedQueryDTO readFields(JsonReader in) throws IOException {
+        int id = 0;
+        long version = 0;
+        String sql = "";
+        String sqlHash = "";
+        int generatorId = 0;
+        int promptId = 0;
+        
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextInt(in);
+                case "version" -> version = nextLong(in);
+                case "sql" -> sql = nextString(in);
+                case "sqlHash" -> sqlHash = nextString(in);
+                case "generatorId" -> generatorId = nextInt(in);
+                case "promptId" -> promptId = nextInt(in);
+                default -> in.skipValue();
+            }
+        }
+        
+        // An inline SQL is hashed again rather than trusting the stored hash, which only addresses detached SQL
+        return new GeneratedQueryDTO(id, version, sql, sql.isEmpty() ? sqlHash : "", generatorId, promptId);
+    }
+}
@@ -0,0 +1,56 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO;
+
+import java.io.IOException;
+
+/**
+ * Streaming codec for {@link LLMDTO}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class LLMCodec extends DTOCodec<LLMDTO> {
+    
+    @Override
+    void writeFields(JsonWriter out, LLMDTO dto) throws IOException {
+        out.name("id").value(dto.id());
+        out.name("version").value(dto.version());
+        out.name("name").value(dto.name());
+        out.name("api").value(dto.api());
+        out.name("model").value(dto.model());
+        out.name("apiKey").value(dto.apiKey());
+        out.name("minTemperature").value(dto.minTemperature());
+        out.name("maxTemperature").value(dto.maxTemperature());
+    }
+    
+    @Override
+    LLMDTO readFields(JsonReader in) throws IOException {
+        int id = 0;
+        long version = 0;
+        String name = "";
+        String api = "";
+        String model = "";
+        String apiKey = "";
+        double minTemperature = 0;
+        double maxTemperature = 0;
+        
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextInt(in);
+                case "version" -> version = nextLong(in);
+                case "name" -> name = nextString(in);
+                case "api" -> api = nextString(in);
+                case "model" -> model = nextString(in);
+                case "apiKey" -> apiKey = nextString(in);
+                case "minTemperature" -> minTemperature = nextDouble(in);
+                case "maxTemperature" -> maxTemperature = nextDouble(in);
+                default -> in.skipValue();
+            }
+        }
+        
+        return new LLMDTO(id, version, name, api, model, apiKey, minTemperature, maxTemperature);
+    }
+}
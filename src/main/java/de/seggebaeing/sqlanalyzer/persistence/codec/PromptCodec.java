@@ -0,0 +1,47 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO;
+
+import java.io.IOException;
+
+/**
+ * Streaming codec for {@link PromptDTO}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class PromptCodec extends DTOCodec<PromptDTO> {
+    
+    @Override
+    void writeFields(JsonWriter out, PromptDTO dto) throws IOException {
+        out.name("id").value(dto.id());
+        out.name("version").value(dto.version());
+        out.name("text").value(dto.text());
+        out.name("sampleQueryId").value(dto.sampleQueryId());
+        out.name("typeId").value(dto.typeId());
+    }
+    
+    @Override
+    PromptDTO readFields(JsonReader in) throws IOException {
+        int id = 0;
+        long version = 0;
+        String text = "";
+        int sampleQueryId = 0;
+        int typeId = 0;
+        
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextInt(in);
+                case "version" -> version = nextLong(in);
+                case "text" -> text = nextString(in);
+                case "sampleQueryId" -> sampleQueryId = nextInt(in);
+                case "typeId" -> typeId = nextInt(in);
+                default -> in.skipValue();
+            }
+        }
+        
+        return new PromptDTO(id, version, text, sampleQueryId, typeId);
+    }
+}
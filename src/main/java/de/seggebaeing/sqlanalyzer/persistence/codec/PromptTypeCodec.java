@@ -0,0 +1,44 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO;
+
+import java.io.IOException;
+
+/**
+ * Streaming codec for {@link PromptTypeDTO}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class PromptTypeCodec extends DTOCodec<PromptTypeDTO> {
+    
+    @Override
+    void writeFields(JsonWriter out, PromptTypeDTO dto) throws IOException {
+        out.name("id").value(dto.id());
+        out.name("version").value(dto.version());
+        out.name("name").value(dto.name());
+        out.name("description").value(dto.description());
+    }
+    
+    @Override
+    PromptTypeDTO readFields(JsonReader in) throws IOException {
+        int id = 0;
+        long version = 0;
+        String name = "";
+        String description = "";
+        
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextInt(in);
+                case "version" -> version = nextLong(in);
+                case "name" -> name = nextString(in);
+                case "description" -> description = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        
+        return new PromptTypeDTO(id, version, name, description);
+    }
+}
@@ -0,0 +1,53 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO;
+
+import java.io.IOException;
+
+/**
+ * Streaming codec for {@link SampleQueryDTO}.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class SampleQueryCodec extends DTOCodec<SampleQueryDTO> {
+    
+    @Override
+    void writeFields(JsonWriter out, SampleQueryDTO dto) throws IOException {
+        out.name("id").value(dto.id());
+        out.name("version").value(dto.version());
+        out.name("name").value(dto.name());
+        out.name("description").value(dto.description());
+        out.name("sql").value(dto.sql());
+        out.name("promptContext").value(dto.promptContext());
+        out.name("complexity").value(dto.complexity());
+    }
+    
+    @Override
+    SampleQueryDTO readFields(JsonReader in) throws IOException {
+        int id = 0;
+        long version = 0;
+        String name = "";
+        String description = "";
+        String sql = "";
+        String promptContext = "";
+        String complexity = "";
+        
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextInt(in);
+                case "version" -> version = nextLong(in);
+                case "name" -> name = nextString(in);
+                case "description" -> description = nextString(in);
+                case "sql" -> sql = nextString(in);
+                case "promptContext" -> promptContext = nextString(in);
+                case "complexity" -> complexity = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        
+        return new SampleQueryDTO(id, version, name, description, sql, promptContext, complexity);
+    }
+}
@@ -0,0 +1,135 @@
+package de.seggebaeing.sqlanalyzer.persistence.codec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * On-disk formats of serialized DTOs, selectable by name (e.g. from the configuration).
+ * <p>
+ * The format only decides how records are written. {@link #decode(byte[])} detects the format of every
+ * record on its own, so records of all formats can coexist in one workspace, e.g. while it is gradually
+ * rewritten after switching formats. Deflated records are recognized by their zlib header (RFC 1950),
+ * whose first byte {@code 'x'} never starts a JSON document.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public enum StorageFormat {
+    /**
+     * Pretty printed JSON, the original format.
+     */
+    PRETTY,
+    /**
+     * JSON without insignificant whitespace.
+     */
+    COMPACT,
+    /**
+     * Compact JSON compressed with {@link Deflater} in zlib format.
+     */
+    DEFLATE;
+    
+    private static final Logger log = LoggerFactory.getLogger(StorageFormat.class);
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    /**
+     * Returns whether the JSON handed to {@link #encode(String)} should be pretty printed.
+     *
+     * @return {@code true} only for {@link #PRETTY}
+     */
+    public boolean isPrettyPrinted() {
+        return this == PRETTY;
+    }
+    
+    /**
+     * Encodes serialized JSON into the stored payload of this format.
+     *
+     * @param json the serialized DTO
+     * @return the payload to store
+     */
+    public byte[] encode(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return this == DEFLATE ? deflate(bytes) : bytes;
+    }
+    
+    /**
+     * Decodes a stored payload of any format back into UTF-8 JSON.
+     *
+     * @param payload the stored payload
+     * @return the JSON bytes; {@code payload} itself if it is not deflated
+     * @throws ZipException if the payload has a zlib header but cannot be inflated
+     */
+    public static byte[] decode(byte[] payload) throws ZipException {
+        return isDeflated(payload) ? inflate(payload) : payload;
+    }
+    
+    /**
+     * Resolves a format by name, ignoring case and surrounding whitespace.
+     * <p>
+     * A missing name falls back to {@link #PRETTY}; unknown names do too, with a logged warning.
+     * 
+     *
+     * @param name the name of the format, may be {@code null}
+     * @return the matching format, or {@link #PRETTY} if none matches
+     */
+    public static StorageFormat fromName(String name) {
+        if (name == null || name.isBlank())
+            return PRETTY;
+        
+        for (StorageFormat format : values())
+            if (format.name().equalsIgnoreCase(name.trim()))
+                return format;
+        
+        log.warn("Unknown storage format '{}', falling back to {}.", name, PRETTY);
+        return PRETTY;
+    }
+    
+    /**
+     * Checks for a zlib header: compression method 8 (deflate) with a 32K window and a valid header checksum.
+     */
+    private static boolean isDeflated(byte[] payload) {
+        return payload.length >= 2 && payload[0] == 0x78 && (((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF)) % 31 == 0;
+    }
+    
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] inflate(byte[] payload) throws ZipException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new ZipException("Deflated record is truncated.");
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new ZipException("Deflated record is corrupt: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package de.seggebaeing.sqlanalyzer.persistence.column;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Append-only columnar store of evaluation scores for fast aggregate scans, backed by memory-mapped files.
+ * <p>
+ * Every row describes one score by the ids it belongs to. Each column lives in its own file under the store's
+ * directory: {@code int} columns for every {@link Dimension} but {@link Dimension#COMPLEXITY}, a {@code byte}
+ * column for the complexity and a {@code float} column for the score. Columns are mapped into memory and grown
+ * by remapping, so scans run over plain memory without deserializing anything. The number of valid rows is kept
+ * in a separate {@code rows} file that is only advanced after a row is complete, so a crash loses at most the row
+ * being appended.
+ * 
+ *
+ * <p><strong>Aggregation:</strong> {@link #aggregate(Set)} groups all rows by any combination of dimensions in a
+ * single pass that allocates only per group, not per row. If the grouped values span few combinations, as for
+ * LLMs, prompt types and complexities, groups are indexed arithmetically; otherwise group keys are assigned dense
+ * codes through primitive hash tables, one lookup per dimension and row.
+ *
+ * <p><strong>Threading:</strong> All methods are synchronized. The store is a derived index that can be
+ * rebuilt from the stored evaluation results via {@link #clear()} and {@link #append}; writes are not forced
+ * to disk until {@link #close()}. An open store holds an exclusive lock on its {@code rows} file, so it is
+ * never written by two processes.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class ScoreColumns implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ScoreColumns.class);
+    
+    /**
+     * Number of rows the columns are mapped for initially.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    
+    /**
+     * Maximum number of key combinations aggregated into directly indexed arrays instead of hash tables.
+     */
+    private static final int DIRECT_CELLS = 1 << 16;
+    
+    private static final String ROWS_FILE = "rows";
+    private static final String SCORE_FILE = "score.col";
+    
+    /**
+     * The ids and attributes a score can be grouped by.
+     */
+    public enum Dimension {
+        /** Id of the evaluated generated query. */
+        GENERATED_QUERY,
+        /** Id of the judging LLM, or {@code -1} if the comparator has none. */
+        JUDGE,
+        /** Id of the LLM that generated the query. */
+        LLM,
+        /** Id of the type of the query's prompt. */
+        PROMPT_TYPE,
+        /** Id of the sample query the query was generated for. */
+        SAMPLE_QUERY,
+        /** Ordinal of the sample query's complexity, or {@code -1} if unknown. */
+        COMPLEXITY
+    }
+    
+    /**
+     * The aggregated scores of one group.
+     *
+     * @param key   the value of every grouped dimension
+     * @param count the number of scores in the group
+     * @param sum   the sum of the scores
+     * @param min   the lowest score
+     * @param max   the highest score
+     */
+    public record Group(Map<Dimension, Integer> key, long count, double sum, float min, float max) {
+        /**
+         * Returns the arithmetic mean of the scores in the group.
+         *
+         * @return the mean score
+         */
+        public double mean() {
+            return sum / count;
+        }
+    }
+    
+    private final Path dir;
+    private final FileChannel rowsChannel;
+    private final FileLock lock;
+    private final MappedByteBuffer rowsBuffer;
+    private final Map<Dimension, Column> columns = new EnumMap<>(Dimension.class);
+    private final Column scores;
+    private int rows;
+    
+    /**
+     * Opens or creates the store in the given directory.
+     *
+     * @param dir the directory holding the column files; created if missing
+     * @throws IOException if the files cannot be opened or mapped, or the store is open in another process
+     */
+    public ScoreColumns(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        rowsChannel = FileChannel.open(dir.resolve(ROWS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = rowsChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null)
+                throw new IOException("Score columns at " + dir + " are already open.");
+            this.lock = lock;
+            
+            rowsBuffer = rowsChannel.map(FileChannel.MapMode.READ_WRITE, 0, Integer.BYTES);
+            rows = Math.max(0, rowsBuffer.getInt(0));
+            
+            int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, rows)) << 1);
+            for (Dimension dimension : Dimension.values())
+                columns.put(dimension, new Column(fileName(dimension), dimension == Dimension.COMPLEXITY ? Byte.BYTES : Integer.BYTES, capacity));
+            scores = new Column(SCORE_FILE, Float.BYTES, capacity);
+        } catch (IOException | RuntimeException e) {
+            closeAll();
+            throw e;
+        }
+        log.debug("Opened score columns at {} with {} rows.", dir, rows);
+    }
+    
+    /**
+     * Appends one score.
+     *
+     * @param generatedQueryId the id of the evaluated generated query
+     * @param judgeId          the id of the judging LLM, or {@code -1}
+     * @param llmId            the id of the LLM that generated the query
+     * @param promptTypeId     the id of the prompt type
+     * @param sampleQueryId    the id of the sample query
+     * @param complexity       the ordinal of the sample query's complexity, or {@code -1}
+     * @param score            the score
+     * @throws IOException if the columns cannot be grown
+     */
+    public synchronized void append(int generatedQueryId, int judgeId, int llmId, int promptTypeId, int sampleQueryId,
+                                    byte complexity, float score) throws IOException {
+        if (rows == Integer.MAX_VALUE)
+            throw new IOException("Score columns are full.");
+        
+        columns.get(Dimension.GENERATED_QUERY).putInt(rows, generatedQueryId);
+        columns.get(Dimension.JUDGE).putInt(rows, judgeId);
+        columns.get(Dimension.LLM).putInt(rows, llmId);
+        columns.get(Dimension.PROMPT_TYPE).putInt(rows, promptTypeId);
+        columns.get(Dimension.SAMPLE_QUERY).putInt(rows, sampleQueryId);
+        columns.get(Dimension.COMPLEXITY).putByte(rows, complexity);
+        scores.putFloat(rows, score);
+        rowsBuffer.putInt(0, ++rows);
+    }
+    
+    /**
+     * Returns the number of stored scores.
+     *
+     * @return the number of rows
+     */
+    public synchronized int size() {
+        return rows;
+    }
+    
+    /**
+     * Removes all rows, keeping the mapped capacity.
+     */
+    public synchronized void clear() {
+        rows = 0;
+        rowsBuffer.putInt(0, 0);
+    }
+    
+    /**
+     * Groups all scores by the given dimensions and aggregates each group in one scan.
+     * <p>
+     * Grouping by no dimension yields a single group over all scores, unless the store is empty.
+     * Groups are returned in the order their first row was appended.
+     * 
+     *
+     * @param groupBy the dimensions to group by
+     * @return the aggregated groups; may be empty
+     */
+    public synchronized List<Group> aggregate(Set<Dimension> groupBy) {
+        EnumSet<Dimension> ordered = EnumSet.noneOf(Dimension.class);
+        ordered.addAll(groupBy);
+        Dimension[] dimensions = ordered.toArray(Dimension[]::new);
+        Column[] keys = new Column[dimensions.length];
+        DenseIndex[] levels = new DenseIndex[dimensions.length];
+        for (int d = 0; d < dimensions.length; d++) {
+            keys[d] = columns.get(dimensions[d]);
+            levels[d] = new DenseIndex();
+        }
+        
+        Accumulators acc = scanDirect(keys);
+        if (acc == null) {
+            acc = new Accumulators(16);
+            for (int row = 0; row < rows; row++) {
+                // Each level maps (code of the previous levels, value) to a dense code, so the last code identifies the group
+                int code = 0;
+                for (int d = 0; d < keys.length; d++)
+                    code = levels[d].codeOf(((long) code << 32) | (keys[d].getValue(row) & 0xFFFFFFFFL));
+                acc.add(code, row, scores.getFloat(row));
+            }
+        }
+        
+        List<Group> groups = new ArrayList<>();
+        for (int g : acc.groupsByFirstRow()) {
+            Map<Dimension, Integer> key = new EnumMap<>(Dimension.class);
+            for (int d = 0; d < dimensions.length; d++)
+                key.put(dimensions[d], keys[d].getValue(acc.firstRow[g]));
+            groups.add(new Group(Collections.unmodifiableMap(key), acc.count[g], acc.sum[g], acc.min[g], acc.max[g]));
+        }
+        return groups;
+    }
+    
+    /**
+     * Aggregates without hashing if the value ranges of the key columns span at most {@value #DIRECT_CELLS} combinations,
+     * as for the small, dense ids of LLMs, prompt types and complexities. The group is then computed arithmetically
+     * from the values' offsets within their ranges.
+     *
+     * @return the filled accumulators, or {@code null} if the ranges are too wide
+     */
+    private Accumulators scanDirect(Column[] keys) {
+        int[] mins = new int[keys.length];
+        int[] strides = new int[keys.length];
+        long cells = 1;
+        for (int d = keys.length - 1; d >= 0; d--) {
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int row = 0; row < rows; row++) {
+                int value = keys[d].getValue(row);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            mins[d] = min;
+            strides[d] = (int) cells;
+            cells *= Math.max(1, (long) max - min + 1);
+            if (cells > DIRECT_CELLS)
+                return null;
+        }
+        
+        Accumulators acc = new Accumulators((int) cells);
+        for (int row = 0; row < rows; row++) {
+            int cell = 0;
+            for (int d = 0; d < keys.length; d++)
+                cell += (keys[d].getValue(row) - mins[d]) * strides[d];
+            acc.add(cell, row, scores.getFloat(row));
+        }
+        return acc;
+    }
+    
+    /**
+     * Forces all columns to disk and releases the store.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!rowsChannel.isOpen())
+            return;
+        
+        columns.values().forEach(column -> column.buffer.force());
+        scores.buffer.force();
+        rowsBuffer.force();
+        closeAll();
+    }
+    
+    private void closeAll() throws IOException {
+        for (Column column : columns.values())
+            column.channel.close();
+        if (scores != null)
+            scores.channel.close();
+        if (lock != null && lock.isValid())
+            lock.release();
+        rowsChannel.close();
+    }
+    
+    private static String fileName(Dimension dimension) {
+        return dimension.name().toLowerCase(Locale.ROOT) + ".col";
+    }
+    
+    /**
+     * One memory-mapped column of fixed-width values, remapped with doubled capacity when full.
+     */
+    private final class Column {
+        private final FileChannel channel;
+        private final int width;
+        private MappedByteBuffer buffer;
+        
+        Column(String fileName, int width, int capacity) throws IOException {
+            this.channel = FileChannel.open(dir.resolve(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.width = width;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * width);
+        }
+        
+        int getValue(int row) {
+            return width == Byte.BYTES ? buffer.get(row) : buffer.getInt(row * Integer.BYTES);
+        }
+        
+        float getFloat(int row) {
+            return buffer.getFloat(row * Float.BYTES);
+        }
+        
+        void putInt(int row, int value) throws IOException {
+            ensureCapacity(row);
+            buffer.putInt(row * Integer.BYTES, value);
+        }
+        
+        void putByte(int row, byte value) throws IOException {
+            ensureCapacity(row);
+            buffer.put(row, value);
+        }
+        
+        void putFloat(int row, float value) throws IOException {
+            ensureCapacity(row);
+            buffer.putFloat(row * Float.BYTES, value);
+        }
+        
+        private void ensureCapacity(int row) throws IOException {
+            long needed = ((long) row + 1) * width;
+            if (needed <= buffer.capacity())
+                return;
+            
+            long capacity = Math.min((long) buffer.capacity() * 2, Integer.MAX_VALUE / width * (long) width);
+            if (capacity < needed)
+                throw new IOException("Score columns are full.");
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+    
+    /**
+     * Per-group counters of a scan, indexed by dense group code.
+     */
+    private static final class Accumulators {
+        private long[] count;
+        private double[] sum;
+        private float[] min;
+        private float[] max;
+        private int[] firstRow;
+        
+        Accumulators(int capacity) {
+            count = new long[capacity];
+            sum = new double[capacity];
+            min = new float[capacity];
+            max = new float[capacity];
+            firstRow = new int[capacity];
+        }
+        
+        void add(int group, int row, float score) {
+            if (group >= count.length) {
+                int length = Math.max(group + 1, count.length * 2);
+                count = Arrays.copyOf(count, length);
+                sum = Arrays.copyOf(sum, length);
+                min = Arrays.copyOf(min, length);
+                max = Arrays.copyOf(max, length);
+                firstRow = Arrays.copyOf(firstRow, length);
+            }
+            if (count[group] == 0) {
+                min[group] = score;
+                max[group] = score;
+                firstRow[group] = row;
+            }
+            count[group]++;
+            sum[group] += score;
+            if (score < min[group])
+                min[group] = score;
+            if (score > max[group])
+                max[group] = score;
+        }
+        
+        /**
+         * Returns the non-empty groups, ordered by their first row.
+         */
+        int[] groupsByFirstRow() {
+            return IntStream.range(0, count.length)
+                    .filter(g -> count[g] > 0)
+                    .boxed()
+                    .sorted(Comparator.comparingInt(g -> firstRow[g]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+    
+    /**
+     * Assigns dense codes {@code 0, 1, 2, ...} to {@code long} keys in order of first appearance, as a primitive
+     * open-addressing hash table.
+     */
+    private static final class DenseIndex {
+        private long[] keys = new long[64];
+        private int[] codes = new int[64]; // code + 1, 0 marks a free slot
+        private int size;
+        
+        int codeOf(long key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                int code = codes[slot];
+                if (code == 0) {
+                    keys[slot] = key;
+                    codes[slot] = ++size;
+                    if (size * 2 > keys.length)
+                        grow();
+                    return size - 1;
+                }
+                if (keys[slot] == key)
+                    return code - 1;
+            }
+        }
+        
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new long[oldKeys.length * 2];
+            codes = new int[oldCodes.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCodes[i] == 0)
+                    continue;
+                int slot = mix(oldKeys[i]) & mask;
+                while (codes[slot] != 0)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                codes[slot] = oldCodes[i];
+            }
+        }
+        
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
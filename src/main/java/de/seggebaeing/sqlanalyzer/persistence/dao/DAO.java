@@ -2,6 +2,7 @@ package de.seggebaeing.sqlanalyzer.persistence.dao;
 
 import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -49,4 +50,22 @@ public interface DAO<T extends Persistable> {
      * @param dto the entity to save or update
      */
     void saveOrUpdate(T dto);
+    
+    /**
+     * Persists or updates all given entities as one batch.
+     * <p>
+     * Behaves like calling {@link #saveOrUpdate(Persistable)} for each entity, but
+     * commits the batch to storage at once.
+     * 
+     *
+     * @param dtos the entities to save or update
+     */
+    void saveAll(Collection<T> dtos);
+    
+    /**
+     * Deletes all given entities from de.seggebaeing.sqlanalyzer.persistence as one batch.
+     *
+     * @param dtos the entities to delete
+     */
+    void deleteAll(Collection<T> dtos);
 }
@@ -0,0 +1,50 @@
+package de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl;
+
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+
+import java.util.Map;
+
+/**
+ * DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.EvaluationResultDTO}.
+ * <p>
+ * Provides CRUD operations for evaluation result DTOs by extending
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. There is one instance per workspace; use
+ * {@link #getInstance()} to obtain the instance of the current workspace. Maintains secondary indexes on the evaluated
+ * generated query ({@link #BY_GENERATED_QUERY}) and the judge ({@link #BY_JUDGE}).
+ * 
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class EvaluationResultDAOImpl extends DTODAO<EvaluationResultDTO> {
+    /**
+     * Name of the secondary index on {@link EvaluationResultDTO#generatedQueryId()}.
+     */
+    public static final String BY_GENERATED_QUERY = "generatedQueryId";
+    
+    /**
+     * Name of the secondary index on {@link EvaluationResultDTO#judgeId()}.
+     */
+    public static final String BY_JUDGE = "judgeId";
+    
+    
+    private EvaluationResultDAOImpl() {
+        super(Map.of(BY_GENERATED_QUERY, EvaluationResultDTO::generatedQueryId, BY_JUDGE, EvaluationResultDTO::judgeId));
+    }
+    
+    public static EvaluationResultDAOImpl getInstance() {
+        return Workspace.current().scoped(EvaluationResultDAOImpl.class, EvaluationResultDAOImpl::new);
+    }
+    
+    /**
+     * Specifies the DTO type managed by this DAO.
+     *
+     * @return {@code EvaluationResultDTO.class}
+     */
+    @Override
+    protected Class<EvaluationResultDTO> getDtoClass() {
+        return EvaluationResultDTO.class;
+    }
+}
@@ -2,27 +2,40 @@ package de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl;
 
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+
+import java.util.Map;
 
 /**
  * DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO}.
  * <p>
  * Provides CRUD operations for generated query DTOs by extending
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. This class is a singleton; use
- * {@link #getInstance()} to obtain the instance.
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. There is one instance per workspace; use
+ * {@link #getInstance()} to obtain the instance of the current workspace. Maintains secondary indexes on the prompt
+ * ({@link #BY_PROMPT}) and the generating LLM ({@link #BY_GENERATOR}).
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class GeneratedQueryDAOImpl extends DTODAO<GeneratedQueryDTO> {
-    private static GeneratedQueryDAOImpl instance = null;
+    /**
+     * Name of the secondary index on {@link GeneratedQueryDTO#promptId()}.
+     */
+    public static final String BY_PROMPT = "promptId";
+    
+    /**
+     * Name of the secondary index on {@link GeneratedQueryDTO#generatorId()}.
+     */
+    public static final String BY_GENERATOR = "generatorId";
+    
     
     private GeneratedQueryDAOImpl() {
+        super(Map.of(BY_PROMPT, GeneratedQueryDTO::promptId, BY_GENERATOR, GeneratedQueryDTO::generatorId));
     }
     
     public static GeneratedQueryDAOImpl getInstance() {
-        if (instance == null) instance = new GeneratedQueryDAOImpl();
-        return instance;
+        return Workspace.current().scoped(GeneratedQueryDAOImpl.class, GeneratedQueryDAOImpl::new);
     }
     
     /**
@@ -2,26 +2,24 @@ package de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl;
 
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.LLMDTO}.
  * <p>
  * Provides CRUD operations for LLM DTOs by extending {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}.
- * This class is a singleton; use {@link #getInstance()} to obtain the instance.
+ * There is one instance per workspace; use {@link #getInstance()} to obtain the instance of the current workspace.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class LLMDAOImpl extends DTODAO<LLMDTO> {
-    private static LLMDAOImpl instance = null;
-    
     private LLMDAOImpl() {
     }
     
     public static LLMDAOImpl getInstance() {
-        if (instance == null) instance = new LLMDAOImpl();
-        return instance;
+        return Workspace.current().scoped(LLMDAOImpl.class, LLMDAOImpl::new);
     }
     
     /**
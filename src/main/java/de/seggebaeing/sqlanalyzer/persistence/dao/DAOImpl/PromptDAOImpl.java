@@ -2,27 +2,40 @@ package de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl;
 
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+
+import java.util.Map;
 
 /**
  * DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.PromptDTO}.
  * <p>
  * Provides CRUD operations for prompt DTOs by extending
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. This class is a singleton; use
- * {@link #getInstance()} to obtain the instance.
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. There is one instance per workspace; use
+ * {@link #getInstance()} to obtain the instance of the current workspace. Maintains secondary indexes on the sample query
+ * ({@link #BY_SAMPLE_QUERY}) and the prompt type ({@link #BY_TYPE}).
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class PromptDAOImpl extends DTODAO<PromptDTO> {
-    private static PromptDAOImpl instance = null;
+    /**
+     * Name of the secondary index on {@link PromptDTO#sampleQueryId()}.
+     */
+    public static final String BY_SAMPLE_QUERY = "sampleQueryId";
+    
+    /**
+     * Name of the secondary index on {@link PromptDTO#typeId()}.
+     */
+    public static final String BY_TYPE = "typeId";
+    
     
     private PromptDAOImpl() {
+        super(Map.of(BY_SAMPLE_QUERY, PromptDTO::sampleQueryId, BY_TYPE, PromptDTO::typeId));
     }
     
     public static PromptDAOImpl getInstance() {
-        if (instance == null) instance = new PromptDAOImpl();
-        return instance;
+        return Workspace.current().scoped(PromptDAOImpl.class, PromptDAOImpl::new);
     }
     
     /**
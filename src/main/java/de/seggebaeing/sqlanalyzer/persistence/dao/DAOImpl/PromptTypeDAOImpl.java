@@ -2,27 +2,25 @@ package de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl;
 
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO}.
  * <p>
  * Provides CRUD operations for prompt type DTOs by extending
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. This class is a singleton; use
- * {@link #getInstance()} to obtain the instance.
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. There is one instance per workspace; use
+ * {@link #getInstance()} to obtain the instance of the current workspace.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class PromptTypeDAOImpl extends DTODAO<PromptTypeDTO> {
-    private static PromptTypeDAOImpl instance = null;
-    
     private PromptTypeDAOImpl() {
     }
     
     public static PromptTypeDAOImpl getInstance() {
-        if (instance == null) instance = new PromptTypeDAOImpl();
-        return instance;
+        return Workspace.current().scoped(PromptTypeDAOImpl.class, PromptTypeDAOImpl::new);
     }
     
     /**
@@ -2,27 +2,25 @@ package de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl;
 
 import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
 import de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
 
 /**
  * DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.SampleQueryDTO}.
  * <p>
  * Provides CRUD operations for sample query DTOs by extending
- * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. This class is a singleton; use
- * {@link #getInstance()} to obtain the instance.
+ * {@link de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO}. There is one instance per workspace; use
+ * {@link #getInstance()} to obtain the instance of the current workspace.
  * 
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class SampleQueryDAOImpl extends DTODAO<SampleQueryDTO> {
-    private static SampleQueryDAOImpl instance = null;
-    
     private SampleQueryDAOImpl() {
     }
     
     public static SampleQueryDAOImpl getInstance() {
-        if (instance == null) instance = new SampleQueryDAOImpl();
-        return instance;
+        return Workspace.current().scoped(SampleQueryDAOImpl.class, SampleQueryDAOImpl::new);
     }
     
     /**
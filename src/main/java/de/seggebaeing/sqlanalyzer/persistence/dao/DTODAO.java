@@ -3,10 +3,22 @@ package de.seggebaeing.sqlanalyzer.persistence.dao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import de.seggebaeing.sqlanalyzer.persistence.checkpoint.CheckpointLog;
 import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngine;
 import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import de.seggebaeing.sqlanalyzer.persistence.id.IdAllocator;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
 
 /**
  * Base DAO implementation for {@link de.seggebaeing.sqlanalyzer.persistence.dto.Persistable} DTOs backed by the file system.
@@ -16,8 +28,53 @@ import java.util.*;
  * implementing {@link #getDtoClass()}.
  * 
  *
- * <p><strong>Notes:</strong> Cache synchronization is eager on construction and on
- * selected operations; this class is not thread-safe.
+ * <p><strong>Write-behind:</strong> If enabled via {@link #setWriteBehindMillis(long)} before the first DAO is
+ * created, saves only update the cache and enqueue the DTO. A shared background flusher writes queued DTOs
+ * in batches at most the configured number of milliseconds later; repeated saves of the same id in between
+ * are coalesced into one write. Use {@link #flush()} where durability is required and {@link #flushAll()}
+ * on shutdown. Deletions are always written synchronously.
+ *
+ * <p><strong>Lazy mode:</strong> If enabled via {@link #setLazyCacheSize(int)} before the first DAO is created,
+ * only the stored ids are read on construction. DTOs are loaded on demand by {@link #getByID(int)} and kept in
+ * a least-recently-used cache of bounded size, so memory scales with the working set instead of the number
+ * of stored DTOs. {@link #getAll()} still returns every stored DTO, but streams them from storage without
+ * keeping them cached.
+ *
+ * <p><strong>Secondary indexes:</strong> Subclasses may declare indexes from a name to an {@code int} key of the
+ * DTO (typically a foreign key). They are kept up to date on every load, save and delete, so
+ * {@link #getByIndex(String, int)} answers in time proportional to the number of matches. In lazy mode, the
+ * indexes are filled by streaming all DTOs once on construction, except for indexes named after a DTO field the
+ * storage engine indexes itself (see {@link PersistenceHelper#isIndexed}); those are looked up in storage.
+ *
+ * <p><strong>Misses:</strong> Ids that {@link #getByID(int)} failed to load, e.g. dangling references of other
+ * DTOs, are remembered, so repeated lookups answer {@code null} without accessing storage again. An id is
+ * retried once it is saved, reported changed by change watching, or the class is reloaded.
+ *
+ * <p><strong>Change watching:</strong> If enabled via {@link #setWatchChanges(boolean)} before the first DAO is
+ * created and supported by the storage engine, records written or deleted by other processes (e.g. a batch
+ * runner sharing the saves directory) are picked up incrementally. The engine's watcher thread only queues
+ * the changed ids; they are applied on the caller's thread at the start of the next DAO operation, by reloading
+ * or forgetting just those DTOs, and reported to the listeners added via {@link #addChangeListener(IntConsumer)}.
+ * Only if changes were lost is the whole class reloaded. DAOs of a {@linkplain Workspace#isShared() shared}
+ * workspace always watch, as the other processes write into the same saves directory.
+ *
+ * <p><strong>Workspaces:</strong> A DAO belongs to the {@link Workspace} that was current when it was created and
+ * must only be used while that workspace is current; the {@code getInstance()} methods of the subclasses return
+ * the DAO of the current workspace. The background flusher, {@link #flushAll()} and {@link #writeSnapshots()}
+ * bind each DAO's workspace themselves.
+ *
+ * <p><strong>Threading:</strong> This class is thread-safe. Cache hits of {@link #getByID(int)} and
+ * {@link #getAll()} in eager mode are lock-free reads of a {@link ConcurrentHashMap}. Operations changing
+ * a DTO (saves, deletions, cache misses, applied external changes) hold a lock striped by id, which makes
+ * the comparison against the stored version and the following write one atomic step: an older version can
+ * never overwrite a newer one, and operations on different ids mostly run in parallel. Batch operations
+ * lock all stripes of their ids in a fixed order. Stripes are always taken before the lock serializing
+ * write-behind flushes, never while holding it. In lazy mode, the LRU cache is a synchronized map.
+ * Reloading the whole class after lost changes holds all stripes; lock-free readers may observe the
+ * reload in progress.
+ *
+ * <p><strong>Notes:</strong> In the default eager mode, all DTOs are loaded on construction and
+ * kept in memory.
  *
  * @param <T> the DTO type
  *
@@ -27,41 +84,281 @@ import java.util.*;
 public abstract class DTODAO<T extends Persistable> implements DAO<T> {
     private static final Logger log = LoggerFactory.getLogger(DTODAO.class);
     
+    /**
+     * All DAOs created so far, flushed by {@link #flushAll()}.
+     */
+    private static final List<DTODAO<?>> instances = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Maximum delay between a write-behind save and its write; {@code 0} disables write-behind.
+     */
+    private static volatile long writeBehindMillis = 0;
+    
+    /**
+     * Maximum number of cached DTOs per DAO in lazy mode; {@code 0} selects eager mode.
+     */
+    private static volatile int lazyCacheSize = 0;
+    
+    /**
+     * Whether DAOs watch their stored records for changes by other processes.
+     */
+    private static volatile boolean watchChanges = false;
+    
+    /**
+     * Number of lock stripes per DAO; a power of two.
+     */
+    private static final int LOCK_STRIPES = 64;
+    
+    private static ScheduledExecutorService flusher = null;
+    
+    private final int lazyCapacity = lazyCacheSize;
+    
+    /**
+     * The workspace this DAO was created in, bound while flushing from other threads.
+     */
+    private final Workspace workspace = Workspace.current();
+    
     /**
      * In-memory cache mapping DTO identifiers to their instances.
      * <p>
-     * Keeps recently loaded or persisted objects to reduce file system access.
+     * Keeps recently loaded or persisted objects to reduce file system access. Holds every stored
+     * DTO in eager mode and the most recently used ones in lazy mode.
      * 
      */
-    protected final Map<Integer, T> cache = new HashMap<>();
+    protected final Map<Integer, T> cache = lazyCapacity > 0 ? Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+            return size() > lazyCapacity;
+        }
+    }) : new ConcurrentHashMap<>();
+    
+    /**
+     * Identifiers of all stored DTOs, including those not currently cached.
+     */
+    private final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Identifiers that {@link #getByID(int)} failed to load; see the class documentation.
+     */
+    private final Set<Integer> missing = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Stored version per identifier, mirroring what has been persisted.
+     * <p>
+     * Lets {@link #saveOrUpdate(Persistable)} decide whether a write is needed without
+     * reading the stored record back first. In lazy mode, versions of DTOs that were never
+     * loaded are missing and read on demand.
+     * 
+     */
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    
+    /**
+     * Locks serializing all changes of a DTO, striped by id; see {@link #lockFor(int)}.
+     */
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    
+    /**
+     * DTOs saved in write-behind mode but not yet written, keyed by id so that only
+     * the latest version of each id is written. Guarded by itself.
+     */
+    private final Map<Integer, T> pending = new LinkedHashMap<>();
+    
+    /**
+     * Serializes flushes, so a returning {@link #flush()} implies that every earlier
+     * enqueued DTO has been handed to storage, also by a concurrent flush.
+     */
+    private final Object flushLock = new Object();
+    
+    private final long writeBehindDelay = writeBehindMillis;
+    
+    /**
+     * Declared secondary indexes by name.
+     */
+    private final Map<String, SecondaryIndex<T>> indexes = new HashMap<>();
+    
+    /**
+     * Names of the indexes looked up in storage; only in lazy mode. Their in-memory index only holds the
+     * DTOs saved or loaded since construction.
+     */
+    private final Set<String> storedIndexes = new HashSet<>();
+    
+    /**
+     * Ids of records changed by other processes and not yet applied, mapped to whether the record was
+     * deleted. Filled by the storage engine's watcher thread; guarded by itself.
+     */
+    private final Map<Integer, Boolean> changes = new LinkedHashMap<>();
+    
+    /**
+     * Whether the storage engine lost changes since they were last applied. Guarded by {@link #changes}.
+     */
+    private boolean changesLost = false;
+    
+    /**
+     * Notified with the id of every DTO changed or deleted by another process, after the change was applied.
+     */
+    private final List<IntConsumer> changeListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Hands out the ids of new DTOs; thread-safe.
+     */
+    private final IdAllocator idAllocator;
     
     /**
      * Constructs a new DAO and initializes the in-memory cache
      * by synchronizing with the de.seggebaeing.sqlanalyzer.persistence layer.
+     * In lazy mode, only the stored ids are loaded.
      */
     protected DTODAO() {
-        syncCache();
+        this(Map.of());
+    }
+    
+    /**
+     * Constructs a new DAO maintaining the given secondary indexes.
+     *
+     * @param indexes index names mapped to the function extracting the indexed key from a DTO
+     */
+    protected DTODAO(Map<String, ToIntFunction<T>> indexes) {
+        Arrays.setAll(locks, i -> new ReentrantLock());
+        indexes.forEach((name, key) -> this.indexes.put(name, new SecondaryIndex<>(key)));
+        if (isLazy())
+            indexes.keySet().stream().filter(name -> PersistenceHelper.isIndexed(getDtoClass(), name)).forEach(storedIndexes::add);
+        // Watch before loading, so that changes made while loading are not missed
+        if (watchChanges || workspace.isShared())
+            startWatching();
+        if (isLazy())
+            syncIds();
+        else
+            syncCache();
+        idAllocator = PersistenceHelper.createIdAllocator(getDtoClass(), ids);
+        instances.add(this);
+    }
+    
+    /**
+     * Enables lazy mode for all DAOs created afterward.
+     *
+     * @param size maximum number of DTOs cached per DAO; {@code 0} or less selects eager mode
+     */
+    public static void setLazyCacheSize(int size) {
+        lazyCacheSize = Math.max(0, size);
+    }
+    
+    /**
+     * Enables watching the stored records for changes by other processes for all DAOs created afterward.
+     * DAOs of shared workspaces watch regardless.
+     *
+     * @param watch {@code true} to apply external changes incrementally
+     */
+    public static void setWatchChanges(boolean watch) {
+        watchChanges = watch;
+    }
+    
+    /**
+     * Enables write-behind for all DAOs created afterward.
+     *
+     * @param millis maximum time a saved DTO may stay unwritten; {@code 0} or less disables write-behind
+     */
+    public static void setWriteBehindMillis(long millis) {
+        writeBehindMillis = Math.max(0, millis);
+    }
+    
+    /**
+     * Adds a listener notified with the id of every DTO changed or deleted by another process.
+     * <p>
+     * Listeners are called on the thread applying the changes, i.e. within the DAO operation following the
+     * change, so they may be used to invalidate objects derived from the DTOs. Only called if change watching
+     * is enabled, see {@link #setWatchChanges(boolean)}.
+     * 
+     *
+     * @param listener receives the id of every changed or deleted DTO
+     */
+    public void addChangeListener(IntConsumer listener) {
+        changeListeners.add(Objects.requireNonNull(listener));
+    }
+    
+    /**
+     * Flushes the write-behind queues of all DAOs of one workspace, e.g. before backing it up.
+     * <p>
+     * Unlike {@link #flushAll()}, the background flusher keeps running and other workspaces are not touched.
+     * 
+     *
+     * @param workspace the workspace whose DAOs should be flushed
+     */
+    public static void flushAll(Workspace workspace) {
+        instances.stream().filter(dao -> dao.workspace == workspace).forEach(dao -> workspace.runIn(dao::flush));
+    }
+    
+    /**
+     * Flushes the write-behind queues of all DAOs and stops the background flusher.
+     * <p>
+     * Intended for application shutdown; saves enqueued afterward are written on the next {@link #flush()}.
+     */
+    public static void flushAll() {
+        instances.forEach(dao -> dao.workspace.runIn(dao::flush));
+        synchronized (DTODAO.class) {
+            if (flusher != null) {
+                flusher.shutdown();
+                flusher = null;
+            }
+        }
     }
     
     /**
      * Returns all cached entities.
      * <p>
-     * The result is a snapshot copy of the current cache contents.
+     * The result is a snapshot copy of the current cache contents. In lazy mode, all stored
+     * entities are loaded from storage instead, overlaid with cached and queued ones, which may
+     * be newer; the cache itself is not filled.
      * 
      *
      * @return a set of all entities; may be empty if none are cached
      */
     @Override
     public Set<T> getAll() {
-        return new HashSet<>(cache.values());
+        applyChanges();
+        if (!isLazy())
+            return new HashSet<>(cache.values());
+        
+        Map<Integer, T> all = new HashMap<>();
+        try {
+            PersistenceHelper.loadAll(getDtoClass()).forEach(dto -> all.put(dto.id(), dto));
+        } catch (PersistenceException e) {
+            log.warn("Batch loading from the file system for class {} failed! {}", getDtoClass().getSimpleName(), e.getMessage());
+        }
+        synchronized (cache) {
+            all.putAll(cache);
+        }
+        synchronized (pending) {
+            all.putAll(pending);
+        }
+        return new HashSet<>(all.values());
+    }
+    
+    /**
+     * Writes a binary snapshot of the cache of every DAO, used to speed up the next start.
+     * <p>
+     * Call on clean shutdown after {@link #flushAll()}, so that the caches match what is stored.
+     */
+    public static void writeSnapshots() {
+        instances.forEach(dao -> dao.workspace.runIn(dao::writeSnapshot));
+    }
+    
+    /**
+     * Flushes the write-behind queue, writes the snapshot and deregisters this DAO, e.g. because its workspace is
+     * unloaded (see {@link Workspace#unload()}). The DAO must not be used afterward.
+     */
+    public void release() {
+        flush();
+        writeSnapshot();
+        instances.remove(this);
     }
     
     /**
      * Retrieves an entity by its identifier.
      * <p>
-     * First checks the in-memory cache; if not present, attempts to load
-     * the entity from the de.seggebaeing.sqlanalyzer.persistence layer and refreshes the cache.
-     * Returns {@code null} if the id is {@code -1}, not found, or loading fails.
+     * First checks the in-memory cache without locking; if not present, attempts to load
+     * the entity from the de.seggebaeing.sqlanalyzer.persistence layer under the id's lock and adds it to the cache.
+     * In lazy mode, ids unknown to the id index are answered without accessing storage, as are ids
+     * that failed to load before. Returns {@code null} if the id is {@code -1}, not found, or loading fails.
      * 
      *
      * @param id the identifier of the entity
@@ -71,23 +368,89 @@ public abstract class DTODAO<T extends Persistable> implements DAO<T> {
     public T getByID(int id) {
         if (id == -1)
             return null;
-        if (cache.containsKey(id))
-            return cache.get(id);
-        else {
+        applyChanges();
+        T cached = cache.get(id);
+        if (cached != null)
+            return cached;
+        if (missing.contains(id))
+            return null;
+        
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            cached = cache.get(id);
+            if (cached != null)
+                return cached;
+            
+            synchronized (pending) {
+                cached = pending.get(id);
+            }
+            if (cached != null) {
+                cache.put(id, cached);
+                return cached;
+            }
+            if (isLazy() && !ids.contains(id))
+                return null;
+            
+            T dto = PersistenceHelper.load(getDtoClass(), id);
+            remember(dto);
+            return dto;
+        } catch (PersistenceException e) {
+            if (missing.add(id))
+                log.warn("Single value loading of id '{}' from the file system for class {} failed! {}", id, getDtoClass().getSimpleName(), e.getMessage());
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the identifiers of all stored entities without loading them, e.g. to check references in bulk.
+     *
+     * @return an unmodifiable live view of the stored ids, including queued write-behind saves
+     */
+    public Set<Integer> getIds() {
+        applyChanges();
+        return Collections.unmodifiableSet(ids);
+    }
+    
+    /**
+     * Retrieves all entities whose key in the given secondary index equals {@code key}.
+     *
+     * @param index the name of an index declared on construction
+     * @param key   the key to look up
+     * @return the matching entities; may be empty
+     * @throws IllegalArgumentException if no index with that name was declared
+     */
+    public Set<T> getByIndex(String index, int key) {
+        SecondaryIndex<T> secondaryIndex = indexes.get(index);
+        if (secondaryIndex == null)
+            throw new IllegalArgumentException("Unknown index '" + index + "' for class " + getDtoClass().getSimpleName());
+        
+        applyChanges();
+        Set<Integer> candidates = new HashSet<>(secondaryIndex.ids(key));
+        if (storedIndexes.contains(index)) {
             try {
-                T dto = PersistenceHelper.load(getDtoClass(), id);
-                syncCache();
-                return dto;
+                candidates.addAll(PersistenceHelper.findIds(getDtoClass(), index, key));
             } catch (PersistenceException e) {
-                log.warn("Single value loading of id '{}' from the file system for class {} failed! {}", id, getDtoClass().getSimpleName(), e.getMessage());
-                return null;
+                log.warn("Index lookup of '{}' for class {} failed! {}", index, getDtoClass().getSimpleName(), e.getMessage());
             }
         }
+        
+        Set<T> dtos = new HashSet<>();
+        for (int id : candidates) {
+            T dto = getByID(id);
+            // Stored keys may be outdated by queued write-behind saves
+            if (dto != null && secondaryIndex.key(dto) == key)
+                dtos.add(dto);
+        }
+        return dtos;
     }
     
     /**
      * Deletes the given entity from the de.seggebaeing.sqlanalyzer.persistence layer and removes it from the cache.
      * <p>
+     * Waits for a running write-behind flush, so that the flush can't write the entity again after its deletion.
      * Logs a warning if deletion fails.
      * 
      *
@@ -97,17 +460,30 @@ public abstract class DTODAO<T extends Persistable> implements DAO<T> {
     @Override
     public void delete(T dto) {
         Objects.requireNonNull(dto);
+        applyChanges();
+        ReentrantLock lock = lockFor(dto.id());
+        lock.lock();
         try {
-            PersistenceHelper.delete(dto);
-            cache.remove(dto.id());
+            synchronized (flushLock) {
+                dequeue(List.of(dto));
+                PersistenceHelper.delete(dto);
+            }
+            forget(dto.id());
         } catch (PersistenceException e) {
             log.warn("Deletion of id '{}' from the file system for class {} failed!", dto.id(), getDtoClass(), e);
+        } finally {
+            lock.unlock();
         }
     }
     
     /**
      * Persists or updates the given entity and refreshes the cache entry.
      * <p>
+     * The candidate's version is compared against the in-memory version index instead of the stored
+     * record: equal versions are not written again, older versions are rejected with a logged warning.
+     * Comparison and write happen under the id's lock, so concurrent saves of the same id are applied
+     * in version order. If a process sharing the workspace stored the same or a newer version meanwhile,
+     * the write is skipped and the stored record is cached instead.
      * Logs a warning if the operation fails.
      * 
      *
@@ -117,22 +493,447 @@ public abstract class DTODAO<T extends Persistable> implements DAO<T> {
     @Override
     public void saveOrUpdate(T dto) {
         Objects.requireNonNull(dto);
+        applyChanges();
+        ReentrantLock lock = lockFor(dto.id());
+        lock.lock();
         try {
-            PersistenceHelper.persist(dto);
-            cache.put(dto.id(), dto);
+            Long storedVersion = getStoredVersion(dto.id());
+            if (storedVersion != null && storedVersion >= dto.version()) {
+                if (storedVersion > dto.version())
+                    log.warn("Save/update of id '{}' for class {} skipped, a newer version is already stored.", dto.id(), getDtoClass().getSimpleName());
+                else
+                    cache.put(dto.id(), dto);
+                return;
+            }
+            
+            if (writeBehindDelay > 0) {
+                remember(dto);
+                enqueue(List.of(dto));
+                return;
+            }
+            
+            if (PersistenceHelper.write(dto))
+                remember(dto);
+            else
+                reload(dto.id());
         } catch (PersistenceException e) {
-            log.warn("Save/update of id '{}' from the file system for class {} failed!", getDtoClass(), dto.id(), e);
+            log.warn("Save/update of id '{}' from the file system for class {} failed!", dto.id(), getDtoClass().getSimpleName(), e);
+        } finally {
+            lock.unlock();
         }
     }
     
+    /**
+     * Persists or updates all given entities with a single group commit.
+     * <p>
+     * Entities are filtered against the version index like in {@link #saveOrUpdate(Persistable)}; the
+     * remaining ones are written via {@link PersistenceHelper#writeAll(Collection)}. If the batch fails,
+     * the entities are retried one by one so that a single bad entity doesn't drop the whole batch.
+     * 
+     *
+     * @param dtos the entities to save or update, must not be {@code null}
+     * @throws NullPointerException if {@code dtos} or one of its elements is {@code null}
+     */
+    @Override
+    public void saveAll(Collection<T> dtos) {
+        dtos.forEach(Objects::requireNonNull);
+        applyChanges();
+        List<ReentrantLock> held = lockAll(dtos);
+        try {
+            List<T> toWrite = new ArrayList<>();
+            for (T dto : dtos) {
+                Long storedVersion = getStoredVersion(dto.id());
+                if (storedVersion == null || storedVersion < dto.version())
+                    toWrite.add(dto);
+                else if (storedVersion > dto.version())
+                    log.warn("Save/update of id '{}' for class {} skipped, a newer version is already stored.", dto.id(), getDtoClass().getSimpleName());
+                else
+                    cache.put(dto.id(), dto);
+            }
+            if (toWrite.isEmpty())
+                return;
+            
+            if (writeBehindDelay > 0) {
+                toWrite.forEach(this::remember);
+                enqueue(toWrite);
+                return;
+            }
+            
+            List<T> written;
+            try {
+                written = PersistenceHelper.writeAll(toWrite);
+            } catch (PersistenceException e) {
+                log.warn("Batch save of {} objects of class {} failed, retrying one by one.", toWrite.size(), getDtoClass().getSimpleName(), e);
+                toWrite.forEach(this::saveOrUpdate);
+                return;
+            }
+            
+            written.forEach(this::remember);
+            if (written.size() < toWrite.size()) {
+                Set<T> done = new HashSet<>(written);
+                toWrite.stream().filter(dto -> !done.contains(dto)).forEach(dto -> reload(dto.id()));
+            }
+        } finally {
+            held.forEach(ReentrantLock::unlock);
+        }
+    }
+    
+    /**
+     * Deletes all given entities with a single group commit and removes them from the cache.
+     * <p>
+     * If the batch fails, the entities are retried one by one.
+     * 
+     *
+     * @param dtos the entities to delete, must not be {@code null}
+     * @throws NullPointerException if {@code dtos} or one of its elements is {@code null}
+     */
+    @Override
+    public void deleteAll(Collection<T> dtos) {
+        dtos.forEach(Objects::requireNonNull);
+        if (dtos.isEmpty())
+            return;
+        
+        applyChanges();
+        List<ReentrantLock> held = lockAll(dtos);
+        try {
+            try {
+                synchronized (flushLock) {
+                    dequeue(dtos);
+                    PersistenceHelper.deleteAll(dtos);
+                }
+            } catch (PersistenceException e) {
+                log.warn("Batch deletion of {} objects of class {} failed, retrying one by one.", dtos.size(), getDtoClass().getSimpleName(), e);
+                dtos.forEach(this::delete);
+                return;
+            }
+            
+            dtos.forEach(dto -> forget(dto.id()));
+        } finally {
+            held.forEach(ReentrantLock::unlock);
+        }
+    }
+    
+    /**
+     * Writes all DTOs currently queued by write-behind saves as one batch.
+     * <p>
+     * Blocks until the DTOs are handed to storage. DTOs that fail to be written are requeued,
+     * unless a newer version of the same id was queued meanwhile, and retried later. DTOs skipped because
+     * another process stored a newer version are replaced by the stored records in the cache.
+     * Does nothing if write-behind is disabled or nothing is queued.
+     * 
+     */
+    public void flush() {
+        List<T> skipped;
+        synchronized (flushLock) {
+            List<T> batch;
+            synchronized (pending) {
+                if (pending.isEmpty())
+                    return;
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            
+            List<T> written;
+            try {
+                written = PersistenceHelper.writeAll(batch);
+            } catch (PersistenceException e) {
+                log.error("Write-behind flush of {} objects of class {} failed, retrying later.", batch.size(), getDtoClass().getSimpleName(), e);
+                synchronized (pending) {
+                    batch.forEach(dto -> pending.putIfAbsent(dto.id(), dto));
+                }
+                scheduleFlush();
+                return;
+            }
+            if (written.size() == batch.size())
+                return;
+            Set<T> done = new HashSet<>(written);
+            skipped = batch.stream().filter(dto -> !done.contains(dto)).toList();
+        }
+        
+        // Skipped DTOs were remembered when queued; replace them by the stored ones. The stripes are only
+        // taken after releasing the flush lock, as deletions take the stripes before the flush lock.
+        List<ReentrantLock> held = lockAll(skipped);
+        try {
+            for (T dto : skipped) {
+                synchronized (pending) {
+                    if (pending.containsKey(dto.id()))
+                        continue;
+                }
+                reload(dto.id());
+            }
+        } finally {
+            held.forEach(ReentrantLock::unlock);
+        }
+    }
+    
+    /**
+     * Snapshots the cache; skipped in lazy mode, where the cache does not hold every stored DTO.
+     */
+    private void writeSnapshot() {
+        applyChanges();
+        if (!isLazy())
+            PersistenceHelper.writeSnapshot(getDtoClass(), cache.values());
+    }
+    
+    private boolean isLazy() {
+        return lazyCapacity > 0;
+    }
+    
+    /**
+     * Returns the lock stripe guarding changes of the DTO with the given id.
+     */
+    private ReentrantLock lockFor(int id) {
+        return locks[stripeOf(id)];
+    }
+    
+    private static int stripeOf(int id) {
+        return (id ^ (id >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    
+    /**
+     * Locks the stripes of all given DTOs in stripe order, so concurrent batches can't deadlock.
+     *
+     * @return the locked stripes, to be unlocked by the caller
+     */
+    private List<ReentrantLock> lockAll(Collection<T> dtos) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        dtos.forEach(dto -> stripes.add(stripeOf(dto.id())));
+        return lockStripes(stripes);
+    }
+    
+    private List<ReentrantLock> lockStripes(Collection<Integer> stripes) {
+        List<ReentrantLock> held = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            held.add(locks[stripe]);
+        }
+        return held;
+    }
+    
+    /**
+     * Records a stored (or queued) DTO in the cache, version index and id index. Requires the id's lock.
+     */
+    private void remember(T dto) {
+        cache.put(dto.id(), dto);
+        versions.put(dto.id(), dto.version());
+        ids.add(dto.id());
+        missing.remove(dto.id());
+        indexes.values().forEach(index -> index.put(dto));
+    }
+    
+    /**
+     * Replaces a DTO whose write was skipped, as another process stored the same or a newer version, by the
+     * stored record. Forgets it if the record cannot be loaded, e.g. because it was deleted meanwhile.
+     * Requires the id's lock.
+     */
+    private void reload(int id) {
+        try {
+            remember(PersistenceHelper.load(getDtoClass(), id));
+        } catch (PersistenceException e) {
+            log.warn("Reloading skipped id '{}' for class {} failed! {}", id, getDtoClass().getSimpleName(), e.getMessage());
+            forget(id);
+        }
+    }
+    
+    /**
+     * Removes a deleted DTO from the cache, version index and id index. Requires the id's lock.
+     */
+    private void forget(int id) {
+        cache.remove(id);
+        versions.remove(id);
+        ids.remove(id);
+        indexes.values().forEach(index -> index.remove(id));
+    }
+    
+    /**
+     * Returns the stored version of a DTO, or {@code null} if the id is not stored.
+     * <p>
+     * In lazy mode, the version of a stored but never loaded DTO is read from storage once.
+     * Requires the id's lock.
+     * 
+     */
+    private Long getStoredVersion(int id) {
+        Long version = versions.get(id);
+        if (version == null && isLazy() && ids.contains(id)) {
+            try {
+                version = PersistenceHelper.load(getDtoClass(), id).version();
+                versions.put(id, version);
+            } catch (PersistenceException e) {
+                log.warn("Version lookup of id '{}' for class {} failed! {}", id, getDtoClass().getSimpleName(), e.getMessage());
+            }
+        }
+        return version;
+    }
+    
+    /**
+     * Queues DTOs for the next flush, replacing queued versions of the same ids, and schedules
+     * a flush if the queue was empty before.
+     */
+    private void enqueue(Collection<T> dtos) {
+        boolean wasEmpty;
+        synchronized (pending) {
+            wasEmpty = pending.isEmpty();
+            dtos.forEach(dto -> pending.put(dto.id(), dto));
+        }
+        if (wasEmpty)
+            scheduleFlush();
+    }
+    
+    /**
+     * Drops queued writes of the given DTOs, e.g. because they are about to be deleted.
+     */
+    private void dequeue(Collection<T> dtos) {
+        synchronized (pending) {
+            dtos.forEach(dto -> pending.remove(dto.id()));
+        }
+    }
+    
+    private void scheduleFlush() {
+        synchronized (DTODAO.class) {
+            if (flusher == null) {
+                flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "dao-write-behind");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            flusher.schedule(() -> workspace.runIn(this::flush), writeBehindDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Registers this DAO with the storage engine's change watching. Logs if the engine doesn't support
+     * watching and a warning if watching fails.
+     */
+    private void startWatching() {
+        try {
+            if (!PersistenceHelper.watch(getDtoClass(), new ChangeQueue()))
+                log.info("Storage engine can't watch for changes, external changes to class {} are not picked up.", getDtoClass().getSimpleName());
+        } catch (PersistenceException e) {
+            log.warn("Watching for changes of class {} failed! {}", getDtoClass().getSimpleName(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Applies the changes queued by the watcher thread to the cache and the indexes and notifies the change listeners.
+     * <p>
+     * If changes were lost, the whole class is reloaded and every previously or now known id is reported.
+     * 
+     */
+    private void applyChanges() {
+        Map<Integer, Boolean> batch;
+        boolean lost;
+        synchronized (changes) {
+            if (changes.isEmpty() && !changesLost)
+                return;
+            batch = new LinkedHashMap<>(changes);
+            lost = changesLost;
+            changes.clear();
+            changesLost = false;
+        }
+        
+        if (lost) {
+            log.info("Changes to class {} were lost, reloading.", getDtoClass().getSimpleName());
+            Set<Integer> affected = new HashSet<>(ids);
+            List<ReentrantLock> held = lockStripes(allStripes());
+            try {
+                if (isLazy())
+                    syncIds();
+                else
+                    syncCache();
+            } finally {
+                held.forEach(ReentrantLock::unlock);
+            }
+            affected.addAll(ids);
+            affected.forEach(this::notifyChangeListeners);
+            return;
+        }
+        
+        batch.forEach((id, deleted) -> {
+            boolean applied;
+            ReentrantLock lock = lockFor(id);
+            lock.lock();
+            try {
+                applied = deleted ? applyDeletion(id) : applyChange(id);
+            } finally {
+                lock.unlock();
+            }
+            if (applied)
+                notifyChangeListeners(id);
+        });
+    }
+    
+    /**
+     * Reloads a changed DTO if the stored version is newer than the known one. Requires the id's lock.
+     * <p>
+     * Ids with a queued write-behind save are skipped, as the queued DTO will overwrite the record anyway.
+     * Changes made by this DAO itself are recognized by their version and skipped as well.
+     * 
+     *
+     * @return {@code true} if the DTO was reloaded
+     */
+    private boolean applyChange(int id) {
+        synchronized (pending) {
+            if (pending.containsKey(id))
+                return false;
+        }
+        
+        T dto;
+        try {
+            dto = PersistenceHelper.load(getDtoClass(), id);
+        } catch (PersistenceException e) {
+            log.warn("Reloading changed id '{}' for class {} failed! {}", id, getDtoClass().getSimpleName(), e.getMessage());
+            return false;
+        }
+        
+        Long knownVersion = versions.get(id);
+        if (knownVersion != null && knownVersion >= dto.version())
+            return false;
+        
+        remember(dto);
+        return true;
+    }
+    
+    /**
+     * Forgets a deleted DTO, unless it is unknown (e.g. deleted by this DAO itself) or a write-behind save
+     * of it is queued. Requires the id's lock.
+     *
+     * @return {@code true} if the DTO was forgotten
+     */
+    private boolean applyDeletion(int id) {
+        synchronized (pending) {
+            if (pending.containsKey(id))
+                return false;
+        }
+        if (!ids.contains(id))
+            return false;
+        
+        forget(id);
+        return true;
+    }
+    
+    private static List<Integer> allStripes() {
+        List<Integer> stripes = new ArrayList<>(LOCK_STRIPES);
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            stripes.add(i);
+        return stripes;
+    }
+    
+    private void notifyChangeListeners(int id) {
+        changeListeners.forEach(listener -> listener.accept(id));
+    }
+    
     /**
      * Synchronizes the in-memory cache with the de.seggebaeing.sqlanalyzer.persistence layer.
      * <p>
      * Loads all entities of the managed type and replaces the current cache
-     * contents. Logs a warning if batch loading fails.
+     * contents. Queued write-behind saves are flushed first so they are not lost. Requires all lock stripes,
+     * except during construction.
+     * Logs a warning if batch loading fails.
      * 
      */
     private void syncCache() {
+        flush();
         Set<T> dtos = new HashSet<>();
         
         try {
@@ -142,24 +943,88 @@ public abstract class DTODAO<T extends Persistable> implements DAO<T> {
         }
         
         cache.clear();
-        dtos.forEach(dto -> cache.put(dto.id(), dto));
+        versions.clear();
+        ids.clear();
+        missing.clear();
+        indexes.values().forEach(SecondaryIndex::clear);
+        dtos.forEach(this::remember);
+    }
+    
+    /**
+     * Loads the id index for lazy mode without caching any DTO.
+     * <p>
+     * Queued write-behind saves are flushed first. If secondary indexes are declared that are not looked up
+     * in storage, all DTOs are streamed once to fill them. Requires all lock stripes, except during construction.
+     * Logs a warning if listing the ids fails.
+     * 
+     */
+    private void syncIds() {
+        flush();
+        cache.clear();
+        versions.clear();
+        ids.clear();
+        missing.clear();
+        indexes.values().forEach(SecondaryIndex::clear);
+        try {
+            if (storedIndexes.containsAll(indexes.keySet()))
+                ids.addAll(PersistenceHelper.loadIds(getDtoClass()));
+            else
+                for (T dto : PersistenceHelper.loadAll(getDtoClass())) {
+                    ids.add(dto.id());
+                    indexes.forEach((name, index) -> {
+                        if (!storedIndexes.contains(name))
+                            index.put(dto);
+                    });
+                }
+        } catch (PersistenceException e) {
+            log.warn("Loading the ids from the file system for class {} failed! {}", getDtoClass().getSimpleName(), e.getMessage());
+        }
     }
     
     /**
-     * Generates a free identifier not currently used in the cache.
+     * Generates a free identifier not used by any stored DTO and never handed out before.
      * <p>
-     * Uses random numbers in the positive {@code int} range until an unused id is found.
-     * This implementation is simple but not guaranteed to be efficient.
+     * Delegates to the persistent, block-reserving {@link IdAllocator} of the managed class, so it is
+     * thread-safe, lock-free in the common case and independent of the number of stored DTOs.
      * 
      *
      * @return a free identifier
+     * @throws java.io.UncheckedIOException if no new block of ids can be reserved
      */
     public int getFreeId() {
-        // Not the best implementation but it works for this small project
-        while(true) {
-            int random = (int) (Math.random() * Integer.MAX_VALUE);
-            if (!cache.containsKey(random))
-                return random;
+        return idAllocator.next();
+    }
+    
+    /**
+     * Opens a new or existing checkpoint log for DTOs of the managed class.
+     * <p>
+     * Logged DTOs are neither cached nor stored; promote them with {@link #saveAll(Collection)}. Ids for
+     * logged DTOs should come from {@link #getFreeId()}, so promoting a checkpoint twice stores nothing twice.
+     * 
+     *
+     * @param name the name of the checkpoint
+     * @return the opened checkpoint, or {@code null} if it couldn't be opened
+     */
+    public CheckpointLog<T> openCheckpoint(String name) {
+        try {
+            return PersistenceHelper.openCheckpoint(getDtoClass(), name);
+        } catch (PersistenceException e) {
+            log.warn("Opening checkpoint {} for class {} failed! {}", name, getDtoClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Opens all checkpoint logs of the managed class that no one else holds open, e.g. those left by a crash.
+     *
+     * @return the opened checkpoints; may be empty
+     */
+    public List<CheckpointLog<T>> openOrphanedCheckpoints() {
+        try {
+            return PersistenceHelper.openOrphanedCheckpoints(getDtoClass());
+        } catch (PersistenceException e) {
+            log.warn("Listing checkpoints for class {} failed! {}", getDtoClass().getSimpleName(), e.getMessage());
+            return List.of();
         }
     }
     
@@ -169,4 +1034,83 @@ public abstract class DTODAO<T extends Persistable> implements DAO<T> {
      * @return the class object of the managed DTO type
      */
     protected abstract Class<T> getDtoClass();
+    
+    /**
+     * Maps an {@code int} key of the DTOs to the ids of all DTOs with that key.
+     * <p>
+     * Remembers the key of every id, so updates and deletions need neither the old DTO nor a scan.
+     * All methods are synchronized, since DTOs of different ids are indexed concurrently.
+     * 
+     */
+    private static final class SecondaryIndex<T extends Persistable> {
+        private final ToIntFunction<T> keyFunction;
+        private final Map<Integer, Set<Integer>> idsByKey = new HashMap<>();
+        private final Map<Integer, Integer> keyById = new HashMap<>();
+        
+        SecondaryIndex(ToIntFunction<T> keyFunction) {
+            this.keyFunction = keyFunction;
+        }
+        
+        int key(T dto) {
+            return keyFunction.applyAsInt(dto);
+        }
+        
+        synchronized void put(T dto) {
+            remove(dto.id());
+            int key = keyFunction.applyAsInt(dto);
+            keyById.put(dto.id(), key);
+            idsByKey.computeIfAbsent(key, k -> new HashSet<>()).add(dto.id());
+        }
+        
+        synchronized void remove(int id) {
+            Integer key = keyById.remove(id);
+            if (key == null)
+                return;
+            
+            Set<Integer> ids = idsByKey.get(key);
+            ids.remove(id);
+            if (ids.isEmpty())
+                idsByKey.remove(key);
+        }
+        
+        synchronized Set<Integer> ids(int key) {
+            return Set.copyOf(idsByKey.getOrDefault(key, Set.of()));
+        }
+        
+        synchronized void clear() {
+            idsByKey.clear();
+            keyById.clear();
+        }
+    }
+    
+    /**
+     * Queues the changes reported by the storage engine's watcher thread for {@link #applyChanges()}.
+     * <p>
+     * Repeated changes of the same id are coalesced; the latest one decides whether the id counts as deleted.
+     * 
+     */
+    private final class ChangeQueue implements StorageEngine.ChangeListener {
+        @Override
+        public void changed(int id) {
+            synchronized (changes) {
+                changes.remove(id);
+                changes.put(id, false);
+            }
+        }
+        
+        @Override
+        public void deleted(int id) {
+            synchronized (changes) {
+                changes.remove(id);
+                changes.put(id, true);
+            }
+        }
+        
+        @Override
+        public void overflowed() {
+            synchronized (changes) {
+                changesLost = true;
+            }
+        }
+    }
 }
@@ -0,0 +1,38 @@
+package de.seggebaeing.sqlanalyzer.persistence.dto;
+
+/**
+ * A persistable object whose bulky text content is stored once in a content-addressed blob store instead
+ * of inline, see {@link de.seggebaeing.sqlanalyzer.persistence.blob.BlobStore}.
+ * <p>
+ * {@link de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper} stores the content as a blob and writes the
+ * object with empty content but its hash; loading attaches the content again. In memory, objects always
+ * carry their content.
+ * 
+ *
+ * @param <T> the implementing type
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public interface ContentAddressed<T extends ContentAddressed<T>> extends Persistable {
+    /**
+     * Returns the hash addressing the content.
+     *
+     * @return the content hash, or {@code ""} if the content is empty
+     */
+    String contentHash();
+    
+    /**
+     * Returns the content; empty only if the content is empty or not yet attached.
+     *
+     * @return the content
+     */
+    String content();
+    
+    /**
+     * Returns a copy of this object with the given content and the same hash.
+     *
+     * @param content the content, or {@code ""} to detach it
+     * @return the copy
+     */
+    T withContent(String content);
+}
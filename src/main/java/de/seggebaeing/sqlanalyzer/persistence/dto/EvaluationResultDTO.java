@@ -0,0 +1,54 @@
+package de.seggebaeing.sqlanalyzer.persistence.dto;
+
+import java.util.Objects;
+
+/**
+ * Data transfer object (DTO) for persisting the score of one evaluation of a generated query.
+ * <p>
+ * Holds identifier, version, the key of the evaluation (generated query, comparator type, judge and
+ * temperature), the resulting score and when it was computed. The comparator type is non-null.
+ * 
+ *
+ * @param id               stable identifier
+ * @param version          numeric value representing the modification state
+ * @param generatedQueryId identifier of the evaluated generated query
+ * @param comparatorType   non-null comparator type (enum constant name)
+ * @param judgeId          identifier of the LLM judging the query, or {@code -1} if none
+ * @param temperature      sampling temperature passed to the judge
+ * @param score            similarity score, typically in {@code 0.0}–{@code 1.0}
+ * @param timestamp        epoch milliseconds at which the score was computed
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public record EvaluationResultDTO(int id, long version, int generatedQueryId, String comparatorType, int judgeId,
+                                  double temperature, double score, long timestamp) implements Persistable {
+    /**
+     * Creates a new {@code EvaluationResultDTO} instance.
+     * <p>
+     * Ensures that {@code comparatorType} is non-null; otherwise a
+     * {@link NullPointerException} is thrown.
+     * 
+     *
+     * @param id               stable identifier
+     * @param version          numeric value representing the modification state
+     * @param generatedQueryId identifier of the evaluated generated query
+     * @param comparatorType   non-null comparator type (enum constant name)
+     * @param judgeId          identifier of the LLM judging the query, or {@code -1} if none
+     * @param temperature      sampling temperature passed to the judge
+     * @param score            similarity score, typically in {@code 0.0}–{@code 1.0}
+     * @param timestamp        epoch milliseconds at which the score was computed
+     * @throws NullPointerException if {@code comparatorType} is {@code null}
+     */
+    public EvaluationResultDTO(int id, long version, int generatedQueryId, String comparatorType, int judgeId,
+                               double temperature, double score, long timestamp) {
+        this.id = id;
+        this.version = version;
+        this.generatedQueryId = generatedQueryId;
+        this.comparatorType = Objects.requireNonNull(comparatorType);
+        this.judgeId = judgeId;
+        this.temperature = temperature;
+        this.score = score;
+        this.timestamp = timestamp;
+    }
+}
@@ -1,45 +1,82 @@
 package de.seggebaeing.sqlanalyzer.persistence.dto;
 
+import de.seggebaeing.sqlanalyzer.persistence.blob.BlobStore;
+
 import java.util.Objects;
 
 /**
  * Data transfer object (DTO) for persisting a generated query.
  * <p>
- * Holds identifier, version, the generated SQL string, and foreign key
- * references to the generator and the originating prompt. The SQL field
- * is non-null.
+ * Holds identifier, version, the generated SQL string with its content hash, and foreign key
+ * references to the generator and the originating prompt. The SQL field is non-null.
  * 
  *
+ * <p>The SQL is {@link ContentAddressed}: it is stored once per distinct text in the blob store and
+ * referenced by {@code sqlHash}. Queries read back share one {@code String} per blob via the blob store's cache,
+ * and equal hashes identify identical SQL without comparing it.
+ *
  * @param id          stable identifier
  * @param version     numeric value representing the modification state
  * @param sql         non-null generated SQL string
+ * @param sqlHash     content hash of {@code sql}, see {@link BlobStore#hashOf(String)}
  * @param generatorId identifier of the LLM or generator that produced the query
  * @param promptId    identifier of the prompt that led to this query
  * @author Felix Seggebäing
  * @since 1.0
  */
-public record GeneratedQueryDTO(int id, long version, String sql, int generatorId,
-                                int promptId) implements Persistable {
+public record GeneratedQueryDTO(int id, long version, String sql, String sqlHash, int generatorId,
+                                int promptId) implements ContentAddressed<GeneratedQueryDTO> {
     /**
      * Creates a new {@code GeneratedQueryDTO} instance.
      * <p>
      * Ensures that {@code sql} is non-null; otherwise a
-     * {@link NullPointerException} is thrown.
+     * {@link NullPointerException} is thrown. A missing hash is computed from
+     * a non-empty {@code sql}; a given hash is kept, as the SQL may not be attached yet.
      * 
      *
      * @param id          stable identifier
      * @param version     numeric value representing the modification state
      * @param sql         non-null generated SQL string
+     * @param sqlHash     content hash of {@code sql}; {@code null} or {@code ""} to compute it
      * @param generatorId identifier of the LLM or generator that produced the query
      * @param promptId    identifier of the prompt that led to this query
      * @throws NullPointerException if {@code sql} is {@code null}
      */
-    public GeneratedQueryDTO(int id, long version, String sql, int generatorId, int promptId) {
+    public GeneratedQueryDTO(int id, long version, String sql, String sqlHash, int generatorId, int promptId) {
         this.id = id;
         this.version = version;
         this.sql = Objects.requireNonNull(sql);
+        this.sqlHash = sqlHash != null && !sqlHash.isEmpty() ? sqlHash : sql.isEmpty() ? "" : BlobStore.hashOf(sql);
         this.generatorId = generatorId;
         this.promptId = promptId;
     }
     
+    /**
+     * Creates a new {@code GeneratedQueryDTO} instance, computing the hash of {@code sql}.
+     *
+     * @param id          stable identifier
+     * @param version     numeric value representing the modification state
+     * @param sql         non-null generated SQL string
+     * @param generatorId identifier of the LLM or generator that produced the query
+     * @param promptId    identifier of the prompt that led to this query
+     * @throws NullPointerException if {@code sql} is {@code null}
+     */
+    public GeneratedQueryDTO(int id, long version, String sql, int generatorId, int promptId) {
+        this(id, version, sql, "", generatorId, promptId);
+    }
+    
+    @Override
+    public String contentHash() {
+        return sqlHash;
+    }
+    
+    @Override
+    public String content() {
+        return sql;
+    }
+    
+    @Override
+    public GeneratedQueryDTO withContent(String content) {
+        return new GeneratedQueryDTO(id, version, content, sqlHash, generatorId, promptId);
+    }
 }
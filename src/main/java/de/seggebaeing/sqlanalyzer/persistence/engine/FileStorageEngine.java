@@ -0,0 +1,485 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * {@link StorageEngine} storing every record as a single file.
+ * <p>
+ * Layout: <code>&lt;basePath&gt;/&lt;SimpleClassName&gt;/&lt;id&gt;.json</code>. This is the original
+ * storage layout of the application and remains the default.
+ * <p>
+ * Writes go to a temporary file next to the target, are forced to disk and then atomically renamed,
+ * so a crash mid-write never leaves a torn <code>.json</code> file behind.
+ * <p>
+ * {@link #freeze(Collection, Path)} hard links the current files; since files are only ever replaced by a
+ * rename, a link keeps the linked version. Writes and deletions run concurrently with each other, but
+ * wait while files are being linked.
+ * <p>
+ * Supports {@link #watch(Class, ChangeListener)} via a {@link WatchService} on the class directories,
+ * served by a single daemon thread that is started on the first watch and stopped by {@link #close()}.
+ * 
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class FileStorageEngine implements StorageEngine {
+    private static final Logger log = LoggerFactory.getLogger(FileStorageEngine.class);
+    
+    private static final String TMP_SUFFIX = ".tmp";
+    
+    private final Path basePath;
+    
+    /**
+     * Watched class directories by their watch key; guarded by itself.
+     */
+    private final Map<WatchKey, Watch> watches = new HashMap<>();
+    
+    private WatchService watchService = null;
+    
+    /**
+     * Shared by writes and deletions, held exclusively while freezing.
+     */
+    private final ReadWriteLock freezeLock = new ReentrantReadWriteLock();
+    
+    /**
+     * Creates a file based engine rooted at the given directory.
+     *
+     * @param basePath the directory under which one subdirectory per DTO class is created
+     */
+    public FileStorageEngine(Path basePath) {
+        this.basePath = basePath;
+    }
+    
+    @Override
+    public byte[] read(Class<? extends Persistable> clazz, int id) throws IOException {
+        Path path = getFilePath(clazz, String.valueOf(id));
+        if (Files.exists(path))
+            return Files.readAllBytes(path);
+        else
+            return null;
+    }
+    
+    /**
+     * Reads every <code>.json</code> file in the class directory.
+     * <p>
+     * Files that cannot be read are skipped with a logged warning.
+     * 
+     *
+     * @param clazz    the DTO class whose records should be visited
+     * @param consumer receives {@code (fileName, payload)} for every readable file
+     * @throws IOException if the directory cannot be created or listed
+     */
+    @Override
+    public void forEach(Class<? extends Persistable> clazz, BiConsumer<String, byte[]> consumer) throws IOException {
+        for (String fileName : getAllJsonFileNamesInDir(getDirPath(clazz))) {
+            byte[] payload;
+            try {
+                payload = Files.readAllBytes(getFilePath(clazz, fileName));
+            } catch (IOException e) {
+                log.warn("Couldn't load file '{}' while batch loading for class {}.", fileName, clazz.getSimpleName(), e);
+                continue;
+            }
+            consumer.accept(fileName, payload);
+        }
+    }
+    
+    /**
+     * Derives the ids from the <code>.json</code> file names; files not named after an id are ignored.
+     *
+     * @param clazz the DTO class
+     * @return the stored ids; may be empty
+     * @throws IOException if the directory cannot be created or listed
+     */
+    @Override
+    public Set<Integer> ids(Class<? extends Persistable> clazz) throws IOException {
+        Set<Integer> ids = new HashSet<>();
+        for (String fileName : getAllJsonFileNamesInDir(getDirPath(clazz))) {
+            try {
+                ids.add(Integer.parseInt(fileName));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring file '{}' of class {}, its name is not an id.", fileName, clazz.getSimpleName());
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Writes the payload to <code>&lt;id&gt;.json</code>, creating the class directory if needed.
+     * <p>
+     * The payload is first written and forced to <code>&lt;id&gt;.json.tmp</code>, which then replaces the
+     * target via an atomic move. File systems without atomic moves fall back to a plain replacing move.
+     * The class directory is synced afterward, so the rename survives a power failure as well.
+     * 
+     *
+     * @param p       the object the payload belongs to
+     * @param payload the serialized representation of {@code p}
+     * @throws IOException if the directory cannot be created or the file cannot be written
+     */
+    @Override
+    public void write(Persistable p, byte[] payload) throws IOException {
+        Path path = getFilePath(p.getClass(), String.valueOf(p.id()));
+        freezeLock.readLock().lock();
+        try {
+            Files.createDirectories(path.getParent());
+            writeAtomically(path, payload);
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        
+        syncDirectory(path.getParent());
+    }
+    
+    /**
+     * Writes all payloads as one group commit: every temporary file is written without forcing, then all of
+     * them are synced in one pass, then they are renamed onto their targets and each touched class directory
+     * is synced once. The data of the whole batch thus reaches the disk together instead of one forced write
+     * per record, and no target is replaced before all data is durable.
+     *
+     * @param records the objects to store, mapped to their serialized representation
+     * @throws IOException if a payload cannot be written; the temporary files of the batch are removed then,
+     *         but targets renamed before the failure keep their new content
+     */
+    @Override
+    public void writeAll(Map<? extends Persistable, byte[]> records) throws IOException {
+        Set<Path> dirs = new HashSet<>();
+        Map<Path, Path> pending = new LinkedHashMap<>();
+        freezeLock.readLock().lock();
+        try {
+            for (Map.Entry<? extends Persistable, byte[]> e : records.entrySet()) {
+                Path path = getFilePath(e.getKey().getClass(), String.valueOf(e.getKey().id()));
+                if (dirs.add(path.getParent()))
+                    Files.createDirectories(path.getParent());
+                pending.put(writeTemporary(path, e.getValue(), false), path);
+            }
+            for (Path tmp : pending.keySet())
+                syncFile(tmp);
+            for (Iterator<Map.Entry<Path, Path>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Path, Path> e = it.next();
+                replace(e.getKey(), e.getValue());
+                it.remove();
+            }
+        } catch (IOException e) {
+            for (Path tmp : pending.keySet())
+                Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        
+        for (Path dir : dirs)
+            syncDirectory(dir);
+    }
+    
+    @Override
+    public boolean delete(Class<? extends Persistable> clazz, int id) throws IOException {
+        freezeLock.readLock().lock();
+        try {
+            return Files.deleteIfExists(getFilePath(clazz, String.valueOf(id)));
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int deleteAll(Class<? extends Persistable> clazz, Collection<Integer> ids) throws IOException {
+        int deleted = 0;
+        freezeLock.readLock().lock();
+        try {
+            for (int id : ids)
+                if (Files.deleteIfExists(getFilePath(clazz, String.valueOf(id))))
+                    deleted++;
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        
+        syncDirectory(getDirPath(clazz));
+        return deleted;
+    }
+    
+    /**
+     * Hard links (or copies) the <code>.json</code> file of every stored record of the given classes into
+     * {@code staging}, keeping the layout. Writes and deletions wait until all files are linked.
+     *
+     * @param classes the DTO classes to capture
+     * @param staging the directory to capture the files in
+     * @return the captured files
+     * @throws IOException if a class directory cannot be listed or a file cannot be captured
+     */
+    @Override
+    public List<FrozenFile> freeze(Collection<Class<? extends Persistable>> classes, Path staging) throws IOException {
+        List<FrozenFile> frozen = new ArrayList<>();
+        freezeLock.writeLock().lock();
+        try {
+            for (Class<? extends Persistable> clazz : classes) {
+                Path target = staging.resolve(clazz.getSimpleName());
+                Files.createDirectories(target);
+                for (String fileName : getAllJsonFileNamesInDir(getDirPath(clazz))) {
+                    Path source = getFilePath(clazz, fileName);
+                    Path copy = target.resolve(source.getFileName());
+                    FrozenFiles.linkOrCopy(source, copy);
+                    frozen.add(new FrozenFile(FrozenFiles.nameOf(basePath, source), copy, Files.size(copy)));
+                }
+            }
+        } finally {
+            freezeLock.writeLock().unlock();
+        }
+        return frozen;
+    }
+    
+    /**
+     * Combines name, size, modification time and file key of all <code>.json</code> files of the class.
+     * <p>
+     * Every write ends with a rename into the directory, which gives the record a new file key, so a record
+     * rewritten within the resolution of the modification time is detected even if its size is unchanged.
+     * 
+     *
+     * @param clazz the DTO class
+     * @return the fingerprint of the class directory
+     * @throws IOException if the directory cannot be listed or inspected
+     */
+    @Override
+    public long fingerprint(Class<? extends Persistable> clazz) throws IOException {
+        return Fingerprints.ofFiles(getDirPath(clazz), ".json");
+    }
+    
+    /**
+     * Registers the class directory with the shared {@link WatchService}, creating the directory and
+     * starting the watcher thread if needed.
+     * <p>
+     * Only <code>&lt;id&gt;.json</code> files are reported; temporary files of atomic writes are ignored, and
+     * the rename completing a write is reported as a change.
+     * 
+     *
+     * @param clazz    the DTO class whose records should be watched
+     * @param listener receives the changes of records of {@code clazz}
+     * @return always {@code true}
+     * @throws IOException if the directory cannot be created or registered
+     */
+    @Override
+    public boolean watch(Class<? extends Persistable> clazz, ChangeListener listener) throws IOException {
+        Path dir = getDirPath(clazz);
+        Files.createDirectories(dir);
+        
+        synchronized (watches) {
+            if (watchService == null) {
+                watchService = dir.getFileSystem().newWatchService();
+                Thread watcher = new Thread(this::dispatchWatchEvents, "storage-watch");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watches.put(key, new Watch(clazz, listener));
+        }
+        return true;
+    }
+    
+    /**
+     * Stops watching, if any class is watched; no other resources are held between calls.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (watches) {
+            if (watchService != null) {
+                watchService.close();
+                watchService = null;
+                watches.clear();
+            }
+        }
+    }
+    
+    /**
+     * Body of the watcher thread: hands the events of every signalled key to the listener of its class
+     * until the watch service is closed.
+     */
+    private void dispatchWatchEvents() {
+        WatchService service;
+        synchronized (watches) {
+            service = watchService;
+        }
+        
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Watch watch;
+                synchronized (watches) {
+                    watch = watches.get(key);
+                }
+                if (watch != null)
+                    for (WatchEvent<?> event : key.pollEvents())
+                        dispatch(watch, event);
+                
+                if (!key.reset()) {
+                    log.warn("Stopped watching {}, its directory is no longer accessible.", key.watchable());
+                    synchronized (watches) {
+                        watches.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Engine closed, stop watching
+        }
+    }
+    
+    /**
+     * Translates a single watch event into a call of the listener; files not named after an id are ignored.
+     */
+    private static void dispatch(Watch watch, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            watch.listener().overflowed();
+            return;
+        }
+        
+        String name = event.context().toString();
+        if (!name.endsWith(".json"))
+            return;
+        
+        int id;
+        try {
+            id = Integer.parseInt(name.substring(0, name.length() - ".json".length()));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        
+        try {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+                watch.listener().deleted(id);
+            else
+                watch.listener().changed(id);
+        } catch (RuntimeException e) {
+            log.error("Change listener for class {} failed on id '{}'.", watch.clazz().getSimpleName(), id, e);
+        }
+    }
+    
+    /**
+     * Writes the payload to a forced temporary file and atomically moves it onto {@code path}.
+     *
+     * @param path    the target file, whose parent directory must exist
+     * @param payload the content to write
+     * @throws IOException if writing or moving fails; the temporary file is removed in that case
+     */
+    private static void writeAtomically(Path path, byte[] payload) throws IOException {
+        Path tmp = writeTemporary(path, payload, true);
+        try {
+            replace(tmp, path);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+    
+    /**
+     * Writes the payload to the temporary sibling of {@code path}.
+     *
+     * @param path    the target file, whose parent directory must exist
+     * @param payload the content to write
+     * @param force   whether to force the content to disk before returning
+     * @return the temporary file
+     * @throws IOException if writing fails; the temporary file is removed in that case
+     */
+    private static Path writeTemporary(Path path, byte[] payload, boolean force) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            if (force)
+                channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+    
+    /**
+     * Forces the content of a file written earlier to disk.
+     */
+    private static void syncFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+    
+    /**
+     * Atomically moves {@code tmp} onto {@code path}, falling back to a plain replacing move on file systems
+     * without atomic moves.
+     */
+    private static void replace(Path tmp, Path path) throws IOException {
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Forces the directory entry changes (creates, renames, deletes) of a directory to disk.
+     * <p>
+     * Not every platform allows opening a directory as a channel (e.g. Windows); there the sync
+     * is skipped with a debug log, as the file system commits metadata on its own.
+     * 
+     *
+     * @param dir the directory to sync
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Directory sync of {} not supported, skipping.", dir, e);
+        }
+    }
+    
+    /**
+     * Lists all JSON files in the specified directory.
+     * <p>
+     * Ensures the directory exists, then returns the base names (without the
+     * <code>.json</code> extension) of all JSON files found.
+     * 
+     *
+     * @param dir the directory to scan
+     * @return an array of file names without extension; may be empty if no JSON files exist
+     * @throws IOException if the directory cannot be created or listed
+     */
+    private static String[] getAllJsonFileNamesInDir(Path dir) throws IOException {
+        if (Files.notExists(dir))
+            Files.createDirectories(dir);
+        
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream
+                    .filter(p -> p.toString().endsWith(".json"))
+                    .map(p -> p.getFileName().toString().replaceFirst("\\.json$", ""))
+                    .toArray(String[]::new);
+        }
+    }
+    
+    private Path getDirPath(Class<?> clazz) {
+        return basePath.resolve(clazz.getSimpleName());
+    }
+    
+    private Path getFilePath(Class<?> clazz, String fileName) {
+        return getDirPath(clazz).resolve(fileName + ".json");
+    }
+    
+    /**
+     * A watched class directory and the listener of its class.
+     */
+    private record Watch(Class<? extends Persistable> clazz, ChangeListener listener) {
+    }
+}
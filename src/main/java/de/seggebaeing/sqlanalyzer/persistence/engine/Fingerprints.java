@@ -0,0 +1,67 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprint computation over file attributes, shared by the file based engines.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+final class Fingerprints {
+    
+    private Fingerprints() {
+    }
+    
+    /**
+     * Computes an order-independent fingerprint over name, size, modification time and file key of all
+     * files in {@code dir} ending with {@code suffix}. A missing directory has fingerprint {@code 0}.
+     * <p>
+     * The file key (e.g. the inode) identifies the version of a file that is replaced by renames, as every
+     * replacement has a new key; file systems without file keys rely on size and modification time only.
+     * 
+     *
+     * @param dir    the directory to inspect
+     * @param suffix the file name suffix to include
+     * @return the fingerprint
+     * @throws IOException if the directory cannot be listed or a file cannot be inspected
+     */
+    static long ofFiles(Path dir, String suffix) throws IOException {
+        if (Files.notExists(dir))
+            return 0;
+        
+        long sum = 0;
+        long count = 0;
+        try (Stream<Path> stream = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(suffix))
+                    continue;
+                
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                long h = name.hashCode();
+                h = mix(h * 31 + attributes.size());
+                h = mix(h * 31 + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+                h = mix(h * 31 + Objects.hashCode(attributes.fileKey()));
+                sum += h;
+                count++;
+            }
+        }
+        return mix(sum + count);
+    }
+    
+    /**
+     * Finalizer of SplitMix64, spreading small input differences over all bits.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
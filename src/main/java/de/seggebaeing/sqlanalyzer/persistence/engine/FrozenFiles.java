@@ -0,0 +1,56 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for {@link StorageEngine#freeze} and the other captures of a backup, which capture stored files
+ * without copying them where possible.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class FrozenFiles {
+    private static final Logger log = LoggerFactory.getLogger(FrozenFiles.class);
+    
+    private FrozenFiles() {
+    }
+    
+    /**
+     * Hard links {@code target} to {@code source}, or copies {@code source} if the file system doesn't support
+     * hard links, e.g. because the staging directory is on another file system.
+     * <p>
+     * A hard link keeps the linked content alive even if the source is later deleted or replaced by a rename, so
+     * it freezes files that are only ever appended to, replaced atomically or deleted, at no copying cost.
+     * 
+     *
+     * @param source the stored file
+     * @param target the file to create in the staging directory; its parent directory must exist
+     * @throws IOException if neither linking nor copying succeeds
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Hard linking {} failed, copying it instead.", source, e);
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Returns the path of {@code file} relative to {@code basePath} with {@code /} as separator, as used for
+     * {@link StorageEngine.FrozenFile#name()}.
+     *
+     * @param basePath the base path of the engine
+     * @param file     a stored file below {@code basePath}
+     * @return the relative name
+     */
+    static String nameOf(Path basePath, Path file) {
+        return basePath.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+}
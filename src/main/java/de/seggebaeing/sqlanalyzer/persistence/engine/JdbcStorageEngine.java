@@ -0,0 +1,418 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link StorageEngine} storing all records in an embedded, file based H2 database.
+ * <p>
+ * Layout: <code>&lt;basePath&gt;/db/sqlanalyzer.mv.db</code> with one table per DTO class, named after
+ * {@code clazz.getSimpleName()}, holding {@code id}, {@code version} and the serialized {@code payload}.
+ * Some DTO fields are additionally stored as indexed columns (see {@link #INDEXED_COLUMNS}), e.g. the
+ * generator and prompt references of {@link GeneratedQueryDTO}, and can be queried via {@link #findIds}.
+ * Batch writes and deletions run in a single transaction.
+ * 
+ *
+ * <p><strong>Migration:</strong> When the table of a class is first used, existing <code>&lt;id&gt;.json</code>
+ * files of the file layout in the class directory are imported in one transaction and deleted once it is
+ * committed. Files left by a failed import are imported again on the next start.
+ *
+ * <p><strong>Backup:</strong> {@link #freeze(Collection, Path)} uses the online {@code BACKUP TO} of H2, which
+ * captures a transactionally consistent state of the whole database without blocking writes.
+ *
+ * <p><strong>Driver:</strong> H2 is an optional dependency, loaded via {@link DriverManager}. Without it, opening
+ * the database fails with an {@link IOException}.
+ *
+ * <p><strong>Threading:</strong> All database access goes through one connection and is synchronized,
+ * except for backups, which use a connection of their own.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class JdbcStorageEngine implements StorageEngine {
+    private static final Logger log = LoggerFactory.getLogger(JdbcStorageEngine.class);
+    
+    private static final String DB_DIR = "db";
+    private static final String DB_NAME = "sqlanalyzer";
+    
+    /**
+     * JSON field → column mapping of the additionally stored, indexed {@code int} fields per DTO class.
+     */
+    private static final Map<Class<? extends Persistable>, Map<String, String>> INDEXED_COLUMNS = Map.of(
+            GeneratedQueryDTO.class, Map.of("generatorId", "generator_id", "promptId", "prompt_id")
+    );
+    
+    private final Path basePath;
+    private final Set<Class<? extends Persistable>> initializedTables = new HashSet<>();
+    private Connection connection;
+    
+    /**
+     * Creates a database backed engine rooted at the given directory. The database is opened lazily.
+     *
+     * @param basePath the directory under which the database files are created
+     */
+    public JdbcStorageEngine(Path basePath) {
+        this.basePath = basePath;
+    }
+    
+    @Override
+    public synchronized byte[] read(Class<? extends Persistable> clazz, int id) throws IOException {
+        try (PreparedStatement statement = getConnection(clazz).prepareStatement("SELECT payload FROM " + table(clazz) + " WHERE id = ?")) {
+            statement.setInt(1, id);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Reading id " + id + " of class " + clazz.getSimpleName() + " failed.", e);
+        }
+    }
+    
+    @Override
+    public synchronized void forEach(Class<? extends Persistable> clazz, BiConsumer<String, byte[]> consumer) throws IOException {
+        try (Statement statement = getConnection(clazz).createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, payload FROM " + table(clazz))) {
+            while (rs.next())
+                consumer.accept(String.valueOf(rs.getInt(1)), rs.getBytes(2));
+        } catch (SQLException e) {
+            throw new IOException("Reading all records of class " + clazz.getSimpleName() + " failed.", e);
+        }
+    }
+    
+    @Override
+    public synchronized Set<Integer> ids(Class<? extends Persistable> clazz) throws IOException {
+        try (Statement statement = getConnection(clazz).createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id FROM " + table(clazz))) {
+            Set<Integer> ids = new HashSet<>();
+            while (rs.next())
+                ids.add(rs.getInt(1));
+            return ids;
+        } catch (SQLException e) {
+            throw new IOException("Reading the ids of class " + clazz.getSimpleName() + " failed.", e);
+        }
+    }
+    
+    @Override
+    public void write(Persistable p, byte[] payload) throws IOException {
+        writeAll(Map.of(p, payload));
+    }
+    
+    /**
+     * Upserts all payloads in one transaction, using one JDBC batch per class.
+     *
+     * @param records the objects to store, mapped to their serialized representation
+     * @throws IOException if the transaction fails; it is rolled back in that case
+     */
+    @Override
+    public synchronized void writeAll(Map<? extends Persistable, byte[]> records) throws IOException {
+        Map<Class<? extends Persistable>, List<Map.Entry<? extends Persistable, byte[]>>> byClass = new HashMap<>();
+        records.entrySet().forEach(e -> byClass.computeIfAbsent(e.getKey().getClass(), c -> new ArrayList<>()).add(e));
+        
+        Connection c = null;
+        try {
+            for (Class<? extends Persistable> clazz : byClass.keySet())
+                c = getConnection(clazz);
+        } catch (SQLException e) {
+            throw new IOException("Opening the database failed.", e);
+        }
+        if (c == null)
+            return;
+        
+        inTransaction(c, () -> {
+            for (Map.Entry<Class<? extends Persistable>, List<Map.Entry<? extends Persistable, byte[]>>> group : byClass.entrySet()) {
+                Class<? extends Persistable> clazz = group.getKey();
+                try (PreparedStatement statement = connection.prepareStatement(mergeSql(clazz))) {
+                    for (Map.Entry<? extends Persistable, byte[]> e : group.getValue()) {
+                        bindRecord(statement, clazz, e.getKey().id(), e.getKey().version(), e.getValue());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+        });
+    }
+    
+    @Override
+    public boolean delete(Class<? extends Persistable> clazz, int id) throws IOException {
+        return deleteAll(clazz, List.of(id)) > 0;
+    }
+    
+    /**
+     * Deletes all given ids in one transaction.
+     *
+     * @param clazz the DTO class of the records
+     * @param ids   the identifiers of the records
+     * @return the number of deleted rows
+     * @throws IOException if the transaction fails; it is rolled back in that case
+     */
+    @Override
+    public synchronized int deleteAll(Class<? extends Persistable> clazz, Collection<Integer> ids) throws IOException {
+        Connection c;
+        try {
+            c = getConnection(clazz);
+        } catch (SQLException e) {
+            throw new IOException("Opening the database failed.", e);
+        }
+        
+        int[] deleted = {0};
+        inTransaction(c, () -> {
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM " + table(clazz) + " WHERE id = ?")) {
+                for (int id : ids) {
+                    statement.setInt(1, id);
+                    statement.addBatch();
+                }
+                for (int count : statement.executeBatch())
+                    deleted[0] += Math.max(count, 0);
+            }
+        });
+        return deleted[0];
+    }
+    
+    /**
+     * Combines the number of rows with the sums of their ids and versions, read in one aggregate query.
+     * <p>
+     * Since every write stores a strictly newer version, every write and delete changes the fingerprint.
+     * 
+     *
+     * @param clazz the DTO class
+     * @return the fingerprint of the table
+     * @throws IOException if the query fails
+     */
+    @Override
+    public synchronized long fingerprint(Class<? extends Persistable> clazz) throws IOException {
+        try (Statement statement = getConnection(clazz).createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*), COALESCE(SUM(CAST(id AS BIGINT)), 0), COALESCE(SUM(version), 0) FROM " + table(clazz))) {
+            rs.next();
+            return Objects.hash(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+        } catch (SQLException e) {
+            throw new IOException("Fingerprinting class " + clazz.getSimpleName() + " failed.", e);
+        }
+    }
+    
+    @Override
+    public boolean isIndexed(Class<? extends Persistable> clazz, String field) {
+        return INDEXED_COLUMNS.getOrDefault(clazz, Map.of()).containsKey(field);
+    }
+    
+    /**
+     * Looks the value up in the indexed column of the field.
+     *
+     * @param clazz the DTO class
+     * @param field the name of an indexed DTO field, e.g. {@code "promptId"}
+     * @param value the value to look up
+     * @return the ids of the matching records; may be empty
+     * @throws IllegalArgumentException if {@code field} is not indexed for {@code clazz}
+     * @throws IOException              if the query fails
+     */
+    @Override
+    public synchronized Set<Integer> findIds(Class<? extends Persistable> clazz, String field, int value) throws IOException {
+        String column = INDEXED_COLUMNS.getOrDefault(clazz, Map.of()).get(field);
+        if (column == null)
+            throw new IllegalArgumentException("Field " + field + " of class " + clazz.getSimpleName() + " is not indexed.");
+        
+        try (PreparedStatement statement = getConnection(clazz).prepareStatement("SELECT id FROM " + table(clazz) + " WHERE " + column + " = ?")) {
+            statement.setInt(1, value);
+            Set<Integer> ids = new HashSet<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next())
+                    ids.add(rs.getInt(1));
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new IOException("Index lookup of " + field + " = " + value + " for class " + clazz.getSimpleName() + " failed.", e);
+        }
+    }
+    
+    /**
+     * Backs up the whole database into <code>&lt;staging&gt;/db/sqlanalyzer.zip</code> via H2's online
+     * {@code BACKUP TO}, on a separate connection so writes through this engine continue meanwhile.
+     * <p>
+     * The tables of the given classes are created first, so legacy JSON files are part of the backup. The
+     * archive holds the database file; restoring means extracting it into the {@code db} directory.
+     * 
+     *
+     * @param classes the DTO classes to capture; the backup always covers all tables
+     * @param staging the directory to write the database backup to
+     * @return the database backup
+     * @throws IOException if the backup fails
+     */
+    @Override
+    public List<FrozenFile> freeze(Collection<Class<? extends Persistable>> classes, Path staging) throws IOException {
+        synchronized (this) {
+            try {
+                for (Class<? extends Persistable> clazz : classes)
+                    getConnection(clazz);
+            } catch (SQLException e) {
+                throw new IOException("Opening the database failed.", e);
+            }
+        }
+        
+        Path target = staging.resolve(DB_DIR).resolve(DB_NAME + ".zip");
+        Files.createDirectories(target.getParent());
+        try (Connection backupConnection = DriverManager.getConnection(url());
+             Statement statement = backupConnection.createStatement()) {
+            statement.execute("BACKUP TO '" + target.toAbsolutePath().toString().replace("'", "''") + "'");
+        } catch (SQLException e) {
+            throw new IOException("Backing up the database failed.", e);
+        }
+        return List.of(new FrozenFile(DB_DIR + "/" + target.getFileName(), target, Files.size(target)));
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (connection == null)
+            return;
+        
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Closing the database failed.", e);
+        } finally {
+            connection = null;
+            initializedTables.clear();
+        }
+    }
+    
+    /**
+     * Returns the open connection, opening the database and creating the table of {@code clazz} on first use.
+     */
+    private Connection getConnection(Class<? extends Persistable> clazz) throws SQLException, IOException {
+        if (connection == null) {
+            try {
+                connection = DriverManager.getConnection(url());
+            } catch (SQLException e) {
+                // No suitable driver, H2 is an optional module
+                if ("08001".equals(e.getSQLState()))
+                    throw new IOException("The H2 database driver is not available; add it with --add-modules com.h2database.", e);
+                throw e;
+            }
+            log.info("Opened database {}.", url());
+        }
+        
+        if (initializedTables.add(clazz))
+            createTable(clazz);
+        return connection;
+    }
+    
+    private String url() {
+        return "jdbc:h2:file:" + basePath.resolve(DB_DIR).resolve(DB_NAME).toAbsolutePath();
+    }
+    
+    /**
+     * Creates the table and indexes of a class if missing and imports legacy JSON files into it.
+     */
+    private void createTable(Class<? extends Persistable> clazz) throws SQLException, IOException {
+        boolean exists;
+        try (ResultSet rs = connection.getMetaData().getTables(null, null, clazz.getSimpleName(), new String[]{"TABLE"})) {
+            exists = rs.next();
+        }
+        if (!exists) {
+            Map<String, String> indexed = INDEXED_COLUMNS.getOrDefault(clazz, Map.of());
+            StringBuilder ddl = new StringBuilder("CREATE TABLE ").append(table(clazz))
+                    .append(" (id INT PRIMARY KEY, version BIGINT NOT NULL, payload VARBINARY NOT NULL");
+            indexed.values().forEach(column -> ddl.append(", ").append(column).append(" INT"));
+            ddl.append(')');
+            
+            inTransaction(connection, () -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(ddl.toString());
+                    for (String column : indexed.values())
+                        statement.execute("CREATE INDEX " + quote(clazz.getSimpleName() + "_" + column) + " ON " + table(clazz) + " (" + column + ")");
+                }
+            });
+        }
+        
+        // The batch is only executed and committed once all files were read, and the files are deleted afterward
+        try (PreparedStatement insert = connection.prepareStatement(mergeSql(clazz))) {
+            LegacyJsonFiles.migrate(basePath.resolve(clazz.getSimpleName()), clazz, (id, version, payload) -> {
+                try {
+                    bindRecord(insert, clazz, id, version, payload);
+                    insert.addBatch();
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                }
+            }, () -> inTransaction(connection, insert::executeBatch));
+        }
+    }
+    
+    private String mergeSql(Class<? extends Persistable> clazz) {
+        Collection<String> indexed = INDEXED_COLUMNS.getOrDefault(clazz, Map.of()).values();
+        StringBuilder columns = new StringBuilder("id, version, payload");
+        StringBuilder params = new StringBuilder("?, ?, ?");
+        for (String column : indexed) {
+            columns.append(", ").append(column);
+            params.append(", ?");
+        }
+        return "MERGE INTO " + table(clazz) + " (" + columns + ") KEY (id) VALUES (" + params + ")";
+    }
+    
+    /**
+     * Binds one record to a statement created by {@link #mergeSql(Class)}. Indexed column values are taken
+     * from the payload, so records imported from JSON files are indexed the same way as regular writes.
+     */
+    private static void bindRecord(PreparedStatement statement, Class<? extends Persistable> clazz, int id, long version, byte[] payload) throws SQLException, IOException {
+        statement.setInt(1, id);
+        statement.setLong(2, version);
+        statement.setBytes(3, payload);
+        
+        Map<String, String> indexed = INDEXED_COLUMNS.getOrDefault(clazz, Map.of());
+        if (indexed.isEmpty())
+            return;
+        
+        JsonObject json = JsonParser.parseString(new String(StorageFormat.decode(payload), StandardCharsets.UTF_8)).getAsJsonObject();
+        int parameter = 4;
+        for (String field : indexed.keySet()) {
+            JsonElement value = json.get(field);
+            if (value == null || value.isJsonNull())
+                statement.setNull(parameter++, Types.INTEGER);
+            else
+                statement.setInt(parameter++, value.getAsInt());
+        }
+    }
+    
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException, IOException;
+    }
+    
+    /**
+     * Runs {@code work} in a transaction on {@code c}, committing on success and rolling back on failure.
+     */
+    private static void inTransaction(Connection c, SqlWork work) throws IOException {
+        try {
+            c.setAutoCommit(false);
+            try {
+                work.run();
+                c.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Database transaction failed.", e);
+        }
+    }
+    
+    private static String table(Class<?> clazz) {
+        return quote(clazz.getSimpleName());
+    }
+    
+    private static String quote(String identifier) {
+        return '"' + identifier + '"';
+    }
+}
@@ -0,0 +1,202 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link StorageEngine} storing all records of a DTO class in an append-only {@link SegmentedJournal}.
+ * <p>
+ * Layout: <code>&lt;basePath&gt;/&lt;SimpleClassName&gt;/journal/&lt;segment&gt;.seg</code>. Loading all records
+ * of a class is a single sequential read per segment instead of one file access per record.
+ * 
+ *
+ * <p><strong>Migration:</strong> When the journal of a class is opened for the first time and is empty,
+ * existing <code>&lt;id&gt;.json</code> files of the file layout in the class directory are imported.
+ * The JSON files are only deleted after the imported records have been forced to disk.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class JournalStorageEngine implements StorageEngine {
+    private static final Logger log = LoggerFactory.getLogger(JournalStorageEngine.class);
+    private static final String JOURNAL_DIR = "journal";
+    
+    private final Path basePath;
+    private final Map<Class<? extends Persistable>, SegmentedJournal> journals = new HashMap<>();
+    
+    /**
+     * Creates a journal based engine rooted at the given directory.
+     *
+     * @param basePath the directory under which one subdirectory per DTO class is created
+     */
+    public JournalStorageEngine(Path basePath) {
+        this.basePath = basePath;
+    }
+    
+    @Override
+    public byte[] read(Class<? extends Persistable> clazz, int id) throws IOException {
+        return getJournal(clazz).read(id);
+    }
+    
+    @Override
+    public void forEach(Class<? extends Persistable> clazz, BiConsumer<String, byte[]> consumer) throws IOException {
+        getJournal(clazz).forEach((id, payload) -> consumer.accept(String.valueOf(id), payload));
+    }
+    
+    @Override
+    public Set<Integer> ids(Class<? extends Persistable> clazz) throws IOException {
+        return getJournal(clazz).ids();
+    }
+    
+    /**
+     * Appends the payload to the journal of the object's class and forces it to disk.
+     *
+     * @param p       the object the payload belongs to
+     * @param payload the serialized representation of {@code p}
+     * @throws IOException if the record cannot be appended
+     */
+    @Override
+    public void write(Persistable p, byte[] payload) throws IOException {
+        SegmentedJournal journal = getJournal(p.getClass());
+        journal.put(p.id(), p.version(), payload);
+        journal.sync();
+    }
+    
+    /**
+     * Appends all payloads to the journals of their classes and forces each touched journal once.
+     *
+     * @param records the objects to store, mapped to their serialized representation
+     * @throws IOException if a record cannot be appended
+     */
+    @Override
+    public void writeAll(Map<? extends Persistable, byte[]> records) throws IOException {
+        Set<SegmentedJournal> touched = new HashSet<>();
+        for (Map.Entry<? extends Persistable, byte[]> e : records.entrySet()) {
+            SegmentedJournal journal = getJournal(e.getKey().getClass());
+            journal.put(e.getKey().id(), e.getKey().version(), e.getValue());
+            touched.add(journal);
+        }
+        
+        for (SegmentedJournal journal : touched)
+            journal.sync();
+    }
+    
+    @Override
+    public boolean delete(Class<? extends Persistable> clazz, int id) throws IOException {
+        SegmentedJournal journal = getJournal(clazz);
+        boolean deleted = journal.delete(id);
+        journal.sync();
+        return deleted;
+    }
+    
+    @Override
+    public int deleteAll(Class<? extends Persistable> clazz, Collection<Integer> ids) throws IOException {
+        SegmentedJournal journal = getJournal(clazz);
+        int deleted = 0;
+        for (int id : ids)
+            if (journal.delete(id))
+                deleted++;
+        journal.sync();
+        return deleted;
+    }
+    
+    /**
+     * Combines name, size and modification time of every segment of the class journal.
+     *
+     * @param clazz the DTO class
+     * @return the order-independent fingerprint of the journal directory
+     * @throws IOException if the directory cannot be listed or a segment cannot be inspected
+     */
+    @Override
+    public long fingerprint(Class<? extends Persistable> clazz) throws IOException {
+        return Fingerprints.ofFiles(getJournal(clazz).getDirectory(), SegmentedJournal.SEGMENT_SUFFIX);
+    }
+    
+    /**
+     * Captures the journals of all given classes while holding all their locks at once, so no record is
+     * appended to any of them in between and the captured journals are consistent with each other.
+     * <p>
+     * Capturing only hard links the segments, so appends are blocked for a few milliseconds at most.
+     * 
+     *
+     * @param classes the DTO classes to capture
+     * @param staging the directory to capture the segments in
+     * @return the captured segments
+     * @throws IOException if a segment cannot be captured
+     */
+    @Override
+    public List<FrozenFile> freeze(Collection<Class<? extends Persistable>> classes, Path staging) throws IOException {
+        Map<SegmentedJournal, Class<? extends Persistable>> toFreeze = new LinkedHashMap<>();
+        for (Class<? extends Persistable> clazz : classes)
+            toFreeze.put(getJournal(clazz), clazz);
+        
+        List<FrozenFile> frozen = new ArrayList<>();
+        freezeLocked(new ArrayList<>(toFreeze.entrySet()), 0, staging, frozen);
+        return frozen;
+    }
+    
+    /**
+     * Locks the journals one after another and captures all of them once every lock is held. Other threads
+     * never hold more than one journal lock at a time, so this cannot deadlock.
+     */
+    private void freezeLocked(List<Map.Entry<SegmentedJournal, Class<? extends Persistable>>> journals, int next,
+                              Path staging, List<FrozenFile> frozen) throws IOException {
+        if (next < journals.size()) {
+            synchronized (journals.get(next).getKey()) {
+                freezeLocked(journals, next + 1, staging, frozen);
+            }
+            return;
+        }
+        
+        for (Map.Entry<SegmentedJournal, Class<? extends Persistable>> e : journals) {
+            String dir = e.getValue().getSimpleName() + "/" + JOURNAL_DIR + "/";
+            for (FrozenFile segment : e.getKey().freeze(staging.resolve(e.getValue().getSimpleName()).resolve(JOURNAL_DIR)))
+                frozen.add(new FrozenFile(dir + segment.name(), segment.path(), segment.length()));
+        }
+    }
+    
+    /**
+     * Closes all opened journals. Failures are logged and the first one is rethrown after
+     * every journal had its chance to close.
+     *
+     * @throws IOException if at least one journal failed to close
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException first = null;
+        for (Map.Entry<Class<? extends Persistable>, SegmentedJournal> e : journals.entrySet()) {
+            try {
+                e.getValue().close();
+            } catch (IOException ex) {
+                log.error("Couldn't close journal for class {}.", e.getKey().getSimpleName(), ex);
+                if (first == null)
+                    first = ex;
+            }
+        }
+        journals.clear();
+        
+        if (first != null)
+            throw first;
+    }
+    
+    /**
+     * Returns the journal of the given class, opening and migrating it on first access.
+     */
+    private synchronized SegmentedJournal getJournal(Class<? extends Persistable> clazz) throws IOException {
+        SegmentedJournal journal = journals.get(clazz);
+        if (journal == null) {
+            Path dir = basePath.resolve(clazz.getSimpleName());
+            journal = SegmentedJournal.open(dir.resolve(JOURNAL_DIR), clazz.getSimpleName());
+            if (journal.isEmpty())
+                LegacyJsonFiles.migrate(dir, clazz, journal::put, journal::sync);
+            journals.put(clazz, journal);
+        }
+        return journal;
+    }
+}
@@ -0,0 +1,98 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Import of the <code>&lt;id&gt;.json</code> files written by {@link FileStorageEngine}, used by the other
+ * engines to migrate an existing workspace on first start.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+final class LegacyJsonFiles {
+    private static final Logger log = LoggerFactory.getLogger(LegacyJsonFiles.class);
+    
+    /**
+     * Receives one imported record.
+     */
+    @FunctionalInterface
+    interface Sink {
+        void accept(int id, long version, byte[] payload) throws IOException;
+    }
+    
+    /**
+     * Makes all records handed to the {@link Sink} durable.
+     */
+    @FunctionalInterface
+    interface Commit {
+        void run() throws IOException;
+    }
+    
+    private LegacyJsonFiles() {
+    }
+    
+    /**
+     * Hands every <code>&lt;id&gt;.json</code> file in {@code dir} to {@code sink}, commits and then deletes
+     * the imported files.
+     * <p>
+     * Files whose name is not an id or whose content has no readable {@code version} are left
+     * in place with a logged warning, so nothing is lost silently. Does nothing if {@code dir}
+     * does not exist or contains no JSON files.
+     * 
+     *
+     * @param dir    the class directory containing the JSON files
+     * @param clazz  the DTO class, used for log messages
+     * @param sink   receives {@code (id, version, payload)} for every file
+     * @param commit called once after all files were handed to {@code sink}, before any file is deleted
+     * @throws IOException if the directory cannot be listed, or {@code sink} or {@code commit} fail
+     */
+    static void migrate(Path dir, Class<?> clazz, Sink sink, Commit commit) throws IOException {
+        if (Files.notExists(dir))
+            return;
+        
+        List<Path> jsonFiles;
+        try (Stream<Path> stream = Files.list(dir)) {
+            jsonFiles = stream.filter(p -> p.getFileName().toString().endsWith(".json")).toList();
+        }
+        if (jsonFiles.isEmpty())
+            return;
+        
+        log.info("Migrating {} JSON files of class {}.", jsonFiles.size(), clazz.getSimpleName());
+        
+        List<Path> imported = new ArrayList<>();
+        for (Path file : jsonFiles) {
+            String fileName = file.getFileName().toString();
+            int id;
+            long version;
+            byte[] payload;
+            try {
+                id = Integer.parseInt(fileName.substring(0, fileName.length() - ".json".length()));
+                payload = Files.readAllBytes(file);
+                JsonElement versionElement = JsonParser.parseString(new String(StorageFormat.decode(payload), StandardCharsets.UTF_8))
+                        .getAsJsonObject().get("version");
+                version = versionElement == null || versionElement.isJsonNull() ? 0 : versionElement.getAsLong();
+            } catch (RuntimeException | IOException e) {
+                log.warn("Couldn't migrate file '{}' of class {}, leaving it in place.", fileName, clazz.getSimpleName(), e);
+                continue;
+            }
+            sink.accept(id, version, payload);
+            imported.add(file);
+        }
+        commit.run();
+        
+        for (Path file : imported)
+            Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,444 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of records for a single DTO class, split into numbered segment files.
+ * <p>
+ * Each record is laid out as {@code op(1) id(4) version(8) length(4) payload(length) crc32(4)}.
+ * A {@code PUT} record supersedes all previous records with the same id, a {@code DELETE}
+ * record removes the id. An in-memory index maps each live id to the position of its latest
+ * {@code PUT} record, so single reads are one positioned read and full reads are one
+ * sequential pass over all segments.
+ * 
+ *
+ * <p><strong>Segments:</strong> The active segment is rolled once it exceeds
+ * {@link #MAX_SEGMENT_SIZE}. When more than half of the journal consists of superseded or deleted
+ * records, all live records are compacted into fresh segments and the old ones are removed.
+ *
+ * <p><strong>Recovery:</strong> A torn or corrupt record at the end of the newest segment (e.g. after a
+ * crash mid-write) is truncated on open. Compaction only deletes old segments after the compacted
+ * ones have been forced to disk, so a crash during compaction replays to the same state.
+ *
+ * <p><strong>Threading:</strong> All public methods are synchronized.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+class SegmentedJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedJournal.class);
+    
+    static final long MAX_SEGMENT_SIZE = 8L * 1024 * 1024;
+    private static final long COMPACTION_MIN_BYTES = 1024L * 1024;
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+    
+    static final String SEGMENT_SUFFIX = ".seg";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int HEADER_SIZE = 1 + 4 + 8 + 4;
+    private static final int TRAILER_SIZE = 4;
+    
+    private final Path dir;
+    private final String name;
+    
+    /**
+     * Segment number → segment file, ascending in write order.
+     */
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    
+    /**
+     * Live id → position of its latest {@code PUT} record.
+     */
+    private final Map<Integer, Entry> index = new HashMap<>();
+    
+    private FileChannel active;
+    private long activeNumber;
+    private long totalBytes;
+    private long liveBytes;
+    
+    /**
+     * Position and metadata of a single record inside a segment.
+     *
+     * @param segment number of the segment containing the record
+     * @param offset  byte offset of the record start inside the segment
+     * @param length  total record length including header and trailer
+     * @param version version stored in the record header
+     */
+    record Entry(long segment, long offset, int length, long version) {
+    }
+    
+    private SegmentedJournal(Path dir, String name) {
+        this.dir = dir;
+        this.name = name;
+    }
+    
+    /**
+     * Opens (or creates) the journal stored in the given directory and rebuilds its index.
+     *
+     * @param dir  the directory holding the segment files
+     * @param name human-readable journal name used in log messages
+     * @return the opened journal
+     * @throws IOException if the directory or segments cannot be read
+     */
+    static SegmentedJournal open(Path dir, String name) throws IOException {
+        SegmentedJournal journal = new SegmentedJournal(dir, name);
+        journal.load();
+        return journal;
+    }
+    
+    /**
+     * Returns the directory holding the segment files.
+     *
+     * @return the journal directory
+     */
+    Path getDirectory() {
+        return dir;
+    }
+    
+    /**
+     * Returns whether the journal contains no live records.
+     *
+     * @return {@code true} if no id is currently stored
+     */
+    synchronized boolean isEmpty() {
+        return index.isEmpty();
+    }
+    
+    /**
+     * Returns the live ids.
+     *
+     * @return a copy of the live ids
+     */
+    synchronized Set<Integer> ids() {
+        return new HashSet<>(index.keySet());
+    }
+    
+    /**
+     * Returns the live ids together with their stored versions.
+     *
+     * @return a copy of the id → version mapping
+     */
+    synchronized Map<Integer, Long> versions() {
+        Map<Integer, Long> versions = new HashMap<>();
+        index.forEach((id, entry) -> versions.put(id, entry.version()));
+        return versions;
+    }
+    
+    /**
+     * Reads the payload of the latest record for the given id.
+     *
+     * @param id the record id
+     * @return the payload, or {@code null} if the id is not stored
+     * @throws IOException if the segment cannot be read
+     */
+    synchronized byte[] read(int id) throws IOException {
+        Entry entry = index.get(id);
+        if (entry == null)
+            return null;
+        
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+        try (FileChannel channel = FileChannel.open(segments.get(entry.segment()), StandardOpenOption.READ)) {
+            readFully(channel, buffer, entry.offset());
+        }
+        buffer.flip();
+        return decodePayload(buffer, entry.length());
+    }
+    
+    /**
+     * Visits all live records with one sequential pass over the segments.
+     *
+     * @param consumer receives {@code (id, payload)} for every live record
+     * @throws IOException if a segment cannot be read
+     */
+    synchronized void forEach(BiConsumer<Integer, byte[]> consumer) throws IOException {
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.getValue()));
+            while (buffer.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+                int offset = buffer.position();
+                byte op = buffer.get(offset);
+                int id = buffer.getInt(offset + 1);
+                int length = HEADER_SIZE + buffer.getInt(offset + 13) + TRAILER_SIZE;
+                if (length < HEADER_SIZE + TRAILER_SIZE || length > buffer.remaining())
+                    break;
+                
+                Entry entry = index.get(id);
+                if (op == OP_PUT && entry != null && entry.segment() == segment.getKey() && entry.offset() == offset)
+                    consumer.accept(id, decodePayload(buffer.slice(offset, length), length));
+                buffer.position(offset + length);
+            }
+        }
+    }
+    
+    /**
+     * Appends a {@code PUT} record, superseding any earlier record with the same id.
+     *
+     * @param id      the record id
+     * @param version the record version
+     * @param payload the serialized record
+     * @throws IOException if the record cannot be appended
+     */
+    synchronized void put(int id, long version, byte[] payload) throws IOException {
+        Entry entry = append(OP_PUT, id, version, payload);
+        Entry previous = index.put(id, entry);
+        if (previous != null)
+            liveBytes -= previous.length();
+        liveBytes += entry.length();
+        compactIfWorthwhile();
+    }
+    
+    /**
+     * Appends a {@code DELETE} record for the given id.
+     *
+     * @param id the record id
+     * @return {@code true} if the id was stored before
+     * @throws IOException if the record cannot be appended
+     */
+    synchronized boolean delete(int id) throws IOException {
+        Entry previous = index.get(id);
+        if (previous == null)
+            return false;
+        
+        append(OP_DELETE, id, previous.version(), new byte[0]);
+        index.remove(id);
+        liveBytes -= previous.length();
+        compactIfWorthwhile();
+        return true;
+    }
+    
+    /**
+     * Forces all appended records of the active segment to disk.
+     *
+     * @throws IOException if forcing fails
+     */
+    synchronized void sync() throws IOException {
+        if (active != null)
+            active.force(false);
+    }
+    
+    /**
+     * Captures the current state of the journal by hard linking (or copying) all segments into a directory.
+     * <p>
+     * Sealed segments are immutable and the active one is only appended to, so the captured files keep the
+     * current state even while records are appended or segments are compacted away. The captured length of the
+     * active segment excludes records appended afterwards.
+     * 
+     *
+     * @param target the directory to capture the segments in; created if missing
+     * @return the captured segments, named by their file name
+     * @throws IOException if a segment cannot be captured
+     */
+    synchronized List<StorageEngine.FrozenFile> freeze(Path target) throws IOException {
+        Files.createDirectories(target);
+        List<StorageEngine.FrozenFile> frozen = new ArrayList<>();
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Path copy = target.resolve(segment.getValue().getFileName());
+            long length = segment.getKey() == activeNumber && active != null ? active.size() : Files.size(segment.getValue());
+            FrozenFiles.linkOrCopy(segment.getValue(), copy);
+            frozen.add(new StorageEngine.FrozenFile(segment.getValue().getFileName().toString(), copy, length));
+        }
+        return frozen;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force(true);
+            active.close();
+            active = null;
+        }
+    }
+    
+    /**
+     * Scans all segments in order and rebuilds the index. A damaged tail of the newest segment
+     * is truncated; damage in older segments is logged and the rest of that segment is skipped.
+     *
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    private void load() throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(p -> segments.put(parseSegmentNumber(p), p));
+        }
+        
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.getValue()));
+            long validUntil = replay(segment.getKey(), buffer);
+            
+            if (validUntil < buffer.capacity()) {
+                if (segment.getKey().equals(segments.lastKey())) {
+                    log.warn("Truncating damaged tail of journal segment {} for {} at offset {}.", segment.getValue().getFileName(), name, validUntil);
+                    try (FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.WRITE)) {
+                        channel.truncate(validUntil);
+                    }
+                } else
+                    log.error("Journal segment {} for {} is damaged at offset {}, records after it are lost.", segment.getValue().getFileName(), name, validUntil);
+            }
+        }
+        
+        if (segments.isEmpty())
+            openNewSegment(1);
+        else {
+            activeNumber = segments.lastKey();
+            active = FileChannel.open(segments.lastEntry().getValue(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+    
+    /**
+     * Applies all intact records of one segment to the index.
+     *
+     * @param segmentNumber number of the segment being replayed
+     * @param buffer        the complete segment content
+     * @return the offset of the first byte that is not part of an intact record
+     */
+    private long replay(long segmentNumber, ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+            int offset = buffer.position();
+            byte op = buffer.get(offset);
+            int id = buffer.getInt(offset + 1);
+            long version = buffer.getLong(offset + 5);
+            int payloadLength = buffer.getInt(offset + 13);
+            int length = HEADER_SIZE + payloadLength + TRAILER_SIZE;
+            
+            if ((op != OP_PUT && op != OP_DELETE) || payloadLength < 0 || length > buffer.remaining())
+                return offset;
+            
+            crc.reset();
+            crc.update(buffer.slice(offset, HEADER_SIZE + payloadLength));
+            if ((int) crc.getValue() != buffer.getInt(offset + HEADER_SIZE + payloadLength))
+                return offset;
+            
+            Entry previous = op == OP_PUT
+                    ? index.put(id, new Entry(segmentNumber, offset, length, version))
+                    : index.remove(id);
+            if (previous != null)
+                liveBytes -= previous.length();
+            if (op == OP_PUT)
+                liveBytes += length;
+            totalBytes += length;
+            
+            buffer.position(offset + length);
+        }
+        return buffer.position();
+    }
+    
+    /**
+     * Encodes and appends a record to the active segment, rolling over to a new segment first
+     * if the record would push the active one beyond {@link #MAX_SEGMENT_SIZE}.
+     *
+     * @return the position of the appended record
+     */
+    private Entry append(byte op, int id, long version, byte[] payload) throws IOException {
+        ByteBuffer record = encode(op, id, version, payload);
+        if (active.size() > 0 && active.size() + record.remaining() > MAX_SEGMENT_SIZE)
+            rollSegment();
+        
+        long offset = active.size();
+        int length = record.remaining();
+        while (record.hasRemaining())
+            active.write(record);
+        
+        totalBytes += length;
+        return new Entry(activeNumber, offset, length, version);
+    }
+    
+    /**
+     * Rewrites all live records into fresh segments and deletes the old ones, if at least
+     * {@link #COMPACTION_DEAD_RATIO} of the journal is dead and the journal is large enough to bother.
+     *
+     * @throws IOException if compaction fails; the journal stays readable from the old segments
+     */
+    private void compactIfWorthwhile() throws IOException {
+        long deadBytes = totalBytes - liveBytes;
+        if (totalBytes < COMPACTION_MIN_BYTES || deadBytes < totalBytes * COMPACTION_DEAD_RATIO)
+            return;
+        
+        log.info("Compacting journal for {} ({} of {} bytes are dead).", name, deadBytes, totalBytes);
+        
+        Set<Long> oldSegments = new TreeSet<>(segments.keySet());
+        List<Map.Entry<Integer, Entry>> live = new ArrayList<>(index.entrySet());
+        live.sort(Comparator.comparingLong((Map.Entry<Integer, Entry> e) -> e.getValue().segment())
+                .thenComparingLong(e -> e.getValue().offset()));
+        
+        rollSegment();
+        Map<Integer, Entry> compacted = new HashMap<>();
+        totalBytes = 0;
+        for (Map.Entry<Integer, Entry> e : live) {
+            Entry old = e.getValue();
+            ByteBuffer buffer = ByteBuffer.allocate(old.length());
+            try (FileChannel channel = FileChannel.open(segments.get(old.segment()), StandardOpenOption.READ)) {
+                readFully(channel, buffer, old.offset());
+            }
+            buffer.flip();
+            compacted.put(e.getKey(), append(OP_PUT, e.getKey(), old.version(), decodePayload(buffer, old.length())));
+        }
+        active.force(true);
+        
+        // Only delete the old segments once everything they contained is durable elsewhere
+        for (Long segment : oldSegments)
+            Files.deleteIfExists(segments.remove(segment));
+        
+        index.clear();
+        index.putAll(compacted);
+        liveBytes = totalBytes;
+    }
+    
+    private void rollSegment() throws IOException {
+        active.force(true);
+        active.close();
+        openNewSegment(activeNumber + 1);
+    }
+    
+    private void openNewSegment(long number) throws IOException {
+        Path path = dir.resolve(String.format("%010d%s", number, SEGMENT_SUFFIX));
+        active = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeNumber = number;
+        segments.put(number, path);
+    }
+    
+    private static ByteBuffer encode(byte op, int id, long version, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE);
+        buffer.put(op).putInt(id).putLong(version).putInt(payload.length).put(payload);
+        
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, HEADER_SIZE + payload.length);
+        buffer.putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+    
+    /**
+     * Extracts the payload from a buffer positioned at the start of a complete record.
+     */
+    private static byte[] decodePayload(ByteBuffer record, int length) {
+        byte[] payload = new byte[length - HEADER_SIZE - TRAILER_SIZE];
+        record.get(record.position() + HEADER_SIZE, payload);
+        return payload;
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new IOException("Unexpected end of journal segment.");
+        }
+    }
+    
+    private static long parseSegmentNumber(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,227 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage backend used by {@link de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper} to store serialized DTOs.
+ * <p>
+ * Engines operate on already serialized payloads and know nothing about JSON or versioning;
+ * those concerns stay in the helper. Records are grouped per DTO class and addressed by
+ * {@link Persistable#id()}.
+ * 
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public interface StorageEngine extends Closeable {
+    
+    /**
+     * Reads the stored payload of a single record.
+     *
+     * @param clazz the DTO class of the record
+     * @param id    the identifier of the record
+     * @return the stored payload, or {@code null} if no record with this id exists
+     * @throws IOException if the underlying storage cannot be read
+     */
+    byte[] read(Class<? extends Persistable> clazz, int id) throws IOException;
+    
+    /**
+     * Streams all stored payloads of the given class to the consumer.
+     * <p>
+     * The consumer receives a record key (used for log messages only) and the payload.
+     * Engines may skip single unreadable records with a logged warning.
+     * 
+     *
+     * @param clazz    the DTO class whose records should be visited
+     * @param consumer receives {@code (recordKey, payload)} for every stored record
+     * @throws IOException if the records cannot be enumerated
+     */
+    void forEach(Class<? extends Persistable> clazz, BiConsumer<String, byte[]> consumer) throws IOException;
+    
+    /**
+     * Returns the ids of all stored records of a class without reading their payloads.
+     *
+     * @param clazz the DTO class
+     * @return the stored ids; may be empty
+     * @throws IOException if the records cannot be enumerated
+     */
+    Set<Integer> ids(Class<? extends Persistable> clazz) throws IOException;
+    
+    /**
+     * Stores the payload for the given object, replacing any previous record with the same id.
+     *
+     * @param p       the object the payload belongs to
+     * @param payload the serialized representation of {@code p}
+     * @throws IOException if the payload cannot be written
+     */
+    void write(Persistable p, byte[] payload) throws IOException;
+    
+    /**
+     * Stores a batch of payloads as one group commit.
+     * <p>
+     * Engines should make the whole batch durable with as few syncs as possible instead of
+     * syncing each record. The default implementation simply writes record by record.
+     * 
+     *
+     * @param records the objects to store, mapped to their serialized representation
+     * @throws IOException if a payload cannot be written; earlier records of the batch may already be stored
+     */
+    default void writeAll(Map<? extends Persistable, byte[]> records) throws IOException {
+        for (Map.Entry<? extends Persistable, byte[]> e : records.entrySet())
+            write(e.getKey(), e.getValue());
+    }
+    
+    /**
+     * Removes the record with the given id.
+     *
+     * @param clazz the DTO class of the record
+     * @param id    the identifier of the record
+     * @return {@code true} if a record was removed, {@code false} if none existed
+     * @throws IOException if the record cannot be removed
+     */
+    boolean delete(Class<? extends Persistable> clazz, int id) throws IOException;
+    
+    /**
+     * Removes a batch of records of one class as one group commit.
+     * <p>
+     * The default implementation simply deletes record by record.
+     * 
+     *
+     * @param clazz the DTO class of the records
+     * @param ids   the identifiers of the records
+     * @return the number of records that existed and were removed
+     * @throws IOException if a record cannot be removed; earlier records of the batch may already be removed
+     */
+    default int deleteAll(Class<? extends Persistable> clazz, Collection<Integer> ids) throws IOException {
+        int deleted = 0;
+        for (int id : ids)
+            if (delete(clazz, id))
+                deleted++;
+        return deleted;
+    }
+    
+    /**
+     * Computes a cheap fingerprint of the stored state of a class without reading any payload.
+     * <p>
+     * The fingerprint changes whenever a record of the class is written or deleted, so it can be
+     * used to validate caches derived from the stored records.
+     * 
+     *
+     * @param clazz the DTO class
+     * @return the fingerprint of the stored records of {@code clazz}
+     * @throws IOException if the storage metadata cannot be read
+     */
+    long fingerprint(Class<? extends Persistable> clazz) throws IOException;
+    
+    /**
+     * Returns whether this engine indexes a field of the stored records of a class, so {@link #findIds} can
+     * look it up without reading the records. The default implementation indexes nothing.
+     *
+     * @param clazz the DTO class
+     * @param field the name of an {@code int} field of the DTO, e.g. {@code "promptId"}
+     * @return {@code true} if {@link #findIds} supports {@code field} of {@code clazz}
+     */
+    default boolean isIndexed(Class<? extends Persistable> clazz, String field) {
+        return false;
+    }
+    
+    /**
+     * Returns the ids of all records of a class whose indexed field has the given value.
+     *
+     * @param clazz the DTO class
+     * @param field the name of a field for which {@link #isIndexed} returns {@code true}
+     * @param value the value to look up
+     * @return the ids of the matching records; may be empty
+     * @throws IllegalArgumentException if {@code field} is not indexed for {@code clazz}
+     * @throws IOException              if the lookup fails
+     */
+    default Set<Integer> findIds(Class<? extends Persistable> clazz, String field, int value) throws IOException {
+        throw new IllegalArgumentException("Field " + field + " of class " + clazz.getSimpleName() + " is not indexed.");
+    }
+    
+    /**
+     * Starts watching the stored records of a class for changes made outside of this engine, e.g. by
+     * another process writing into the same base path.
+     * <p>
+     * The listener is called from a background thread and may also be notified of changes made through
+     * this engine. The default implementation does not support watching and returns {@code false}.
+     * 
+     *
+     * @param clazz    the DTO class whose records should be watched
+     * @param listener receives the changes of records of {@code clazz}
+     * @return {@code true} if the engine watches the records, {@code false} if watching is not supported
+     * @throws IOException if watching is supported but cannot be started
+     */
+    default boolean watch(Class<? extends Persistable> clazz, ChangeListener listener) throws IOException {
+        return false;
+    }
+    
+    /**
+     * Captures a point-in-time consistent state of the stored records of the given classes while writes continue,
+     * e.g. for an online backup.
+     * <p>
+     * The state is consistent across all given classes. Writes are at most blocked while the engine links or
+     * copies its files into {@code staging}; the returned files can then be read at leisure, as the engine never
+     * changes their first {@link FrozenFile#length()} bytes again. Files may be hard links to the stored files,
+     * so {@code staging} should be on the same file system as the base path.
+     * 
+     *
+     * @param classes the DTO classes to capture
+     * @param staging an existing, empty directory the engine may create files in; deleting it is up to the caller
+     * @return the captured files, named by their path relative to the base path of the engine
+     * @throws IOException if the state cannot be captured
+     */
+    List<FrozenFile> freeze(Collection<Class<? extends Persistable>> classes, Path staging) throws IOException;
+    
+    /**
+     * Flushes pending state and releases all resources held by this engine.
+     *
+     * @throws IOException if flushing fails
+     */
+    @Override
+    void close() throws IOException;
+    
+    /**
+     * A file captured by {@link #freeze(Collection, Path)}.
+     *
+     * @param name   the path of the file relative to the base path of the engine, with {@code /} as separator
+     * @param path   the captured file
+     * @param length the number of bytes of {@code path} that belong to the captured state; later bytes must be ignored
+     */
+    record FrozenFile(String name, Path path, long length) {
+    }
+    
+    /**
+     * Receives the record changes reported by {@link #watch(Class, ChangeListener)}.
+     */
+    interface ChangeListener {
+        
+        /**
+         * Called when a record was created or replaced.
+         *
+         * @param id the identifier of the record
+         */
+        void changed(int id);
+        
+        /**
+         * Called when a record was removed.
+         *
+         * @param id the identifier of the record
+         */
+        void deleted(int id);
+        
+        /**
+         * Called when changes were lost, e.g. because too many happened at once; every record may have changed.
+         */
+        void overflowed();
+    }
+}
@@ -0,0 +1,67 @@
+package de.seggebaeing.sqlanalyzer.persistence.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Available {@link StorageEngine} implementations, selectable by name (e.g. from the configuration).
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public enum StorageEngineType {
+    /**
+     * One JSON file per record, see {@link FileStorageEngine}.
+     */
+    FILE(FileStorageEngine::new),
+    /**
+     * One append-only segmented journal per DTO class, see {@link JournalStorageEngine}.
+     */
+    JOURNAL(JournalStorageEngine::new),
+    /**
+     * One table per DTO class in an embedded H2 database, see {@link JdbcStorageEngine}.
+     */
+    JDBC(JdbcStorageEngine::new);
+    
+    private static final Logger log = LoggerFactory.getLogger(StorageEngineType.class);
+    
+    private final Function<Path, StorageEngine> factory;
+    
+    StorageEngineType(Function<Path, StorageEngine> factory) {
+        this.factory = factory;
+    }
+    
+    /**
+     * Creates a new engine of this type rooted at the given directory.
+     *
+     * @param basePath the directory under which the engine stores its data
+     * @return the new engine
+     */
+    public StorageEngine create(Path basePath) {
+        return factory.apply(basePath);
+    }
+    
+    /**
+     * Resolves a type by name, ignoring case and surrounding whitespace.
+     * <p>
+     * A missing name falls back to {@link #FILE}; unknown names do too, with a logged warning.
+     * 
+     *
+     * @param name the name of the type, may be {@code null}
+     * @return the matching type, or {@link #FILE} if none matches
+     */
+    public static StorageEngineType fromName(String name) {
+        if (name == null || name.isBlank())
+            return FILE;
+        
+        for (StorageEngineType type : values())
+            if (type.name().equalsIgnoreCase(name.trim()))
+                return type;
+        
+        log.warn("Unknown storage engine '{}', falling back to {}.", name, FILE);
+        return FILE;
+    }
+}
@@ -0,0 +1,183 @@
+package de.seggebaeing.sqlanalyzer.persistence.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Thread-safe allocator of monotonically increasing ids for the DTOs of one class.
+ * <p>
+ * Ids are handed out from blocks of {@value #BLOCK_SIZE} ids. Within a block, allocation is a single
+ * lock-free {@link AtomicInteger} increment. Only when a block is exhausted is the next one reserved by
+ * advancing a persisted high-water mark in <code>&lt;dir&gt;/&lt;SimpleClassName&gt;.id</code>, so there is one
+ * sync per block instead of one per id. Ids of a reserved but unused block are skipped after a restart.
+ * <p>
+ * Reservations hold an exclusive lock on the mark file, so several processes sharing the same saves
+ * directory never receive overlapping blocks. Within a process, reservations of all allocators of the
+ * same mark file, e.g. those of a workspace before and after it was unloaded and opened again, take
+ * turns, as file locks are held per process.
+ * 
+ *
+ * <p><strong>Missing marks:</strong> If the mark file doesn't exist yet, e.g. after switching the storage
+ * engine or restoring a backup, the first block starts after the highest id known at that point, so ids
+ * of stored, archived or checkpointed objects are not handed out again.
+ *
+ * <p><strong>Legacy ids:</strong> Earlier versions assigned random ids. The ids already in use when the
+ * allocator is created are skipped if they come up, so they never collide with newly allocated ones.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class IdAllocator {
+    private static final Logger log = LoggerFactory.getLogger(IdAllocator.class);
+    
+    /**
+     * Number of ids reserved per sync of the high-water mark.
+     */
+    public static final int BLOCK_SIZE = 1024;
+    
+    private static final String SUFFIX = ".id";
+    
+    /**
+     * Monitors serializing the reservations of this process per mark file.
+     */
+    private static final Map<Path, Object> monitors = new ConcurrentHashMap<>();
+    
+    private final Path path;
+    private final String className;
+    private final Set<Integer> legacyIds;
+    private final IntSupplier highestKnownId;
+    
+    /**
+     * The block currently handed out from; replaced by {@link #refill(Block)} when exhausted.
+     */
+    private volatile Block block;
+    
+    /**
+     * Creates an allocator for a class, storing its high-water mark in the given directory.
+     * <p>
+     * No ids are reserved until the first call to {@link #next()}.
+     * 
+     *
+     * @param dir            the directory holding the high-water marks; created on the first reservation
+     * @param clazz          the class the ids are allocated for
+     * @param usedIds        the ids currently in use by stored objects of {@code clazz}
+     * @param highestKnownId supplies the highest id of {@code clazz} known anywhere, or {@code 0} if none;
+     *                       only called if the mark file doesn't exist yet
+     */
+    public IdAllocator(Path dir, Class<?> clazz, Collection<Integer> usedIds, IntSupplier highestKnownId) {
+        this.path = dir.resolve(clazz.getSimpleName() + SUFFIX).toAbsolutePath().normalize();
+        this.className = clazz.getSimpleName();
+        this.legacyIds = Set.copyOf(usedIds);
+        this.highestKnownId = highestKnownId;
+        this.block = new Block(0, 0);
+    }
+    
+    /**
+     * Returns a new id that has never been returned before for this class, in this or any other process
+     * sharing the directory, and is not among the ids in use at construction.
+     *
+     * @return a new positive id
+     * @throws UncheckedIOException if the next block cannot be reserved
+     * @throws IllegalStateException if all positive {@code int} ids are used up
+     */
+    public int next() {
+        while (true) {
+            Block current = block;
+            int id = current.next.getAndIncrement();
+            if (id >= current.start && id < current.end) {
+                if (!legacyIds.contains(id))
+                    return id;
+            } else {
+                refill(current);
+            }
+        }
+    }
+    
+    /**
+     * Replaces the exhausted block with a newly reserved one, unless another thread already did.
+     */
+    private synchronized void refill(Block exhausted) {
+        if (block != exhausted)
+            return;
+        
+        try {
+            block = reserve();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't reserve ids for class " + className + ".", e);
+        }
+    }
+    
+    /**
+     * Advances the persisted high-water mark by one block under an exclusive file lock and returns the block.
+     * <p>
+     * The mark is forced to disk before the block is used, so no id is handed out twice after a crash.
+     * 
+     */
+    private Block reserve() throws IOException {
+        Files.createDirectories(path.getParent());
+        synchronized (monitors.computeIfAbsent(path, p -> new Object())) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return reserve(channel);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+    
+    private Block reserve(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        int start;
+        if (channel.size() >= Integer.BYTES) {
+            while (buffer.hasRemaining())
+                channel.read(buffer, buffer.position());
+            start = Math.max(1, buffer.flip().getInt());
+        } else {
+            start = (int) Math.min(Math.max(0, highestKnownId.getAsInt()) + 1L, Integer.MAX_VALUE);
+            log.info("No id mark for class {} yet, starting at {}.", className, start);
+        }
+        if (start == Integer.MAX_VALUE)
+            throw new IllegalStateException("All ids of class " + className + " are used up.");
+        
+        int end = (int) Math.min((long) start + BLOCK_SIZE, Integer.MAX_VALUE);
+        buffer.clear().putInt(end).flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer, buffer.position());
+        channel.force(false);
+        
+        log.debug("Reserved ids [{}, {}) for class {}.", start, end, className);
+        return new Block(start, end);
+    }
+    
+    /**
+     * A reserved range {@code [start, end)} of ids and the next id to hand out from it.
+     */
+    private static final class Block {
+        private final int start;
+        private final int end;
+        private final AtomicInteger next;
+        
+        Block(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.next = new AtomicInteger(start);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package de.seggebaeing.sqlanalyzer.persistence.lock;
+
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cross-process lock of a saves directory, held by every process that has it open, plus per-class write leases.
+ * <p>
+ * The workspace lock is a {@link FileLock} on <code>&lt;basePath&gt;/workspace.lock</code>, held from opening
+ * until closing the workspace. It is either exclusive, so a second process (e.g. a second UI instance) fails
+ * to open the directory instead of overwriting the first one's files, or shared, so several processes agree
+ * to work on the directory together, e.g. a UI and a headless batch runner splitting a large run. A shared
+ * and an exclusive holder exclude each other.
+ * 
+ *
+ * <p><strong>Write leases:</strong> Processes sharing a directory write a class only while holding its lease,
+ * an exclusive {@link FileLock} on <code>&lt;basePath&gt;/leases/&lt;SimpleClassName&gt;.lease</code>, so that
+ * comparing the stored version and writing are one atomic step across processes. Leases are held per write
+ * or batch only; reads take none, as the storage engine replaces records atomically. Leases of several classes
+ * are always acquired in the same order, so processes cannot deadlock. Under an exclusive workspace lock,
+ * leases are not needed and {@link #lease(Collection)} returns immediately.
+ *
+ * <p><strong>Crashes:</strong> The operating system releases the locks of a terminated process, so leases
+ * never have to expire and a crashed process never blocks the directory.
+ *
+ * <p><strong>Threading:</strong> Thread-safe. Threads of one process acquire a lease one after another.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class WorkspaceLock implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceLock.class);
+    
+    /**
+     * Name of the lock file in the base path.
+     */
+    public static final String LOCK_FILE = "workspace.lock";
+    
+    private static final String LEASE_DIR = "leases";
+    private static final String LEASE_SUFFIX = ".lease";
+    
+    /**
+     * Maximum time to wait for the write lease of a class held by another process.
+     */
+    private static final long LEASE_TIMEOUT_MILLIS = 30_000;
+    private static final long MAX_POLL_MILLIS = 50;
+    
+    private final Path basePath;
+    private final boolean shared;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final Map<Class<?>, Lease> leases = new ConcurrentHashMap<>();
+    
+    private WorkspaceLock(Path basePath, boolean shared, FileChannel channel, FileLock lock) {
+        this.basePath = basePath;
+        this.shared = shared;
+        this.channel = channel;
+        this.lock = lock;
+    }
+    
+    /**
+     * Acquires the workspace lock of a saves directory, unless another process holds it incompatibly.
+     *
+     * @param basePath the saves directory; created if it doesn't exist
+     * @param shared   {@code true} to share the directory with other processes doing the same
+     * @return the acquired lock, or {@code null} if another process holds it exclusively, or holds it at all
+     *         if {@code shared} is {@code false}
+     * @throws IOException if the lock file cannot be created or locked
+     */
+    public static WorkspaceLock tryAcquire(Path basePath, boolean shared) throws IOException {
+        Files.createDirectories(basePath);
+        FileChannel channel = FileChannel.open(basePath.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            return new WorkspaceLock(basePath, shared, channel, lock);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns whether the directory is shared with other processes.
+     *
+     * @return {@code true} if the workspace lock is shared
+     */
+    public boolean isShared() {
+        return shared;
+    }
+    
+    /**
+     * Acquires the write leases of the given classes, waiting while other processes hold them.
+     * <p>
+     * Close the returned handle on the acquiring thread to release them, in a {@code finally} block.
+     * Closing it again has no effect.
+     * 
+     *
+     * @param classes the classes about to be written
+     * @return the handle releasing the leases
+     * @throws IOException if a lease cannot be acquired within {@value #LEASE_TIMEOUT_MILLIS} ms
+     */
+    public Held lease(Collection<? extends Class<? extends Persistable>> classes) throws IOException {
+        if (!shared || classes.isEmpty())
+            return () -> {};
+        
+        // A fixed order across all processes, so they cannot deadlock
+        SortedMap<String, Class<? extends Persistable>> ordered = new TreeMap<>();
+        classes.forEach(clazz -> ordered.put(clazz.getSimpleName(), clazz));
+        
+        Deque<Lease> acquired = new ArrayDeque<>();
+        try {
+            for (Class<? extends Persistable> clazz : ordered.values()) {
+                Lease lease = leases.computeIfAbsent(clazz, c -> new Lease(basePath.resolve(LEASE_DIR).resolve(c.getSimpleName() + LEASE_SUFFIX)));
+                lease.acquire();
+                acquired.push(lease);
+            }
+        } catch (IOException | RuntimeException e) {
+            acquired.forEach(Lease::release);
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean(false);
+        return () -> {
+            if (released.compareAndSet(false, true))
+                acquired.forEach(Lease::release);
+        };
+    }
+    
+    /**
+     * Releases the workspace lock and closes all lease files.
+     *
+     * @throws IOException if the lock file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        for (Lease lease : leases.values())
+            lease.close();
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Handle of acquired write leases.
+     */
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+        /**
+         * Releases the leases, unless already released.
+         */
+        @Override
+        void close();
+    }
+    
+    /**
+     * The write lease of one class: an in-process lock serializing this process's threads, and the
+     * file lock excluding other processes while held.
+     */
+    private static final class Lease {
+        private final Path path;
+        private final ReentrantLock threadLock = new ReentrantLock(true);
+        private FileChannel channel = null;
+        private FileLock fileLock = null;
+        
+        Lease(Path path) {
+            this.path = path;
+        }
+        
+        void acquire() throws IOException {
+            try {
+                if (!threadLock.tryLock(LEASE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                    throw new IOException("Timed out waiting for the write lease " + path.getFileName() + ".");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the write lease " + path.getFileName() + ".", e);
+            }
+            if (threadLock.getHoldCount() > 1)
+                return;
+            
+            try {
+                if (channel == null) {
+                    Files.createDirectories(path.getParent());
+                    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                }
+                fileLock = lockFile();
+            } catch (IOException | RuntimeException e) {
+                threadLock.unlock();
+                throw e;
+            }
+        }
+        
+        /**
+         * Polls for the file lock with growing intervals, as {@link FileChannel#lock()} cannot time out.
+         */
+        private FileLock lockFile() throws IOException {
+            long deadline = System.currentTimeMillis() + LEASE_TIMEOUT_MILLIS;
+            long pause = 1;
+            while (true) {
+                FileLock acquired = channel.tryLock();
+                if (acquired != null)
+                    return acquired;
+                if (System.currentTimeMillis() > deadline)
+                    throw new IOException("Timed out waiting for the write lease " + path.getFileName() + " held by another process.");
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the write lease " + path.getFileName() + ".", e);
+                }
+                pause = Math.min(pause * 2, MAX_POLL_MILLIS);
+            }
+        }
+        
+        void release() {
+            try {
+                if (threadLock.getHoldCount() == 1 && fileLock != null) {
+                    fileLock.release();
+                    fileLock = null;
+                }
+            } catch (IOException e) {
+                log.warn("Couldn't release the write lease {}.", path.getFileName(), e);
+            } finally {
+                threadLock.unlock();
+            }
+        }
+        
+        void close() throws IOException {
+            threadLock.lock();
+            try {
+                if (channel != null)
+                    channel.close();
+                channel = null;
+                fileLock = null;
+            } finally {
+                threadLock.unlock();
+            }
+        }
+    }
+}
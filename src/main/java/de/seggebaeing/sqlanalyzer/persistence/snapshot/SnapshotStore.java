@@ -0,0 +1,323 @@
+package de.seggebaeing.sqlanalyzer.persistence.snapshot;
+
+import de.seggebaeing.sqlanalyzer.persistence.dto.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Binary snapshots of all DTOs of a class, used to skip parsing the stored JSON at startup.
+ * <p>
+ * One file per class and generation: <code>&lt;dir&gt;/&lt;SimpleClassName&gt;.&lt;generation&gt;.snap</code>,
+ * of which the highest generation is read. A snapshot is only a cache;
+ * the storage engine stays the source of truth. Each snapshot carries the storage fingerprint it was
+ * taken at (see {@link de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngine#fingerprint(Class)})
+ * and is ignored as soon as the fingerprint no longer matches.
+ * 
+ *
+ * <p><strong>Format:</strong> header ({@code magic}, format version, schema hash, fingerprint, record count),
+ * a string dictionary holding every distinct string once, then the records with their components in
+ * declaration order: {@code int}/{@code long} as zig-zag varints, {@code double} as 8 bytes and
+ * {@code String} as a varint dictionary index. Snapshots are read through a {@link MappedByteBuffer}.
+ *
+ * <p><strong>Generations:</strong> A mapping is only released once the buffer is garbage collected, and some
+ * platforms, e.g. Windows, refuse to replace or delete a mapped file. A snapshot is therefore never replaced:
+ * writing creates the next generation, and older generations are deleted afterwards where possible; those still
+ * mapped are left behind and deleted by a later write.
+ *
+ * @apiNote Only {@code record} DTOs whose components are {@code int}, {@code long}, {@code double} or
+ * {@code String} are supported; other classes are never snapshotted.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public class SnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+    
+    private static final int MAGIC = 0x53514153; // "SQAS"
+    private static final byte FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".snap";
+    private static final String TMP_SUFFIX = ".tmp";
+    
+    private final Path dir;
+    
+    /**
+     * Creates a store keeping its snapshot files in the given directory.
+     *
+     * @param dir the snapshot directory; created on first write
+     */
+    public SnapshotStore(Path dir) {
+        this.dir = dir;
+    }
+    
+    /**
+     * Reads the snapshot of a class if it exists and was taken at the given fingerprint.
+     *
+     * @param <T>         the DTO type
+     * @param clazz       the DTO class
+     * @param fingerprint the current storage fingerprint of the class
+     * @return the snapshotted DTOs, or {@code null} if there is no usable snapshot
+     */
+    public <T extends Persistable> Set<T> read(Class<T> clazz, long fingerprint) {
+        if (!clazz.isRecord())
+            return null;
+        
+        Path path;
+        try {
+            NavigableMap<Long, Path> generations = listGenerations(clazz);
+            if (generations.isEmpty())
+                return null;
+            path = generations.lastEntry().getValue();
+        } catch (IOException e) {
+            log.warn("Couldn't list snapshots of class {}, ignoring them.", clazz.getSimpleName(), e);
+            return null;
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            if (buffer.getInt() != MAGIC || buffer.get() != FORMAT_VERSION || buffer.getLong() != schemaHash(clazz)) {
+                log.info("Snapshot of class {} has an outdated format, ignoring it.", clazz.getSimpleName());
+                return null;
+            }
+            if (buffer.getLong() != fingerprint) {
+                log.info("Snapshot of class {} is stale, ignoring it.", clazz.getSimpleName());
+                return null;
+            }
+            
+            int count = readVarInt(buffer);
+            String[] dictionary = new String[readVarInt(buffer)];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[readVarInt(buffer)];
+                buffer.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            
+            RecordComponent[] components = clazz.getRecordComponents();
+            Constructor<T> constructor = canonicalConstructor(clazz, components);
+            Object[] args = new Object[components.length];
+            Set<T> dtos = new HashSet<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                for (int c = 0; c < components.length; c++) {
+                    Class<?> type = components[c].getType();
+                    if (type == int.class)
+                        args[c] = (int) unzigzag(readVarLong(buffer));
+                    else if (type == long.class)
+                        args[c] = unzigzag(readVarLong(buffer));
+                    else if (type == double.class)
+                        args[c] = buffer.getDouble();
+                    else
+                        args[c] = dictionary[readVarInt(buffer)];
+                }
+                dtos.add(constructor.newInstance(args));
+            }
+            
+            log.info("Loaded {} objects of class {} from snapshot.", dtos.size(), clazz.getSimpleName());
+            return dtos;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | ReflectiveOperationException | IllegalArgumentException e) {
+            log.warn("Couldn't read snapshot of class {}, ignoring it.", clazz.getSimpleName(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Writes a snapshot of the given DTOs as the next generation, superseding any previous snapshot of the class.
+     * <p>
+     * The file is written to a temporary file first and then moved into place under a new name, so no
+     * existing file is replaced. Older generations are deleted afterwards where possible. Failures are
+     * logged and leave no usable snapshot behind.
+     * 
+     *
+     * @param <T>         the DTO type
+     * @param clazz       the DTO class
+     * @param fingerprint the storage fingerprint the DTOs correspond to
+     * @param dtos        all stored DTOs of the class
+     */
+    public <T extends Persistable> void write(Class<T> clazz, long fingerprint, Collection<T> dtos) {
+        if (!clazz.isRecord() || !isSupported(clazz)) {
+            log.debug("Class {} is not supported by snapshots, skipping.", clazz.getSimpleName());
+            return;
+        }
+        
+        try {
+            RecordComponent[] components = clazz.getRecordComponents();
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            ByteArrayOutputStream records = new ByteArrayOutputStream(dtos.size() * 32);
+            
+            for (T dto : dtos) {
+                for (RecordComponent component : components) {
+                    Object value = component.getAccessor().invoke(dto);
+                    Class<?> type = component.getType();
+                    if (type == int.class)
+                        writeVarLong(records, zigzag((Integer) value));
+                    else if (type == long.class)
+                        writeVarLong(records, zigzag((Long) value));
+                    else if (type == double.class)
+                        writeLong(records, Double.doubleToRawLongBits((Double) value));
+                    else
+                        writeVarLong(records, dictionary.computeIfAbsent((String) value, s -> dictionary.size()));
+                }
+            }
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream(records.size() + dictionary.size() * 16 + 64);
+            writeInt(out, MAGIC);
+            out.write(FORMAT_VERSION);
+            writeLong(out, schemaHash(clazz));
+            writeLong(out, fingerprint);
+            writeVarLong(out, dtos.size());
+            writeVarLong(out, dictionary.size());
+            for (String s : dictionary.keySet()) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, bytes.length);
+                out.write(bytes);
+            }
+            records.writeTo(out);
+            
+            Files.createDirectories(dir);
+            NavigableMap<Long, Path> previous = listGenerations(clazz);
+            long generation = previous.isEmpty() ? 1 : previous.lastKey() + 1;
+            Path path = dir.resolve(clazz.getSimpleName() + "." + generation + SUFFIX);
+            Path tmp = path.resolveSibling(path.getFileName() + TMP_SUFFIX);
+            try {
+                Files.write(tmp, out.toByteArray());
+                Files.move(tmp, path);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            log.info("Wrote snapshot of {} objects of class {}.", dtos.size(), clazz.getSimpleName());
+            deleteGenerations(clazz, previous.values());
+        } catch (IOException | ReflectiveOperationException e) {
+            log.warn("Couldn't write snapshot of class {}.", clazz.getSimpleName(), e);
+            try {
+                deleteGenerations(clazz, listGenerations(clazz).values());
+            } catch (IOException ex) {
+                log.warn("Couldn't list old snapshots of class {}.", clazz.getSimpleName(), ex);
+            }
+        }
+    }
+    
+    /**
+     * Returns the snapshot files of a class by generation; a file without generation, as written by earlier
+     * versions, counts as generation {@code 0}.
+     */
+    private NavigableMap<Long, Path> listGenerations(Class<?> clazz) throws IOException {
+        NavigableMap<Long, Path> generations = new TreeMap<>();
+        if (Files.notExists(dir))
+            return generations;
+        
+        Path unnumbered = dir.resolve(clazz.getSimpleName() + SUFFIX);
+        if (Files.exists(unnumbered))
+            generations.put(0L, unnumbered);
+        
+        String prefix = clazz.getSimpleName() + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    generations.put(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring unexpected snapshot file {}.", name);
+                }
+            }
+        }
+        return generations;
+    }
+    
+    /**
+     * Deletes the given snapshot files; files still mapped on platforms that forbid this are kept for a later write.
+     */
+    private static void deleteGenerations(Class<?> clazz, Collection<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.debug("Couldn't delete old snapshot {} of class {} yet.", path.getFileName(), clazz.getSimpleName(), e);
+            }
+        }
+    }
+    
+    private static boolean isSupported(Class<?> recordClass) {
+        for (RecordComponent component : recordClass.getRecordComponents()) {
+            Class<?> type = component.getType();
+            if (type != int.class && type != long.class && type != double.class && type != String.class)
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Hash of the component names and types, so snapshots of a changed DTO layout are ignored.
+     */
+    private static long schemaHash(Class<?> recordClass) {
+        long hash = 1125899906842597L;
+        for (RecordComponent component : recordClass.getRecordComponents()) {
+            String s = component.getName() + ':' + component.getType().getName();
+            for (int i = 0; i < s.length(); i++)
+                hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+    
+    private static <T> Constructor<T> canonicalConstructor(Class<T> recordClass, RecordComponent[] components) throws NoSuchMethodException {
+        Class<?>[] types = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++)
+            types[i] = components[i].getType();
+        return recordClass.getDeclaredConstructor(types);
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint in snapshot.");
+    }
+    
+    private static int readVarInt(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Varint out of range in snapshot.");
+        return (int) value;
+    }
+    
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8)
+            out.write(value >>> shift);
+    }
+    
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8)
+            out.write((int) (value >>> shift));
+    }
+}
@@ -0,0 +1,360 @@
+package de.seggebaeing.sqlanalyzer.persistence.transfer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.codec.DTOCodecRegistry;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DTODAO;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.*;
+import de.seggebaeing.sqlanalyzer.persistence.dto.*;
+import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Streaming import and export of whole workspaces as NDJSON, e.g. to move a workspace between machines or to
+ * bulk load objects produced by other tooling.
+ * <p>
+ * Every line holds one DTO in an envelope naming its type, e.g.
+ * <code>{"type":"Prompt","dto":{"id":7,"version":1,"text":"...","sampleQueryId":3,"typeId":2}}</code>. The types are
+ * {@code LLM}, {@code PromptType}, {@code SampleQuery}, {@code Prompt}, {@code GeneratedQuery} and
+ * {@code EvaluationResult}; exports list them in this order, so every DTO comes after the DTOs it references.
+ * 
+ *
+ * <p><strong>Export</strong> streams the stored DTOs class by class via {@link PersistenceHelper#forEach} and
+ * serializes them in parallel in batches of {@value #BATCH_SIZE}, writing the lines in a stable order.
+ * Saves queued by write-behind are flushed first. API keys of LLMs are left empty unless explicitly included,
+ * as the file is plain text.
+ *
+ * <p><strong>Import</strong> reads line by line and stores every DTO under a new id from its DAO, saving in
+ * batches of {@value #BATCH_SIZE}. References to DTOs earlier in the file are remapped to their new ids;
+ * references to ids not in the file are kept, so files may refer to objects already in the workspace.
+ * Before a batch is saved, the pending DTOs of all classes it may reference are saved, so no stored DTO ever
+ * refers to one that isn't stored yet. Unreadable lines are skipped with a logged warning.
+ *
+ * <p><strong>Memory:</strong> Neither direction holds more than a batch of DTOs, plus a primitive id map of
+ * about 32 bytes per imported referenceable DTO. Note that in eager mode (see {@link DTODAO#setLazyCacheSize(int)})
+ * the DAOs themselves still keep every imported DTO cached.
+ *
+ * @author Felix Seggebäing
+ * @since 1.0
+ */
+public final class WorkspaceTransfer {
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceTransfer.class);
+    private static final Gson gson = DTOCodecRegistry.registerAll(new GsonBuilder()).create();
+    
+    /**
+     * Number of DTOs serialized or saved together.
+     */
+    public static final int BATCH_SIZE = 500;
+    
+    /**
+     * All transferred DTO classes, ordered so that referenced classes come first.
+     */
+    private static final List<Section<?>> SECTIONS = List.of(
+            new Section<>("LLM", LLMDTO.class, LLMDAOImpl::getInstance, (dto, id, ids) ->
+                    new LLMDTO(id, dto.version(), dto.name(), dto.api(), dto.model(), dto.apiKey(), dto.minTemperature(), dto.maxTemperature()),
+                    dto -> new LLMDTO(dto.id(), dto.version(), dto.name(), dto.api(), dto.model(), "", dto.minTemperature(), dto.maxTemperature())),
+            new Section<>("PromptType", PromptTypeDTO.class, PromptTypeDAOImpl::getInstance, (dto, id, ids) ->
+                    new PromptTypeDTO(id, dto.version(), dto.name(), dto.description()), UnaryOperator.identity()),
+            new Section<>("SampleQuery", SampleQueryDTO.class, SampleQueryDAOImpl::getInstance, (dto, id, ids) ->
+                    new SampleQueryDTO(id, dto.version(), dto.name(), dto.description(), dto.sql(), dto.promptContext(), dto.complexity()), UnaryOperator.identity()),
+            new Section<>("Prompt", PromptDTO.class, PromptDAOImpl::getInstance, (dto, id, ids) ->
+                    new PromptDTO(id, dto.version(), dto.text(), ids.resolve(SampleQueryDTO.class, dto.sampleQueryId()), ids.resolve(PromptTypeDTO.class, dto.typeId())),
+                    UnaryOperator.identity()),
+            new Section<>("GeneratedQuery", GeneratedQueryDTO.class, GeneratedQueryDAOImpl::getInstance, (dto, id, ids) ->
+                    new GeneratedQueryDTO(id, dto.version(), dto.sql(), dto.sqlHash(), ids.resolve(LLMDTO.class, dto.generatorId()), ids.resolve(PromptDTO.class, dto.promptId())),
+                    UnaryOperator.identity()),
+            new Section<>("EvaluationResult", EvaluationResultDTO.class, EvaluationResultDAOImpl::getInstance, (dto, id, ids) ->
+                    new EvaluationResultDTO(id, dto.version(), ids.resolve(GeneratedQueryDTO.class, dto.generatedQueryId()), dto.comparatorType(),
+                            ids.resolve(LLMDTO.class, dto.judgeId()), dto.temperature(), dto.score(), dto.timestamp()),
+                    UnaryOperator.identity())
+    );
+    
+    private WorkspaceTransfer() {
+    }
+    
+    /**
+     * Exports all stored DTOs of the workspace into an NDJSON file, replacing it if it exists.
+     *
+     * @param file           the file to write
+     * @param includeApiKeys {@code true} to export the API keys of LLMs in plain text, {@code false} to leave them empty
+     * @return the number of exported DTOs
+     * @throws IOException if the file cannot be written or the stored DTOs cannot be read
+     */
+    public static long exportTo(Path file, boolean includeApiKeys) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long count = exportTo(writer, includeApiKeys);
+            log.info("Exported {} objects to {}.", count, file.toAbsolutePath());
+            return count;
+        }
+    }
+    
+    /**
+     * Exports all stored DTOs of the workspace as NDJSON into the given writer, which is left open.
+     *
+     * @param writer         the writer to write the lines to
+     * @param includeApiKeys {@code true} to export the API keys of LLMs in plain text, {@code false} to leave them empty
+     * @return the number of exported DTOs
+     * @throws IOException if writing fails or the stored DTOs cannot be read
+     */
+    public static long exportTo(Writer writer, boolean includeApiKeys) throws IOException {
+        if (includeApiKeys)
+            log.warn("Exporting the API keys of all LLMs in plain text.");
+        long count = 0;
+        for (Section<?> section : SECTIONS)
+            count += export(section, writer, includeApiKeys);
+        writer.flush();
+        return count;
+    }
+    
+    /**
+     * Imports all DTOs of an NDJSON file into the workspace under new ids.
+     *
+     * @param file the file to read
+     * @return the number of imported DTOs
+     * @throws IOException if the file cannot be read
+     */
+    public static long importFrom(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long count = importFrom(reader);
+            log.info("Imported {} objects from {}.", count, file.toAbsolutePath());
+            return count;
+        }
+    }
+    
+    /**
+     * Imports all DTOs of NDJSON read from the given reader into the workspace under new ids.
+     * The reader is left open.
+     *
+     * @param reader the reader to read the lines from
+     * @return the number of imported DTOs
+     * @throws IOException if reading fails
+     */
+    public static long importFrom(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        Map<String, Pending<?>> pending = new LinkedHashMap<>();
+        SECTIONS.forEach(section -> pending.put(section.type, new Pending<>(section, List.copyOf(pending.values()))));
+        IdRemap ids = new IdRemap();
+        long count = 0, lineNumber = 0;
+        
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank())
+                continue;
+            
+            try {
+                JsonObject envelope = JsonParser.parseString(line).getAsJsonObject();
+                Pending<?> target = envelope.has("type") ? pending.get(envelope.get("type").getAsString()) : null;
+                if (target == null || !envelope.has("dto")) {
+                    log.warn("Skipping line {} of import, unknown type {} or no DTO.", lineNumber, envelope.get("type"));
+                    continue;
+                }
+                target.add(envelope.get("dto"), ids);
+                count++;
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                log.warn("Skipping unreadable line {} of import.", lineNumber, e);
+            }
+        }
+        
+        pending.values().forEach(Pending::save);
+        return count;
+    }
+    
+    /**
+     * Streams the stored DTOs of one section into the writer, serializing each batch in parallel.
+     */
+    private static <T extends Persistable> long export(Section<T> section, Writer writer, boolean includeApiKeys) throws IOException {
+        UnaryOperator<T> redact = includeApiKeys ? UnaryOperator.identity() : section.redactor;
+        section.dao.get().flush();
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        long[] count = {0};
+        try {
+            PersistenceHelper.forEach(section.clazz, dto -> {
+                batch.add(redact.apply(dto));
+                if (batch.size() == BATCH_SIZE) {
+                    count[0] += write(section, batch, writer);
+                    batch.clear();
+                }
+            });
+            count[0] += write(section, batch, writer);
+        } catch (PersistenceException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        log.debug("Exported {} objects of class {}.", count[0], section.clazz.getSimpleName());
+        return count[0];
+    }
+    
+    private static <T extends Persistable> int write(Section<T> section, List<T> batch, Writer writer) {
+        List<String> lines = batch.parallelStream()
+                .map(dto -> "{\"type\":\"" + section.type + "\",\"dto\":" + gson.toJson(dto, section.clazz) + "}\n")
+                .toList();
+        try {
+            for (String line : lines)
+                writer.write(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines.size();
+    }
+    
+    /**
+     * Rebuilds a DTO under a new id with its references remapped.
+     */
+    @FunctionalInterface
+    private interface Remapper<T extends Persistable> {
+        T remap(T dto, int id, IdRemap ids);
+    }
+    
+    /**
+     * One transferred DTO class: its type name in the file, its DAO, how to remap it, and how to strip
+     * secrets from it on export.
+     */
+    private record Section<T extends Persistable>(String type, Class<T> clazz, Supplier<? extends DTODAO<T>> dao,
+                                                  Remapper<T> remapper, UnaryOperator<T> redactor) {
+    }
+    
+    /**
+     * The imported DTOs of one section that are not saved yet.
+     */
+    private static final class Pending<T extends Persistable> {
+        private final Section<T> section;
+        private final List<Pending<?>> referenced;
+        private final List<T> dtos = new ArrayList<>(BATCH_SIZE);
+        
+        /**
+         * Creates an empty batch of a section.
+         *
+         * @param section    the section
+         * @param referenced the pending DTOs of all sections before {@code section}, which it may reference
+         */
+        Pending(Section<T> section, List<Pending<?>> referenced) {
+            this.section = section;
+            this.referenced = referenced;
+        }
+        
+        void add(JsonElement json, IdRemap ids) {
+            T dto = gson.fromJson(json, section.clazz);
+            if (dto == null)
+                throw new JsonParseException("DTO is null.");
+            
+            int id = section.dao.get().getFreeId();
+            ids.put(section.clazz, dto.id(), id);
+            dtos.add(section.remapper.remap(dto, id, ids));
+            if (dtos.size() == BATCH_SIZE)
+                save();
+        }
+        
+        /**
+         * Saves the pending DTOs, after those of the referenced sections.
+         */
+        void save() {
+            if (dtos.isEmpty())
+                return;
+            
+            referenced.forEach(Pending::saveOwn);
+            saveOwn();
+        }
+        
+        private void saveOwn() {
+            if (dtos.isEmpty())
+                return;
+            
+            section.dao.get().saveAll(dtos);
+            dtos.clear();
+        }
+    }
+    
+    /**
+     * Old to new ids per DTO class, as primitive open-addressing hash tables.
+     */
+    private static final class IdRemap {
+        private static final int FREE = Integer.MIN_VALUE;
+        
+        private final Map<Class<?>, int[]> tables = new HashMap<>();
+        private final Map<Class<?>, Integer> sizes = new HashMap<>();
+        
+        void put(Class<?> clazz, int oldId, int newId) {
+            if (oldId == FREE)
+                return;
+            
+            int size = sizes.getOrDefault(clazz, 0);
+            int[] table = tables.get(clazz);
+            if (table == null || (size + 1) * 2 > table.length / 2) {
+                table = grow(table);
+                tables.put(clazz, table);
+            }
+            if (insert(table, oldId, newId))
+                sizes.put(clazz, size + 1);
+        }
+        
+        /**
+         * Returns the new id of a DTO imported earlier, or {@code oldId} if it wasn't.
+         */
+        int resolve(Class<?> clazz, int oldId) {
+            int[] table = tables.get(clazz);
+            if (table == null || oldId == FREE)
+                return oldId;
+            
+            int mask = table.length / 2 - 1;
+            for (int slot = mix(oldId) & mask; ; slot = (slot + 1) & mask) {
+                int key = table[2 * slot];
+                if (key == oldId)
+                    return table[2 * slot + 1];
+                if (key == FREE)
+                    return oldId;
+            }
+        }
+        
+        /**
+         * Inserts or replaces a mapping; returns whether the key is new.
+         */
+        private static boolean insert(int[] table, int oldId, int newId) {
+            int mask = table.length / 2 - 1;
+            for (int slot = mix(oldId) & mask; ; slot = (slot + 1) & mask) {
+                int key = table[2 * slot];
+                if (key == FREE || key == oldId) {
+                    table[2 * slot] = oldId;
+                    table[2 * slot + 1] = newId;
+                    return key == FREE;
+                }
+            }
+        }
+        
+        private static int[] grow(int[] old) {
+            int[] table = new int[old == null ? 64 : old.length * 2];
+            for (int i = 0; i < table.length; i += 2)
+                table[i] = FREE;
+            if (old != null)
+                for (int i = 0; i < old.length; i += 2)
+                    if (old[i] != FREE)
+                        insert(table, old[i], old[i + 1]);
+            return table;
+        }
+        
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -8,11 +8,18 @@ import javafx.beans.property.SimpleObjectProperty;
 import de.seggebaeing.sqlanalyzer.logic.bdo.GeneratedQuery;
 import de.seggebaeing.sqlanalyzer.logic.bdo.LLM;
 import de.seggebaeing.sqlanalyzer.logic.util.thread.GenerationThread;
+import de.seggebaeing.sqlanalyzer.logic.service.ConfigService;
 import de.seggebaeing.sqlanalyzer.logic.service.GeneratedQueryService;
+import de.seggebaeing.sqlanalyzer.logic.service.WorkspaceService;
 import de.seggebaeing.sqlanalyzer.presentation.uielements.window.WorkerWindow;
 import de.seggebaeing.sqlanalyzer.presentation.util.*;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.URL;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -22,11 +29,20 @@ import java.util.function.Consumer;
  * Controller for the SQL generation workflow. Extends {@link de.seggebaeing.sqlanalyzer.presentation.uielements.window.WorkerWindow}
  * to spawn a {@link de.seggebaeing.sqlanalyzer.logic.util.thread.GenerationThread}, track per-LLM progress (incl. rate-limit countdown),
  * enable contextual help, validate settings, and persist/open newly generated queries on save.
+ * If {@code gen.checkpoint} is enabled in {@link ConfigService}, results are checkpointed during the run,
+ * promoted on save and discarded on Cancel or when the window is closed without saving
+ * (see {@link GeneratedQueryService#openCheckpoint()}).
  *
  * @author Felix Seggebäing
  * @since 1.0
  */
 public class GenerationController extends WorkerWindow {
+    private static final Logger log = LoggerFactory.getLogger(GenerationController.class);
+    
+    /**
+     * Number of generated queries committed per batch while saving; progress is reported per batch.
+     */
+    private static final int SAVE_CHUNK_SIZE = 500;
     
     /**
      * Shared settings singleton from {@link GenerationSettingsController#getSettings()}.
@@ -40,6 +56,11 @@ public class GenerationController extends WorkerWindow {
     
     private final GeneratedQueryService gqService = GeneratedQueryService.getInstance();
     
+    /**
+     * Whether the results are being saved; the checkpoint then belongs to the save thread and is not discarded.
+     */
+    private boolean saving = false;
+    
     /**
      * Calls {@code super.initialize(...)} and enables the generation help link.
      *
@@ -65,8 +86,12 @@ public class GenerationController extends WorkerWindow {
     
     /**
      * Persists newly generated queries and navigates to their overview. Retrieves the
-     * result set from the active {@link GenerationThread}, saves each via the service,
-     * opens the Generated Query overview filtered to the new items, then closes this window.
+     * result set from the active {@link GenerationThread}, maps it on this thread via
+     * {@link GeneratedQueryService#prepareSave(Collection)} and saves it on a background thread
+     * in batches of {@value #SAVE_CHUNK_SIZE}, showing a progress bar. Results of a checkpointed run are promoted from the checkpoint in
+     * batches of the same size. Once done, opens the Generated Query overview filtered to the
+     * new items, then closes this window. If the checkpoint couldn't be promoted completely, the user is told
+     * that the rest is recovered on next start. If saving fails, an error is shown and Save is enabled again.
      *
      * @implNote Assumes {@code workerProperty.get()} is a completed {@link GenerationThread}.
      *           Invoke on the JavaFX Application Thread.
@@ -74,10 +99,63 @@ public class GenerationController extends WorkerWindow {
     @Override
     @SuppressWarnings("SuspiciousMethodCalls")
     protected void saveBtnClick() {
-        Set<GeneratedQuery> evalResult = ((GenerationThread) workerProperty.get()).getResult();
-        evalResult.forEach(gqService::saveOrUpdate);
-        WindowManager.openOverview(BdoWindowType.GENERATED_QUERY, evalResult::contains);
-        closeWindow();
+        GenerationThread worker = (GenerationThread) workerProperty.get();
+        GeneratedQueryService.Checkpoint checkpoint = worker.getCheckpoint();
+        // Copied, the worker's result set is not touched from the save thread
+        List<GeneratedQuery> toSave = new ArrayList<>(worker.getResult());
+        // Mapped here, the save thread must not read the generated queries, LLMs and prompts
+        GeneratedQueryService.SaveBatch batch = gqService.prepareSave(toSave);
+        setSaveDisabled(true);
+        saving = true;
+        
+        DoubleProperty savedProperty = new SimpleDoubleProperty(0.0);
+        addDualProgressBar("Saving", savedProperty, savedProperty, null);
+        
+        // Run in the workspace, so it isn't unloaded while saving
+        WorkspaceService workspaceService = WorkspaceService.getInstance();
+        Path workspace = workspaceService.getCurrent();
+        Thread saveThread = new Thread(() -> workspaceService.runIn(workspace, () -> {
+            Set<Integer> promotedIds = new HashSet<>();
+            int checkpointed = checkpoint == null ? 0 : checkpoint.size();
+            boolean done = false;
+            try {
+                // Share of the progress bar taken by the checkpoint
+                double checkpointShare = (double) checkpointed / Math.max(1, checkpointed + batch.size());
+                if (checkpoint != null)
+                    promotedIds.addAll(checkpoint.promote(SAVE_CHUNK_SIZE, p -> Platform.runLater(() -> savedProperty.set(p * checkpointShare))));
+                int promoted = promotedIds.size();
+                
+                batch.save(SAVE_CHUNK_SIZE, p -> Platform.runLater(() -> savedProperty.set(checkpointShare + (1 - checkpointShare) * p)));
+                done = true;
+                
+                Platform.runLater(() -> {
+                    if (promoted < checkpointed)
+                        UIUtil.generateAlert(Alert.AlertType.WARNING, "Generation",
+                                "Saved " + promoted + " of " + checkpointed + " checkpointed queries.",
+                                "The checkpoint couldn't be read completely and was kept. "
+                                        + "The remaining queries are recovered on next start.",
+                                ButtonType.OK).showAndWait();
+                    // Promoted ones are mapped here, not on the save thread
+                    Set<GeneratedQuery> saved = new HashSet<>(toSave);
+                    saved.addAll(gqService.getByIds(promotedIds));
+                    WindowManager.openOverview(BdoWindowType.GENERATED_QUERY, saved::contains);
+                    // Saved, nothing left to discard on close
+                    workerProperty.set(null);
+                    closeWindow();
+                });
+            } catch (RuntimeException e) {
+                log.error("Saving generated queries failed.", e);
+                Platform.runLater(() -> UIUtil.generateAlert(Alert.AlertType.ERROR, "Generation",
+                        "Saving the generated queries failed.", e.getMessage(), ButtonType.CLOSE).show());
+            } finally {
+                if (!done)
+                    Platform.runLater(() -> {
+                        saving = false;
+                        setSaveDisabled(false);
+                    });
+            }
+        }), "generation-save");
+        saveThread.start();
     }
     
     /**
@@ -90,7 +168,8 @@ public class GenerationController extends WorkerWindow {
      *   <li>Stores lambdas in maps used by the worker to update progress and the latest rate-limit instant.</li>
      * </ul>
      * The method then constructs and returns a {@link GenerationThread} that consumes these maps
-     * to report progress and rate-limit updates.
+     * to report progress and rate-limit updates. If checkpointing is enabled, the thread also receives
+     * a newly opened checkpoint for its results.
      *
      * @return a configured, not-yet-started {@link Thread} for SQL generation
      * @implNote UI nodes are created and bound here; worker callbacks should be marshalled to the FX thread.
@@ -124,6 +203,10 @@ public class GenerationController extends WorkerWindow {
             });
         }
         
+        GeneratedQueryService.Checkpoint checkpoint = ConfigService.getInstance().getBoolean("gen.checkpoint", false)
+                ? gqService.openCheckpoint()
+                : null;
+        
         return new GenerationThread(
                 settings.getPoolSize(),
                 settings.getReps(),
@@ -132,10 +215,38 @@ public class GenerationController extends WorkerWindow {
                 this::signalDone,
                 llm -> Platform.runLater(startedProgressMap.get(llm)),
                 llm -> Platform.runLater(finishedProgressMap.get(llm)),
-                (llm, i) -> Platform.runLater(() -> rateLimitInstantMap.get(llm).accept(i))
+                (llm, i) -> Platform.runLater(() -> rateLimitInstantMap.get(llm).accept(i)),
+                checkpoint
         );
     }
     
+    /**
+     * Interrupts the worker and discards its checkpoint, so a run the user didn't save is not recovered on the
+     * next start. Waits for the worker on a background thread first, so no subworker appends to the discarded
+     * checkpoint. Keeps the checkpoint while it is being saved; if saving fails midway, the rest is recovered.
+     *
+     * @param worker the {@link GenerationThread} to discard
+     */
+    @Override
+    protected void discardWorker(Thread worker) {
+        super.discardWorker(worker);
+        GeneratedQueryService.Checkpoint checkpoint = ((GenerationThread) worker).getCheckpoint();
+        if (checkpoint == null || saving)
+            return;
+        
+        Thread discardThread = new Thread(() -> {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            checkpoint.discard();
+        }, "checkpoint-discard");
+        discardThread.setDaemon(true);
+        discardThread.start();
+    }
+    
     /**
      * Opens the Generation Settings window for configuring the run.
      */
@@ -1,17 +1,41 @@
 package de.seggebaeing.sqlanalyzer.presentation.controller.general;
 
+import de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult;
+import de.seggebaeing.sqlanalyzer.logic.bdo.LLM;
+import de.seggebaeing.sqlanalyzer.logic.bdo.PromptType;
+import de.seggebaeing.sqlanalyzer.logic.service.ArchiveService;
+import de.seggebaeing.sqlanalyzer.logic.service.CascadeDeletionService;
+import de.seggebaeing.sqlanalyzer.logic.service.LLMService;
+import de.seggebaeing.sqlanalyzer.logic.service.OrphanQuarantineService;
+import de.seggebaeing.sqlanalyzer.logic.service.PromptTypeService;
+import de.seggebaeing.sqlanalyzer.logic.service.WorkspaceService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceDialog;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import de.seggebaeing.sqlanalyzer.persistence.archive.ColdSegment;
 import de.seggebaeing.sqlanalyzer.presentation.uielements.window.TitledInitializableWindow;
 import de.seggebaeing.sqlanalyzer.presentation.util.*;
 
+import java.io.File;
 import java.net.URL;
-import java.util.ResourceBundle;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Controller for the home screen providing navigation to domain overviews
  * (LLMs, prompts, prompt types, sample/generated queries) and to the
- * generation/evaluation workflows. Also wires a contextual help link.
+ * generation/evaluation workflows. Also wires a contextual help link,
+ * shows the objects quarantined for dangling references, opens further workspaces, backs up, exports and
+ * imports the current one, and archives and restores generation runs.
  * Intended for FXML use on the JavaFX Application Thread.
  *
  * @author Felix Seggebäing
@@ -19,7 +43,12 @@ import java.util.ResourceBundle;
  */
 public class HomeController extends TitledInitializableWindow {
     @FXML
-    private Button sampleQueryBtn, llmOverviewBtn, promptTypeOverviewBtn, promptOverviewBtn, generatedQueriesBtn, generateQueriesBtn, evaluateBtn;
+    private Button sampleQueryBtn, llmOverviewBtn, promptTypeOverviewBtn, promptOverviewBtn, generatedQueriesBtn, generateQueriesBtn, evaluateBtn, quarantineBtn, workspaceBtn, backupBtn, archiveBtn, exportBtn, importBtn;
+    
+    /**
+     * Maximum number of orphans listed in the quarantine dialog.
+     */
+    private static final int MAX_LISTED_ORPHANS = 20;
     
     /**
      * Wires navigation button handlers for all sections and enables the help link
@@ -38,6 +67,12 @@ public class HomeController extends TitledInitializableWindow {
         generatedQueriesBtn.setOnAction(e -> generatedQueriesBtnClick());
         generateQueriesBtn.setOnAction(e -> generateQueriesBtnClick());
         evaluateBtn.setOnAction(e -> evaluateBtnClick());
+        quarantineBtn.setOnAction(e -> quarantineBtnClick());
+        workspaceBtn.setOnAction(e -> workspaceBtnClick());
+        backupBtn.setOnAction(e -> backupBtnClick());
+        archiveBtn.setOnAction(e -> archiveBtnClick());
+        exportBtn.setOnAction(e -> exportBtnClick());
+        importBtn.setOnAction(e -> importBtnClick());
         
         enableHelp("general");
     }
@@ -101,4 +136,199 @@ public class HomeController extends TitledInitializableWindow {
         WindowManager.openWindow(GeneralWindowType.GEN);
     }
     
+    /**
+     * Lets the user choose a saves directory via a {@link DirectoryChooser} and opens it as workspace of the
+     * Home window. Windows of the previous workspace stay open. If another process has the directory open,
+     * an error is shown and Home keeps its workspace.
+     */
+    private void workspaceBtnClick() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Choose workspace directory");
+        File current = WorkspaceService.getInstance().getCurrent().toFile();
+        if (current.isDirectory()) chooser.setInitialDirectory(current.getParentFile());
+        File selectedDir = chooser.showDialog(getStage());
+        if (selectedDir == null) return;
+        
+        try {
+            WindowManager.openWorkspace(selectedDir.toPath());
+        } catch (IllegalStateException e) {
+            UIUtil.generateAlert(Alert.AlertType.ERROR, "Workspace", "Couldn't open workspace " + selectedDir.getName() + ".",
+                    e.getMessage(), ButtonType.CLOSE).showAndWait();
+            return;
+        }
+        UIUtil.showToast(getStage(), "Opened workspace " + selectedDir.getName() + ".", 2000);
+    }
+    
+    /**
+     * Lets the user choose a zip file via a {@link FileChooser} and backs up the current workspace into it in
+     * the background. The button stays disabled until the backup is done; the outcome is shown as a toast, or
+     * as an error alert if the backup failed.
+     */
+    private void backupBtnClick() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Back up workspace");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Zip archive", "*.zip"));
+        chooser.setInitialFileName("backup-" + LocalDate.now() + ".zip");
+        File archive = chooser.showSaveDialog(getStage());
+        if (archive == null) return;
+        
+        try {
+            backupBtn.setDisable(true);
+            WorkspaceService.getInstance().backup(archive.toPath()).whenComplete((path, e) -> Platform.runLater(() -> {
+                backupBtn.setDisable(false);
+                if (e == null)
+                    UIUtil.showToast(getStage(), "Backed up workspace to " + archive.getName() + ".", 2000);
+                else
+                    UIUtil.generateAlert(Alert.AlertType.ERROR, "Backup", "Couldn't back up the workspace.",
+                            e.getMessage(), ButtonType.CLOSE).showAndWait();
+            }));
+        } catch (IllegalStateException e) {
+            backupBtn.setDisable(false);
+            UIUtil.showToast(getStage(), e.getMessage(), 2000);
+        }
+    }
+    
+    /**
+     * Lets the user choose an NDJSON file via a {@link FileChooser} and exports the current workspace into it in
+     * the background. API keys are only exported if the user confirms a warning, as the file is plain text.
+     */
+    private void exportBtnClick() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export workspace");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("NDJSON", "*.ndjson"));
+        chooser.setInitialFileName("export-" + LocalDate.now() + ".ndjson");
+        File file = chooser.showSaveDialog(getStage());
+        if (file == null) return;
+        
+        ButtonType include = new ButtonType("Include API keys", ButtonBar.ButtonData.OTHER);
+        ButtonType exclude = new ButtonType("Leave out API keys", ButtonBar.ButtonData.OK_DONE);
+        Optional<ButtonType> keys = UIUtil.generateAlert(Alert.AlertType.WARNING, "Export", "Export the API keys of the LLMs?",
+                "The export is plain text. Anyone with the file can use included API keys.", exclude, include, ButtonType.CANCEL).showAndWait();
+        if (keys.isEmpty() || keys.get() == ButtonType.CANCEL) return;
+        
+        transfer(exportBtn, WorkspaceService.getInstance().exportTo(file.toPath(), keys.get() == include), "Exported", file);
+    }
+    
+    /**
+     * Lets the user choose an NDJSON file via a {@link FileChooser} and imports its objects into the current
+     * workspace under new ids in the background. Refreshes all overviews afterwards.
+     */
+    private void importBtnClick() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import into workspace");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("NDJSON", "*.ndjson"));
+        File file = chooser.showOpenDialog(getStage());
+        if (file == null) return;
+        
+        transfer(importBtn, WorkspaceService.getInstance().importFrom(file.toPath()).whenComplete((count, e) -> {
+            if (e == null)
+                Platform.runLater(() -> Arrays.stream(BdoWindowType.values()).forEach(WindowManager::refreshOverviewsFor));
+        }), "Imported", file);
+    }
+    
+    /**
+     * Disables {@code button} until a running export or import completes, then shows its outcome.
+     */
+    private void transfer(Button button, CompletableFuture<Long> running, String verb, File file) {
+        button.setDisable(true);
+        running.whenComplete((count, e) -> Platform.runLater(() -> {
+            button.setDisable(false);
+            if (e == null)
+                UIUtil.showToast(getStage(), verb + " " + count + " objects (" + file.getName() + ").", 2000);
+            else
+                UIUtil.generateAlert(Alert.AlertType.ERROR, "Transfer", "Couldn't transfer " + file.getName() + ".",
+                        e.getMessage(), ButtonType.CLOSE).showAndWait();
+        }));
+    }
+    
+    /**
+     * Lets the user archive the generation runs of an LLM or a prompt type, or restore an archived run, each
+     * chosen via a {@link ChoiceDialog}. Refreshes the generated query overviews afterwards, as archived queries
+     * are hidden from them.
+     */
+    private void archiveBtnClick() {
+        String byLlm = "Archive runs of an LLM", byPromptType = "Archive runs of a prompt type", restore = "Restore archived runs";
+        Optional<String> action = choose("Archived runs are hidden from the overviews and the analytics until restored.",
+                List.of(byLlm, byPromptType, restore), Function.identity());
+        if (action.isEmpty()) return;
+        
+        ArchiveService archive = ArchiveService.getInstance();
+        String message;
+        if (action.get().equals(restore)) {
+            Optional<ColdSegment> segment = choose("Choose the run to restore.", archive.getSegments(),
+                    s -> s.getDescription() + " (archived " + s.getCreated() + ")");
+            if (segment.isEmpty()) return;
+            int restored = archive.restore(segment.get());
+            message = restored < 0 ? "Restoring failed, the run stays archived." : "Restored " + restored + " objects.";
+        } else {
+            ColdSegment segment;
+            if (action.get().equals(byLlm)) {
+                Optional<LLM> llm = choose("Choose the LLM whose generated queries to archive.", LLMService.getInstance().getAll(), Object::toString);
+                if (llm.isEmpty()) return;
+                segment = archive.archiveByLLM(llm.get());
+            } else {
+                Optional<PromptType> promptType = choose("Choose the prompt type whose generated queries to archive.", PromptTypeService.getInstance().getAll(), Object::toString);
+                if (promptType.isEmpty()) return;
+                segment = archive.archiveByPromptType(promptType.get());
+            }
+            message = segment == null ? "Nothing was archived." : "Archived " + segment.getDescription() + ".";
+        }
+        WindowManager.refreshOverviewsFor(BdoWindowType.GENERATED_QUERY);
+        UIUtil.showToast(getStage(), message, 2000);
+    }
+    
+    /**
+     * Shows a {@link ChoiceDialog} of the given items, labeled by {@code label}; shows a toast instead if there are none.
+     *
+     * @return the chosen item, or empty if there were none or the dialog was cancelled
+     */
+    private <T> Optional<T> choose(String header, Collection<T> items, Function<T, String> label) {
+        if (items.isEmpty()) {
+            UIUtil.showToast(getStage(), "Nothing to choose from.", 2000);
+            return Optional.empty();
+        }
+        Map<String, T> byLabel = new LinkedHashMap<>();
+        items.forEach(item -> byLabel.putIfAbsent(label.apply(item), item));
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(byLabel.keySet().iterator().next(), byLabel.keySet());
+        dialog.setTitle("Archive");
+        dialog.setHeaderText(header);
+        return dialog.showAndWait().map(byLabel::get);
+    }
+    
+    /**
+     * Lists the objects quarantined by the last reference check and offers to delete them
+     * along with their dependants. Refreshes the overviews of all affected types afterwards.
+     */
+    private void quarantineBtnClick() {
+        OrphanQuarantineService quarantine = OrphanQuarantineService.getInstance();
+        List<OrphanQuarantineService.Orphan> orphans = quarantine.getOrphans();
+        if (orphans.isEmpty()) {
+            UIUtil.showToast(getStage(), "No objects with dangling references found.", 2000);
+            return;
+        }
+        
+        String listed = orphans.stream().limit(MAX_LISTED_ORPHANS)
+                .map(OrphanQuarantineService.Orphan::describe)
+                .collect(Collectors.joining("\n"));
+        if (orphans.size() > MAX_LISTED_ORPHANS)
+            listed += "\n... and " + (orphans.size() - MAX_LISTED_ORPHANS) + " more";
+        
+        ButtonType delete = new ButtonType("Delete orphans", ButtonBar.ButtonData.OK_DONE);
+        Alert alert = UIUtil.generateAlert(Alert.AlertType.WARNING,
+                "Quarantine",
+                "There are " + orphans.size() + " dangling references.",
+                "These objects are hidden from the overviews:\n" + listed
+                        + "\n\nDeleting them deletes their dependants as well.\nThis action cannot be undone.",
+                delete, ButtonType.CLOSE);
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isEmpty() || result.get() != delete)
+            return;
+        
+        CascadeDeletionService.Plan plan = quarantine.deleteOrphans();
+        plan.getAffectedTypes().stream()
+                .filter(type -> type != EvaluationResult.class) // Evaluation results have no overview
+                .forEach(type -> WindowManager.refreshOverviewsFor(BdoWindowType.getForType(type)));
+        UIUtil.showToast(getStage(), "Deleted " + plan.describe() + ".", 2000);
+    }
+    
 }
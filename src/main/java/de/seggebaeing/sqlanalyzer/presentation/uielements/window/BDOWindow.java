@@ -6,10 +6,13 @@ import javafx.beans.property.StringProperty;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject;
+import de.seggebaeing.sqlanalyzer.logic.bdo.EvaluationResult;
 import de.seggebaeing.sqlanalyzer.logic.service.BDOService;
+import de.seggebaeing.sqlanalyzer.logic.service.CascadeDeletionService;
 import de.seggebaeing.sqlanalyzer.presentation.util.BdoWindowType;
 import de.seggebaeing.sqlanalyzer.presentation.util.UIUtil;
 import de.seggebaeing.sqlanalyzer.presentation.util.WindowManager;
@@ -21,7 +24,7 @@ import java.util.*;
  * Abstract JavaFX base controller for windows operating on a specific
  * {@link de.seggebaeing.sqlanalyzer.logic.bdo.BusinessDomainObject} type. Provides shared header/title
  * handling, a refresh action hook, and a guarded deletion workflow that checks
- * for dependants and can route to their overview windows.
+ * for dependants, can delete them along and can route to their overview windows.
  *
  * <p>Subclasses supply the backing {@link de.seggebaeing.sqlanalyzer.logic.service.BDOService} and implement
  * {@link #refresh()} and {@link #getTitle()}.
@@ -82,34 +85,58 @@ public abstract class BDOWindow<T extends BusinessDomainObject> extends TitledIn
     }
     
     /**
-     * Shows the alerts to the user. Doesn't actually delete the object itself, but returns if it's safe to delete
-     * @param object    the object for which the deletion is to be checked
-     * @return          if we can proceed with the deletion
+     * Shows the alerts to the user and deletes the objects if confirmed.
+     * <p>
+     * If other objects depend on the given ones, the user may delete them along with all direct and indirect
+     * dependants in one batch per type (see {@link CascadeDeletionService}), view the dependants in their
+     * overview windows, or cancel. Afterwards, the overviews of all affected types are refreshed once.
+     * 
+     *
+     * @param objects   the objects to delete
+     * @return          if the objects were deleted
      */
-    protected boolean requestDeletion(T object) {
-        List<BusinessDomainObject> dependants = getService().getDependants(object);
+    protected boolean deleteWithConfirmation(Collection<T> objects) {
+        if (objects.isEmpty())
+            return false;
+        
+        CascadeDeletionService.Plan plan = CascadeDeletionService.getInstance().plan(objects);
+        int dependantCount = plan.size() - objects.size();
         
-        if (!dependants.isEmpty()) {
-            Alert alert = UIUtil.generateAlert(Alert.AlertType.ERROR,
-                    "Deletion failed",
-                    "The deletion of this object is currently not possible.",
-                    "There are " + dependants.size() + " objects referencing this.\nDo you want to view them in their overview windows?",
-                    ButtonType.YES, ButtonType.NO);
+        if (dependantCount > 0) {
+            ButtonType deleteAll = new ButtonType("Delete all", ButtonBar.ButtonData.OK_DONE);
+            ButtonType view = new ButtonType("View dependants", ButtonBar.ButtonData.OTHER);
+            Alert alert = UIUtil.generateAlert(Alert.AlertType.WARNING,
+                    "Confirm Cascading Deletion",
+                    "There are " + dependantCount + " objects depending on this.",
+                    "Deleting it along with its dependants deletes " + plan.describe() + ".\nThis action cannot be undone.",
+                    deleteAll, view, ButtonType.CANCEL);
             Optional<ButtonType> result = alert.showAndWait();
-            if (result.isPresent() && result.get() == ButtonType.YES)
+            if (result.isPresent() && result.get() == view) {
+                List<BusinessDomainObject> dependants = new ArrayList<>();
+                objects.forEach(object -> dependants.addAll(getService().getDependants(object)));
                 showDependantsOverview(dependants);
-            return false;
+            }
+            if (result.isEmpty() || result.get() != deleteAll)
+                return false;
         }
         else {
             Alert alert = UIUtil.generateAlert(Alert.AlertType.CONFIRMATION,
                     "Confirm Deletion",
                     "Are you sure you want to delete this?",
-                    "This action cannot be undone.\nAffected: " + object.toString()
+                    "This action cannot be undone.\nAffected: "
+                            + (objects.size() == 1 ? objects.iterator().next().toString() : plan.describe())
             );
             
             Optional<ButtonType> result = alert.showAndWait();
-            return result.isPresent() && result.get() == ButtonType.OK;
+            if (result.isEmpty() || result.get() != ButtonType.OK)
+                return false;
         }
+        
+        CascadeDeletionService.getInstance().delete(plan);
+        for (Class<? extends BusinessDomainObject> type : plan.getAffectedTypes())
+            if (type != EvaluationResult.class) // Evaluation results have no overview
+                WindowManager.refreshOverviewsFor(BdoWindowType.getForType(type));
+        return true;
     }
     
     /**
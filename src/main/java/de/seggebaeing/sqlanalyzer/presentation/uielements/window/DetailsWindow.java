@@ -129,18 +129,15 @@ public abstract class DetailsWindow<T extends BusinessDomainObject> extends BDOW
     }
     
     /**
-     * Handles the Delete action: confirms via {@link BDOWindow#requestDeletion(BusinessDomainObject)},
-     * deletes the object through {@link #getService()}, refreshes all related
-     * overview windows, and closes this window.
+     * Handles the Delete action: confirms and deletes the object, possibly along with its
+     * dependants, via {@link BDOWindow#deleteWithConfirmation(java.util.Collection)}, which refreshes all
+     * related overview windows, and closes this window.
      *
      * @implNote Intended as a JavaFX event handler; run on the Application Thread.
      */
     protected void deleteBtnClick() {
-        if (requestDeletion(getObject())) {
-            getService().delete(getObject());
-            WindowManager.refreshOverviewsFor(BdoWindowType.getForType(object.getClass()));
+        if (deleteWithConfirmation(List.of(getObject())))
             closeWindow();
-        }
     }
     
     /**
@@ -49,6 +49,12 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
      */
     private final Set<Predicate<BDO>> internalFilters = new HashSet<>();
     
+    /**
+     * Items last loaded from the service by {@link #refresh()}. Changing a filter only narrows these down
+     * again, so it doesn't load all objects from storage in lazy mode.
+     */
+    private List<BDO> items = List.of();
+    
     /**
      * Creates an overview window with an optional external filter applied
      * to the displayed items.
@@ -106,7 +112,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
         removeBtn.setOnAction(e -> {
             filterNodeContainer.getChildren().remove(vBox);
             externalFilter = null;
-            refresh();
+            applyFilters();
         });
     }
     
@@ -136,7 +142,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
             }
         });
         
-        listView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
+        listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         listView.getSelectionModel().selectedItemProperty()
                 .addListener((obs, oldV, newV)
                         -> deleteBtn.setDisable(newV == null)
@@ -193,9 +199,20 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
      * @implNote Invoke on the JavaFX Application Thread.
      */
     public void refresh() {
+        items = List.copyOf(getService().getAll());
+        applyFilters();
+    }
+    
+    /**
+     * Shows the items last loaded by {@link #refresh()} that pass the external and internal filters,
+     * sorted by {@code toString()}. Restores the previous selection when still available.
+     *
+     * @implNote Invoke on the JavaFX Application Thread.
+     */
+    private void applyFilters() {
         BDO prevSelection = listView.getSelectionModel().getSelectedItem();
         listView.getItems().clear();
-        listView.getItems().addAll(getService().getAll().stream()
+        listView.getItems().addAll(items.stream()
                 .filter(externalFilter == null ? bdo -> true : externalFilter) // External filter
                 .filter(internalFilters.stream().reduce(Predicate::and).orElse(bdo -> true)) // Internal filters
                 .sorted(Comparator.comparing(BusinessDomainObject::toString)).toList());
@@ -210,7 +227,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
      * @param filterLiteral predicate to include in the internal AND-composed filters
      * @param filterControl UI control that configures the predicate
      * @param filterName    label shown beneath the control
-     * @implNote Listener wiring (e.g., calling {@link #refresh()}) should be done by the caller.
+     * @implNote Listener wiring (e.g., calling {@link #applyFilters()}) should be done by the caller.
      */
     private void addFilter(Predicate<BDO> filterLiteral, Control filterControl, String filterName) {
         internalFilters.add(filterLiteral);
@@ -225,7 +242,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
     /**
      * Adds a drop-down filter for a derived attribute of each item. The combo box lists
      * all distinct values (with total occurrence counts) plus a “no selection” entry; changing
-     * the selection triggers {@link #refresh()}. Filtering matches items whose derived
+     * the selection re-filters the loaded items. Filtering matches items whose derived
      * value is the selected one (by reference identity).
      *
      * @param <T>        value type produced by {@code func}
@@ -235,7 +252,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
      */
     protected <T> void addObjectFilter(Function<BDO, T> func, String filterName) {
         ComboBox<Map.Entry<T, Integer>> comboBox = new ComboBox<>();
-        comboBox.valueProperty().addListener(obs -> refresh());
+        comboBox.valueProperty().addListener(obs -> applyFilters());
         comboBox.getItems().setAll(getAllTsWithCardinality(func).entrySet());
         comboBox.getItems().add(0, null); // No selection is allowed
         Callback<ListView<Map.Entry<T, Integer>>, ListCell<Map.Entry<T, Integer>>> cellFactory =
@@ -257,8 +274,8 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
     }
     
     /**
-     * Adds a case-insensitive substring filter driven by a text field. Typing triggers
-     * {@link #refresh()}; empty input disables the filter.
+     * Adds a case-insensitive substring filter driven by a text field. Typing re-filters
+     * the loaded items; empty input disables the filter.
      *
      * @param func       maps an item to the string to search in (expected non-null)
      * @param filterName label shown beneath the text field
@@ -267,7 +284,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
      */
     protected void addStringFilter(Function<BDO, String> func, String filterName) {
         TextField textField = new TextField();
-        textField.textProperty().addListener(obs -> refresh());
+        textField.textProperty().addListener(obs -> applyFilters());
         Predicate<BDO> filter = bdo ->
                 textField.getText() == null
                         || textField.getText().isBlank()
@@ -276,7 +293,7 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
     }
     
     /**
-     * Builds a frequency map of derived values across all items from the service.
+     * Builds a frequency map of derived values across the items last loaded from the service.
      * Values mapped to {@code null} are ignored.
      *
      * @param <T>  the derived value type
@@ -285,23 +302,18 @@ public abstract class OverviewWindow<BDO extends BusinessDomainObject> extends B
      * @implNote Uses {@code groupingBy} with {@code equals}/hash semantics over the current snapshot.
      */
     private <T> Map<T, Integer> getAllTsWithCardinality(Function<BDO, T> func) {
-        return getService().getAll().stream().filter(bdo -> func.apply(bdo) != null).collect(Collectors.groupingBy(func, Collectors.summingInt(bdo -> 1)));
+        return items.stream().filter(bdo -> func.apply(bdo) != null).collect(Collectors.groupingBy(func, Collectors.summingInt(bdo -> 1)));
     }
     
     /**
-     * Deletes the currently selected item after passing the guarded deletion check,
-     * then refreshes the list. No-op if nothing is selected or deletion is cancelled.
+     * Deletes the currently selected items after passing the guarded deletion check,
+     * which also refreshes this list. No-op if nothing is selected or deletion is cancelled.
      *
      * @implNote Invoked by FXML as an event handler.
      */
     @FXML
     private void deleteItem() {
-        BDO selection = listView.getSelectionModel().getSelectedItem();
-        
-        if (selection != null && requestDeletion(selection)) {
-            getService().delete(selection);
-            refresh();
-        }
+        deleteWithConfirmation(new ArrayList<>(listView.getSelectionModel().getSelectedItems()));
     }
     
     /**
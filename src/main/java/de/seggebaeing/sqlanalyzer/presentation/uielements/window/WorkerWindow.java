@@ -23,7 +23,8 @@ import java.util.ResourceBundle;
  * Abstract base controller for long-running worker windows. Provides common wiring for
  * Settings/Start/Cancel/Save actions, manages a {@link Thread} via {@code workerProperty},
  * and offers helpers to display progress (dual progress bars with optional retry countdown).
- * Handles start validation, cancellation/cleanup, and enabling Save on completion.
+ * Handles start validation, cancellation/cleanup, and enabling Save on completion. Closing the window
+ * without saving discards the worker like Cancel (see {@link #windowClosed()}).
  * Intended for FXML controllers on the JavaFX Application Thread.
  *
  * @author Felix Seggebäing
@@ -76,6 +77,16 @@ public abstract class WorkerWindow extends TitledInitializableWindow {
         Platform.runLater(() -> saveBtn.setDisable(false));
     }
     
+    /**
+     * Enables or disables the Save button, e.g. to prevent a second save while one is running.
+     *
+     * @param disabled {@code true} to disable the button
+     * @implNote Invoke on the JavaFX Application Thread.
+     */
+    protected void setSaveDisabled(boolean disabled) {
+        saveBtn.setDisable(disabled);
+    }
+    
     /**
      * Starts the worker after validating preconditions. If {@link #startValid()} fails,
      * visually signals the Settings button and aborts. Otherwise enables the content area,
@@ -97,8 +108,8 @@ public abstract class WorkerWindow extends TitledInitializableWindow {
     
     /**
      * Cancels the running worker if present: clears progress bars, disables Save,
-     * disables the content area, interrupts the thread, and clears {@code workerProperty}.
-     * No-op when no worker is active.
+     * disables the content area, discards the worker via {@link #discardWorker(Thread)}, and clears
+     * {@code workerProperty}. No-op when no worker is active.
      *
      * @implNote Invoke on the JavaFX Application Thread.
      */
@@ -109,10 +120,37 @@ public abstract class WorkerWindow extends TitledInitializableWindow {
         clearProgressBars();
         saveBtn.setDisable(true);
         content.setDisable(true);
-        worker.interrupt();
+        discardWorker(worker);
+        workerProperty.set(null);
+    }
+    
+    /**
+     * Discards the current worker, if any, as its results can no longer be saved. Called by the
+     * {@link de.seggebaeing.sqlanalyzer.presentation.util.WindowManager} once the window is hidden.
+     * Subclasses clear {@code workerProperty} after saving, so saved results are kept.
+     *
+     * @implNote Invoke on the JavaFX Application Thread.
+     */
+    public void windowClosed() {
+        Thread worker = workerProperty.get();
+        if (worker == null) return;
+        
+        discardWorker(worker);
         workerProperty.set(null);
     }
     
+    /**
+     * Stops the given worker and drops its unsaved results, on Cancel or when the window is closed.
+     * The default implementation interrupts the worker; override to also release resources holding
+     * its results.
+     *
+     * @param worker the worker to discard, running or finished
+     * @implNote Invoke on the JavaFX Application Thread.
+     */
+    protected void discardWorker(Thread worker) {
+        worker.interrupt();
+    }
+    
     /**
      * Adds a progress row consisting of a {@link DualProgressBar} bound to started/finished
      * progress and, optionally, a {@link CountdownLabel} that counts down until the next retry.
@@ -1,5 +1,6 @@
 package de.seggebaeing.sqlanalyzer.presentation.util;
 
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -8,6 +9,8 @@ import javafx.scene.layout.Region;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import de.seggebaeing.sqlanalyzer.logic.bdo.*;
+import de.seggebaeing.sqlanalyzer.logic.service.OrphanQuarantineService;
+import de.seggebaeing.sqlanalyzer.logic.service.WorkspaceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import de.seggebaeing.sqlanalyzer.presentation.controller.general.HomeController;
@@ -15,8 +18,10 @@ import de.seggebaeing.sqlanalyzer.presentation.uielements.window.DetailsWindow;
 import de.seggebaeing.sqlanalyzer.presentation.uielements.window.HelpWindow;
 import de.seggebaeing.sqlanalyzer.presentation.uielements.window.OverviewWindow;
 import de.seggebaeing.sqlanalyzer.presentation.uielements.window.TitledInitializableWindow;
+import de.seggebaeing.sqlanalyzer.presentation.uielements.window.WorkerWindow;
 
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
 
@@ -26,6 +31,12 @@ import java.util.function.Predicate;
  * windows (general workflow, BDO overviews, BDO details, and Help), wires FXML to
  * custom controllers, and coordinates lifecycle and refresh behavior across stages.
  *
+ * <p><strong>Workspaces:</strong> Every window belongs to the workspace that was current when it was opened,
+ * and activates it whenever it gains focus, so its handlers work on its own workspace while windows of other
+ * workspaces are open side by side (see {@link WorkspaceService}). The Home window belongs to the workspace
+ * last opened via {@link #openWorkspace(Path)}. Idle workspaces without open windows are unloaded
+ * whenever a window closes.
+ *
  * <p><strong>Threading:</strong> All public methods must be called on the JavaFX Application Thread.
  * This class is not thread-safe.
  *
@@ -37,8 +48,14 @@ public class WindowManager {
     
     private static final Image icon;
     private static Stage homeStage;
+    private static Path homeWorkspace;
+    
+    /**
+     * Key of the workspace base path in the {@link Stage#getProperties()} of every window but Home.
+     */
+    private static final String WORKSPACE_KEY = "workspace";
     
-    private static final Map<BdoWindowType, Set<OverviewWindow<?>>> overviewMap = new HashMap<>();
+    private static final Map<BdoWindowType, Map<OverviewWindow<?>, Path>> overviewMap = new HashMap<>();
     
     static {
         // Load icon resource
@@ -54,7 +71,8 @@ public class WindowManager {
      * shows the stage, and enforces a minimum size based on the root node’s preferred size.
      * The Home stage cannot be closed; its close request is consumed and the stage is hidden
      * instead. If it is closed while no other non-help stages are visible, the application
-     * terminates via {@code System.exit(0)}.
+     * terminates via {@code System.exit(0)}. The prompt and generated query overviews are refreshed whenever
+     * a reference check finishes, as it may quarantine objects they show.
      *
      * <p><strong>Threading:</strong> Must be called on the JavaFX Application Thread.
      *
@@ -65,8 +83,14 @@ public class WindowManager {
         if (homeStage != null)
             throw new IllegalStateException("Window manager already initialized! start() may only be called once after starting up the application.");
         homeStage = primaryStage;
+        homeWorkspace = WorkspaceService.getInstance().getCurrent();
         HomeController controller = new HomeController();
+        homeStage.setUserData(controller);
         loadFxmlInto(homeStage, "home", controller);
+        homeStage.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (focused)
+                WorkspaceService.getInstance().activate(homeWorkspace);
+        });
         homeStage.setOnCloseRequest(e -> {
             // Never fully close it
             e.consume();
@@ -77,6 +101,31 @@ public class WindowManager {
         });
         homeStage.setResizable(false);
         homeStage.show();
+        
+        // The reference check runs in the background and may hide objects the overviews already show
+        OrphanQuarantineService.addScanListener(() -> Platform.runLater(() -> {
+            refreshOverviewsFor(BdoWindowType.PROMPT);
+            refreshOverviewsFor(BdoWindowType.GENERATED_QUERY);
+        }));
+    }
+    
+    /**
+     * Opens the workspace in the given saves directory, or switches to it if it is already open, and makes it the
+     * workspace of the Home window.
+     * <p>
+     * Windows of other workspaces stay open and keep working on their own workspace. Windows opened from Home
+     * afterward belong to the new workspace. Updates the Home title and unloads idle workspaces.
+     *
+     * <p><strong>Threading:</strong> Must be called on the JavaFX Application Thread.
+     *
+     * @param basePath the saves directory to open; must not be {@code null}
+     * @throws IllegalStateException if another process has the saves directory open; Home keeps its workspace
+     */
+    public static void openWorkspace(Path basePath) {
+        homeWorkspace = WorkspaceService.getInstance().open(basePath);
+        homeStage.setTitle(titleOf((TitledInitializableWindow) homeStage.getUserData(), homeWorkspace));
+        log.info("Switched Home to workspace {}.", homeWorkspace);
+        unloadIdleWorkspaces();
     }
     
     /**
@@ -122,11 +171,11 @@ public class WindowManager {
         
         // Add to map to refresh it via refreshOverviewsFor()...
         if (!overviewMap.containsKey(bdoWindowType))
-            overviewMap.put(bdoWindowType, new HashSet<>());
-        Set<OverviewWindow<?>> controllerSet = overviewMap.get(bdoWindowType);
-        controllerSet.add(controller);
+            overviewMap.put(bdoWindowType, new HashMap<>());
+        Map<OverviewWindow<?>, Path> controllerMap = overviewMap.get(bdoWindowType);
+        controllerMap.put(controller, WorkspaceService.getInstance().getCurrent());
         // ...and remove it again to save on memory.
-        initializeAndShow(controller, fxmlName, true).setOnHiding(e -> controllerSet.remove(controller));
+        initializeAndShow(controller, fxmlName, true).setOnHiding(e -> controllerMap.remove(controller));
     }
     
     /**
@@ -176,7 +225,8 @@ public class WindowManager {
      * Triggers a UI refresh on all currently open Overview windows of the given type.
      * <p>
      * Looks up tracked controllers in the internal registry and invokes
-     * {@link de.seggebaeing.sqlanalyzer.presentation.uielements.window.OverviewWindow#refresh()} on each.
+     * {@link de.seggebaeing.sqlanalyzer.presentation.uielements.window.OverviewWindow#refresh()} on each,
+     * with the workspace of the respective window current.
      * If no overview windows are registered for the type, this method is a no-op.
      *
      * <p><strong>Threading:</strong> Must be called on the JavaFX Application Thread.
@@ -184,8 +234,9 @@ public class WindowManager {
      * @param windowType the overview category to refresh; must not be {@code null}
      */
     public static void refreshOverviewsFor(BdoWindowType windowType) {
-        Set<OverviewWindow<?>> overviews = overviewMap.get(windowType);
-        if (overviews != null) overviews.forEach(OverviewWindow::refresh);
+        Map<OverviewWindow<?>, Path> overviews = overviewMap.get(windowType);
+        if (overviews != null)
+            new HashMap<>(overviews).forEach((overview, workspace) -> WorkspaceService.getInstance().runIn(workspace, overview::refresh));
     }
     
     /**
@@ -194,8 +245,10 @@ public class WindowManager {
      * Behavior:
      * <ul>
      *   <li>Stores the controller in {@link Stage#setUserData(Object)} for later identification.</li>
+     *   <li>Assigns the current workspace to the stage and activates it whenever the stage gains focus.</li>
      *   <li>Loads scene, title, and icon via {@link #loadFxmlInto(Stage, String, TitledInitializableWindow)}.</li>
-     *   <li>On hide, re-displays the Home stage if no other non-help stages are visible.</li>
+     *   <li>On hide, discards the unsaved worker of a {@link WorkerWindow}, re-displays the Home stage if
+     *       no other non-help stages are visible, and unloads idle workspaces.</li>
      *   <li>Applies the {@code resizable} flag and enforces a minimum size based on the root’s preferred size.</li>
      * </ul>
      *
@@ -208,11 +261,20 @@ public class WindowManager {
      */
     private static Stage initializeAndShow(TitledInitializableWindow controller, String fxmlName, boolean resizable) {
         Stage stage = new Stage();
+        Path workspace = WorkspaceService.getInstance().getCurrent();
         stage.setUserData(controller);
+        stage.getProperties().put(WORKSPACE_KEY, workspace);
+        stage.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (focused)
+                WorkspaceService.getInstance().activate(workspace);
+        });
         loadFxmlInto(stage, fxmlName, controller);
         stage.setOnHidden(e -> {
+            if (controller instanceof WorkerWindow workerWindow)
+                workerWindow.windowClosed();
             if (getVisibleStages().isEmpty())
                 homeStage.show();
+            unloadIdleWorkspaces();
         });
         stage.setResizable(resizable);
         stage.show();
@@ -223,7 +285,7 @@ public class WindowManager {
     /**
      * Loads the given FXML into the provided {@link Stage} and binds it to the supplied controller.
      * <p>
-     * Sets the standardized window title ({@code "SQL analyzer - " + controller.getTitle()}),
+     * Sets the standardized window title (see {@link #titleOf(TitledInitializableWindow, Path)}),
      * resolves the FXML via {@link ResourceLoader#getFxmlUrl(String)}, injects the controller
      * with {@link FXMLLoader#setController(Object)}, loads the root, creates the {@link Scene},
      * and applies the shared application icon if available. Failures are logged and the stage
@@ -236,7 +298,7 @@ public class WindowManager {
      * @param controller controller instance backing the FXML; must not be {@code null}
      */
     private static void loadFxmlInto(Stage stage, String fxmlName, TitledInitializableWindow controller) {
-        stage.setTitle("SQL analyzer - " + controller.getTitle());
+        stage.setTitle(titleOf(controller, WorkspaceService.getInstance().getCurrent()));
         try {
             URL fxmlUrl = ResourceLoader.getFxmlUrl(fxmlName);
             FXMLLoader loader = new FXMLLoader(fxmlUrl);
@@ -249,6 +311,33 @@ public class WindowManager {
         }
     }
     
+    /**
+     * Returns the standardized window title {@code "SQL analyzer - " + controller.getTitle()}, followed by the
+     * directory name of the workspace in brackets while more than one workspace is open.
+     *
+     * @param controller the window controller; must not be {@code null}
+     * @param workspace  the base path of the window's workspace; must not be {@code null}
+     * @return the window title
+     */
+    private static String titleOf(TitledInitializableWindow controller, Path workspace) {
+        String title = "SQL analyzer - " + controller.getTitle();
+        if (WorkspaceService.getInstance().getOpenWorkspaces().size() > 1 && workspace.getFileName() != null)
+            title += " [" + workspace.getFileName() + "]";
+        return title;
+    }
+    
+    /**
+     * Unloads all idle workspaces that neither Home nor any showing window belongs to.
+     */
+    private static void unloadIdleWorkspaces() {
+        Set<Path> inUse = new HashSet<>();
+        inUse.add(homeWorkspace);
+        for (Window window : Window.getWindows())
+            if (window.isShowing() && window.getProperties().get(WORKSPACE_KEY) instanceof Path workspace)
+                inUse.add(workspace);
+        WorkspaceService.getInstance().unloadIdle(inUse);
+    }
+    
     /**
      * Enforces a minimum window size based on the controller root’s preferred size,
      * including window chrome deltas (borders/title bar).
@@ -20,12 +20,15 @@
  * <ul>
  *   <li>JavaFX controls, FXML, and WebView</li>
  *   <li>Gson (JSON), SLF4J/Log4j (logging), {@code java.net.http} (HTTP clients)</li>
+ *   <li>{@code java.sql}; H2 only optionally, for the embedded database storage engine</li>
  * </ul>
  *
  * <p><strong>Notes</strong>
  * <ul>
  *   <li>FXML controllers are instantiated reflectively by {@code FXMLLoader}, hence the {@code opens} directives.</li>
  *   <li>DTOs are (de)serialized by Gson via reflection, hence the {@code opens} to {@code com.google.gson}.</li>
+ *   <li>H2 is only needed for the {@code JDBC} storage engine and loaded via {@code DriverManager}, hence
+ *       {@code requires static}; add it with {@code --add-modules com.h2database} to use that engine.</li>
  * </ul>
  *
  * @author Felix Seggebäing
@@ -40,6 +43,8 @@ module de.seggebaeing.sqlanalyzer {
     requires org.apache.logging.log4j;
     requires org.slf4j;
     requires java.net.http;
+    requires java.sql;
+    requires static com.h2database;
     
     exports de.seggebaeing.sqlanalyzer;
     
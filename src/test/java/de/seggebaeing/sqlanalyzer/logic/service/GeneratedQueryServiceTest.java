@@ -0,0 +1,100 @@
+package de.seggebaeing.sqlanalyzer.logic.service;
+
+import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import de.seggebaeing.sqlanalyzer.persistence.dto.GeneratedQueryDTO;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngineType;
+import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests promoting and recovering {@link GeneratedQueryService.Checkpoint}s.
+ */
+class GeneratedQueryServiceTest {
+    @TempDir
+    Path basePath;
+    
+    private Workspace workspace;
+    private GeneratedQueryService service;
+    
+    @BeforeEach
+    void openWorkspace() {
+        workspace = Workspace.open(basePath, StorageEngineType.FILE, StorageFormat.COMPACT);
+        workspace.activate();
+        service = GeneratedQueryService.getInstance();
+    }
+    
+    @AfterEach
+    void closeWorkspace() {
+        workspace.close();
+    }
+    
+    private static void append(GeneratedQueryService.Checkpoint checkpoint, int count) throws IOException {
+        for (int i = 0; i < count; i++)
+            checkpoint.append("SELECT " + i + " FROM t", 1, 2);
+    }
+    
+    @Test
+    void promoteSavesAllResultsAndDeletesTheCheckpoint() throws IOException, PersistenceException {
+        GeneratedQueryService.Checkpoint checkpoint = service.openCheckpoint();
+        append(checkpoint, 1200);
+        assertEquals(1200, checkpoint.size());
+        
+        List<Double> progress = new ArrayList<>();
+        Set<Integer> ids = checkpoint.promote(500, progress::add);
+        
+        assertEquals(1200, ids.size());
+        assertEquals(ids, PersistenceHelper.loadIds(GeneratedQueryDTO.class));
+        for (int id : ids) {
+            GeneratedQueryDTO dto = PersistenceHelper.load(GeneratedQueryDTO.class, id);
+            assertTrue(dto.sql().startsWith("SELECT "));
+            assertEquals(1, dto.generatorId());
+            assertEquals(2, dto.promptId());
+        }
+        assertEquals(1.0, progress.getLast());
+        assertEquals(0, service.recoverCheckpoints());
+    }
+    
+    @Test
+    void closedCheckpointIsRecovered() throws IOException, PersistenceException {
+        GeneratedQueryService.Checkpoint checkpoint = service.openCheckpoint();
+        append(checkpoint, 3);
+        checkpoint.close();
+        
+        assertEquals(3, service.recoverCheckpoints());
+        assertEquals(3, PersistenceHelper.loadIds(GeneratedQueryDTO.class).size());
+        assertEquals(0, service.recoverCheckpoints());
+    }
+    
+    @Test
+    void openCheckpointIsNotRecovered() throws IOException {
+        GeneratedQueryService.Checkpoint checkpoint = service.openCheckpoint();
+        append(checkpoint, 3);
+        
+        assertEquals(0, service.recoverCheckpoints());
+        checkpoint.close();
+        assertEquals(3, service.recoverCheckpoints());
+    }
+    
+    @Test
+    void discardedCheckpointIsNotRecovered() throws IOException, PersistenceException {
+        GeneratedQueryService.Checkpoint checkpoint = service.openCheckpoint();
+        append(checkpoint, 3);
+        checkpoint.discard();
+        
+        assertEquals(0, service.recoverCheckpoints());
+        assertTrue(PersistenceHelper.loadIds(GeneratedQueryDTO.class).isEmpty());
+    }
+}
@@ -0,0 +1,186 @@
+package de.seggebaeing.sqlanalyzer.persistence.dao;
+
+import de.seggebaeing.sqlanalyzer.persistence.PersistenceHelper;
+import de.seggebaeing.sqlanalyzer.persistence.Workspace;
+import de.seggebaeing.sqlanalyzer.persistence.codec.StorageFormat;
+import de.seggebaeing.sqlanalyzer.persistence.dao.DAOImpl.PromptTypeDAOImpl;
+import de.seggebaeing.sqlanalyzer.persistence.dto.PromptTypeDTO;
+import de.seggebaeing.sqlanalyzer.persistence.engine.StorageEngineType;
+import de.seggebaeing.sqlanalyzer.persistence.exception.PersistenceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link DTODAO} saves, write-behind flushes and deletions under concurrent access.
+ */
+class DTODAOTest {
+    private static final int THREADS = 8;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    
+    @TempDir
+    Path basePath;
+    
+    private Workspace workspace;
+    private boolean deadlocked;
+    
+    @AfterEach
+    void closeWorkspace() {
+        DTODAO.setWriteBehindMillis(0);
+        // Closing flushes, which would block on the locks held by deadlocked threads
+        if (workspace != null && !deadlocked)
+            workspace.close();
+    }
+    
+    private PromptTypeDAOImpl openDao(boolean shared) {
+        workspace = Workspace.open(basePath, StorageEngineType.FILE, StorageFormat.COMPACT, shared);
+        workspace.activate();
+        return PromptTypeDAOImpl.getInstance();
+    }
+    
+    private static PromptTypeDTO promptType(int id, long version) {
+        return new PromptTypeDTO(id, version, "type-" + id + "-v" + version, "");
+    }
+    
+    /**
+     * Runs all tasks on a pool bound to the workspace and rethrows the first failure. Fails if they
+     * don't finish within {@link #TIMEOUT}, e.g. because they deadlocked.
+     */
+    private void runConcurrently(List<Runnable> tasks) {
+        deadlocked = true;
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Runnable task : tasks)
+                    futures.add(pool.submit(() -> workspace.runIn(task)));
+                for (Future<?> future : futures)
+                    future.get();
+            } finally {
+                pool.shutdownNow();
+            }
+        });
+        deadlocked = false;
+    }
+    
+    @Test
+    void concurrentSavesOfOneIdKeepTheNewestVersion() throws PersistenceException {
+        PromptTypeDAOImpl dao = openDao(false);
+        int id = dao.getFreeId();
+        
+        List<Runnable> saves = new ArrayList<>();
+        for (long version = 1; version <= 200; version++) {
+            PromptTypeDTO dto = promptType(id, version);
+            saves.add(() -> dao.saveOrUpdate(dto));
+        }
+        Collections.shuffle(saves);
+        runConcurrently(saves);
+        
+        assertEquals(200, dao.getByID(id).version());
+        assertEquals(promptType(id, 200), PersistenceHelper.load(PromptTypeDTO.class, id));
+    }
+    
+    @Test
+    void writeBehindSavesAreStoredOnFlush() throws PersistenceException {
+        DTODAO.setWriteBehindMillis(60_000);
+        PromptTypeDAOImpl dao = openDao(false);
+        
+        List<PromptTypeDTO> dtos = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            dtos.add(promptType(dao.getFreeId(), 1));
+        runConcurrently(dtos.stream().<Runnable>map(dto -> () -> dao.saveOrUpdate(dto)).toList());
+        
+        assertTrue(PersistenceHelper.loadIds(PromptTypeDTO.class).isEmpty());
+        for (PromptTypeDTO dto : dtos)
+            assertEquals(dto, dao.getByID(dto.id()));
+        
+        dao.flush();
+        
+        for (PromptTypeDTO dto : dtos)
+            assertEquals(dto, PersistenceHelper.load(PromptTypeDTO.class, dto.id()));
+    }
+    
+    @Test
+    void deletionsRacingSavesAndFlushesStayDeleted() throws PersistenceException {
+        DTODAO.setWriteBehindMillis(60_000);
+        PromptTypeDAOImpl dao = openDao(false);
+        
+        List<PromptTypeDTO> dtos = new ArrayList<>();
+        for (int i = 0; i < 400; i++)
+            dtos.add(promptType(dao.getFreeId(), 1));
+        dao.saveAll(dtos);
+        dao.flush();
+        
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < dtos.size(); i++) {
+            PromptTypeDTO dto = dtos.get(i);
+            if (i % 2 == 0)
+                tasks.add(() -> dao.saveOrUpdate(promptType(dto.id(), 2)));
+            else
+                tasks.add(() -> dao.delete(dto));
+            if (i % 10 == 0)
+                tasks.add(dao::flush);
+        }
+        Collections.shuffle(tasks);
+        runConcurrently(tasks);
+        dao.flush();
+        
+        Set<Integer> stored = PersistenceHelper.loadIds(PromptTypeDTO.class);
+        for (int i = 0; i < dtos.size(); i++) {
+            int id = dtos.get(i).id();
+            if (i % 2 == 0) {
+                assertEquals(promptType(id, 2), PersistenceHelper.load(PromptTypeDTO.class, id));
+            } else {
+                assertFalse(stored.contains(id), "deleted id " + id + " was stored again");
+                assertNull(dao.getByID(id));
+            }
+        }
+    }
+    
+    @Test
+    void flushSkippingStaleSavesDoesNotBlockDeletions() throws PersistenceException {
+        DTODAO.setWriteBehindMillis(60_000);
+        PromptTypeDAOImpl dao = openDao(true);
+        
+        for (int round = 0; round < 5; round++) {
+            List<PromptTypeDTO> stale = new ArrayList<>();
+            List<PromptTypeDTO> deleted = new ArrayList<>();
+            for (int i = 0; i < 1000; i++)
+                stale.add(promptType(dao.getFreeId(), 1));
+            for (int i = 0; i < 200; i++)
+                deleted.add(promptType(dao.getFreeId(), 1));
+            dao.saveAll(deleted);
+            dao.flush();
+            
+            // Another process stores newer versions, so the queued ones are skipped and reloaded by the flush
+            stale.forEach(dao::saveOrUpdate);
+            for (PromptTypeDTO dto : stale)
+                assertTrue(PersistenceHelper.write(promptType(dto.id(), 5)));
+            
+            // Deletions hold their stripe while waiting for the flush to finish
+            List<Runnable> tasks = new ArrayList<>();
+            for (PromptTypeDTO dto : deleted)
+                tasks.add(() -> dao.delete(dto));
+            tasks.add(THREADS, dao::flush);
+            runConcurrently(tasks);
+            
+            Set<Integer> stored = PersistenceHelper.loadIds(PromptTypeDTO.class);
+            for (PromptTypeDTO dto : stale)
+                assertEquals(5, dao.getByID(dto.id()).version());
+            for (PromptTypeDTO dto : deleted)
+                assertFalse(stored.contains(dto.id()));
+        }
+    }
+}